@@ -0,0 +1,2898 @@
+/*
+ * The SEI Software Open Source License, Version 1.0
+ *
+ * Copyright (c) 2004, Solution Engineering, Inc.
+ * All rights reserved.
+ *
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:
+ *       "This product includes software developed by the
+ *        Solution Engineering, Inc. (http://www.seisw.com/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 3. The name "Solution Engineering" must not be used to endorse or
+ *    promote products derived from this software without prior
+ *    written permission. For written permission, please contact
+ *    admin@seisw.com.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL SOLUTION ENGINEERING, INC. OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ */
+
+package geomerative;
+
+import java.util.Arrays;
+import geomerative.RClip.OperationType;
+
+/**
+ * <code>ArrayRClip</code> is the same clipper as <code>FastRClip</code>, except for the
+ * way the scanbeam table and the local minima table are built.  Instead of inserting each
+ * vertex y into an unbalanced binary tree and each local minimum into a sorted linked list,
+ * both of which degrade to quadratic time when the vertices come in monotone y order as is
+ * common on map data, the values are appended to primitive arrays which are sorted once with
+ * <code>java.util.Arrays.sort()</code>.  The nodes used during the sweep come from a
+ * <code>Workspace</code> kept by each thread and reused by its next clip, so that only the
+ * result is allocated.  The contours are read from and written to the flat arrays of an
+ * <code>RFlatPolygon</code>, the <code>RPolygon</code> results are built from it.  The sweep itself is unchanged, so the results are the same as those
+ * of <code>FastRClip</code>.  It is used when both <code>RG.useFastClip</code> and
+ * <code>RG.useArrayClip</code> are set.
+ * <p>
+ * <code>Clip</code> is a Java version of the <i>General RPolygon Clipper</i> algorithm
+ * developed by Alan Murta (gpc@cs.man.ac.uk).  The home page for the original source can be 
+ * found at <a href="http://www.cs.man.ac.uk/aig/staff/alan/software/" target="_blank">
+ * http://www.cs.man.ac.uk/aig/staff/alan/software/</a>.
+ * <p>
+ * <b><code>polyClass:</code></b> Some of the public methods below take a <code>polyClass</code>
+ * argument.  This <code>java.lang.Class</code> object is assumed to implement the <code>RPolygon</code>
+ * interface and have a no argument constructor.  This was done so that the user of the algorithm
+ * could create their own classes that implement the <code>RPolygon</code> interface and still uses
+ * this algorithm.
+ * <p>
+ * <strong>Implementation Note:</strong> The converted algorithm does support the <i>difference</i>
+ * operation, but a public method has not been provided and it has not been tested.  To do so,
+ * simply follow what has been done for <i>intersection</i>.
+ *
+ * @author  Dan Bridenbecker, Solution Engineering, Inc.
+ */
+class ArrayRClip
+{
+  // -----------------
+  // --- Constants ---
+  // -----------------
+  
+  // Maximum precision for floats
+  private static final double GPC_EPSILON = 2.2204460492503131e-016;
+  //private static final float GPC_EPSILON = 1.192092896e-07F;
+  static final String GPC_VERSION = "2.31";
+  
+  private static final int LEFT  = 0;
+  private static final int RIGHT = 1;
+  
+  private static final int ABOVE = 0;
+  private static final int BELOW = 1;
+  
+  private static final int CLIP = 0;
+  private static final int SUBJ = 1;
+  
+  private static final boolean INVERT_TRISTRIPS = false;
+  
+  /* Null handle in the workspace pools */
+  private static final int NONE = -1;
+  
+  // ------------------------
+  // --- Member Variables ---
+  // ------------------------
+  
+  /* The Workspace of each thread, kept between calls */
+  private static final ThreadLocal workspaces = new ThreadLocal();
+  
+  // --------------------
+  // --- Constructors ---
+  // --------------------
+  /** Creates a new instance of Clip */
+  private ArrayRClip()
+  {
+  }
+  
+  // ----------------------
+  // --- Static Methods ---
+  // ----------------------
+  
+  
+  // -----------------------
+  // --- Private Methods ---
+  // -----------------------
+  
+  /**
+   * Returns the workspace of the calling thread, or a new one if the
+   * thread's workspace is already in use.
+   */
+  private static Workspace acquire_workspace()
+  {
+    Workspace ws = (Workspace)workspaces.get();
+    if( ws == null )
+      {
+        ws = new Workspace();
+        workspaces.set( ws );
+      }
+    else if( ws.busy )
+      {
+        ws = new Workspace();
+      }
+    ws.reset();
+    ws.busy = true;
+    return ws;
+  }
+  
+  /**
+   * The result as an <code>RPolygon</code>, built from the flat one.
+   */
+  static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class polyClass )
+  {
+    RFlatPolygon result = clip( op, new RFlatPolygon( subj ), new RFlatPolygon( clip ) );
+    return (result == null) ? null : result.toPolygon();
+  }
+  
+  static RFlatPolygon clip( OperationType op, RFlatPolygon subj, RFlatPolygon clip )
+  {
+    Workspace ws = acquire_workspace();
+    try
+      {
+        return clip( ws, op, subj, clip );
+      }
+    finally
+      {
+        ws.busy = false;
+      }
+  }
+  
+  static RMesh clip( OperationType op, RPolygon subj, RPolygon clip )
+  {
+    Workspace ws = acquire_workspace();
+    try
+      {
+        return tristrip( ws, op, new RFlatPolygon( subj ), new RFlatPolygon( clip ) );
+      }
+    finally
+      {
+        ws.busy = false;
+      }
+  }
+  
+  static RIndexedMesh indexedMesh( OperationType op, RPolygon subj, RPolygon clip )
+  {
+    Workspace ws = acquire_workspace();
+    try
+      {
+        return triangles( ws, op, new RFlatPolygon( subj ), new RFlatPolygon( clip ) );
+      }
+    finally
+      {
+        ws.busy = false;
+      }
+  }
+  
+  /**
+   * <code>clip()</code> is the main method of the clipper algorithm.
+   * This is where the conversion from really begins.
+   */
+  private static RFlatPolygon clip( Workspace ws, OperationType op, RFlatPolygon subj, RFlatPolygon clip )
+  {
+    TopPolygonNode out_poly = new TopPolygonNode( ws ); // used to create resulting RFlatPolygon
+    
+    /* Test for trivial NULL result cases */
+    if( (subj.isEmpty() && clip.isEmpty()) ||
+        (subj.isEmpty() && ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF))) ||
+        (clip.isEmpty() &&  (op == OperationType.GPC_INT)) )
+      {
+        return null;
+      }
+    
+    /* Identify potentialy contributing contours */
+    boolean[] contributes = null;
+    if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
+        !subj.isEmpty() && !clip.isEmpty() )
+      {
+        contributes = minimax_test(subj, clip, op);
+      }
+    
+    /* Build LMT */
+    LmtTable lmt_table = ws.lmt_table;
+    ScanBeamTable sb_table = ws.sb_table;
+    if (!subj.isEmpty())
+      {
+        build_lmt(ws, subj, contributes, 0, SUBJ, op);
+      }
+    if (!clip.isEmpty())
+      {
+        build_lmt(ws, clip, contributes, subj.countContours(), CLIP, op);
+      }
+    
+    /* Return a NULL result if no contours contribute */
+    if (lmt_table.entries == 0)
+      {
+        return null;
+      }
+    
+    /* Sort the scanbeam and local minima tables */
+    float[] sbt = sb_table.build_sbt();
+    LmtNode lmt = lmt_table.build_lmt( ws );
+    
+    int parity_clip = LEFT;
+    int parity_subj = LEFT;
+    
+    /* Invert clip polygon for difference operation */
+    if (op == OperationType.GPC_DIFF)
+      {
+        parity_clip= RIGHT;
+      }
+    
+    LmtNode local_min = lmt;
+    
+    AetTree aet = new AetTree();
+    int scanbeam = 0;
+    
+    /* Process each scanbeam */
+    while( scanbeam < sbt.length )
+      {
+        /* Set yb and yt to the bottom and top of the scanbeam */
+        float yb = sbt[scanbeam++];
+        float yt = 0.0F;
+        float dy = 0.0F;
+        if( scanbeam < sbt.length )
+          {
+            yt = sbt[scanbeam];
+            dy = yt - yb;
+          }
+        
+        /* === SCANBEAM BOUNDARY PROCESSING ================================ */
+        
+        /* If LMT node corresponding to yb exists */
+        if (local_min != null )
+          {
+            if (local_min.y == yb)
+              {
+                /* Add edges starting at this local minimum to the AET */
+                for( EdgeNode edge = local_min.first_bound; (edge != null); edge= edge.next_bound)
+                  {
+                    add_edge_to_aet( aet, edge );
+                  }
+                
+                local_min = local_min.next;
+              }
+          }
+        
+        /* Set dummy previous x value */
+        float px = -Float.MAX_VALUE;
+        
+        /* Create bundles within AET */
+        EdgeNode e0 = aet.top_node;
+        EdgeNode e1 = aet.top_node;
+        
+        /* Set up bundle fields of first edge */
+        aet.top_node.bundle_above[ aet.top_node.type ] = (aet.top_node.top_y != yb) ? 1 : 0;
+        aet.top_node.bundle_above[ ((aet.top_node.type==0) ? 1 : 0) ] = 0;
+        aet.top_node.bstate_above = BundleState.UNBUNDLED;
+        
+        for ( EdgeNode next_edge = aet.top_node.next; (next_edge != null); next_edge = next_edge.next)
+          {
+            int ne_type = next_edge.type;
+            int ne_type_opp = ((next_edge.type==0) ? 1 : 0); //next edge type opposite
+            
+            /* Set up bundle fields of next edge */
+            next_edge.bundle_above[ ne_type     ]= (next_edge.top_y != yb) ? 1 : 0;
+            next_edge.bundle_above[ ne_type_opp ] = 0;
+            next_edge.bstate_above = BundleState.UNBUNDLED;
+            
+            /* Bundle edges above the scanbeam boundary if they coincide */
+            if ( next_edge.bundle_above[ne_type] == 1 )
+              {
+                if (EQ(e0.xb, next_edge.xb) && EQ(e0.dx, next_edge.dx) && (e0.top_y != yb))
+                  {
+                    next_edge.bundle_above[ ne_type     ] ^= e0.bundle_above[ ne_type     ];
+                    next_edge.bundle_above[ ne_type_opp ]  = e0.bundle_above[ ne_type_opp ];
+                    next_edge.bstate_above = BundleState.BUNDLE_HEAD;
+                    e0.bundle_above[CLIP] = 0;
+                    e0.bundle_above[SUBJ] = 0;
+                    e0.bstate_above = BundleState.BUNDLE_TAIL;
+                  }
+                e0 = next_edge;
+              }
+          }
+        
+        int horiz_clip = HState.NH;
+        int horiz_subj = HState.NH;
+        
+        int exists_clip = 0;
+        int exists_subj = 0;
+        
+        PolygonNode cf = null;
+        
+        /* Process each edge at this scanbeam boundary */
+        for ( EdgeNode edge = aet.top_node; (edge != null); edge = edge.next )
+          {
+            exists_clip = edge.bundle_above[CLIP] + (edge.bundle_below_clip << 1);
+            exists_subj = edge.bundle_above[SUBJ] + (edge.bundle_below_subj << 1);
+            
+            if( (exists_clip != 0) || (exists_subj != 0) )
+              {
+                /* Set bundle side */
+                edge.bside_clip = parity_clip;
+                edge.bside_subj = parity_subj;
+                
+                boolean contributing = false;
+                int br=0, bl=0, tr=0, tl=0;
+                /* Determine contributing status and quadrant occupancies */
+                if( (op == OperationType.GPC_DIFF) || (op == OperationType.GPC_INT) )
+                  {
+                    contributing= ((exists_clip!=0) && ((parity_subj!=0) || (horiz_subj!=0))) ||
+                      ((exists_subj!=0) && ((parity_clip!=0) || (horiz_clip!=0))) ||
+                      ((exists_clip!=0) && (exists_subj!=0) && (parity_clip == parity_subj));
+                    br = ((parity_clip!=0) && (parity_subj!=0)) ? 1 : 0;
+                    bl = ( ((parity_clip ^ edge.bundle_above[CLIP])!=0) &&
+                           ((parity_subj ^ edge.bundle_above[SUBJ])!=0) ) ? 1 : 0;
+                    tr = ( ((parity_clip ^ ((horiz_clip!=HState.NH)?1:0)) !=0) && 
+                           ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0)) !=0) ) ? 1 : 0;
+                    tl = (((parity_clip ^ ((horiz_clip!=HState.NH)?1:0) ^ edge.bundle_below_clip)!=0) &&
+                          ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0) ^ edge.bundle_below_subj)!=0))?1:0;
+                  }
+                else if( op == OperationType.GPC_XOR )
+                  {
+                    contributing= (exists_clip!=0) || (exists_subj!=0);
+                    br= (parity_clip) ^ (parity_subj);
+                    bl= (parity_clip ^ edge.bundle_above[CLIP]) ^ (parity_subj ^ edge.bundle_above[SUBJ]);
+                    tr= (parity_clip ^ ((horiz_clip!=HState.NH)?1:0)) ^ (parity_subj ^ ((horiz_subj!=HState.NH)?1:0));
+                    tl= (parity_clip ^ ((horiz_clip!=HState.NH)?1:0) ^ edge.bundle_below_clip)
+                      ^ (parity_subj ^ ((horiz_subj!=HState.NH)?1:0) ^ edge.bundle_below_subj);
+                  }
+                else if( op == OperationType.GPC_UNION )
+                  {
+                    contributing= ((exists_clip!=0) && (!(parity_subj!=0) || (horiz_subj!=0))) ||
+                      ((exists_subj!=0) && (!(parity_clip!=0) || (horiz_clip!=0))) ||
+                      ((exists_clip!=0) && (exists_subj!=0) && (parity_clip == parity_subj));
+                    br= ((parity_clip!=0) || (parity_subj!=0))?1:0;
+                    bl= (((parity_clip ^ edge.bundle_above[CLIP])!=0) || ((parity_subj ^ edge.bundle_above[SUBJ])!=0))?1:0;
+                    tr= ( ((parity_clip ^ ((horiz_clip!=HState.NH)?1:0))!=0) || 
+                          ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0))!=0) ) ?1:0;
+                    tl= ( ((parity_clip ^ ((horiz_clip!=HState.NH)?1:0) ^ edge.bundle_below_clip)!=0) ||
+                          ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0) ^ edge.bundle_below_subj)!=0) ) ? 1:0;
+                  }
+                else
+                  {
+                    throw new IllegalStateException("Unknown op");
+                  }
+                
+                /* Update parity */
+                parity_clip ^= edge.bundle_above[CLIP];
+                parity_subj ^= edge.bundle_above[SUBJ];
+                
+                /* Update horizontal state */
+                if (exists_clip!=0)
+                  {
+                    horiz_clip = HState.next_h_state[horiz_clip][((exists_clip - 1) << 1) + parity_clip];
+                  }
+                if( exists_subj!=0)
+                  {
+                    horiz_subj = HState.next_h_state[horiz_subj][((exists_subj - 1) << 1) + parity_subj];
+                  }
+                
+                if (contributing) // DIFFERENT!
+                  {
+                    float xb = edge.xb;
+                    
+                    int vclass = VertexType.getType( tr, tl, br, bl );
+                    switch (vclass)
+                      {
+                      case VertexType.EMN:
+                      case VertexType.IMN:
+                        edge.outp_above = out_poly.add_local_min(xb, yb);
+                        px = xb;
+                        cf = edge.outp_above;
+                        break;
+                      case VertexType.ERI:
+                        if (xb != px)
+                          {
+                            cf.add_right( xb, yb);
+                            px= xb;
+                          }
+                        edge.outp_above= cf;
+                        cf= null;
+                        break;
+                      case VertexType.ELI:
+                        edge.outp_below.add_left( xb, yb);
+                        px= xb;
+                        cf= edge.outp_below;
+                        break;
+                      case VertexType.EMX:
+                        if (xb != px)
+                          {
+                            cf.add_left( xb, yb);
+                            px= xb;
+                          }
+                        out_poly.merge_right(cf, edge.outp_below);
+                        cf= null;
+                        break;
+                      case VertexType.ILI:
+                        if (xb != px)
+                          {
+                            cf.add_left( xb, yb);
+                            px= xb;
+                          }
+                        edge.outp_above= cf;
+                        cf= null;
+                        break;
+                      case VertexType.IRI:
+                        edge.outp_below.add_right( xb, yb );
+                        px= xb;
+                        cf= edge.outp_below;
+                        edge.outp_below= null;
+                        break;
+                      case VertexType.IMX:
+                        if (xb != px)
+                          {
+                            cf.add_right( xb, yb );
+                            px= xb;
+                          }
+                        out_poly.merge_left(cf, edge.outp_below);
+                        cf= null;
+                        edge.outp_below= null;
+                        break;
+                      case VertexType.IMM:
+                        if (xb != px)
+                          {
+                            cf.add_right( xb, yb);
+                            px= xb;
+                          }
+                        out_poly.merge_left(cf, edge.outp_below);
+                        edge.outp_below= null;
+                        edge.outp_above = out_poly.add_local_min(xb, yb);
+                        cf= edge.outp_above;
+                        break;
+                      case VertexType.EMM:
+                        if (xb != px)
+                          {
+                            cf.add_left( xb, yb);
+                            px= xb;
+                          }
+                        out_poly.merge_right(cf, edge.outp_below);
+                        edge.outp_below= null;
+                        edge.outp_above = out_poly.add_local_min(xb, yb);
+                        cf= edge.outp_above;
+                        break;
+                      case VertexType.LED:
+                        if (edge.bot_y == yb)
+                          edge.outp_below.add_left( xb, yb);
+                        edge.outp_above= edge.outp_below;
+                        px= xb;
+                        break;
+                      case VertexType.RED:
+                        if (edge.bot_y == yb)
+                          edge.outp_below.add_right( xb, yb );
+                        edge.outp_above= edge.outp_below;
+                        px= xb;
+                        break;
+                      default:
+                        break;
+                      } /* End of switch */
+                  } /* End of contributing conditional */
+              } /* End of edge exists conditional */
+          } /* End of AET loop */
+        
+        /* Delete terminating edges from the AET, otherwise compute xt */
+        for (EdgeNode edge = aet.top_node; (edge != null); edge = edge.next)
+          {
+            if (edge.top_y == yb)
+              {
+                EdgeNode prev_edge = edge.prev;
+                EdgeNode next_edge = edge.next;
+                
+                if (prev_edge != null)
+                  prev_edge.next = next_edge;
+                else
+                  aet.top_node = next_edge;
+                
+                if (next_edge != null )
+                  next_edge.prev = prev_edge;
+                
+                /* Copy bundle head state to the adjacent tail edge if required */
+                if ((edge.bstate_below == BundleState.BUNDLE_HEAD) && (prev_edge!=null))
+                  {
+                    if (prev_edge.bstate_below == BundleState.BUNDLE_TAIL)
+                      {
+                        prev_edge.outp_below= edge.outp_below;
+                        prev_edge.bstate_below= BundleState.UNBUNDLED;
+                        if ( prev_edge.prev != null)
+                          {
+                            if (prev_edge.prev.bstate_below == BundleState.BUNDLE_TAIL)
+                              {
+                                prev_edge.bstate_below = BundleState.BUNDLE_HEAD;
+                              }
+                          }
+                      }
+                  }
+              }
+            else
+              {
+                if (edge.top_y == yt)
+                  edge.xt= edge.top_x;
+                else
+                  edge.xt= edge.bot_x + edge.dx * (yt - edge.bot_y);
+              }
+          }
+        
+        if (scanbeam < sbt.length )
+          {
+            /* === SCANBEAM INTERIOR PROCESSING ============================== */
+            
+            /* Build intersection table for the current scanbeam */
+            int it_top = ws.build_intersection_table(aet, dy);
+            
+            /* Process each node in the intersection table */
+            for (int intersect = it_top; (intersect != NONE); intersect = ws.it_next[intersect])
+              {
+                e0= ws.it_ie0[intersect];
+                e1= ws.it_ie1[intersect];
+                
+                /* Only generate output for contributing intersections */
+                if ( ((e0.bundle_above[CLIP]!=0) || (e0.bundle_above[SUBJ]!=0)) &&
+                     ((e1.bundle_above[CLIP]!=0) || (e1.bundle_above[SUBJ]!=0)))
+                  {
+                    PolygonNode p = e0.outp_above;
+                    PolygonNode q = e1.outp_above;
+                    float ix = ws.it_x[intersect];
+                    float iy = ws.it_y[intersect] + yb;
+                    
+                    int in_clip = ( ( (e0.bundle_above[CLIP]!=0) && !(e0.bside_clip!=0)) ||
+                                    ( (e1.bundle_above[CLIP]!=0) &&  (e1.bside_clip!=0)) ||
+                                    (!(e0.bundle_above[CLIP]!=0) && !(e1.bundle_above[CLIP]!=0) &&
+                                     (e0.bside_clip!=0) && (e1.bside_clip!=0) ) ) ? 1 : 0;
+                    
+                    int in_subj = ( ( (e0.bundle_above[SUBJ]!=0) && !(e0.bside_subj!=0)) ||
+                                    ( (e1.bundle_above[SUBJ]!=0) &&  (e1.bside_subj!=0)) ||
+                                    (!(e0.bundle_above[SUBJ]!=0) && !(e1.bundle_above[SUBJ]!=0) &&
+                                     (e0.bside_subj!=0) && (e1.bside_subj!=0) ) ) ? 1 : 0;
+                    
+                    int tr=0, tl=0, br=0, bl=0;
+                    /* Determine quadrant occupancies */
+                    if( (op == OperationType.GPC_DIFF) || (op == OperationType.GPC_INT) )
+                      {
+                        tr= ((in_clip!=0) && (in_subj!=0)) ? 1 : 0;
+                        tl= (((in_clip ^ e1.bundle_above[CLIP])!=0) && ((in_subj ^ e1.bundle_above[SUBJ])!=0))?1:0;
+                        br= (((in_clip ^ e0.bundle_above[CLIP])!=0) && ((in_subj ^ e0.bundle_above[SUBJ])!=0))?1:0;
+                        bl= (((in_clip ^ e1.bundle_above[CLIP] ^ e0.bundle_above[CLIP])!=0) &&
+                             ((in_subj ^ e1.bundle_above[SUBJ] ^ e0.bundle_above[SUBJ])!=0) ) ? 1:0;
+                      }
+                    else if( op == OperationType.GPC_XOR )
+                      {
+                        tr= (in_clip)^ (in_subj);
+                        tl= (in_clip ^ e1.bundle_above[CLIP]) ^ (in_subj ^ e1.bundle_above[SUBJ]);
+                        br= (in_clip ^ e0.bundle_above[CLIP]) ^ (in_subj ^ e0.bundle_above[SUBJ]);
+                        bl= (in_clip ^ e1.bundle_above[CLIP] ^ e0.bundle_above[CLIP])
+                          ^ (in_subj ^ e1.bundle_above[SUBJ] ^ e0.bundle_above[SUBJ]);
+                      }
+                    else if( op == OperationType.GPC_UNION )
+                      {
+                        tr= ((in_clip!=0) || (in_subj!=0)) ? 1 : 0;
+                        tl= (((in_clip ^ e1.bundle_above[CLIP])!=0) || ((in_subj ^ e1.bundle_above[SUBJ])!=0)) ? 1 : 0;
+                        br= (((in_clip ^ e0.bundle_above[CLIP])!=0) || ((in_subj ^ e0.bundle_above[SUBJ])!=0)) ? 1 : 0;
+                        bl= (((in_clip ^ e1.bundle_above[CLIP] ^ e0.bundle_above[CLIP])!=0) ||
+                             ((in_subj ^ e1.bundle_above[SUBJ] ^ e0.bundle_above[SUBJ])!=0)) ? 1 : 0;
+                      }
+                    else
+                      {
+                        throw new IllegalStateException("Unknown op type, "+op);
+                      }
+                    
+                    int vclass = VertexType.getType( tr, tl, br, bl );
+                    switch (vclass)
+                      {
+                      case VertexType.EMN:
+                        e0.outp_above = out_poly.add_local_min(ix, iy);
+                        e1.outp_above = e0.outp_above;
+                        break;
+                      case VertexType.ERI:
+                        if (p != null)
+                          {
+                            p.add_right(ix, iy);
+                            e1.outp_above= p;
+                            e0.outp_above= null;
+                          }
+                        break;
+                      case VertexType.ELI:
+                        if (q != null)
+                          {
+                            q.add_left(ix, iy);
+                            e0.outp_above= q;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.EMX:
+                        if ((p!=null) && (q!=null))
+                          {
+                            p.add_left( ix, iy);
+                            out_poly.merge_right(p, q);
+                            e0.outp_above= null;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IMN:
+                        e0.outp_above = out_poly.add_local_min(ix, iy);
+                        e1.outp_above= e0.outp_above;
+                        break;
+                      case VertexType.ILI:
+                        if (p != null)
+                          {
+                            p.add_left(ix, iy);
+                            e1.outp_above= p;
+                            e0.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IRI:
+                        if (q!=null)
+                          {
+                            q.add_right(ix, iy);
+                            e0.outp_above= q;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IMX:
+                        if ((p!=null) && (q!=null))
+                          {
+                            p.add_right(ix, iy);
+                            out_poly.merge_left(p, q);
+                            e0.outp_above= null;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IMM:
+                        if ((p!=null) && (q!=null))
+                          {
+                            p.add_right(ix, iy);
+                            out_poly.merge_left(p, q);
+                            e0.outp_above = out_poly.add_local_min(ix, iy);
+                            e1.outp_above= e0.outp_above;
+                          }
+                        break;
+                      case VertexType.EMM:
+                        if ((p!=null) && (q!=null))
+                          {
+                            p.add_left(ix, iy);
+                            out_poly.merge_right(p, q);
+                            e0.outp_above = out_poly.add_local_min(ix, iy);
+                            e1.outp_above = e0.outp_above;
+                          }
+                        break;
+                      default:
+                        break;
+                      } /* End of switch */
+                  } /* End of contributing intersection conditional */                  
+                
+                /* Swap bundle sides in response to edge crossing */
+                if (e0.bundle_above[CLIP]!=0)
+                  e1.bside_clip = (e1.bside_clip==0)?1:0;
+                if (e1.bundle_above[CLIP]!=0)
+                  e0.bside_clip= (e0.bside_clip==0)?1:0;
+                if (e0.bundle_above[SUBJ]!=0)
+                  e1.bside_subj= (e1.bside_subj==0)?1:0;
+                if (e1.bundle_above[SUBJ]!=0)
+                  e0.bside_subj= (e0.bside_subj==0)?1:0;
+                
+                /* Swap e0 and e1 bundles in the AET */
+                EdgeNode prev_edge = e0.prev;
+                EdgeNode next_edge = e1.next;
+                if (next_edge != null)
+                  {
+                    next_edge.prev = e0;
+                  }
+                
+                if (e0.bstate_above == BundleState.BUNDLE_HEAD)
+                  {
+                    boolean search = true;
+                    while (search)
+                      {
+                        prev_edge= prev_edge.prev;
+                        if (prev_edge != null)
+                          {
+                            if (prev_edge.bstate_above != BundleState.BUNDLE_TAIL)
+                              {
+                                search= false;
+                              }
+                          }
+                        else
+                          {
+                            search= false;
+                          }
+                      }
+                  }
+                if (prev_edge == null)
+                  {
+                    aet.top_node.prev = e1;
+                    e1.next           = aet.top_node;
+                    aet.top_node      = e0.next;
+                  }
+                else
+                  {
+                    prev_edge.next.prev = e1;
+                    e1.next             = prev_edge.next;
+                    prev_edge.next      = e0.next;
+                  }
+                e0.next.prev = prev_edge;
+                e1.next.prev = e1;
+                e0.next      = next_edge;
+              } /* End of IT loop*/
+            
+            /* Prepare for next scanbeam */
+            for ( EdgeNode edge = aet.top_node; (edge != null); edge = edge.next)
+              {
+                EdgeNode next_edge = edge.next;
+                EdgeNode succ_edge = edge.succ;
+                if ((edge.top_y == yt) && (succ_edge!=null))
+                  {
+                    /* Replace AET edge by its successor */
+                    succ_edge.outp_below= edge.outp_above;
+                    succ_edge.bstate_below= edge.bstate_above;
+                    succ_edge.bundle_below_clip= edge.bundle_above[CLIP];
+                    succ_edge.bundle_below_subj= edge.bundle_above[SUBJ];
+                    EdgeNode prev_edge = edge.prev;
+                    if ( prev_edge != null )
+                      prev_edge.next = succ_edge;
+                    else
+                      aet.top_node = succ_edge;
+                    if (next_edge != null)
+                      next_edge.prev= succ_edge;
+                    succ_edge.prev = prev_edge;
+                    succ_edge.next = next_edge;
+                  }
+                else
+                  {
+                    /* Update this edge */
+                    edge.outp_below= edge.outp_above;
+                    edge.bstate_below= edge.bstate_above;
+                    edge.bundle_below_clip= edge.bundle_above[CLIP];
+                    edge.bundle_below_subj= edge.bundle_above[SUBJ];
+                    edge.xb= edge.xt;
+                  }
+                edge.outp_above= null;
+              }
+          }
+      } /* === END OF SCANBEAM PROCESSING ================================== */
+    
+    /* Generate result polygon from out_poly */
+    return out_poly.getResult();
+  }
+  
+  /**
+   * Clipper to output tristrips
+   */
+  private static RMesh tristrip( Workspace ws, OperationType op, RFlatPolygon subj, RFlatPolygon clip )
+  {
+    /* Test for trivial NULL result cases */
+    if( (subj.isEmpty() && clip.isEmpty()) ||
+        (subj.isEmpty() && ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF))) ||
+        (clip.isEmpty() &&  (op == OperationType.GPC_INT)) )
+      {
+        return null;
+      }
+    
+    PolygonNode tlist = tristrip_list( ws, op, subj, clip );
+    
+    /* Generate result tristrip from tlist */
+    int lt, ltn, rt, rtn;
+    PolygonNode tnn, tn;
+    RMesh result = new RMesh();
+    if (count_tristrips(tlist) > 0)
+      {
+      	int s, v;
+      	
+    	s= 0;
+    	for (tn= tlist; tn!=null; tn= tnn)
+          {
+            tnn= tn.next;
+            
+            if (tn.active > 2)
+              {
+                /* Valid tristrip: copy the vertices and free the heap */
+                RStrip strip = new RStrip();
+                v= 0;
+                if (INVERT_TRISTRIPS == true)
+                  {
+                    lt= tn.v_right;
+                    rt= tn.v_left;
+                  }
+                else
+                  {
+                    lt= tn.v_left;
+                    rt= tn.v_right;
+                  }
+                while (lt!=NONE || rt!=NONE)
+                  {
+                    if (lt!=NONE)
+                      {
+                        ltn= ws.vertex_next[lt];
+                        strip.add(ws.vertex_x[lt],ws.vertex_y[lt]);
+                        v++;
+                        lt= ltn;
+                      }
+                    if (rt!=NONE)
+                      {
+                        rtn= ws.vertex_next[rt];
+                        strip.add(ws.vertex_x[rt],ws.vertex_y[rt]);
+                        v++;
+                        rt= rtn;
+                      }
+                  }
+                result.addStrip(strip);
+                s++;
+              }
+            
+            /* Invalid tristrips are left in the workspace */
+          }
+      }
+    return result;
+  }
+  
+  /**
+   * Clipper to output the triangles of the tristrips as an indexed mesh.  The
+   * vertices the tristrips share are stored once.
+   */
+  private static RIndexedMesh triangles( Workspace ws, OperationType op, RFlatPolygon subj, RFlatPolygon clip )
+  {
+    /* Test for trivial NULL result cases */
+    if( (subj.isEmpty() && clip.isEmpty()) ||
+        (subj.isEmpty() && ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF))) ||
+        (clip.isEmpty() &&  (op == OperationType.GPC_INT)) )
+      {
+        return null;
+      }
+    
+    PolygonNode tlist = tristrip_list( ws, op, subj, clip );
+    
+    /* Count the vertices of the valid tristrips to size the vertex table */
+    int total = 0;
+    int longest = 0;
+    for( PolygonNode tn = tlist; tn != null; tn = tn.next )
+      {
+        if( tn.active > 2 )
+          {
+            int v = count_vertices( ws, tn.v_left ) + count_vertices( ws, tn.v_right );
+            total += v;
+            longest = Math.max( longest, v );
+          }
+      }
+    
+    /* Generate the triangles from tlist, walking each tristrip as above */
+    RIndexedMesh.Builder builder = new RIndexedMesh.Builder( total );
+    int[] strip = new int[longest];
+    for( PolygonNode tn = tlist; tn != null; tn = tn.next )
+      {
+        if( tn.active > 2 )
+          {
+            int lt = INVERT_TRISTRIPS ? tn.v_right : tn.v_left;
+            int rt = INVERT_TRISTRIPS ? tn.v_left : tn.v_right;
+            int v = 0;
+            while( lt != NONE || rt != NONE )
+              {
+                if( lt != NONE )
+                  {
+                    strip[v++] = builder.vertex( ws.vertex_x[lt], ws.vertex_y[lt] );
+                    lt = ws.vertex_next[lt];
+                  }
+                if( rt != NONE )
+                  {
+                    strip[v++] = builder.vertex( ws.vertex_x[rt], ws.vertex_y[rt] );
+                    rt = ws.vertex_next[rt];
+                  }
+              }
+            builder.addStrip( strip, v );
+          }
+      }
+    return builder.result();
+  }
+  
+  private static int count_vertices( Workspace ws, int ve_node )
+  {
+    int total = 0;
+    for( ; ve_node != NONE; ve_node = ws.vertex_next[ve_node] )
+      {
+        total++;
+      }
+    return total;
+  }
+  
+  /**
+   * Scanbeam sweep building the tristrips, whose vertices are left in the
+   * workspace.
+   */
+  private static PolygonNode tristrip_list( Workspace ws, OperationType op, RFlatPolygon subj, RFlatPolygon clip )
+  {    
+    PolygonNode tlist = null;
+    float nx = 0;
+    
+    /* Identify potentialy contributing contours */
+    boolean[] contributes = null;
+    if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
+        !subj.isEmpty() && !clip.isEmpty() )
+      {
+        contributes = minimax_test(subj, clip, op);
+      }
+    
+    /* Build LMT */
+    LmtTable lmt_table = ws.lmt_table;
+    ScanBeamTable sb_table = ws.sb_table;
+    if (!subj.isEmpty())
+      {
+        build_lmt(ws, subj, contributes, 0, SUBJ, op);
+      }
+    if (!clip.isEmpty())
+      {
+        build_lmt(ws, clip, contributes, subj.countContours(), CLIP, op);
+      }
+    
+    /* Return a NULL result if no contours contribute */
+    if (lmt_table.entries == 0)
+      {
+        return null;
+      }
+    
+    /* Sort the scanbeam and local minima tables */
+    float[] sbt = sb_table.build_sbt();
+    LmtNode lmt = lmt_table.build_lmt( ws );
+    
+    int parity_clip = LEFT;
+    int parity_subj = LEFT;
+    
+    /* Invert clip polygon for difference operation */
+    if (op == OperationType.GPC_DIFF)
+      {
+        parity_clip= RIGHT;
+      }
+    
+    LmtNode local_min = lmt;
+    
+    AetTree aet = new AetTree();
+    int scanbeam = 0;
+    
+    /* Process each scanbeam */
+    while( scanbeam < sbt.length )
+      {
+        /* Set yb and yt to the bottom and top of the scanbeam */
+        float yb = sbt[scanbeam++];
+        float yt = 0.0F;
+        float dy = 0.0F;
+        if( scanbeam < sbt.length )
+          {
+            yt = sbt[scanbeam];
+            dy = yt - yb;
+          }
+        
+        /* === SCANBEAM BOUNDARY PROCESSING ================================ */
+        
+        /* If LMT node corresponding to yb exists */
+        if (local_min != null )
+          {
+            if (local_min.y == yb)
+              {
+                /* Add edges starting at this local minimum to the AET */
+                for( EdgeNode edge = local_min.first_bound; (edge != null); edge= edge.next_bound)
+                  {
+                    add_edge_to_aet( aet, edge );
+                  }
+                
+                local_min = local_min.next;
+              }
+          }
+        
+        /* Set dummy previous x value */
+        float px = -Float.MAX_VALUE;
+        
+        /* Create bundles within AET */
+        EdgeNode e0 = aet.top_node;
+        EdgeNode e1 = aet.top_node;
+        
+        /* Set up bundle fields of first edge */
+        aet.top_node.bundle_above[ aet.top_node.type ] = (aet.top_node.top_y != yb) ? 1 : 0;
+        aet.top_node.bundle_above[ ((aet.top_node.type==0) ? 1 : 0) ] = 0;
+        aet.top_node.bstate_above = BundleState.UNBUNDLED;
+        
+        for ( EdgeNode next_edge = aet.top_node.next; (next_edge != null); next_edge = next_edge.next)
+          {
+            int ne_type = next_edge.type;
+            int ne_type_opp = ((next_edge.type==0) ? 1 : 0); //next edge type opposite
+            
+            /* Set up bundle fields of next edge */
+            next_edge.bundle_above[ ne_type     ]= (next_edge.top_y != yb) ? 1 : 0;
+            next_edge.bundle_above[ ne_type_opp ] = 0;
+            next_edge.bstate_above = BundleState.UNBUNDLED;
+            
+            /* Bundle edges above the scanbeam boundary if they coincide */
+            if ( next_edge.bundle_above[ne_type] == 1 )
+              {
+                if (EQ(e0.xb, next_edge.xb) && EQ(e0.dx, next_edge.dx) && (e0.top_y != yb))
+                  {
+                    next_edge.bundle_above[ ne_type     ] ^= e0.bundle_above[ ne_type     ];
+                    next_edge.bundle_above[ ne_type_opp ]  = e0.bundle_above[ ne_type_opp ];
+                    next_edge.bstate_above = BundleState.BUNDLE_HEAD;
+                    e0.bundle_above[CLIP] = 0;
+                    e0.bundle_above[SUBJ] = 0;
+                    e0.bstate_above = BundleState.BUNDLE_TAIL;
+                  }
+                e0 = next_edge;
+              }
+          }
+        
+        int horiz_clip = HState.NH;
+        int horiz_subj = HState.NH;
+        
+        int exists_clip = 0;
+        int exists_subj = 0;
+        
+        
+        EdgeNode cf = null;
+        int cft = VertexType.LED;
+        
+        /* Process each edge at this scanbeam boundary */
+        for ( EdgeNode edge = aet.top_node; (edge != null); edge = edge.next )
+          {
+            exists_clip = edge.bundle_above[CLIP] + (edge.bundle_below_clip << 1);
+            exists_subj = edge.bundle_above[SUBJ] + (edge.bundle_below_subj << 1);
+            
+            if( (exists_clip != 0) || (exists_subj != 0) )
+              {
+                /* Set bundle side */
+                edge.bside_clip = parity_clip;
+                edge.bside_subj = parity_subj;
+                
+                boolean contributing = false;
+                int br=0, bl=0, tr=0, tl=0;
+                /* Determine contributing status and quadrant occupancies */
+                if( (op == OperationType.GPC_DIFF) || (op == OperationType.GPC_INT) )
+                  {
+                    contributing= ((exists_clip!=0) && ((parity_subj!=0) || (horiz_subj!=0))) ||
+                      ((exists_subj!=0) && ((parity_clip!=0) || (horiz_clip!=0))) ||
+                      ((exists_clip!=0) && (exists_subj!=0) && (parity_clip == parity_subj));
+                    br = ((parity_clip!=0) && (parity_subj!=0)) ? 1 : 0;
+                    bl = ( ((parity_clip ^ edge.bundle_above[CLIP])!=0) &&
+                           ((parity_subj ^ edge.bundle_above[SUBJ])!=0) ) ? 1 : 0;
+                    tr = ( ((parity_clip ^ ((horiz_clip!=HState.NH)?1:0)) !=0) && 
+                           ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0)) !=0) ) ? 1 : 0;
+                    tl = (((parity_clip ^ ((horiz_clip!=HState.NH)?1:0) ^ edge.bundle_below_clip)!=0) &&
+                          ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0) ^ edge.bundle_below_subj)!=0))?1:0;
+                  }
+                else if( op == OperationType.GPC_XOR )
+                  {
+                    contributing= (exists_clip!=0) || (exists_subj!=0);
+                    br= (parity_clip) ^ (parity_subj);
+                    bl= (parity_clip ^ edge.bundle_above[CLIP]) ^ (parity_subj ^ edge.bundle_above[SUBJ]);
+                    tr= (parity_clip ^ ((horiz_clip!=HState.NH)?1:0)) ^ (parity_subj ^ ((horiz_subj!=HState.NH)?1:0));
+                    tl= (parity_clip ^ ((horiz_clip!=HState.NH)?1:0) ^ edge.bundle_below_clip)
+                      ^ (parity_subj ^ ((horiz_subj!=HState.NH)?1:0) ^ edge.bundle_below_subj);
+                  }
+                else if( op == OperationType.GPC_UNION )
+                  {
+                    contributing= ((exists_clip!=0) && (!(parity_subj!=0) || (horiz_subj!=0))) ||
+                      ((exists_subj!=0) && (!(parity_clip!=0) || (horiz_clip!=0))) ||
+                      ((exists_clip!=0) && (exists_subj!=0) && (parity_clip == parity_subj));
+                    br= ((parity_clip!=0) || (parity_subj!=0))?1:0;
+                    bl= (((parity_clip ^ edge.bundle_above[CLIP])!=0) || ((parity_subj ^ edge.bundle_above[SUBJ])!=0))?1:0;
+                    tr= ( ((parity_clip ^ ((horiz_clip!=HState.NH)?1:0))!=0) || 
+                          ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0))!=0) ) ?1:0;
+                    tl= ( ((parity_clip ^ ((horiz_clip!=HState.NH)?1:0) ^ edge.bundle_below_clip)!=0) ||
+                          ((parity_subj ^ ((horiz_subj!=HState.NH)?1:0) ^ edge.bundle_below_subj)!=0) ) ? 1:0;
+                  }
+                else
+                  {
+                    throw new IllegalStateException("Unknown op");
+                  }
+                
+                /* Update parity */
+                parity_clip ^= edge.bundle_above[CLIP];
+                parity_subj ^= edge.bundle_above[SUBJ];
+                
+                /* Update horizontal state */
+                if (exists_clip!=0)
+                  {
+                    horiz_clip = HState.next_h_state[horiz_clip][((exists_clip - 1) << 1) + parity_clip];
+                  }
+                if( exists_subj!=0)
+                  {
+                    horiz_subj = HState.next_h_state[horiz_subj][((exists_subj - 1) << 1) + parity_subj];
+                  }
+                
+                if (contributing) // DIFFERENT!
+                  {
+                    float xb = edge.xb;
+                    
+                    int vclass = VertexType.getType( tr, tl, br, bl );
+                    switch (vclass)
+                      {
+                      case VertexType.EMN:
+                     	tlist=new_tristrip(ws, tlist, edge, xb, yb);
+                     	cf= edge;
+                     	break;
+                      case VertexType.ERI:
+                        edge.outp_above= cf.outp_above;
+                        if (xb != cf.xb)
+                          {
+                            VERTEX(edge, ABOVE, RIGHT, xb, yb);
+                          }
+                        cf= null;
+                        break;
+                      case VertexType.ELI:
+                        VERTEX(edge, BELOW, LEFT, xb, yb);
+                        edge.outp_above= null;
+                        cf= edge;
+                        break;
+                      case VertexType.EMX:
+                        if (xb != cf.xb)
+                          {
+                            VERTEX(edge, BELOW, RIGHT, xb, yb);
+                          }
+                        edge.outp_above = null;
+                        cf= null;
+                        break;
+                      case VertexType.IMN:
+                     	if (cft == VertexType.LED)
+                          {
+                            if (cf.bot_y != yb)
+                              {
+                                VERTEX(cf, BELOW, LEFT, cf.xb, yb);
+                              }
+                            tlist=new_tristrip(ws, tlist, cf, cf.xb, yb);
+                          }
+            		edge.outp_above= cf.outp_above;
+            		VERTEX(edge, ABOVE, RIGHT, xb, yb);
+            		break;
+                      case VertexType.ILI:
+                        tlist=new_tristrip(ws, tlist, edge, xb, yb);
+            		cf= edge;
+            		cft= VertexType.ILI;
+            		break;
+                      case VertexType.IRI:
+                        if (cft == VertexType.LED)
+                          {
+                            if (cf.bot_y != yb)
+                              {
+                                VERTEX(cf, BELOW, LEFT, cf.xb, yb);
+                              }
+                            tlist=new_tristrip(ws, tlist, cf, cf.xb, yb);
+                          }
+            		VERTEX(edge, BELOW, RIGHT, xb, yb);
+            		edge.outp_above= null;
+            		break;
+                      case VertexType.IMX:
+                        VERTEX(edge, BELOW, LEFT, xb, yb);
+            		edge.outp_above= null;
+            		cft= VertexType.IMX;
+            		break;
+                      case VertexType.IMM:
+                        VERTEX(edge, BELOW, LEFT, xb, yb);
+            		edge.outp_above= cf.outp_above;
+            		if (xb != cf.xb)
+                          {
+                            VERTEX(cf, ABOVE, RIGHT, xb, yb);
+                          }
+            		cf= edge;
+            		break;
+                      case VertexType.EMM:
+                        VERTEX(edge, BELOW, RIGHT, xb, yb);
+            		edge.outp_above= null;
+            		tlist=new_tristrip(ws, tlist, edge, xb, yb);
+            		cf= edge;
+            		break;
+                      case VertexType.LED:
+                        if (edge.bot_y == yb)
+                          VERTEX(edge, BELOW, LEFT, xb, yb);
+                        edge.outp_above= edge.outp_below;
+                        cf= edge;
+            		cft= VertexType.LED;
+                        break;
+                      case VertexType.RED:
+                        edge.outp_above= cf.outp_above;
+            		if (cft == VertexType.LED)
+                          {
+                            if (cf.bot_y == yb)
+                              {
+                                VERTEX(edge, BELOW, RIGHT, xb, yb);
+                              }
+                            else
+                              {
+                                if (edge.bot_y == yb)
+                                  {
+                                    VERTEX(cf, BELOW, LEFT, cf.xb, yb);
+                                    VERTEX(edge, BELOW, RIGHT, xb, yb);
+                                  }
+                              }
+                          }
+            		else
+                          {
+                            VERTEX(edge, BELOW, RIGHT, xb, yb);
+                            VERTEX(edge, ABOVE, RIGHT, xb, yb);
+                          }
+            		cf= null;
+            		break;
+                      default:
+                        break;
+                      } /* End of switch */
+                  } /* End of contributing conditional */
+              } /* End of edge exists conditional */
+          } /* End of AET loop */
+        
+        /* Delete terminating edges from the AET, otherwise compute xt */
+        for (EdgeNode edge = aet.top_node; (edge != null); edge = edge.next)
+          {
+            if (edge.top_y == yb)
+              {
+                EdgeNode prev_edge = edge.prev;
+                EdgeNode next_edge = edge.next;
+                
+                if (prev_edge != null)
+                  prev_edge.next = next_edge;
+                else
+                  aet.top_node = next_edge;
+                
+                if (next_edge != null )
+                  next_edge.prev = prev_edge;
+                
+                /* Copy bundle head state to the adjacent tail edge if required */
+                if ((edge.bstate_below == BundleState.BUNDLE_HEAD) && (prev_edge!=null))
+                  {
+                    if (prev_edge.bstate_below == BundleState.BUNDLE_TAIL)
+                      {
+                        prev_edge.outp_below= edge.outp_below;
+                        prev_edge.bstate_below= BundleState.UNBUNDLED;
+                        if ( prev_edge.prev != null)
+                          {
+                            if (prev_edge.prev.bstate_below == BundleState.BUNDLE_TAIL)
+                              {
+                                prev_edge.bstate_below = BundleState.BUNDLE_HEAD;
+                              }
+                          }
+                      }
+                  }
+              }
+            else
+              {
+                if (edge.top_y == yt)
+                  edge.xt= edge.top_x;
+                else
+                  edge.xt= edge.bot_x + edge.dx * (yt - edge.bot_y);
+              }
+          }
+        
+        if (scanbeam < sbt.length )
+          {
+            /* === SCANBEAM INTERIOR PROCESSING ============================== */
+            
+            /* Build intersection table for the current scanbeam */
+            int it_top = ws.build_intersection_table(aet, dy);
+            
+            /* Process each node in the intersection table */
+            for (int intersect = it_top; (intersect != NONE); intersect = ws.it_next[intersect])
+              {
+                e0= ws.it_ie0[intersect];
+                e1= ws.it_ie1[intersect];
+                
+                /* Only generate output for contributing intersections */
+                if ( ((e0.bundle_above[CLIP]!=0) || (e0.bundle_above[SUBJ]!=0)) &&
+                     ((e1.bundle_above[CLIP]!=0) || (e1.bundle_above[SUBJ]!=0)))
+                  {
+                    PolygonNode p = e0.outp_above;
+                    PolygonNode q = e1.outp_above;
+                    float ix = ws.it_x[intersect];
+                    float iy = ws.it_y[intersect] + yb;
+                    
+                    int in_clip = ( ( (e0.bundle_above[CLIP]!=0) && !(e0.bside_clip!=0)) ||
+                                    ( (e1.bundle_above[CLIP]!=0) &&  (e1.bside_clip!=0)) ||
+                                    (!(e0.bundle_above[CLIP]!=0) && !(e1.bundle_above[CLIP]!=0) &&
+                                     (e0.bside_clip!=0) && (e1.bside_clip!=0) ) ) ? 1 : 0;
+                    
+                    int in_subj = ( ( (e0.bundle_above[SUBJ]!=0) && !(e0.bside_subj!=0)) ||
+                                    ( (e1.bundle_above[SUBJ]!=0) &&  (e1.bside_subj!=0)) ||
+                                    (!(e0.bundle_above[SUBJ]!=0) && !(e1.bundle_above[SUBJ]!=0) &&
+                                     (e0.bside_subj!=0) && (e1.bside_subj!=0) ) ) ? 1 : 0;
+                    
+                    int tr=0, tl=0, br=0, bl=0;
+                    /* Determine quadrant occupancies */
+                    if( (op == OperationType.GPC_DIFF) || (op == OperationType.GPC_INT) )
+                      {
+                        tr= ((in_clip!=0) && (in_subj!=0)) ? 1 : 0;
+                        tl= (((in_clip ^ e1.bundle_above[CLIP])!=0) && ((in_subj ^ e1.bundle_above[SUBJ])!=0))?1:0;
+                        br= (((in_clip ^ e0.bundle_above[CLIP])!=0) && ((in_subj ^ e0.bundle_above[SUBJ])!=0))?1:0;
+                        bl= (((in_clip ^ e1.bundle_above[CLIP] ^ e0.bundle_above[CLIP])!=0) &&
+                             ((in_subj ^ e1.bundle_above[SUBJ] ^ e0.bundle_above[SUBJ])!=0) ) ? 1:0;
+                      }
+                    else if( op == OperationType.GPC_XOR )
+                      {
+                        tr= (in_clip)^ (in_subj);
+                        tl= (in_clip ^ e1.bundle_above[CLIP]) ^ (in_subj ^ e1.bundle_above[SUBJ]);
+                        br= (in_clip ^ e0.bundle_above[CLIP]) ^ (in_subj ^ e0.bundle_above[SUBJ]);
+                        bl= (in_clip ^ e1.bundle_above[CLIP] ^ e0.bundle_above[CLIP])
+                          ^ (in_subj ^ e1.bundle_above[SUBJ] ^ e0.bundle_above[SUBJ]);
+                      }
+                    else if( op == OperationType.GPC_UNION )
+                      {
+                        tr= ((in_clip!=0) || (in_subj!=0)) ? 1 : 0;
+                        tl= (((in_clip ^ e1.bundle_above[CLIP])!=0) || ((in_subj ^ e1.bundle_above[SUBJ])!=0)) ? 1 : 0;
+                        br= (((in_clip ^ e0.bundle_above[CLIP])!=0) || ((in_subj ^ e0.bundle_above[SUBJ])!=0)) ? 1 : 0;
+                        bl= (((in_clip ^ e1.bundle_above[CLIP] ^ e0.bundle_above[CLIP])!=0) ||
+                             ((in_subj ^ e1.bundle_above[SUBJ] ^ e0.bundle_above[SUBJ])!=0)) ? 1 : 0;
+                      }
+                    else
+                      {
+                        throw new IllegalStateException("Unknown op type, "+op);
+                      }
+                    
+                    EdgeNode next_edge = e1.next;
+                    EdgeNode prev_edge = e0.prev;
+                    
+                    int vclass = VertexType.getType( tr, tl, br, bl );
+                    switch (vclass)
+                      {
+                      case VertexType.EMN:
+                        tlist=new_tristrip(ws, tlist, e1, ix, iy);
+                        e1.outp_above = e0.outp_above;
+                        break;
+                      case VertexType.ERI:
+                        if (p != null)
+                          {
+                            px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
+                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+                            VERTEX(e0, ABOVE, RIGHT, ix, iy);
+                            e1.outp_above= e0.outp_above;
+                            e0.outp_above= null;
+                          }
+                        break;
+                      case VertexType.ELI:
+                        if (q != null)
+                          {
+                            nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
+                            VERTEX(e1, ABOVE, LEFT, ix, iy);
+                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            e0.outp_above= e1.outp_above;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.EMX:
+                        if ((p!=null) && (q!=null))
+                          {
+                            VERTEX(e0, ABOVE, LEFT, ix, iy);
+                            e0.outp_above= null;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IMN:
+                        px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
+            		VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+            		nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
+            		VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+            		tlist=new_tristrip(ws, tlist, prev_edge, px, iy); 
+            		e1.outp_above= prev_edge.outp_above;
+            		VERTEX(e1, ABOVE, RIGHT, ix, iy);
+            		tlist=new_tristrip(ws, tlist, e0, ix, iy);
+            		next_edge.outp_above= e0.outp_above;
+            		VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+            		break;
+                      case VertexType.ILI:
+                        if (p != null)
+                          {
+                            VERTEX(e0, ABOVE, LEFT, ix, iy);
+                            nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
+                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            e1.outp_above= e0.outp_above;
+                            e0.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IRI:
+                        if (q!=null)
+                          {
+                            VERTEX(e1, ABOVE, RIGHT, ix, iy);
+                            px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
+                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+                            e0.outp_above= e1.outp_above;
+                            e1.outp_above= null;
+                          }
+                        break;
+                      case VertexType.IMX:
+                        if ((p!=null) && (q!=null))
+                          {
+                            VERTEX(e0, ABOVE, RIGHT, ix, iy);
+                            VERTEX(e1, ABOVE, LEFT, ix, iy);
+                            e0.outp_above= null;
+                            e1.outp_above= null;
+                            px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
+                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+                            tlist=new_tristrip(ws, tlist, prev_edge, px, iy);
+                            nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
+                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            next_edge.outp_above= prev_edge.outp_above;
+                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                          }
+                        break;
+                      case VertexType.IMM:
+                        if ((p!=null) && (q!=null))
+                          {
+                            VERTEX(e0, ABOVE, RIGHT, ix, iy);
+                            VERTEX(e1, ABOVE, LEFT, ix, iy);
+                            px = P_EDGE(prev_edge, e0, ABOVE, px, iy);
+                            VERTEX(prev_edge, ABOVE, LEFT, px, iy);
+                            tlist=new_tristrip(ws, tlist, prev_edge, px, iy);
+                            nx = N_EDGE(next_edge, e1, ABOVE, nx, iy);
+                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                            e1.outp_above= prev_edge.outp_above;
+                            VERTEX(e1, ABOVE, RIGHT, ix, iy);
+                            tlist=new_tristrip(ws, tlist, e0, ix, iy);
+                            next_edge.outp_above= e0.outp_above;
+                            VERTEX(next_edge, ABOVE, RIGHT, nx, iy);
+                          }
+                        break;
+                      case VertexType.EMM:
+                        if ((p!=null) && (q!=null))
+                          {
+                            VERTEX(e0, ABOVE, LEFT, ix, iy);
+                            tlist=new_tristrip(ws, tlist, e1, ix, iy);
+                            e1.outp_above = e0.outp_above;
+                          }
+                        break;
+                      default:
+                        break;
+                      } /* End of switch */
+                  } /* End of contributing intersection conditional */                  
+                
+                /* Swap bundle sides in response to edge crossing */
+                if (e0.bundle_above[CLIP]!=0)
+                  e1.bside_clip = (e1.bside_clip==0)?1:0;
+                if (e1.bundle_above[CLIP]!=0)
+                  e0.bside_clip= (e0.bside_clip==0)?1:0;
+                if (e0.bundle_above[SUBJ]!=0)
+                  e1.bside_subj= (e1.bside_subj==0)?1:0;
+                if (e1.bundle_above[SUBJ]!=0)
+                  e0.bside_subj= (e0.bside_subj==0)?1:0;
+                
+                /* Swap e0 and e1 bundles in the AET */
+                EdgeNode prev_edge = e0.prev;
+                EdgeNode next_edge = e1.next;
+                if (next_edge != null)
+                  {
+                    next_edge.prev = e0;
+                  }
+                
+                if (e0.bstate_above == BundleState.BUNDLE_HEAD)
+                  {
+                    boolean search = true;
+                    while (search)
+                      {
+                        prev_edge= prev_edge.prev;
+                        if (prev_edge != null)
+                          {
+                            if (prev_edge.bundle_above[CLIP]!=0
+                                || prev_edge.bundle_above[SUBJ]!=0
+                                || (prev_edge.bstate_above == BundleState.BUNDLE_HEAD))
+                              {
+                                search= false;
+                              }
+                          }
+                        else
+                          {
+                            search= false;
+                          }
+                      }
+                  }
+                if (prev_edge == null)
+                  {
+                    e1.next           = aet.top_node;
+                    aet.top_node      = e0.next;
+                  }
+                else
+                  {
+                    e1.next             = prev_edge.next;
+                    prev_edge.next      = e0.next;
+                  }
+                e0.next.prev = prev_edge;
+                e1.next.prev = e1;
+                e0.next      = next_edge;
+              } /* End of IT loop*/
+            
+            /* Prepare for next scanbeam */
+            for ( EdgeNode edge = aet.top_node; (edge != null); edge = edge.next)
+              {
+                EdgeNode next_edge = edge.next;
+                EdgeNode succ_edge = edge.succ;
+                if ((edge.top_y == yt) && (succ_edge!=null))
+                  {
+                    /* Replace AET edge by its successor */
+                    succ_edge.outp_below= edge.outp_above;
+                    succ_edge.bstate_below= edge.bstate_above;
+                    succ_edge.bundle_below_clip= edge.bundle_above[CLIP];
+                    succ_edge.bundle_below_subj= edge.bundle_above[SUBJ];
+                    EdgeNode prev_edge = edge.prev;
+                    if ( prev_edge != null )
+                      prev_edge.next = succ_edge;
+                    else
+                      aet.top_node = succ_edge;
+                    if (next_edge != null)
+                      next_edge.prev= succ_edge;
+                    succ_edge.prev = prev_edge;
+                    succ_edge.next = next_edge;
+                  }
+                else
+                  {
+                    /* Update this edge */
+                    edge.outp_below= edge.outp_above;
+                    edge.bstate_below= edge.bstate_above;
+                    edge.bundle_below_clip= edge.bundle_above[CLIP];
+                    edge.bundle_below_subj= edge.bundle_above[SUBJ];
+                    edge.xb= edge.xt;
+                  }
+                edge.outp_above= null;
+              }
+          }
+      } /* === END OF SCANBEAM PROCESSING ================================== */
+    
+    return tlist;
+  }
+  
+  public static RMesh polygonToMesh(RPolygon s)
+  {
+    RPolygon c = new RPolygon();
+    RPolygon s_clean = s.removeOpenContours();
+    /*
+    for(int i=0; i<s_clean.countContours(); i++)
+      {
+        System.out.println("  " + s_clean.contours[i]);
+        System.out.println("Contour " + (i + 1) + "/" + s_clean.countContours() + ":");
+        for(int j=0;j<s_clean.contours[i].countPoints();j++)
+          {
+            System.out.println("  Point " + (j + 1) + "/" + s_clean.contours[i].countPoints() + ":" + "(" + s_clean.contours[i].points[j].x + ", " + s_clean.contours[i].points[j].y + ")");
+          }
+      }
+    */
+    return clip(OperationType.GPC_UNION, s_clean, c);
+  }
+  
+  public static RIndexedMesh polygonToIndexedMesh(RPolygon s)
+  {
+    return indexedMesh(OperationType.GPC_UNION, s.removeOpenContours(), new RPolygon());
+  }
+  
+  private static boolean EQ(float a, float b)
+  {
+    return (Math.abs(a - b) <= GPC_EPSILON);
+  }
+  
+  private static int PREV_INDEX( int i, int n)
+  {
+    return ((i - 1 + n) % n);
+  }
+  
+  private static int NEXT_INDEX(int i, int n)
+  {
+    return ((i + 1    ) % n);
+  }
+  
+  /* Point i of the n points of a contour starting at point first */
+  private static boolean OPTIMAL( float[] coords, int first, int n, int i )
+  {
+    float y = coords[2*(first + i) + 1];
+    return (coords[2*(first + PREV_INDEX(i, n)) + 1] != y) || 
+      (coords[2*(first + NEXT_INDEX(i, n)) + 1] != y);
+  }
+  
+  // TODO: demacro-ize this
+  private static void VERTEX( EdgeNode e, int p, int s, float x, float y )
+  {
+    if(p == ABOVE) {
+      if(s == RIGHT) {
+        e.outp_above.v_right = add_vertex(e.outp_above.ws, e.outp_above.v_right, x, y);
+      } else if(s == LEFT) {
+        e.outp_above.v_left = add_vertex(e.outp_above.ws, e.outp_above.v_left, x, y);
+      } else {
+        throw new IllegalStateException("bogus s value");
+      }
+      
+      e.outp_above.active++;
+      
+    } else if (p == BELOW) {
+      if(s == RIGHT) {
+        e.outp_below.v_right = add_vertex(e.outp_below.ws, e.outp_below.v_right, x, y);
+      } else if(s == LEFT) {
+        e.outp_below.v_left = add_vertex(e.outp_below.ws, e.outp_below.v_left, x, y);
+      } else {
+        throw new IllegalStateException("bogus s value");
+      }
+      
+      e.outp_below.active++;
+      
+    } else {
+      throw new IllegalStateException("bogus p value");
+    }
+  }
+  
+  private static float P_EDGE( EdgeNode d, EdgeNode e, int p, float i, float j)
+  {
+    if(p == ABOVE) {
+      
+      d = e;
+      do {
+        d = d.prev;
+      } while(d.outp_above == null);
+      return d.bot_x + d.dx*(j-d.bot_y);
+      
+    } else if (p == BELOW) {
+      
+      d = e;
+      do {
+        d = d.prev;
+      } while(d.outp_below == null);
+      return d.bot_x + d.dx*(j-d.bot_y);
+      
+    } else {
+      throw new IllegalStateException("bogus p value");
+    }
+  }
+  
+  private static float N_EDGE( EdgeNode d, EdgeNode e, int p, float i, float j)
+  {
+    if(p == ABOVE) {
+
+      d = e;
+      do {
+        	d= d.next;
+      } while(d.outp_above == null);
+      return d.bot_x + d.dx*(j-d.bot_y);
+    
+    } else if(p == BELOW) {
+
+      d = e;
+      do {
+        	d= d.next;
+      } while(d.outp_below == null);
+      return d.bot_x + d.dx*(j-d.bot_y);
+    
+    } else {
+      throw new IllegalStateException("bogus p value");
+    }
+  }
+  
+  private static void insert_bound( LmtNode lmt_node, EdgeNode e)
+  {
+    if( lmt_node.first_bound == null )
+      {
+        /* Link node e to the tail of the list */
+        lmt_node.first_bound = e;
+      }
+    else
+      {
+        boolean done = false;
+        EdgeNode prev_bound = null;
+        EdgeNode current_bound = lmt_node.first_bound;
+        while( !done )
+          {
+            /* Do primary sort on the x field */
+            if (e.bot_x <  current_bound.bot_x)
+              {
+                /* Insert a new node mid-list */
+                if( prev_bound == null )
+                  {
+                    lmt_node.first_bound = e;
+                  }
+                else
+                  {
+                    prev_bound.next_bound = e;
+                  }
+                e.next_bound = current_bound;
+                
+                done = true;
+              }
+            else if (e.bot_x == current_bound.bot_x)
+              {
+                /* Do secondary sort on the dx field */
+                if (e.dx < current_bound.dx)
+                  {
+                    /* Insert a new node mid-list */
+                    if( prev_bound == null )
+                      {
+                        lmt_node.first_bound = e;
+                      }
+                    else
+                      {
+                        prev_bound.next_bound = e;
+                      }
+                    e.next_bound = current_bound;
+                    done = true;
+                  }
+                else
+                  {
+                    /* Head further down the list */
+                    if( current_bound.next_bound == null )
+                      {
+                        current_bound.next_bound = e;
+                        done = true;
+                      }
+                    else
+                      {
+                        prev_bound = current_bound;
+                        current_bound = current_bound.next_bound;
+                      }
+                  }
+              }
+            else
+              {
+                /* Head further down the list */
+                if( current_bound.next_bound == null )
+                  {
+                    current_bound.next_bound = e;
+                    done = true;
+                  }
+                else
+                  {
+                    prev_bound = current_bound;
+                    current_bound = current_bound.next_bound;
+                  }
+              }
+          }
+      }
+  }
+  
+  private static void add_edge_to_aet( AetTree aet , EdgeNode edge )
+  {
+    if ( aet.top_node == null )
+      {
+        /* Append edge onto the tail end of the AET */
+        aet.top_node = edge;
+        edge.prev = null;
+        edge.next= null;
+      }
+    else
+      {
+        EdgeNode current_edge = aet.top_node;
+        EdgeNode prev = null;
+        boolean done = false;
+        while( !done )
+          {
+            /* Do primary sort on the xb field */
+            if (edge.xb < current_edge.xb)
+              {
+                /* Insert edge here (before the AET edge) */
+                edge.prev= prev;
+                edge.next= current_edge;
+                current_edge.prev = edge;
+                if( prev == null )
+                  {
+                    aet.top_node = edge;
+                  }
+                else
+                  {
+                    prev.next = edge;
+                  }
+                done = true;
+              }
+            else if (edge.xb == current_edge.xb)
+              {
+                /* Do secondary sort on the dx field */
+                if (edge.dx < current_edge.dx)
+                  {
+                    /* Insert edge here (before the AET edge) */
+                    edge.prev= prev;
+                    edge.next= current_edge;
+                    current_edge.prev = edge;
+                    if( prev == null )
+                      {
+                        aet.top_node = edge;
+                      }
+                    else
+                      {
+                        prev.next = edge;
+                      }
+                    done = true;
+                  }
+                else
+                  {
+                    /* Head further into the AET */
+                    prev = current_edge;
+                    if( current_edge.next == null )
+                      {
+                        current_edge.next = edge;
+                        edge.prev = current_edge;
+                        edge.next = null;
+                        done = true;
+                      }
+                    else
+                      {
+                        current_edge = current_edge.next;
+                      }
+                  }
+              }
+            else
+              {
+                /* Head further into the AET */
+                prev = current_edge;
+                if( current_edge.next == null )
+                  {
+                    current_edge.next = edge;
+                    edge.prev = current_edge;
+                    edge.next = null;
+                    done = true;
+                  }
+                else
+                  {
+                    current_edge = current_edge.next;
+                  }
+              }
+          }
+      }
+  }
+  
+  /**
+   * Whether each contour can contribute, the subject contours first.
+   */
+  private static boolean[] minimax_test( RFlatPolygon subj, RFlatPolygon clip, OperationType op )
+  {
+    int subj_num_poly = subj.countContours();
+    int clip_num_poly = clip.countContours();
+    float[] box = new float[4*(subj_num_poly + clip_num_poly)];
+    subj.contourBounds( box, 0 );
+    clip.contourBounds( box, subj_num_poly );
+    return RClip.minimax_test( box, subj_num_poly, clip_num_poly, op );
+  }
+  
+  /**
+   * The contours of <code>p</code> are numbered from <code>offset</code> in
+   * <code>contributing</code>, all of them contribute if it is null.
+   */
+  private static EdgeTable build_lmt( Workspace ws,
+                                      RFlatPolygon p, 
+                                      boolean[] contributing,
+                                      int offset,
+                                      int type, //poly type SUBJ/CLIP
+                                      OperationType op)
+  {
+    LmtTable lmt_table = ws.lmt_table;
+    ScanBeamTable sb_table = ws.sb_table;
+    
+    /* Create the entire input polygon edge table in one go */
+    EdgeTable edge_table = new EdgeTable( ws );
+    
+    for ( int c= 0; c < p.countContours(); c++)
+      {
+        if( contributing != null && !contributing[offset + c] )
+          {
+            /* Ignore the non-contributing contour */
+          }
+        else
+          {
+            /* Perform contour optimisation */
+            int first = p.contourStarts[c];
+            int num_points = p.contourStarts[c+1] - first;
+            int num_vertices= 0;
+            int e_index = 0;
+            edge_table = new EdgeTable( ws );
+            for ( int i= 0; i < num_points; i++)
+              {
+                if( OPTIMAL(p.coords, first, num_points, i) )
+                  {
+                    float x = p.coords[2*(first + i)];
+                    float y = p.coords[2*(first + i) + 1];
+                    edge_table.addNode( x, y );
+                    
+                    /* Record vertex in the scanbeam table */
+                    sb_table.add( y );
+                    
+                    num_vertices++;
+                  }
+              }
+            
+            /* Do the contour forward pass */
+            for ( int min= 0; min < num_vertices; min++)
+              {
+                /* If a forward local minimum... */
+                if( edge_table.FWD_MIN( min ) )
+                  {
+                    /* Search for the next local maximum... */
+                    int num_edges = 1;
+                    int max = NEXT_INDEX( min, num_vertices );
+                    while( edge_table.NOT_FMAX( max ) )
+                      {
+                        num_edges++;
+                        max = NEXT_INDEX( max, num_vertices );
+                      }
+                    
+                    /* Build the next edge list */
+                    int v = min;
+                    EdgeNode e = edge_table.getNode( e_index );
+                    e.bstate_below = BundleState.UNBUNDLED;
+                    e.bundle_below_clip = 0;
+                    e.bundle_below_subj = 0;
+                    
+                    for ( int i= 0; i < num_edges; i++)
+                      {
+                        EdgeNode ei = edge_table.getNode( e_index+i );
+                        EdgeNode ev = edge_table.getNode( v );
+                        
+                        ei.xb    = ev.vertex_x;
+                        ei.bot_x = ev.vertex_x;
+                        ei.bot_y = ev.vertex_y;
+                        
+                        v = NEXT_INDEX(v, num_vertices);
+                        ev = edge_table.getNode( v );
+                        
+                        ei.top_x= ev.vertex_x;
+                        ei.top_y= ev.vertex_y;
+                        ei.dx= (ev.vertex_x - ei.bot_x) / (ei.top_y - ei.bot_y);
+                        ei.type = type;
+                        ei.outp_above = null;
+                        ei.outp_below = null;
+                        ei.next = null;
+                        ei.prev = null;
+                        ei.succ = ((num_edges > 1) && (i < (num_edges - 1))) ? edge_table.getNode(e_index+i+1) : null;
+                        ei.pred = ((num_edges > 1) && (i > 0)) ? edge_table.getNode(e_index+i-1) : null;
+                        ei.next_bound = null;
+                        ei.bside_clip = (op == OperationType.GPC_DIFF) ? RIGHT : LEFT;
+                        ei.bside_subj = LEFT;
+                      }
+                    lmt_table.add( edge_table.getNode(min).vertex_y, e );
+                    e_index += num_edges;
+                  }
+              }
+            
+            /* Do the contour reverse pass */
+            for ( int min= 0; min < num_vertices; min++)
+              {
+                /* If a reverse local minimum... */
+                if ( edge_table.REV_MIN( min ) )
+                  {
+                    /* Search for the previous local maximum... */
+                    int num_edges= 1;
+                    int max = PREV_INDEX(min, num_vertices);
+                    while( edge_table.NOT_RMAX( max ) )
+                      {
+                        num_edges++;
+                        max = PREV_INDEX(max, num_vertices);
+                      }
+                    
+                    /* Build the previous edge list */
+                    int v = min;
+                    EdgeNode e = edge_table.getNode( e_index );
+                    e.bstate_below = BundleState.UNBUNDLED;
+                    e.bundle_below_clip = 0;
+                    e.bundle_below_subj = 0;
+                    
+                    for (int i= 0; i < num_edges; i++)
+                      {
+                        EdgeNode ei = edge_table.getNode( e_index+i );
+                        EdgeNode ev = edge_table.getNode( v );
+                        
+                        ei.xb    = ev.vertex_x;
+                        ei.bot_x = ev.vertex_x;
+                        ei.bot_y = ev.vertex_y;
+                        
+                        v= PREV_INDEX(v, num_vertices);
+                        ev = edge_table.getNode( v );
+                        
+                        ei.top_x = ev.vertex_x;
+                        ei.top_y = ev.vertex_y;
+                        ei.dx = (ev.vertex_x - ei.bot_x) / (ei.top_y - ei.bot_y);
+                        ei.type = type;
+                        ei.outp_above = null;
+                        ei.outp_below = null;
+                        ei.next = null;
+                        ei.prev = null;
+                        ei.succ = ((num_edges > 1) && (i < (num_edges - 1))) ? edge_table.getNode(e_index+i+1) : null;
+                        ei.pred = ((num_edges > 1) && (i > 0)) ? edge_table.getNode(e_index+i-1) : null;
+                        ei.next_bound = null;
+                        ei.bside_clip = (op == OperationType.GPC_DIFF) ? RIGHT : LEFT;
+                        ei.bside_subj = LEFT;
+                      }
+                    lmt_table.add( edge_table.getNode(min).vertex_y, e );
+                    e_index+= num_edges;
+                  }
+              }
+          }
+      }
+    return edge_table;
+  }
+  
+  private static int add_st_edge( Workspace ws, int st, EdgeNode edge, float dy)
+  {
+    if (st == NONE)
+      {
+        /* Append edge onto the tail end of the ST */
+        st = ws.new_st_node( edge, NONE );
+      }
+    else
+      {
+        float den= (ws.st_xt[st] - ws.st_xb[st]) - (edge.xt - edge.xb);
+        
+        /* If new edge and ST edge don't cross */
+        if( (edge.xt >= ws.st_xt[st]) || (edge.dx == ws.st_dx[st]) || (Math.abs(den) <= GPC_EPSILON))
+          {
+            /* No intersection - insert edge here (before the ST edge) */
+            st = ws.new_st_node( edge, st );
+          }
+        else
+          {
+            /* Compute intersection between new edge and ST edge */
+            float r= (edge.xb - ws.st_xb[st]) / den;
+            float x= ws.st_xb[st] + r * (ws.st_xt[st] - ws.st_xb[st]);
+            float y= r * dy;
+            
+            /* Insert the edge pointers and the intersection point in the IT */
+            ws.it_top = add_intersection(ws, ws.it_top, ws.st_edge[st], edge, x, y);
+            
+            /* Head further into the ST */
+            int prev = add_st_edge(ws, ws.st_prev[st], edge, dy);
+            ws.st_prev[st] = prev;
+          }
+      }
+    return st;
+  }
+  
+  private static int add_intersection( Workspace ws,
+                                       int it_node, 
+                                       EdgeNode edge0, 
+                                       EdgeNode  edge1,
+                                       float x, 
+                                       float y)
+  {
+    int new_node = ws.new_it_node( edge0, edge1, x, y );
+    if (it_node == NONE || ws.it_y[it_node] > y)
+      {
+        /* Insert the new node at the head of the list */
+        ws.it_next[new_node] = it_node;
+        return new_node;
+      }
+    
+    /* Head further down the list, up to the first node above y */
+    int prev = it_node;
+    while (ws.it_next[prev] != NONE && !(ws.it_y[ws.it_next[prev]] > y))
+      {
+        prev = ws.it_next[prev];
+      }
+    ws.it_next[new_node] = ws.it_next[prev];
+    ws.it_next[prev] = new_node;
+    return it_node;
+  }
+  
+  private static int count_tristrips(PolygonNode tn)
+  {
+    int total;
+    
+    for (total= 0; tn!=null; tn= tn.next)
+      {
+     	if (tn.active > 2)
+          {
+            total++;
+          }
+      }
+    return total;
+  }
+  
+  private static int add_vertex(Workspace ws, int ve_node, float x, float y)
+  {
+    int new_node = ws.new_vertex( x, y );
+    if (ve_node == NONE)
+      {
+        return new_node;
+      }
+    
+    /* Append the new node to the tail of the list */
+    int tail = ve_node;
+    while (ws.vertex_next[tail] != NONE)
+      {
+        tail = ws.vertex_next[tail];
+      }
+    ws.vertex_next[tail] = new_node;
+    return ve_node;
+  }
+  
+  private static PolygonNode new_tristrip(Workspace ws, PolygonNode po_node, EdgeNode edge, float x, float y)
+  {
+    PolygonNode new_node = ws.new_polygon_node();
+    new_node.v_left = add_vertex(ws, new_node.v_left, x, y);
+    edge.outp_above = new_node;
+    if (po_node == null)
+      {
+        return new_node;
+      }
+    
+    /* Append the new node to the tail of the list */
+    PolygonNode tail = po_node;
+    while (tail.next != null)
+      {
+        tail = tail.next;
+      }
+    tail.next = new_node;
+    return po_node;
+  }
+  
+  // ---------------------
+  // --- Inner Classes ---
+  // ---------------------
+  
+  /**
+   * Edge intersection classes
+   */
+  private static class VertexType
+  {
+    public static final int NUL =  0; /* Empty non-intersection            */
+    public static final int EMX =  1; /* External maximum                  */
+    public static final int ELI =  2; /* External left intermediate        */
+    public static final int TED =  3; /* Top edge                          */
+    public static final int ERI =  4; /* External right intermediate       */
+    public static final int RED =  5; /* Right edge                        */
+    public static final int IMM =  6; /* Internal maximum and minimum      */
+    public static final int IMN =  7; /* Internal minimum                  */
+    public static final int EMN =  8; /* External minimum                  */
+    public static final int EMM =  9; /* External maximum and minimum      */
+    public static final int LED = 10; /* Left edge                         */
+    public static final int ILI = 11; /* Internal left intermediate        */
+    public static final int BED = 12; /* Bottom edge                       */
+    public static final int IRI = 13; /* Internal right intermediate       */
+    public static final int IMX = 14; /* Internal maximum                  */
+    public static final int FUL = 15; /* Full non-intersection             */
+    
+    public static int getType( int tr, int tl, int br, int bl )
+    {
+      return tr + (tl << 1) + (br << 2) + (bl << 3);
+    }
+  }
+  
+  /**
+   * Horizontal edge states            
+   */
+  private static class HState
+  {
+    public static final int NH = 0; /* No horizontal edge                */
+    public static final int BH = 1; /* Bottom horizontal edge            */
+    public static final int TH = 2; /* Top horizontal edge               */
+    
+    /* Horizontal edge state transitions within scanbeam boundary */
+    public static final int[][] next_h_state =
+      {
+        /*        ABOVE     BELOW     CROSS */
+        /*        L   R     L   R     L   R */  
+        /* NH */ {BH, TH,   TH, BH,   NH, NH},
+        /* BH */ {NH, NH,   NH, NH,   TH, TH},
+        /* TH */ {NH, NH,   NH, NH,   BH, BH}
+      };
+  }
+  
+  /**
+   * Edge bundle state                 
+   */
+  private static class BundleState
+  {
+    private String state;
+    private BundleState( String state ) { this.state = state; }
+    
+    public static final BundleState UNBUNDLED   = new BundleState( "UNBUNDLED"   ); // Isolated edge not within a bundle
+    public static final BundleState BUNDLE_HEAD = new BundleState( "BUNDLE_HEAD" ); // Bundle head node
+    public static final BundleState BUNDLE_TAIL = new BundleState( "BUNDLE_TAIL" ); // Passive bundle tail node
+    
+    public String toString() { return state; }
+  }
+  
+  /**
+   * Internal contour / tristrip type.  The vertex lists are linked
+   * through the vertex pool of the workspace.
+   */
+  private static class PolygonNode
+  {
+    Workspace    ws;                     /* Workspace holding the vertices    */
+    int          active;                 /* Active flag / vertex count        */
+    boolean      hole;                   /* Hole / external contour flag      */
+    int          v_right, v_left;        /* Left and right vertex list ptrs   */
+    PolygonNode  next;                   /* Pointer to next polygon contour   */
+    PolygonNode  proxy;                  /* Pointer to actual structure used  */
+    
+    public PolygonNode( Workspace ws )
+    {
+      this.ws = ws;
+    }
+    
+    public void reset()
+    {
+      this.v_left = NONE;
+      this.v_right = NONE;
+      this.next = null;
+      this.hole = false;
+      this.proxy = this; /* Initialise proxy to point to p itself */
+      this.active = 1; //TRUE
+    }
+    
+    public void add_right( float x, float y )
+    {
+      int nv = ws.new_vertex( x, y );
+      
+      /* Add vertex nv to the right end of the polygon's vertex list */
+      ws.vertex_next[proxy.v_right]= nv;
+      
+      /* Update proxy->v[RIGHT] to point to nv */
+      proxy.v_right= nv;
+    }
+    
+    public void add_left( float x, float y)
+    {
+      int nv = ws.new_vertex( x, y );
+      
+      /* Add vertex nv to the left end of the polygon's vertex list */
+      ws.vertex_next[nv]= proxy.v_left;
+      
+      /* Update proxy->[LEFT] to point to nv */
+      proxy.v_left= nv;
+    }
+    
+  }
+  
+  private static class TopPolygonNode
+  {
+    Workspace ws;
+    PolygonNode top_node = null;
+    
+    public TopPolygonNode( Workspace ws )
+    {
+      this.ws = ws;
+    }
+    
+    public PolygonNode add_local_min( float x, float y )
+    {
+      PolygonNode existing_min = top_node;
+      
+      top_node = ws.new_polygon_node();
+      int vn = ws.new_vertex( x, y );
+      top_node.v_left = vn;
+      top_node.v_right = vn;
+      top_node.next = existing_min;
+      
+      return top_node;
+    }
+    
+    public void merge_left( PolygonNode p, PolygonNode q )
+    {
+      /* Label contour as a hole */
+      q.proxy.hole = true;
+      
+      if (p.proxy != q.proxy)
+        {
+          /* Assign p's vertex list to the left end of q's list */
+          ws.vertex_next[p.proxy.v_right]= q.proxy.v_left;
+          q.proxy.v_left= p.proxy.v_left;
+          
+          /* Redirect any p.proxy references to q.proxy */
+          PolygonNode target = p.proxy;
+          for(PolygonNode node = top_node; (node != null); node = node.next)
+            {
+              if (node.proxy == target)
+                {
+                  node.active= 0;
+                  node.proxy= q.proxy;
+                }
+            }
+        }
+    }
+    
+    public void merge_right( PolygonNode p, PolygonNode q )
+    {
+      /* Label contour as external */
+      q.proxy.hole = false;
+      
+      if (p.proxy != q.proxy)
+        {
+          /* Assign p's vertex list to the right end of q's list */
+          ws.vertex_next[q.proxy.v_right]= p.proxy.v_left;
+          q.proxy.v_right= p.proxy.v_right;
+          
+          /* Redirect any p->proxy references to q->proxy */
+          PolygonNode target = p.proxy;
+          for (PolygonNode node = top_node; (node != null ); node = node.next)
+            {
+              if (node.proxy == target)
+                {
+                  node.active = 0;
+                  node.proxy= q.proxy;
+                }
+            }
+        }
+    }
+    
+    public int count_contours()
+    {
+      int nc = 0;
+      for ( PolygonNode polygon = top_node; (polygon != null); polygon = polygon.next)
+        {
+          if (polygon.active != 0)
+            {
+              /* Count the vertices in the current contour */
+              int nv= 0;
+              for (int v= polygon.proxy.v_left; (v != NONE); v = ws.vertex_next[v])
+                {
+                  nv++;
+                }
+              
+              /* Record valid vertex counts in the active field */
+              if (nv > 2)
+                {
+                  polygon.active = nv;
+                  nc++;
+                }
+              else
+                {
+                  /* Invalid contour: its vertices stay in the workspace */
+                  polygon.active= 0;
+                }
+            }
+        }
+      return nc;
+    }
+    
+    public RFlatPolygon getResult()
+    {
+      int num_contours = count_contours();
+      int num_outer = 0;
+      int num_points = 0;
+      for (PolygonNode poly_node= top_node; (poly_node != null); poly_node = poly_node.next)
+        {
+          if (poly_node.active != 0)
+            {
+              num_points += poly_node.active;
+              if (!poly_node.proxy.hole)
+                {
+                  num_outer++;
+                }
+            }
+        }
+      
+      /* Write each contour straight into the flat arrays */
+      float[] coords = new float[2*num_points];
+      int[] contour_starts = new int[num_contours + 1];
+      boolean[] holes = new boolean[num_contours];
+      contour_starts[num_contours] = num_points;
+      
+      // ----------------------------------------------------
+      // --- Holes are sorted to the end of the list, the ---
+      // --- algorithm puts the verticies in reverse order ---
+      // ----------------------------------------------------
+      int outer = 0;
+      int hole = num_outer;
+      int k = 0;
+      for (int pass = 0; pass < 2; pass++)
+        {
+          for (PolygonNode poly_node= top_node; (poly_node != null); poly_node = poly_node.next)
+            {
+              if (poly_node.active != 0 && poly_node.proxy.hole == (pass == 1))
+                {
+                  int c = poly_node.proxy.hole ? hole++ : outer++;
+                  contour_starts[c] = k/2;
+                  holes[c] = poly_node.proxy.hole;
+                  for (int vtx = poly_node.proxy.v_left; (vtx != NONE); vtx = ws.vertex_next[vtx] )
+                    {
+                      coords[k++] = ws.vertex_x[vtx];
+                      coords[k++] = ws.vertex_y[vtx];
+                    }
+                }
+            }
+        }
+      return new RFlatPolygon(coords, contour_starts, holes);
+    }
+    
+    public void print()
+    {
+      System.out.println("---- out_poly ----");
+      int c= 0;
+      PolygonNode npoly_node = null;
+      for (PolygonNode poly_node= top_node; (poly_node != null); poly_node = npoly_node)
+        {
+          System.out.println("contour="+c+"  active="+poly_node.active+"  hole="+poly_node.proxy.hole);
+          npoly_node = poly_node.next;
+          if (poly_node.active != 0)
+            {
+              int v=0;
+              for (int vtx = poly_node.proxy.v_left; (vtx != NONE); vtx = ws.vertex_next[vtx] )
+                {
+                  System.out.println("v="+v+"  vtx.x="+ws.vertex_x[vtx]+"  vtx.y="+ws.vertex_y[vtx]);
+                }
+              c++;
+            }
+        }
+    }         
+  }
+  
+  private static class EdgeNode
+  {
+    float vertex_x, vertex_y;    /* Piggy-backed contour vertex data  */
+    float bot_x, bot_y;          /* Edge lower (x, y) coordinate      */
+    float top_x, top_y;         /* Edge upper (x, y) coordinate      */
+    float         xb;           /* Scanbeam bottom x coordinate      */
+    float         xt;           /* Scanbeam top x coordinate         */
+    float         dx;           /* Change in x for a unit y increase */
+    int            type;         /* Clip / subject edge flag          */
+    //int[][]        bundle = new int[2][2];      /* Bundle edge flags                 */
+    int[] bundle_above = new int[2];
+    int bundle_below_clip, bundle_below_subj;
+    
+    //int[]          bside  = new int[2];         /* Bundle left / right indicators    */
+    int bside_clip, bside_subj;  /* Bundle left / right indicators    */
+    //BundleState[]  bstate = new BundleState[2]; /* Edge bundle state                 */
+    BundleState bstate_above, bstate_below;
+    PolygonNode outp_above, outp_below; /* Output polygon / tristrip pointer */
+    EdgeNode       prev;         /* Previous edge in the AET          */
+    EdgeNode       next;         /* Next edge in the AET              */
+    EdgeNode       pred;         /* Edge connected at the lower end   */
+    EdgeNode       succ;         /* Edge connected at the upper end   */
+    EdgeNode       next_bound;   /* Pointer to next bound in LMT      */
+    
+    public void reset()
+    {
+      vertex_x = vertex_y = 0;
+      bot_x = bot_y = top_x = top_y = 0;
+      xb = xt = dx = 0;
+      type = 0;
+      bundle_above[0] = bundle_above[1] = 0;
+      bundle_below_clip = bundle_below_subj = 0;
+      bside_clip = bside_subj = 0;
+      bstate_above = bstate_below = null;
+      outp_above = outp_below = null;
+      prev = next = pred = succ = next_bound = null;
+    }
+  }
+  
+  private static class AetTree
+  {
+    EdgeNode top_node;
+    
+    public void print()
+    {
+      System.out.println("");
+      System.out.println("aet");
+      for( EdgeNode edge = top_node; (edge != null); edge = edge.next )
+        {
+          System.out.println("edge.vertex_x="+edge.vertex_x+"  edge.vertex_y="+edge.vertex_y);
+        }
+    }
+  }
+  
+  /**
+   * The edges of one contour, a run of consecutive nodes of the
+   * workspace edge pool.
+   */
+  private static class EdgeTable
+  {
+    private Workspace ws;
+    private int start;
+    private int size;
+    
+    public EdgeTable( Workspace ws )
+    {
+      this.ws = ws;
+      this.start = ws.edge_count;
+    }
+    
+    public void addNode( float x, float y )
+    {
+      EdgeNode node = ws.new_edge();
+      node.vertex_x = x;
+      node.vertex_y = y;
+      size++;
+    }
+    
+    public EdgeNode getNode( int index )
+    {
+      return ws.edges[start + index];
+    }
+    
+    public boolean FWD_MIN( int i )
+    {
+      EdgeNode prev = getNode(PREV_INDEX(i, size));
+      EdgeNode next = getNode(NEXT_INDEX(i, size));
+      EdgeNode ith  = getNode(i);
+      return ((prev.vertex_y >= ith.vertex_y) &&
+              (next.vertex_y >  ith.vertex_y));
+    }
+    
+    public boolean NOT_FMAX( int i )
+    {
+      EdgeNode next = getNode(NEXT_INDEX(i, size));
+      EdgeNode ith  = getNode(i);
+      return(next.vertex_y > ith.vertex_y);
+    }
+    
+    public boolean REV_MIN( int i )
+    {
+      EdgeNode prev = getNode(PREV_INDEX(i, size));
+      EdgeNode next = getNode(NEXT_INDEX(i, size));
+      EdgeNode ith  = getNode(i);
+      return ((prev.vertex_y >  ith.vertex_y) &&
+              (next.vertex_y >= ith.vertex_y));
+    }
+    
+    public boolean NOT_RMAX( int i )
+    {
+      EdgeNode prev = getNode(PREV_INDEX(i, size));
+      EdgeNode ith  = getNode(i);
+      return (prev.vertex_y > ith.vertex_y);
+    }
+  }
+  
+  /**
+   * Local minima table
+   */
+  private static class LmtNode
+  {
+    float   y;            /* Y coordinate at local minimum     */
+    EdgeNode first_bound;  /* Pointer to bound list             */
+    LmtNode  next;         /* Pointer to next local minimum     */
+  }
+  
+  /**
+   * Local minima found while building the edge tables.  The bounds are
+   * appended unsorted and grouped by y into a list of <code>LmtNode</code>
+   * with a single sort in <code>build_lmt()</code>.
+   */
+  private static class LmtTable
+  {
+    int entries;
+    long[] keys = new long[64];       /* Sortable y bits and insertion index */
+    EdgeNode[] bounds = new EdgeNode[64];
+    
+    public void add( float y, EdgeNode e )
+    {
+      if( entries == bounds.length )
+        {
+          long[] newkeys = new long[entries*2];
+          System.arraycopy(keys, 0, newkeys, 0, entries);
+          keys = newkeys;
+          EdgeNode[] newbounds = new EdgeNode[entries*2];
+          System.arraycopy(bounds, 0, newbounds, 0, entries);
+          bounds = newbounds;
+        }
+      
+      /* Adding 0 turns -0 into +0, so that both land in the same node */
+      int bits = Float.floatToIntBits(y + 0.0F);
+      if( bits < 0 )
+        {
+          bits ^= 0x7fffffff;
+        }
+      
+      /* The index in the low bits keeps the sort stable */
+      keys[entries] = ((long)bits << 32) | entries;
+      bounds[entries] = e;
+      entries++;
+    }
+    
+    public void reset()
+    {
+      entries = 0;
+    }
+    
+    public LmtNode build_lmt( Workspace ws )
+    {
+      Arrays.sort(keys, 0, entries);
+      
+      LmtNode top_node = null;
+      LmtNode node = null;
+      for( int i = 0; i < entries; i++ )
+        {
+          EdgeNode e = bounds[(int)(keys[i] & 0xffffffffL)];
+          float y = e.bot_y + 0.0F;
+          if( node == null || node.y != y )
+            {
+              LmtNode next = ws.new_lmt_node(y);
+              if( node == null )
+                {
+                  top_node = next;
+                }
+              else
+                {
+                  node.next = next;
+                }
+              node = next;
+            }
+          insert_bound( node, e );
+        }
+      return top_node;
+    }
+  }
+  
+  /**
+   * Scanbeam table, the y of every vertex is appended and the table is
+   * sorted and freed of duplicates in <code>build_sbt()</code>.
+   */
+  private static class ScanBeamTable
+  {
+    int entries;
+    float[] ys = new float[64];
+    
+    public void reset()
+    {
+      entries = 0;
+    }
+    
+    public void add( float y )
+    {
+      if( entries == ys.length )
+        {
+          float[] newys = new float[entries*2];
+          System.arraycopy(ys, 0, newys, 0, entries);
+          ys = newys;
+        }
+      ys[entries++] = y;
+    }
+    
+    public float[] build_sbt()
+    {
+      Arrays.sort(ys, 0, entries);
+      
+      int n = 0;
+      for( int i = 0; i < entries; i++ )
+        {
+          if( n == 0 || ys[i] != ys[n-1] )
+            {
+              ys[n++] = ys[i];
+            }
+        }
+      
+      float[] sbt = new float[n];
+      System.arraycopy(ys, 0, sbt, 0, n);
+      return sbt;
+    }
+  }
+  
+  /**
+   * Storage for one clip, kept by each thread and reused by its next
+   * clip so that repeated operations allocate almost nothing but their
+   * result.  Edges, polygon nodes and local minima are pools of nodes
+   * that are reset when handed out again.  The output vertices and the
+   * sorted edge and intersection tables of the current scanbeam are
+   * kept in parallel primitive arrays, a node being an index into them
+   * and NONE standing for null.  The pools never shrink, so a thread
+   * holds on to the memory needed by the largest clip it has done.
+   */
+  private static class Workspace
+  {
+    boolean busy;
+    
+    LmtTable lmt_table = new LmtTable();
+    ScanBeamTable sb_table = new ScanBeamTable();
+    
+    EdgeNode[] edges = new EdgeNode[256];
+    int edge_count;
+    
+    PolygonNode[] polygon_nodes = new PolygonNode[64];
+    int polygon_count;
+    
+    LmtNode[] lmt_nodes = new LmtNode[64];
+    int lmt_count;
+    
+    /* Output vertices */
+    float[] vertex_x = new float[256];
+    float[] vertex_y = new float[256];
+    int[] vertex_next = new int[256];
+    int vertex_count;
+    
+    /* Sorted edge table */
+    EdgeNode[] st_edge = new EdgeNode[64];
+    float[] st_xb = new float[64];              /* Scanbeam bottom x coordinate      */
+    float[] st_xt = new float[64];              /* Scanbeam top x coordinate         */
+    float[] st_dx = new float[64];              /* Change in x for a unit y increase */
+    int[] st_prev = new int[64];                /* Previous edge in sorted list      */
+    int st_count;
+    
+    /* Intersection table */
+    EdgeNode[] it_ie0 = new EdgeNode[64];       /* Intersecting edge (bundle) pair   */
+    EdgeNode[] it_ie1 = new EdgeNode[64];
+    float[] it_x = new float[64];               /* Point of intersection             */
+    float[] it_y = new float[64];
+    int[] it_next = new int[64];                /* The next intersection table node  */
+    int it_count;
+    int it_top;
+    
+    public void reset()
+    {
+      lmt_table.reset();
+      sb_table.reset();
+      edge_count = 0;
+      polygon_count = 0;
+      lmt_count = 0;
+      vertex_count = 0;
+      st_count = 0;
+      it_count = 0;
+    }
+    
+    public EdgeNode new_edge()
+    {
+      if( edge_count == edges.length )
+        {
+          EdgeNode[] newedges = new EdgeNode[edge_count*2];
+          System.arraycopy(edges, 0, newedges, 0, edge_count);
+          edges = newedges;
+        }
+      EdgeNode edge = edges[edge_count];
+      if( edge == null )
+        {
+          edge = new EdgeNode();
+          edges[edge_count] = edge;
+        }
+      else
+        {
+          edge.reset();
+        }
+      edge_count++;
+      return edge;
+    }
+    
+    public PolygonNode new_polygon_node()
+    {
+      if( polygon_count == polygon_nodes.length )
+        {
+          PolygonNode[] newnodes = new PolygonNode[polygon_count*2];
+          System.arraycopy(polygon_nodes, 0, newnodes, 0, polygon_count);
+          polygon_nodes = newnodes;
+        }
+      PolygonNode node = polygon_nodes[polygon_count];
+      if( node == null )
+        {
+          node = new PolygonNode( this );
+          polygon_nodes[polygon_count] = node;
+        }
+      node.reset();
+      polygon_count++;
+      return node;
+    }
+    
+    public LmtNode new_lmt_node( float y )
+    {
+      if( lmt_count == lmt_nodes.length )
+        {
+          LmtNode[] newnodes = new LmtNode[lmt_count*2];
+          System.arraycopy(lmt_nodes, 0, newnodes, 0, lmt_count);
+          lmt_nodes = newnodes;
+        }
+      LmtNode node = lmt_nodes[lmt_count];
+      if( node == null )
+        {
+          node = new LmtNode();
+          lmt_nodes[lmt_count] = node;
+        }
+      node.y = y;
+      node.first_bound = null;
+      node.next = null;
+      lmt_count++;
+      return node;
+    }
+    
+    public int new_vertex( float x, float y )
+    {
+      if( vertex_count == vertex_next.length )
+        {
+          int n = vertex_count*2;
+          float[] newx = new float[n];
+          float[] newy = new float[n];
+          int[] newnext = new int[n];
+          System.arraycopy(vertex_x, 0, newx, 0, vertex_count);
+          System.arraycopy(vertex_y, 0, newy, 0, vertex_count);
+          System.arraycopy(vertex_next, 0, newnext, 0, vertex_count);
+          vertex_x = newx;
+          vertex_y = newy;
+          vertex_next = newnext;
+        }
+      vertex_x[vertex_count] = x;
+      vertex_y[vertex_count] = y;
+      vertex_next[vertex_count] = NONE;
+      return vertex_count++;
+    }
+    
+    public int new_st_node( EdgeNode edge, int prev )
+    {
+      if( st_count == st_prev.length )
+        {
+          int n = st_count*2;
+          EdgeNode[] newedge = new EdgeNode[n];
+          float[] newxb = new float[n];
+          float[] newxt = new float[n];
+          float[] newdx = new float[n];
+          int[] newprev = new int[n];
+          System.arraycopy(st_edge, 0, newedge, 0, st_count);
+          System.arraycopy(st_xb, 0, newxb, 0, st_count);
+          System.arraycopy(st_xt, 0, newxt, 0, st_count);
+          System.arraycopy(st_dx, 0, newdx, 0, st_count);
+          System.arraycopy(st_prev, 0, newprev, 0, st_count);
+          st_edge = newedge;
+          st_xb = newxb;
+          st_xt = newxt;
+          st_dx = newdx;
+          st_prev = newprev;
+        }
+      st_edge[st_count] = edge;
+      st_xb[st_count] = edge.xb;
+      st_xt[st_count] = edge.xt;
+      st_dx[st_count] = edge.dx;
+      st_prev[st_count] = prev;
+      return st_count++;
+    }
+    
+    public int new_it_node( EdgeNode edge0, EdgeNode edge1, float x, float y )
+    {
+      if( it_count == it_next.length )
+        {
+          int n = it_count*2;
+          EdgeNode[] newie0 = new EdgeNode[n];
+          EdgeNode[] newie1 = new EdgeNode[n];
+          float[] newx = new float[n];
+          float[] newy = new float[n];
+          int[] newnext = new int[n];
+          System.arraycopy(it_ie0, 0, newie0, 0, it_count);
+          System.arraycopy(it_ie1, 0, newie1, 0, it_count);
+          System.arraycopy(it_x, 0, newx, 0, it_count);
+          System.arraycopy(it_y, 0, newy, 0, it_count);
+          System.arraycopy(it_next, 0, newnext, 0, it_count);
+          it_ie0 = newie0;
+          it_ie1 = newie1;
+          it_x = newx;
+          it_y = newy;
+          it_next = newnext;
+        }
+      it_ie0[it_count] = edge0;
+      it_ie1[it_count] = edge1;
+      it_x[it_count] = x;
+      it_y[it_count] = y;
+      it_next[it_count] = NONE;
+      return it_count++;
+    }
+    
+    /**
+     * Builds the intersection table for the current scanbeam, replacing
+     * the one of the previous scanbeam, and returns its first node.
+     */
+    public int build_intersection_table( AetTree aet, float dy )
+    {
+      st_count = 0;
+      it_count = 0;
+      it_top = NONE;
+      int st = NONE;
+      
+      /* Process each AET edge */
+      for (EdgeNode edge = aet.top_node; (edge != null); edge = edge.next)
+        {
+          if( (edge.bstate_above == BundleState.BUNDLE_HEAD) ||
+              (edge.bundle_above[CLIP] != 0) ||
+              (edge.bundle_above[SUBJ] != 0) )
+            {
+              st = add_st_edge(this, st, edge, dy);
+            }
+        }
+      return it_top;
+    }
+  }
+  
+  // -------------
+  // --- DEBUG ---
+  // -------------
+  static void print_sbt( float[] sbt )
+  {
+    System.out.println("");
+    System.out.println("sbt.length="+sbt.length);
+    for( int i = 0; i < sbt.length; i++ )
+      {
+        System.out.println("sbt["+i+"]="+sbt[i]);
+      }
+  }
+}
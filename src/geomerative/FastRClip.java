@@ -142,7 +142,7 @@ class FastRClip
     if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
         !subj.isEmpty() && !clip.isEmpty() )
       {
-        minimax_test(subj, clip, op);
+        RClip.minimax_test(subj, clip, op);
       }
     
     /* Build LMT */
@@ -732,7 +732,7 @@ class FastRClip
     if( ((op == OperationType.GPC_INT) || (op == OperationType.GPC_DIFF)) && 
         !subj.isEmpty() && !clip.isEmpty() )
       {
-        minimax_test(subj, clip, op);
+        RClip.minimax_test(subj, clip, op);
       }
     
     /* Build LMT */
@@ -1527,73 +1527,6 @@ class FastRClip
     }
   }
   
-  private static RRectangle[] create_contour_bboxes( RPolygon p )
-  {
-    RRectangle[] box = new RRectangle[p.getNumInnerPoly()];
-    
-    /* Construct contour bounding boxes */
-    for ( int c= 0; c < p.getNumInnerPoly(); c++)
-      {
-        RPolygon inner_poly = p.getInnerPoly(c);
-        box[c] = inner_poly.getBBox();
-      }
-    return box;  
-  }
-  
-  private static void minimax_test( RPolygon subj, RPolygon clip, OperationType op )
-  {
-    RRectangle[] s_bbox = create_contour_bboxes(subj);
-    RRectangle[] c_bbox = create_contour_bboxes(clip);
-    
-    int subj_num_poly = subj.getNumInnerPoly();
-    int clip_num_poly = clip.getNumInnerPoly();
-    boolean[][] o_table = new boolean[subj_num_poly][clip_num_poly];
-    
-    /* Check all subject contour bounding boxes against clip boxes */
-    for( int s = 0; s < subj_num_poly; s++ )
-      {
-        for( int c= 0; c < clip_num_poly; c++ )
-          {
-            o_table[s][c] =
-              (!((s_bbox[s].getMaxX() < c_bbox[c].getMinX()) ||
-                 (s_bbox[s].getMinX() > c_bbox[c].getMaxX()))) &&
-              (!((s_bbox[s].getMaxY() < c_bbox[c].getMinY()) ||
-                 (s_bbox[s].getMinY() > c_bbox[c].getMaxY())));
-          }
-      }
-    
-    /* For each clip contour, search for any subject contour overlaps */
-    for( int c = 0; c < clip_num_poly; c++ )
-      {
-        boolean overlap = false;
-        for( int s = 0; !overlap && (s < subj_num_poly); s++)
-          {
-            overlap = o_table[s][c];
-          }
-        if (!overlap)
-          {
-            clip.setContributing( c, false ); // Flag non contributing status
-          }
-      }  
-    
-    if (op == OperationType.GPC_INT)
-      {  
-        /* For each subject contour, search for any clip contour overlaps */
-        for ( int s= 0; s < subj_num_poly; s++)
-          {
-            boolean overlap = false;
-            for ( int c= 0; !overlap && (c < clip_num_poly); c++)
-              {
-                overlap = o_table[s][c];
-              }
-            if (!overlap)
-              {
-                subj.setContributing( s, false ); // Flag non contributing status
-              }
-          }  
-      }
-  }
-  
   private static LmtNode bound_list( LmtTable lmt_table, float y )
   {
     if( lmt_table.top_node == null )
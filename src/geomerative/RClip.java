@@ -85,6 +85,11 @@ class RClip
   
   private static final boolean INVERT_TRISTRIPS = false ;
   
+  /* The clipper cores, see currentEngine() */
+  static final int SLOW_ENGINE  = 0 ;
+  static final int FAST_ENGINE  = 1 ;
+  static final int ARRAY_ENGINE = 2 ;
+  
   // ------------------------
   // --- Member Variables ---
   // ------------------------
@@ -214,6 +219,380 @@ class RClip
     return clip( OperationType.GPC_DIFF, p1, new RPolygon(), RPolygon.class );
   }
   
+  /**
+   * Return the result of applying <code>op</code> to all the <code>polys</code>.
+   * Instead of growing one result by one polygon at a time, the polygons are sorted
+   * along a Z-order curve of the centers of their bounding boxes and merged pairwise,
+   * level by level, so that neighbouring polygons are merged first and each clip works
+   * on operands of similar size.  Null polygons are taken as empty ones.  Only
+   * <code>GPC_UNION</code>, <code>GPC_XOR</code> and <code>GPC_INT</code> can be used,
+   * the order of the operands does not matter to them.
+   *
+   * @param op    The operation to perform
+   * @param polys The polygons to operate on
+   */
+  static RPolygon cascade( OperationType op, RPolygon[] polys )
+  {
+    return cascade( op, polys, 1 );
+  }
+  
+  /**
+   * Same as <code>cascade(op, polys)</code>, with the merges spread over
+   * <code>threads</code> threads.  The merges are the same whatever the number of
+   * threads, so is the result.
+   *
+   * @param op      The operation to perform
+   * @param polys   The polygons to operate on
+   * @param threads The number of threads to use
+   */
+  static RPolygon cascade( OperationType op, RPolygon[] polys, int threads )
+  {
+    if( op == OperationType.GPC_DIFF )
+      {
+        throw new IllegalArgumentException( "The difference can not be cascaded" );
+      }
+    
+    Cascade leaves = new Cascade( op, polys.length );
+    for( int i = 0; i < polys.length; i++ )
+      {
+        leaves.finish( i, polys[i] );
+      }
+    return leaves.merge( threads );
+  }
+  
+  /**
+   * Same as <code>cascade(op, polys, threads)</code> on the polygons of the
+   * <code>shapes</code>, which are also polygonized on <code>threads</code> threads.
+   *
+   * @param op      The operation to perform
+   * @param shapes  The shapes to operate on
+   * @param seg     The segmentator used to polygonize the shapes
+   * @param threads The number of threads to use
+   */
+  static RPolygon cascade( OperationType op, RShape[] shapes, RSegmentator seg, int threads )
+  {
+    if( op == OperationType.GPC_DIFF )
+      {
+        throw new IllegalArgumentException( "The difference can not be cascaded" );
+      }
+    
+    Cascade leaves = new Cascade( op, shapes.length );
+    leaves.shapes = shapes;
+    leaves.seg = seg;
+    leaves.run( threads );
+    if( leaves.error != null )
+      {
+        throw leaves.error;
+      }
+    return leaves.merge( threads );
+  }
+  
+  /* Spreads the 15 low bits of v over the even bits of the result */
+  private static int spreadBits( int v )
+  {
+    v &= 0x7fff;
+    v = (v | (v << 8)) & 0x00ff00ff;
+    v = (v | (v << 4)) & 0x0f0f0f0f;
+    v = (v | (v << 2)) & 0x33333333;
+    v = (v | (v << 1)) & 0x55555555;
+    return v;
+  }
+  
+  /**
+   * The nodes of a cascade, laid out level by level in arrays: the first ones
+   * are the operands, each of the following ones is the result of clipping the
+   * two nodes given by <code>left</code> and <code>right</code>.  The jobs,
+   * polygonizing an operand or clipping two nodes, are handed out in the order
+   * of the nodes, so the nodes a job needs have always been handed out before
+   * it, and a thread only waits for other threads and never for a job that
+   * nobody has started.  The jobs start at <code>first</code>, the nodes before are
+   * done beforehand.  Clipping two results of the clipper whose bounding
+   * boxes are apart just gathers their contours.  The operands may overlap
+   * themselves, so they go through the clipper anyway unless intersecting.
+   */
+  private static class Cascade implements Runnable
+  {
+    OperationType op;
+    int engine;
+    
+    /* The shapes to polygonize into the first nodes, if any */
+    RShape[] shapes;
+    RSegmentator seg;
+    
+    RPolygon[] nodes;
+    float[][] boxes;
+    int[] left;
+    int[] right;
+    boolean[] done;
+    
+    int first;
+    int next;
+    int count;
+    boolean empty;
+    RuntimeException error;
+    
+    Cascade( OperationType op, int size )
+    {
+      this.op = op;
+      this.engine = currentEngine();
+      this.nodes = new RPolygon[size];
+      this.boxes = new float[size][];
+      this.left = new int[size];
+      this.right = new int[size];
+      this.done = new boolean[size];
+      this.count = size;
+    }
+    
+    /**
+     * Sorts the operands, builds the tree of the merges over them and runs it.
+     */
+    RPolygon merge( int threads )
+    {
+      if( empty )
+        {
+          return new RPolygon();
+        }
+      
+      /* Drop the empty operands and find the bounding box of all of them */
+      int n = 0;
+      float[] total = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+      int[] operands = new int[count];
+      for( int i = 0; i < count; i++ )
+        {
+          if( nodes[i].isEmpty() )
+            {
+              if( op == OperationType.GPC_INT )
+                {
+                  return new RPolygon();
+                }
+              continue;
+            }
+          RGeomElem.addToBounds( total, boxes[i] );
+          operands[n++] = i;
+        }
+      
+      if( n == 0 )
+        {
+          return new RPolygon();
+        }
+      
+      if( n == 1 )
+        {
+          return nonNull( RClip.clip( OperationType.GPC_UNION, nodes[operands[0]], new RPolygon(), RPolygon.class, engine ) );
+        }
+      
+      /* Sort along the Z-order curve, the index in the low bits keeps the order stable */
+      float w = Math.max( total[2] - total[0], Float.MIN_VALUE );
+      float h = Math.max( total[3] - total[1], Float.MIN_VALUE );
+      long[] keys = new long[n];
+      for( int i = 0; i < n; i++ )
+        {
+          float[] box = boxes[operands[i]];
+          int qx = (int)(((box[0] + box[2]) / 2F - total[0]) / w * 32767F);
+          int qy = (int)(((box[1] + box[3]) / 2F - total[1]) / h * 32767F);
+          long morton = spreadBits( qx ) | (spreadBits( qy ) << 1);
+          keys[i] = (morton << 32) | operands[i];
+        }
+      java.util.Arrays.sort( keys );
+      
+      /* The tree of a cascade over n operands has n-1 merges */
+      Cascade tree = new Cascade( op, 2*n - 1 );
+      tree.engine = engine;
+      int[] level = new int[n];
+      for( int i = 0; i < n; i++ )
+        {
+          int operand = (int)(keys[i] & 0xffffffffL);
+          tree.nodes[i] = nodes[operand];
+          tree.boxes[i] = boxes[operand];
+          tree.done[i] = true;
+          level[i] = i;
+        }
+      
+      int node = tree.first = tree.next = n;
+      while( n > 1 )
+        {
+          int m = 0;
+          for( int i = 0; i < n; i += 2 )
+            {
+              if( i + 1 < n )
+                {
+                  tree.left[node] = level[i];
+                  tree.right[node] = level[i+1];
+                  level[m] = node++;
+                }
+              else
+                {
+                  level[m] = level[i];
+                }
+              m++;
+            }
+          n = m;
+        }
+      
+      tree.run( threads );
+      if( tree.error != null )
+        {
+          throw tree.error;
+        }
+      if( tree.empty )
+        {
+          return new RPolygon();
+        }
+      return tree.nodes[tree.count - 1];
+    }
+    
+    /**
+     * Runs the jobs from <code>next</code> on, on the current thread and
+     * <code>threads - 1</code> more.
+     */
+    void run( int threads )
+    {
+      Thread[] helpers = new Thread[Math.max( 0, Math.min( threads, count - next ) - 1 )];
+      for( int i = 0; i < helpers.length; i++ )
+        {
+          helpers[i] = new Thread( this );
+          helpers[i].start();
+        }
+      run();
+      for( int i = 0; i < helpers.length; i++ )
+        {
+          try
+            {
+              helpers[i].join();
+            }
+          catch( InterruptedException e )
+            {
+              throw new RuntimeException( e.toString() );
+            }
+        }
+    }
+    
+    public void run()
+    {
+      try
+        {
+          for( int job = take(); job >= 0; job = take() )
+            {
+              if( shapes != null )
+                {
+                  finish( job, shapes[job].toPolygon( seg ) );
+                }
+              else if( waitFor( left[job] ) && waitFor( right[job] ) )
+                {
+                  finish( job, clipPair( left[job], right[job] ) );
+                }
+            }
+        }
+      catch( RuntimeException e )
+        {
+          synchronized( this )
+            {
+              if( error == null )
+                {
+                  error = e;
+                }
+              notifyAll();
+            }
+        }
+    }
+    
+    /* The next job, or -1 when they are all handed out or the cascade is over */
+    synchronized int take()
+    {
+      if( next >= count || error != null || empty )
+        {
+          return -1;
+        }
+      return next++;
+    }
+    
+    /* Waits until the node is done, returns false if the cascade is over */
+    synchronized boolean waitFor( int node )
+    {
+      while( !done[node] && error == null && !empty )
+        {
+          try
+            {
+              wait();
+            }
+          catch( InterruptedException e )
+            {
+              throw new RuntimeException( e.toString() );
+            }
+        }
+      return done[node];
+    }
+    
+    synchronized void finish( int node, RPolygon p )
+    {
+      p = nonNull( p );
+      nodes[node] = p;
+      boxes[node] = bounds( p );
+      done[node] = true;
+      if( op == OperationType.GPC_INT && p.isEmpty() )
+        {
+          empty = true;
+        }
+      notifyAll();
+    }
+    
+    private RPolygon clipPair( int i, int j )
+    {
+      RPolygon a = nodes[i];
+      RPolygon b = nodes[j];
+      float[] boxa = boxes[i];
+      float[] boxb = boxes[j];
+      boolean apart = boxa[2] < boxb[0] || boxb[2] < boxa[0] || boxa[3] < boxb[1] || boxb[3] < boxa[1];
+      boolean operand = (i < first || j < first);
+      if( !apart || (operand && op != OperationType.GPC_INT) )
+        {
+          return RClip.clip( op, a, b, RPolygon.class, engine );
+        }
+      
+      RPolygon result = new RPolygon();
+      if( op != OperationType.GPC_INT )
+        {
+          /* Outer contours first and holes last, as the clipper does */
+          for( int hole = 0; hole < 2; hole++ )
+            {
+              addContours( result, a, hole == 1 );
+              addContours( result, b, hole == 1 );
+            }
+        }
+      return result;
+    }
+    
+    /* Adds copies of the outer contours or of the holes of p to result */
+    private static void addContours( RPolygon result, RPolygon p, boolean holes )
+    {
+      for( int i = 0; p.contours != null && i < p.contours.length; i++ )
+        {
+          if( p.contours[i].isHole() == holes )
+            {
+              result.addContour( new RContour( p.contours[i] ) );
+            }
+        }
+    }
+    
+    private static float[] bounds( RPolygon p )
+    {
+      float[] box = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+      for( int c = 0; p.contours != null && c < p.contours.length; c++ )
+        {
+          RPoint[] points = p.contours[c].points;
+          for( int j = 0; points != null && j < points.length; j++ )
+            {
+              RGeomElem.addToBounds( box, points[j].x, points[j].y );
+            }
+        }
+      return box;
+    }
+  }
+  
+  private static RPolygon nonNull( RPolygon p )
+  {
+    return (p == null) ? new RPolygon() : p;
+  }
   
   // -----------------------
   // --- Private Methods ---
@@ -238,9 +617,50 @@ class RClip
    * <code>clip()</code> is the main method of the clipper algorithm.
    * This is where the conversion from really begins.
    */
-  private static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class polyClass )
+  static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class polyClass )
   {
-    if(RG.useFastClip) {
+    return clip( op, subj, clip, polyClass, currentEngine() );
+  }
+  
+  /**
+   * The clipper core chosen by <code>RG.useFastClip</code> and <code>RG.useArrayClip</code>.
+   * Work spread over several threads reads it once, so that all of it is done by the same core.
+   */
+  static int currentEngine()
+  {
+    if( !RG.useFastClip )
+      {
+        return SLOW_ENGINE;
+      }
+    return RG.useArrayClip ? ARRAY_ENGINE : FAST_ENGINE;
+  }
+  
+  /**
+   * The same as <code>clip()</code> on flat polygons.  The array clipper
+   * reads and writes them directly, the other ones go through
+   * <code>RPolygon</code>.  An empty result is an empty flat polygon.
+   */
+  static RFlatPolygon clip( OperationType op, RFlatPolygon subj, RFlatPolygon clip )
+  {
+    RFlatPolygon result;
+    if( currentEngine() == ARRAY_ENGINE )
+      {
+        result = ArrayRClip.clip( op, subj, clip );
+      }
+    else
+      {
+        RPolygon res = clip( op, subj.toPolygon(), clip.toPolygon(), RPolygon.class );
+        result = (res == null) ? null : new RFlatPolygon( res );
+      }
+    return (result == null) ? new RFlatPolygon() : result;
+  }
+  
+  private static RPolygon clip( OperationType op, RPolygon subj, RPolygon clip, Class polyClass, int engine )
+  {
+    if(engine == ARRAY_ENGINE) {
+      return ArrayRClip.clip(op, subj, clip, polyClass);
+    }
+    if(engine == FAST_ENGINE) {
       return FastRClip.clip(op, subj, clip, polyClass);
     }
     
@@ -868,6 +1288,9 @@ class RClip
   private static RMesh clip( OperationType op, RPolygon subj, RPolygon clip )
   {
     if(RG.useFastClip) {
+      if(RG.useArrayClip) {
+        return ArrayRClip.clip(op, subj, clip);
+      }
       return FastRClip.clip(op, subj, clip);
     }
     
@@ -1607,6 +2030,26 @@ class RClip
     return clip(OperationType.GPC_UNION, s_clean, c);
   }
   
+  /**
+   * Tesselates the polygon into an indexed mesh.  The array clipper writes
+   * the triangles of its tristrips directly, the other ones convert the
+   * <code>RMesh</code> they give.  An empty result is an empty mesh.
+   */
+  public static RIndexedMesh polygonToIndexedMesh( RPolygon s )
+  {
+    RIndexedMesh result;
+    if( currentEngine() == ARRAY_ENGINE )
+      {
+        result = ArrayRClip.polygonToIndexedMesh( s );
+      }
+    else
+      {
+        RMesh mesh = polygonToMesh( s );
+        result = (mesh == null) ? null : new RIndexedMesh( mesh );
+      }
+    return (result == null) ? new RIndexedMesh() : result;
+  }
+  
   private static boolean EQ(float a, float b)
   {
     return (Math.abs(a - b) <= GPC_EPSILON);
@@ -1656,73 +2099,143 @@ class RClip
     return d.bot.x + d.dx*(j-d.bot.y);
   }
   
-  private static RRectangle[] create_contour_bboxes( RPolygon p )
+  /**
+   * Flags the contours that can not contribute to the result: the clip
+   * contours that touch no subject contour and, for the intersection, the
+   * subject contours that touch no clip contour.  If the bounding boxes of
+   * the two polygons are apart all those contours are flagged at once.
+   * Otherwise the contour bounding boxes are sorted by their left side and
+   * swept from left to right, keeping the list of the boxes that reach the
+   * sweep line, so only boxes that overlap in x are ever compared.
+   */
+  static void minimax_test( RPolygon subj, RPolygon clip, OperationType op )
   {
-    RRectangle[] box = new RRectangle[p.getNumInnerPoly()] ;
+    int subj_num_poly = subj.getNumInnerPoly();
+    int clip_num_poly = clip.getNumInnerPoly();
     
-    /* Construct contour bounding boxes */
-    for ( int c= 0; c < p.getNumInnerPoly(); c++)
+    /* Min x, min y, max x and max y of each contour, subject contours first */
+    float[] box = new float[4*(subj_num_poly + clip_num_poly)];
+    create_contour_bboxes( subj, box, 0 );
+    create_contour_bboxes( clip, box, subj_num_poly );
+    
+    boolean[] contributing = minimax_test( box, subj_num_poly, clip_num_poly, op );
+    for( int c = 0; c < clip_num_poly; c++ )
+      {
+        if( !contributing[subj_num_poly + c] )
+          {
+            clip.setContributing( c, false ); // Flag non contributing status
+          }
+      }
+    for( int s = 0; s < subj_num_poly; s++ )
       {
-        RPolygon inner_poly = p.getInnerPoly(c);
-        box[c] = inner_poly.getBBox();
+        if( !contributing[s] )
+          {
+            subj.setContributing( s, false ); // Flag non contributing status
+          }
       }
-    return box;  
   }
   
-  private static void minimax_test( RPolygon subj, RPolygon clip, OperationType op )
+  /**
+   * The same test on the contour boxes of <code>box</code>, the subject
+   * contours first.  Returns whether each contour can contribute instead
+   * of flagging it.
+   */
+  static boolean[] minimax_test( float[] box, int subj_num_poly, int clip_num_poly, OperationType op )
   {
-    RRectangle[] s_bbox = create_contour_bboxes(subj);
-    RRectangle[] c_bbox = create_contour_bboxes(clip);
-    
-    int subj_num_poly = subj.getNumInnerPoly();
-    int clip_num_poly = clip.getNumInnerPoly();
-    boolean[][] o_table = new boolean[subj_num_poly][clip_num_poly] ;
-    
-    /* Check all subject contour bounding boxes against clip boxes */
-    for( int s = 0; s < subj_num_poly; s++ )
+    int num_poly = subj_num_poly + clip_num_poly;
+    boolean[] overlap = new boolean[num_poly];
+    float[] s_total = total_bbox( box, 0, subj_num_poly );
+    float[] c_total = total_bbox( box, subj_num_poly, num_poly );
+    if( !(s_total[2] < c_total[0] || s_total[0] > c_total[2] ||
+          s_total[3] < c_total[1] || s_total[1] > c_total[3]) )
       {
-        for( int c= 0; c < clip_num_poly ; c++ )
+        /* Sort the boxes by their left side, the index in the low bits */
+        long[] keys = new long[num_poly];
+        for( int i = 0; i < num_poly; i++ )
           {
-            o_table[s][c] =
-              (!((s_bbox[s].getMaxX() < c_bbox[c].getMinX()) ||
-                 (s_bbox[s].getMinX() > c_bbox[c].getMaxX()))) &&
-              (!((s_bbox[s].getMaxY() < c_bbox[c].getMinY()) ||
-                 (s_bbox[s].getMinY() > c_bbox[c].getMaxY())));
+            keys[i] = ((long)sortable_bits( box[4*i] ) << 32) | i;
+          }
+        java.util.Arrays.sort( keys );
+        
+        int[] active = new int[num_poly];
+        int active_num = 0;
+        for( int k = 0; k < num_poly; k++ )
+          {
+            int i = (int)(keys[k] & 0xffffffffL);
+            boolean i_subj = (i < subj_num_poly);
+            int kept = 0;
+            for( int a = 0; a < active_num; a++ )
+              {
+                int j = active[a];
+                if( box[4*j+2] < box[4*i] )
+                  {
+                    /* Ends left of this box and of all the boxes to come */
+                    continue;
+                  }
+                active[kept++] = j;
+                if( ((j < subj_num_poly) != i_subj) &&
+                    !((box[4*j+3] < box[4*i+1]) || (box[4*j+1] > box[4*i+3])) )
+                  {
+                    overlap[i] = true;
+                    overlap[j] = true;
+                  }
+              }
+            active_num = kept;
+            active[active_num++] = i;
           }
       }
     
-    /* For each clip contour, search for any subject contour overlaps */
-    for( int c = 0; c < clip_num_poly; c++ )
+    /* Only the intersection drops the subject contours without any clip contour overlaps */
+    if( op != OperationType.GPC_INT )
       {
-        boolean overlap = false;
-        for( int s = 0; !overlap && (s < subj_num_poly) ; s++)
+        for( int s = 0; s < subj_num_poly; s++ )
           {
-            overlap = o_table[s][c];
+            overlap[s] = true;
           }
-        if (!overlap)
+      }
+    return overlap;
+  }
+  
+  /* Writes the bounding box of each contour of p to box, from contour offset on */
+  private static void create_contour_bboxes( RPolygon p, float[] box, int offset )
+  {
+    for( int c = 0; c < p.getNumInnerPoly(); c++ )
+      {
+        int b = 4*(offset + c);
+        box[b] = box[b+1] = Float.POSITIVE_INFINITY;
+        box[b+2] = box[b+3] = Float.NEGATIVE_INFINITY;
+        RPoint[] points = p.contours[c].points;
+        for( int i = 0; points != null && i < points.length; i++ )
           {
-            clip.setContributing( c, false ); // Flag non contributing status
+            box[b]   = Math.min( box[b],   points[i].x );
+            box[b+1] = Math.min( box[b+1], points[i].y );
+            box[b+2] = Math.max( box[b+2], points[i].x );
+            box[b+3] = Math.max( box[b+3], points[i].y );
           }
-      }  
-    
-    if (op == OperationType.GPC_INT)
-      {  
-        /* For each subject contour, search for any clip contour overlaps */
-        for ( int s= 0; s < subj_num_poly; s++)
-          {
-            boolean overlap = false;
-            for ( int c= 0; !overlap && (c < clip_num_poly); c++)
-              {
-                overlap = o_table[s][c];
-              }
-            if (!overlap)
-              {
-                subj.setContributing( s, false ); // Flag non contributing status
-              }
-          }  
       }
   }
   
+  /* The box around the contour boxes from start to end */
+  private static float[] total_bbox( float[] box, int start, int end )
+  {
+    float[] total = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+    for( int i = start; i < end; i++ )
+      {
+        total[0] = Math.min( total[0], box[4*i] );
+        total[1] = Math.min( total[1], box[4*i+1] );
+        total[2] = Math.max( total[2], box[4*i+2] );
+        total[3] = Math.max( total[3], box[4*i+3] );
+      }
+    return total;
+  }
+  
+  /* Bits of f that sort as signed ints in the same order as the floats */
+  private static int sortable_bits( float f )
+  {
+    int bits = Float.floatToIntBits( f + 0.0F );
+    return (bits < 0) ? (bits ^ 0x7fffffff) : bits;
+  }
+  
   private static LmtNode bound_list( LmtTable lmt_table, float y )
   {
     if( lmt_table.top_node == null )
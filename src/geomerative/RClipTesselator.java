@@ -0,0 +1,41 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * Tesselates with the triangle strips made by RClip.  The clipper works
+ * with the even-odd rule only, so under the non-zero rule the contours are
+ * first resolved by ROffset into contours that do not cross.
+ */
+class RClipTesselator implements RTesselator
+{
+  public RIndexedMesh tesselate(RPolygon p, int fillRule){
+    switch(fillRule){
+    case RG.NONZERO:
+      return RClip.polygonToIndexedMesh(ROffset.resolve(p, RG.NONZERO));
+
+    case RG.EVENODD:
+      return RClip.polygonToIndexedMesh(p);
+
+    default:
+      throw new RuntimeException("The fill rule must be RG.NONZERO or RG.EVENODD.");
+    }
+  }
+}
@@ -35,7 +35,20 @@ public class RCommand extends RGeomElem
   public RPoint endPoint;
   int commandType;
 
-  RPoint[] curvePoints;
+  /* Accumulated lengths at uniform steps of t, calculated when needed */
+  float[] lenTable;
+
+  /* Parameters at uniform steps of the length and their derivatives over a step, one after the other, calculated when needed */
+  float[] paramTable;
+
+  /* Whether the parameters interpolated between two steps of paramTable need a Newton step to be within the length tolerance */
+  boolean[] paramRefine;
+
+  /* Polynomial coefficients {ax, bx, cx, dx, ay, by, cy, dy} of x(t) = ((ax*t + bx)*t + cx)*t + dx, calculated when needed */
+  float[] coefs;
+
+  /* Coordinates of the start, control and end points when they were last checked, to notice the handles moved in place */
+  private float[] handleCoords;
 
   /**
    * @invisible
@@ -62,6 +75,10 @@ public class RCommand extends RGeomElem
    * @invisible
    * */
   public static final int UNIFORMSTEP = 2;
+  /**
+   * @invisible
+   * */
+  public static final int TOLERANCE = 3;
 
   public static int segmentType = UNIFORMLENGTH;
 
@@ -88,6 +105,31 @@ public class RCommand extends RGeomElem
   static int segmentSteps = 0;
   static boolean segmentLines = false;
 
+  /* Parameters for TOLERANCE */
+  static final int segmentToleranceStepsLimit = 1 << 16;
+  static float segmentTolerance = 0.25F;
+
+  /* Parameters of the intersection of curves */
+  static final int intersectionRecursionLimit = 32;
+  static final double intersectionTolerance = 1e-3;
+  static final double intersectionEpsilon = 1e-9;
+  static final float intersectionAdvEpsilon = 1e-4F;
+
+  /* Parameters of the search of closest points */
+  static final int closestSteps = 16;
+  static final int closestIterations = 30;
+  static final double closestTolerance = 1e-2;
+
+  /* Parameters of the arc length calculation */
+  static final int lengthTableSteps = 16;
+  static final int paramTableSteps = 64;
+  static final int lengthRecursionLimit = 8;
+  static float lengthTolerance = 0.01F;
+
+  /* Abscissas and weights of the 5 point Gauss-Legendre quadrature on [-1, 1] */
+  static final double[] gaussAbscissas = {0.0, -0.5384693101056831, 0.5384693101056831, -0.9061798459386640, 0.9061798459386640};
+  static final double[] gaussWeights = {0.5688888888888889, 0.4786286704993665, 0.4786286704993665, 0.2369268850561891, 0.2369268850561891};
+
   int oldSegmentType = UNIFORMLENGTH;
 
   /* Parameters for ADAPTATIVE (dependent of the PGraphics on which drawing) */
@@ -280,7 +322,7 @@ public class RCommand extends RGeomElem
 
 
   /**
-   * Use this to set the segmentator type.  ADAPTATIVE segmentator minimizes the number of segments avoiding perceptual artifacts like angles or cusps.  Use this in order to have Polygons and Meshes with the fewest possible vertices.  This can be useful when using or drawing a lot the same Polygon or Mesh deriving from this Shape.  UNIFORMLENGTH segmentator is the slowest segmentator and it segments the curve on segments of equal length.  This can be useful for very specific applications when for example drawing incrementaly a shape with a uniform speed.  UNIFORMSTEP segmentator is the fastest segmentator and it segments the curve based on a constant value of the step of the curve parameter, or on the number of segments wanted.  This can be useful when segmpointsentating very often a Shape or when we know the amount of segments necessary for our specific application.
+   * Use this to set the segmentator type.  ADAPTATIVE segmentator minimizes the number of segments avoiding perceptual artifacts like angles or cusps.  Use this in order to have Polygons and Meshes with the fewest possible vertices.  This can be useful when using or drawing a lot the same Polygon or Mesh deriving from this Shape.  UNIFORMLENGTH segmentator is the slowest segmentator and it segments the curve on segments of equal length.  This can be useful for very specific applications when for example drawing incrementaly a shape with a uniform speed.  UNIFORMSTEP segmentator is the fastest segmentator and it segments the curve based on a constant value of the step of the curve parameter, or on the number of segments wanted.  This can be useful when segmpointsentating very often a Shape or when we know the amount of segments necessary for our specific application.  TOLERANCE segmentator computes beforehand the number of uniform steps needed for each curve to stay within a maximum distance of the segments.  This is fast and gives a predictable number of vertices for a given precision.
    * @eexample setSegment
    * */
   public static void setSegmentator(int segmentatorType){
@@ -294,7 +336,10 @@ public class RCommand extends RGeomElem
    * */
   public static void setSegmentGraphic(PGraphics g){
     // Set the segmentApproxScale from the graphic context g
-    segmentApproxScale = 1.0F;
+    segmentApproxScale = RSegmentator.getScale(g);
+    if(segmentApproxScale == 0F){
+      segmentApproxScale = 1.0F;
+    }
 
     // Set all the gfx-context dependent parameters for all segmentators
 
@@ -371,6 +416,33 @@ public class RCommand extends RGeomElem
   }
 
 
+  /**
+   * Use this to set the maximum distance between the curve and its segments for the TOLERANCE segmentator.
+   *
+   * @param tolerance  the maximum distance between the curve and the resulting segments, must be greater than 0.
+   */
+  public static void setSegmentTolerance(float tolerance){
+    //segmentType = TOLERANCE;
+    if(tolerance > 0F){
+      segmentTolerance = tolerance;
+    }else{
+      segmentTolerance = 0.25F;
+    }
+  }
+
+  /**
+   * Use this to set the maximum error allowed when calculating the length of cubic bezier curves.
+   *
+   * @param tolerance  the maximum error of the length of each curve, must be greater than 0.
+   */
+  public static void setLengthTolerance(float tolerance){
+    if(tolerance > 0F){
+      lengthTolerance = tolerance;
+    }else{
+      lengthTolerance = 0.01F;
+    }
+  }
+
   protected void saveSegmentatorContext(){
     oldSegmentType = RCommand.segmentType;
 
@@ -472,38 +544,75 @@ public class RCommand extends RGeomElem
    * @return RPoint[], the vertices returned in an array.
    * */
   public RPoint[] getPoints(){
-    return getPoints(true);
+    return getPoints(RSegmentator.getDefault());
   }
 
-  protected RPoint[] getPoints(boolean resetSegmentator){
+  /**
+   * Use this to return the points on the curve using a given segmentator instead of the one set with RG.setPolygonizer().  It returns the points in the way of an array of RPoint.
+   * @eexample getPoints
+   * @param seg  the segmentator to use.
+   * @return RPoint[], the vertices returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
+    RSegmentator.Run run = new RSegmentator.Run();
+    segment(seg, run);
+    return run.toPoints();
+  }
+
+  /**
+   * Use this to pass the points on the curve to a sink one by one, instead of returning them in an array.  The points are the same as the ones returned by getPoints().
+   * @eexample flatten
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RPointSink sink){
+    flatten(RSegmentator.getDefault(), sink);
+  }
+
+  /**
+   * Use this to pass the points on the curve to a sink one by one using a given segmentator.
+   * @eexample flatten
+   * @param seg  the segmentator to use.
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RSegmentator seg, RPointSink sink){
+    segment(seg, new RSegmentator.Run(sink));
+  }
 
+  protected RPoint[] getPoints(boolean resetSegmentator){
     if(resetSegmentator){
-      saveSegmentatorContext();
-      RCommand.segmentOffset = 0F;
-      RCommand.segmentAccOffset = 0F;
+      return getPoints();
     }
 
+    RSegmentator.Run run = new RSegmentator.Run();
+    run.accOffset = RCommand.segmentAccOffset;
+    segment(RSegmentator.getDefault(), run);
+    RCommand.segmentAccOffset = run.accOffset;
+    return run.toPoints();
+  }
 
-    RPoint[] result = null;
-    switch(segmentType){
+  /* Adds the points of the segmented command to the run */
+  void segment(RSegmentator seg, RSegmentator.Run run){
+    switch(seg.type){
     case ADAPTATIVE:
+      if(commandType != LINETO && isSmallerThan(seg.minSize)){
+        // Below the size of a pixel the curve is drawn as a line
+        run.add(startPoint, 0F);
+        run.add(endPoint, 1F);
+        break;
+      }
+
       switch(commandType){
       case LINETO:
-        result = new RPoint[2];
-        result[0] = startPoint;
-        result[1] = endPoint;
+        run.add(startPoint, 0F);
+        run.add(endPoint, 1F);
         break;
 
       case QUADBEZIERTO:
-        quadBezierAdaptative();
-        result = curvePoints;
-        curvePoints = null;
+        quadBezierAdaptative(seg, run);
         break;
 
       case CUBICBEZIERTO:
-        cubicBezierAdaptative();
-        result = curvePoints;
-        curvePoints = null;
+        cubicBezierAdaptative(seg, run);
         break;
       }
       break;
@@ -511,21 +620,15 @@ public class RCommand extends RGeomElem
     case UNIFORMLENGTH:
       switch(commandType){
       case LINETO:
-        lineUniformLength();
-        result = curvePoints;
-        curvePoints = null;
+        lineUniformLength(seg, run);
         break;
 
       case QUADBEZIERTO:
-        quadBezierUniformLength();
-        result = curvePoints;
-        curvePoints = null;
+        quadBezierUniformLength(seg, run);
         break;
 
       case CUBICBEZIERTO:
-        cubicBezierUniformLength();
-        result = curvePoints;
-        curvePoints = null;
+        cubicBezierUniformLength(seg, run);
         break;
       }
       break;
@@ -533,38 +636,41 @@ public class RCommand extends RGeomElem
     case UNIFORMSTEP:
       switch(commandType){
       case LINETO:
-        if(segmentLines){
-          lineUniformStep();
-          result = curvePoints;
-          curvePoints = null;
+        if(seg.lines){
+          lineUniformStep(seg, run);
         }else{
-          result = new RPoint[2];
-          result[0] = startPoint;
-          result[1] = endPoint;
+          run.add(startPoint, 0F);
+          run.add(endPoint, 1F);
         }
         break;
 
       case QUADBEZIERTO:
-        quadBezierUniformStep();
-        result = curvePoints;
-        curvePoints = null;
+        quadBezierUniformStep(seg, run);
         break;
 
       case CUBICBEZIERTO:
-        cubicBezierUniformStep();
-        result = curvePoints;
-        curvePoints = null;
+        cubicBezierUniformStep(seg, run);
         break;
       }
       break;
-    }
 
+    case TOLERANCE:
+      switch(commandType){
+      case LINETO:
+        run.add(startPoint, 0F);
+        run.add(endPoint, 1F);
+        break;
 
-    if(resetSegmentator){
-      restoreSegmentatorContext();
-    }
+      case QUADBEZIERTO:
+        quadBezierTolerance(seg, run);
+        break;
 
-    return result;
+      case CUBICBEZIERTO:
+        cubicBezierTolerance(seg, run);
+        break;
+      }
+      break;
+    }
   }
 
   /**
@@ -653,6 +759,144 @@ public class RCommand extends RGeomElem
     return getTangents(100);
   }
 
+  /**
+   * Use this to return many points on the curve at once.  It is much faster than calling getPoint() for each advancement, since no object is created for each point.
+   * @eexample getPoints
+   * @param ts  the parameters of advancement on the curve, with values between 0 and 1.
+   * @return float[], the x and y coordinates of the point for each advancement, one after the other.
+   * */
+  public float[] getPoints(float[] ts){
+    float[] c = getCoefficients();
+    float[] result = new float[2*ts.length];
+    for(int i=0; i<ts.length; i++){
+      evaluate(c, ts[i], false, result, 2*i);
+    }
+    return result;
+  }
+
+  /**
+   * Use this to return many tangents on the curve at once.  It is much faster than calling getTangent() for each advancement, since no object is created for each tangent.
+   * @eexample getTangents
+   * @param ts  the parameters of advancement on the curve, with values between 0 and 1.
+   * @return float[], the x and y coordinates of the tangent vector for each advancement, one after the other.
+   * */
+  public float[] getTangents(float[] ts){
+    float[] c = getCoefficients();
+    float[] result = new float[2*ts.length];
+    for(int i=0; i<ts.length; i++){
+      evaluate(c, ts[i], true, result, 2*i);
+    }
+    return result;
+  }
+
+  /* Writes the point or the tangent at t into out[off] and out[off+1], using Horner's rule on the polynomial coefficients */
+  void evaluate(float t, boolean tangent, float[] out, int off){
+    evaluate(getCoefficients(), t, tangent, out, off);
+  }
+
+  /* Writes the points or the tangents at the sorted lengths lens[from] to lens[to-1] along the curve into out, at twice the indices given by order, checking the handles once for all of them */
+  void evaluateAtLengths(float[] lens, int[] order, int from, int to, boolean tangent, float[] out){
+    if(from >= to){
+      return;
+    }
+
+    float[] c = getCoefficients();
+    float[] params = (commandType == LINETO) ? null : getParamTable();
+    for(int k=from; k<to; k++){
+      float t = (params == null) ? getParameterAtLength(lens[k]) : parameterAtLength(lens[k], lenTable, params);
+      evaluate(c, t, tangent, out, 2*order[k]);
+    }
+  }
+
+  /* Same as evaluate() with the coefficients given, so that the callers evaluating many points look them up once */
+  private static void evaluate(float[] c, float t, boolean tangent, float[] out, int off){
+    t = (t > 1F) ? 1F : t;
+    t = (t < 0F) ? 0F : t;
+
+    if(tangent){
+      out[off] = (3F*c[0]*t + 2F*c[1])*t + c[2];
+      out[off+1] = (3F*c[4]*t + 2F*c[5])*t + c[6];
+    }else{
+      out[off] = ((c[0]*t + c[1])*t + c[2])*t + c[3];
+      out[off+1] = ((c[4]*t + c[5])*t + c[6])*t + c[7];
+    }
+  }
+
+  /* The bounds contain the ends of the curve and the points where the derivative of x or y is zero */
+  float[] getBoundsArray(){
+    checkHandles();
+    if(bounds == null){
+      float[] b = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+      addToBounds(b, startPoint.x, startPoint.y);
+      addToBounds(b, endPoint.x, endPoint.y);
+
+      if(commandType != LINETO){
+        float[] c = getCoefficients();
+        float[] p = new float[2];
+        for(int axis=0; axis<2; axis++){
+          /* roots of the derivative 3*a*t^2 + 2*b*t + c */
+          float qa = 3F*c[4*axis];
+          float qb = 2F*c[4*axis+1];
+          float qc = c[4*axis+2];
+          if(Math.abs(qa) < 1e-12F){
+            if(qb != 0F){
+              addExtremumToBounds(b, -qc/qb, p);
+            }
+          }else{
+            float disc = qb*qb - 4F*qa*qc;
+            if(disc >= 0F){
+              float sq = (float)Math.sqrt(disc);
+              addExtremumToBounds(b, (-qb + sq)/(2F*qa), p);
+              addExtremumToBounds(b, (-qb - sq)/(2F*qa), p);
+            }
+          }
+        }
+      }
+      bounds = b;
+    }
+    return bounds;
+  }
+
+  private void addExtremumToBounds(float[] b, float t, float[] p){
+    if(t > 0F && t < 1F){
+      evaluate(t, false, p, 0);
+      addToBounds(b, p[0], p[1]);
+    }
+  }
+
+  float[] getCoefficients(){
+    checkHandles();
+    if(coefs == null){
+      float[] c = new float[8];
+      switch(commandType){
+      case QUADBEZIERTO:
+        c[1] = startPoint.x - 2F*controlPoints[0].x + endPoint.x;
+        c[2] = 2F*(controlPoints[0].x - startPoint.x);
+        c[5] = startPoint.y - 2F*controlPoints[0].y + endPoint.y;
+        c[6] = 2F*(controlPoints[0].y - startPoint.y);
+        break;
+
+      case CUBICBEZIERTO:
+        c[0] = endPoint.x - startPoint.x + 3F*(controlPoints[0].x - controlPoints[1].x);
+        c[1] = 3F*(startPoint.x - 2F*controlPoints[0].x + controlPoints[1].x);
+        c[2] = 3F*(controlPoints[0].x - startPoint.x);
+        c[4] = endPoint.y - startPoint.y + 3F*(controlPoints[0].y - controlPoints[1].y);
+        c[5] = 3F*(startPoint.y - 2F*controlPoints[0].y + controlPoints[1].y);
+        c[6] = 3F*(controlPoints[0].y - startPoint.y);
+        break;
+
+      default:
+        c[2] = endPoint.x - startPoint.x;
+        c[6] = endPoint.y - startPoint.y;
+        break;
+      }
+      c[3] = startPoint.x;
+      c[7] = startPoint.y;
+      coefs = c;
+    }
+    return coefs;
+  }
+
   /**
    * Use this to return a specific tangent on the curve.  It returns the RPoint representing the tangent vector for a given value of the advancement parameter t on the curve.
    * @eexample getTangent
@@ -693,7 +937,7 @@ public class RCommand extends RGeomElem
   }
 
   /**
-   * Use this to return arc length of a curve.  It returns the float representing the length given the value of the advancement parameter t on the curve. The current implementation of this function is very slow, not recommended for using during frame draw.
+   * Use this to return arc length of a curve.  It returns the float representing the length given the value of the advancement parameter t on the curve.  The length of quadratic beziers is calculated exactly.  The length of cubic beziers is integrated with a Gauss-Legendre quadrature within the error set by RCommand.setLengthTolerance(), and kept in a table until the command is modified, so that each call takes a constant time.
    * @eexample RCommand_getCurveLength
    * @param t float, the parameter of advancement on the curve. t must have values between 0 and 1.
    * @return float, the length returned.
@@ -705,38 +949,273 @@ public class RCommand extends RGeomElem
     t = (t > 1F) ? 1F : t;
     t = (t < 0F) ? 0F : t;
 
-    float dx, dy, dx2, dy2, t2;
+    float dx, dy;
 
     switch(commandType){
     case LINETO:
       dx = endPoint.x - startPoint.x;
       dy = endPoint.y - startPoint.y;
-      dx2 = dx*dx;
-      dy2 = dy*dy;
-      t2 = t*t;
-      //RG.parent().println("RCommand/LINETO::: getCurveLength: " + (float)Math.sqrt(dx2*t2 + dy2*t2));
-      return (float)Math.sqrt(dx2*t2 + dy2*t2);
+      return (float)Math.sqrt(dx*dx + dy*dy) * t;
 
     case QUADBEZIERTO:
-      /* calculate the curve point at parameter value t */
-      return quadBezierLength();
+      return (float)quadBezierLength(t);
 
     case CUBICBEZIERTO:
-      /* calculate the curve point at parameter value t */
-      return cubicBezierLength();
+      return lengthAt(t, getLengthTable());
     }
 
     return -1F;
   }
 
+  /* The length of a bezier at t, the length table being passed by the caller that checked the handles */
+  private float lengthAt(float t, float[] table){
+    if(commandType == QUADBEZIERTO){
+      return (float)quadBezierLength(t);
+    }
+    int i = (int)(t * lengthTableSteps);
+    if(i >= lengthTableSteps){
+      return table[lengthTableSteps];
+    }
+    return table[i] + (float)gaussLegendreLength((float)i / lengthTableSteps, t);
+  }
+
   /**
-   * Use this to return arc length of a curve.  It returns the float representing the length given the value of the advancement parameter t on the curve. The current implementation of this function is very slow, not recommended for using during frame draw.
+   * Use this to return arc length of a curve.  It returns the float representing the length given the value of the advancement parameter t on the curve.
    * @eexample RCommand_getCurveLength
    * @return float, the length returned.
    * @invisible
    * */
   public float getCurveLength(){
-    return getCurveLength(1F);
+    checkHandles();
+    if(lenCurve == -1F){
+      lenCurve = getCurveLength(1F);
+    }
+    return lenCurve;
+  }
+
+  /**
+   * Returns the parameter t of the point of the curve that is at a given arc length from the start.  The parameter is interpolated in the parameter table, and refined with a Newton step on the few steps of the table where the interpolation is not within the length tolerance.
+   * @invisible
+   */
+  float getParameterAtLength(float len){
+    float dx, dy;
+
+    switch(commandType){
+    case LINETO:
+      dx = endPoint.x - startPoint.x;
+      dy = endPoint.y - startPoint.y;
+      float total = (float)Math.sqrt(dx*dx + dy*dy);
+      if(total == 0F){
+        return 0F;
+      }
+      len /= total;
+      return (len > 1F) ? 1F : ((len < 0F) ? 0F : len);
+
+    case QUADBEZIERTO:
+    case CUBICBEZIERTO:
+      float[] params = getParamTable();
+      return parameterAtLength(len, lenTable, params);
+    }
+
+    return 0F;
+  }
+
+  /* The parameter of a bezier at the length len, interpolated between the uniform steps of length of the parameter table and refined with at most one Newton step, the tables being passed by the caller that checked the handles */
+  private float parameterAtLength(float len, float[] table, float[] params){
+    float total = table[lengthTableSteps];
+    if(len <= 0F){
+      return 0F;
+    }
+    if(len >= total){
+      return 1F;
+    }
+
+    float s = len / total * paramTableSteps;
+    int k = (int)s;
+    k = (k >= paramTableSteps) ? paramTableSteps - 1 : k;
+    float t = interpolateParameter(params, k, s - k);
+    if(!paramRefine[k]){
+      return t;
+    }
+
+    /* the derivative of the length being the speed */
+    float ta = params[2*k];
+    float tb = params[2*k+2];
+    float err = lengthAt(t, table) - len;
+    float speed = (float)bezierSpeed(t);
+    if(speed != 0F){
+      t -= err / speed;
+    }
+    return (t > tb) ? tb : ((t < ta) ? ta : t);
+  }
+
+  /* Cubic Hermite interpolation of the parameter at the fraction u of the step k of the parameter table, kept inside the step */
+  private static float interpolateParameter(float[] params, int k, float u){
+    float t0 = params[2*k];
+    float m0 = params[2*k+1];
+    float t1 = params[2*k+2];
+    float m1 = params[2*k+3];
+    float d = t1 - t0;
+    float t = t0 + u*(m0 + u*((3F*d - 2F*m0 - m1) + u*(m0 + m1 - 2F*d)));
+    return (t > t1) ? t1 : ((t < t0) ? t0 : t);
+  }
+
+  /* Returns the parameters of a bezier at paramTableSteps uniform steps of its length, searched in the length table and refined with Newton steps */
+  /* Each parameter is followed by its derivative over a step, the step of length over the speed, limited to 4 times the change of parameter over the step so that it stays finite near cusps */
+  /* The steps where the length at the middle of the interpolation is off by more than a fraction of the tolerance are marked in paramRefine */
+  float[] getParamTable(){
+    float[] table = getLengthTable();
+    if(paramTable == null){
+      float[] params = new float[2*paramTableSteps + 2];
+      boolean[] refine = new boolean[paramTableSteps];
+      float total = table[lengthTableSteps];
+      float step = total / paramTableSteps;
+      for(int k=1; k<paramTableSteps; k++){
+        params[2*k] = searchParameterAtLength(total * k / paramTableSteps, table);
+      }
+      params[2*paramTableSteps] = 1F;
+      for(int k=0; k<=paramTableSteps; k++){
+        float t = params[2*k];
+        float speed = (float)bezierSpeed(t);
+        float chord = (k < paramTableSteps) ? params[2*k+2] - t : t - params[2*k-2];
+        params[2*k+1] = (speed > 0F) ? Math.min(step / speed, 4F * chord) : chord;
+      }
+      for(int k=0; k<paramTableSteps; k++){
+        float mid = lengthAt(interpolateParameter(params, k, 0.5F), table);
+        refine[k] = !(Math.abs(mid - step * (k + 0.5F)) <= lengthTolerance / 4F);
+      }
+      paramRefine = refine;
+      paramTable = params;
+    }
+    return paramTable;
+  }
+
+  /* The parameter of a bezier at the length len, found in the length table and refined with Newton steps */
+  private float searchParameterAtLength(float len, float[] table){
+    if(len <= 0F){
+      return 0F;
+    }
+    if(len >= table[lengthTableSteps]){
+      return 1F;
+    }
+
+    /* find the step containing the length */
+    int lo = 0;
+    int hi = lengthTableSteps - 1;
+    while(lo < hi){
+      int mid = (lo + hi) >> 1;
+      if(table[mid+1] < len){
+        lo = mid + 1;
+      }else{
+        hi = mid;
+      }
+    }
+
+    float ta = (float)lo / lengthTableSteps;
+    float tb = (float)(lo + 1) / lengthTableSteps;
+    float steplen = table[lo+1] - table[lo];
+    float t = (steplen == 0F) ? ta : ta + (tb - ta) * (len - table[lo]) / steplen;
+
+    /* refine the interpolation with Newton steps, the derivative of the length being the speed */
+    for(int k=0; k<4; k++){
+      float err = lengthAt(t, table) - len;
+      if(Math.abs(err) <= lengthTolerance / paramTableSteps){
+        break;
+      }
+      float speed = (float)bezierSpeed(t);
+      if(speed == 0F){
+        break;
+      }
+      t -= err / speed;
+      t = (t > tb) ? tb : ((t < ta) ? ta : t);
+    }
+    return t;
+  }
+
+  /* Returns the lengths of the curve at lengthTableSteps uniform steps of t */
+  float[] getLengthTable(){
+    checkHandles();
+    if(lenTable == null){
+      float[] table = new float[lengthTableSteps + 1];
+      switch(commandType){
+      case QUADBEZIERTO:
+        for(int i=1; i<=lengthTableSteps; i++){
+          table[i] = (float)quadBezierLength((float)i / lengthTableSteps);
+        }
+        break;
+
+      case CUBICBEZIERTO:
+        double acc = 0.0;
+        double tol = lengthTolerance / lengthTableSteps;
+        for(int i=1; i<=lengthTableSteps; i++){
+          acc += adaptiveGaussLegendreLength((double)(i-1) / lengthTableSteps, (double)i / lengthTableSteps, gaussLegendreLength((double)(i-1) / lengthTableSteps, (double)i / lengthTableSteps), tol, lengthRecursionLimit);
+          table[i] = (float)acc;
+        }
+        break;
+
+      default:
+        for(int i=1; i<=lengthTableSteps; i++){
+          table[i] = getCurveLength((float)i / lengthTableSteps);
+        }
+        break;
+      }
+      lenTable = table;
+    }
+    return lenTable;
+  }
+
+  protected void invalidate(){
+    super.invalidate();
+    lenTable = null;
+    paramTable = null;
+    paramRefine = null;
+    coefs = null;
+  }
+
+  boolean hasValidBounds(){
+    checkHandles();
+    return bounds != null;
+  }
+
+  int getStamp(){
+    checkHandles();
+    return stamp;
+  }
+
+  /* Clears the caches if the handles were moved since the last check, through getHandles() or the fields of the points, as nothing else tells the command about it */
+  void checkHandles(){
+    int numControls = (controlPoints == null) ? 0 : controlPoints.length;
+    float[] c = handleCoords;
+    if(c != null && c.length == 4 + 2*numControls
+       && c[0] == startPoint.x && c[1] == startPoint.y
+       && c[2] == endPoint.x && c[3] == endPoint.y){
+      boolean moved = false;
+      for(int i=0;i<numControls;i++){
+        if(c[4 + 2*i] != controlPoints[i].x || c[5 + 2*i] != controlPoints[i].y){
+          moved = true;
+          break;
+        }
+      }
+      if(!moved){
+        return;
+      }
+    }
+
+    if(c != null){
+      invalidate();
+    }
+    if(c == null || c.length != 4 + 2*numControls){
+      c = new float[4 + 2*numControls];
+    }
+    c[0] = startPoint.x;
+    c[1] = startPoint.y;
+    c[2] = endPoint.x;
+    c[3] = endPoint.y;
+    for(int i=0;i<numControls;i++){
+      c[4 + 2*i] = controlPoints[i].x;
+      c[5 + 2*i] = controlPoints[i].y;
+    }
+    handleCoords = c;
   }
 
   public RPoint[][] getPointsInPaths(){
@@ -934,13 +1413,28 @@ public class RCommand extends RGeomElem
     return result;
   }
 
-  private void quadBezierAdaptative(){
-    addCurvePoint(new RPoint(startPoint));
-    quadBezierAdaptativeRecursive(startPoint.x, startPoint.y, controlPoints[0].x, controlPoints[0].y, endPoint.x, endPoint.y, 0);
-    addCurvePoint(new RPoint(endPoint));
+  /* Tells if the start, control and end points fit in a square of the given size */
+  private boolean isSmallerThan(float size){
+    float xmin = Math.min(startPoint.x, endPoint.x);
+    float xmax = Math.max(startPoint.x, endPoint.x);
+    float ymin = Math.min(startPoint.y, endPoint.y);
+    float ymax = Math.max(startPoint.y, endPoint.y);
+    for(int i=0;controlPoints != null && i<controlPoints.length;i++){
+      xmin = Math.min(xmin, controlPoints[i].x);
+      xmax = Math.max(xmax, controlPoints[i].x);
+      ymin = Math.min(ymin, controlPoints[i].y);
+      ymax = Math.max(ymax, controlPoints[i].y);
+    }
+    return xmax - xmin < size && ymax - ymin < size;
   }
 
-  private void quadBezierAdaptativeRecursive(float x1, float y1, float x2, float y2, float x3, float y3, int level){
+  private void quadBezierAdaptative(RSegmentator seg, RSegmentator.Run run){
+    run.add(startPoint, 0F);
+    quadBezierAdaptativeRecursive(startPoint.x, startPoint.y, controlPoints[0].x, controlPoints[0].y, endPoint.x, endPoint.y, 0F, 1F, 0, seg, run);
+    run.add(endPoint, 1F);
+  }
+
+  private void quadBezierAdaptativeRecursive(float x1, float y1, float x2, float y2, float x3, float y3, float ta, float tb, int level, RSegmentator seg, RSegmentator.Run run){
 
     if(level > segmentRecursionLimit)
       {
@@ -955,6 +1449,7 @@ public class RCommand extends RGeomElem
     float y23   = (y2 + y3) / 2;
     float x123  = (x12 + x23) / 2;
     float y123  = (y12 + y23) / 2;
+    float tm    = (ta + tb) / 2;
 
     float dx = x3-x1;
     float dy = y3-y1;
@@ -964,14 +1459,14 @@ public class RCommand extends RGeomElem
       {
         // Regular care
         //-----------------
-        if(d * d <= segmentDistTolSqr * (dx*dx + dy*dy))
+        if(d * d <= seg.distTolSqr * (dx*dx + dy*dy))
           {
             // If the curvature doesn't exceed the distance_tolerance value
             // we tend to finish subdivisions.
             //----------------------
-            if(segmentAngleTol < segmentAngleTolEpsilon)
+            if(seg.angleTol < segmentAngleTolEpsilon)
               {
-                addCurvePoint(new RPoint(x123, y123));
+                run.add(x123, y123, tm);
                 return;
               }
 
@@ -980,37 +1475,37 @@ public class RCommand extends RGeomElem
             float da = Math.abs((float)Math.atan2(y3 - y2, x3 - x2) - (float)Math.atan2(y2 - y1, x2 - x1));
             if(da >= Math.PI) da = 2*(float)Math.PI - da;
 
-            if(da < segmentAngleTol)
+            if(da < seg.angleTol)
               {
                 // Finally we can stop the recursion
                 //----------------------
-                addCurvePoint(new RPoint(x123, y123));
+                run.add(x123, y123, tm);
                 return;
               }
           }
       }
     else
       {
-        if(Math.abs(x1 + x3 - x2 - x2) + Math.abs(y1 + y3 - y2 - y2) <= segmentDistTolMnhttn)
+        if(Math.abs(x1 + x3 - x2 - x2) + Math.abs(y1 + y3 - y2 - y2) <= seg.distTolMnhttn)
           {
-            addCurvePoint(new RPoint(x123, y123));
+            run.add(x123, y123, tm);
             return;
           }
       }
 
     // Continue subdivision
     //----------------------
-    quadBezierAdaptativeRecursive(x1, y1, x12, y12, x123, y123, level + 1);
-    quadBezierAdaptativeRecursive(x123, y123, x23, y23, x3, y3, level + 1);
+    quadBezierAdaptativeRecursive(x1, y1, x12, y12, x123, y123, ta, tm, level + 1, seg, run);
+    quadBezierAdaptativeRecursive(x123, y123, x23, y23, x3, y3, tm, tb, level + 1, seg, run);
   }
 
-  private void cubicBezierAdaptative(){
-    addCurvePoint(new RPoint(startPoint));
-    cubicBezierAdaptativeRecursive(startPoint.x, startPoint.y, controlPoints[0].x, controlPoints[0].y, controlPoints[1].x, controlPoints[1].y, endPoint.x, endPoint.y, 0);
-    addCurvePoint(new RPoint(endPoint));
+  private void cubicBezierAdaptative(RSegmentator seg, RSegmentator.Run run){
+    run.add(startPoint, 0F);
+    cubicBezierAdaptativeRecursive(startPoint.x, startPoint.y, controlPoints[0].x, controlPoints[0].y, controlPoints[1].x, controlPoints[1].y, endPoint.x, endPoint.y, 0F, 1F, 0, seg, run);
+    run.add(endPoint, 1F);
   }
 
-  private void cubicBezierAdaptativeRecursive(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4, int level){
+  private void cubicBezierAdaptativeRecursive(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4, float ta, float tb, int level, RSegmentator seg, RSegmentator.Run run){
     if(level > segmentRecursionLimit)
       {
         return;
@@ -1030,6 +1525,7 @@ public class RCommand extends RGeomElem
     float y234  = (y23 + y34) / 2;
     float x1234 = (x123 + x234) / 2;
     float y1234 = (y123 + y234) / 2;
+    float tm    = (ta + tb) / 2;
 
     // Try to approximate the full cubic curve by a single straight line
     //------------------
@@ -1049,9 +1545,9 @@ public class RCommand extends RGeomElem
       if(Math.abs(x1 + x3 - x2 - x2) +
          Math.abs(y1 + y3 - y2 - y2) +
          Math.abs(x2 + x4 - x3 - x3) +
-         Math.abs(y2 + y4 - y3 - y3) <= segmentDistTolMnhttn)
+         Math.abs(y2 + y4 - y3 - y3) <= seg.distTolMnhttn)
         {
-          addCurvePoint(new RPoint(x1234, y1234));
+          run.add(x1234, y1234, tm);
           return;
         }
       break;
@@ -1059,11 +1555,11 @@ public class RCommand extends RGeomElem
     case 1:
       // p1,p2,p4 are collinear, p3 is considerable
       //----------------------
-      if(d3 * d3 <= segmentDistTolSqr * (dx*dx + dy*dy))
+      if(d3 * d3 <= seg.distTolSqr * (dx*dx + dy*dy))
         {
-          if(segmentAngleTol < segmentAngleTolEpsilon)
+          if(seg.angleTol < segmentAngleTolEpsilon)
             {
-              addCurvePoint(new RPoint(x23, y23));
+              run.add(x23, y23, tm);
               return;
             }
 
@@ -1072,18 +1568,18 @@ public class RCommand extends RGeomElem
           da1 = Math.abs((float)Math.atan2(y4 - y3, x4 - x3) - (float)Math.atan2(y3 - y2, x3 - x2));
           if(da1 >= (float)Math.PI) da1 = 2*(float)Math.PI - da1;
 
-          if(da1 < segmentAngleTol)
+          if(da1 < seg.angleTol)
             {
-              addCurvePoint(new RPoint(x2, y2));
-              addCurvePoint(new RPoint(x3, y3));
+              run.add(x2, y2, ta + (tb - ta) / 3);
+              run.add(x3, y3, ta + 2 * (tb - ta) / 3);
               return;
             }
 
-          if(segmentCuspLimit != 0.0)
+          if(seg.cuspLimit != 0.0)
             {
-              if(da1 > segmentCuspLimit)
+              if(da1 > seg.cuspLimit)
                 {
-                  addCurvePoint(new RPoint(x3, y3));
+                  run.add(x3, y3, ta + 2 * (tb - ta) / 3);
                   return;
                 }
             }
@@ -1093,11 +1589,11 @@ public class RCommand extends RGeomElem
     case 2:
       // p1,p3,p4 are collinear, p2 is considerable
       //----------------------
-      if(d2 * d2 <= segmentDistTolSqr * (dx*dx + dy*dy))
+      if(d2 * d2 <= seg.distTolSqr * (dx*dx + dy*dy))
         {
-          if(segmentAngleTol < segmentAngleTolEpsilon)
+          if(seg.angleTol < segmentAngleTolEpsilon)
             {
-              addCurvePoint(new RPoint(x23, y23));
+              run.add(x23, y23, tm);
               return;
             }
 
@@ -1106,18 +1602,18 @@ public class RCommand extends RGeomElem
           da1 = Math.abs((float)Math.atan2(y3 - y2, x3 - x2) - (float)Math.atan2(y2 - y1, x2 - x1));
           if(da1 >= (float)Math.PI) da1 = 2*(float)Math.PI - da1;
 
-          if(da1 < segmentAngleTol)
+          if(da1 < seg.angleTol)
             {
-              addCurvePoint(new RPoint(x2, y2));
-              addCurvePoint(new RPoint(x3, y3));
+              run.add(x2, y2, ta + (tb - ta) / 3);
+              run.add(x3, y3, ta + 2 * (tb - ta) / 3);
               return;
             }
 
-          if(segmentCuspLimit != 0.0)
+          if(seg.cuspLimit != 0.0)
             {
-              if(da1 > segmentCuspLimit)
+              if(da1 > seg.cuspLimit)
                 {
-                  addCurvePoint(new RPoint(x2, y2));
+                  run.add(x2, y2, ta + (tb - ta) / 3);
                   return;
                 }
             }
@@ -1127,14 +1623,14 @@ public class RCommand extends RGeomElem
     case 3:
       // Regular care
       //-----------------
-      if((d2 + d3)*(d2 + d3) <= segmentDistTolSqr * (dx*dx + dy*dy))
+      if((d2 + d3)*(d2 + d3) <= seg.distTolSqr * (dx*dx + dy*dy))
         {
           // If the curvature doesn't exceed the distance_tolerance value
           // we tend to finish subdivisions.
           //----------------------
-          if(segmentAngleTol < segmentAngleTolEpsilon)
+          if(seg.angleTol < segmentAngleTolEpsilon)
             {
-              addCurvePoint(new RPoint(x23, y23));
+              run.add(x23, y23, tm);
               return;
             }
 
@@ -1146,25 +1642,25 @@ public class RCommand extends RGeomElem
           if(da1 >= (float)Math.PI) da1 = 2*(float)Math.PI - da1;
           if(da2 >= (float)Math.PI) da2 = 2*(float)Math.PI - da2;
 
-          if(da1 + da2 < segmentAngleTol)
+          if(da1 + da2 < seg.angleTol)
             {
               // Finally we can stop the recursion
               //----------------------
-              addCurvePoint(new RPoint(x23, y23));
+              run.add(x23, y23, tm);
               return;
             }
 
-          if(segmentCuspLimit != 0.0)
+          if(seg.cuspLimit != 0.0)
             {
-              if(da1 > segmentCuspLimit)
+              if(da1 > seg.cuspLimit)
                 {
-                  addCurvePoint(new RPoint(x2, y2));
+                  run.add(x2, y2, ta + (tb - ta) / 3);
                   return;
                 }
 
-              if(da2 > segmentCuspLimit)
+              if(da2 > seg.cuspLimit)
                 {
-                  addCurvePoint(new RPoint(x3, y3));
+                  run.add(x3, y3, ta + 2 * (tb - ta) / 3);
                   return;
                 }
             }
@@ -1174,14 +1670,14 @@ public class RCommand extends RGeomElem
 
     // Continue subdivision
     //----------------------
-    cubicBezierAdaptativeRecursive(x1, y1, x12, y12, x123, y123, x1234, y1234, level + 1);
-    cubicBezierAdaptativeRecursive(x1234, y1234, x234, y234, x34, y34, x4, y4, level + 1);
+    cubicBezierAdaptativeRecursive(x1, y1, x12, y12, x123, y123, x1234, y1234, ta, tm, level + 1, seg, run);
+    cubicBezierAdaptativeRecursive(x1234, y1234, x234, y234, x34, y34, x4, y4, tm, tb, level + 1, seg, run);
   }
 
-  private void lineUniformStep(){
+  private void lineUniformStep(RSegmentator seg, RSegmentator.Run run){
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
-    int steps = segmentSteps;
-    if(segmentSteps==0.0F){
+    int steps = seg.steps;
+    if(seg.steps==0.0F){
       float dx = endPoint.x - startPoint.x;
       float dy = endPoint.y - startPoint.y;
 
@@ -1202,20 +1698,20 @@ public class RCommand extends RGeomElem
     fdy = (endPoint.y - startPoint.y) * dt;
 
     for (int loop=0; loop < steps; loop++) {
-      addCurvePoint(new RPoint(fx,fy));
+      run.add(fx, fy, loop * dt);
 
       fx = fx + fdx;
 
       fy = fy + fdy;
     }
-    addCurvePoint(new RPoint(endPoint));
+    run.add(endPoint, 1F);
   }
 
-  private void cubicBezierUniformStep(){
+  private void cubicBezierUniformStep(RSegmentator seg, RSegmentator.Run run){
 
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
-    int steps = segmentSteps;
-    if(segmentSteps==0.0F){
+    int steps = seg.steps;
+    if(seg.steps==0.0F){
       float dx1 = controlPoints[0].x - startPoint.x;
       float dy1 = controlPoints[0].y - startPoint.y;
       float dx2 = controlPoints[1].x - controlPoints[0].x;
@@ -1235,11 +1731,17 @@ public class RCommand extends RGeomElem
         }
     }
 
+    cubicBezierForwardDifferences(steps, run);
+  }
+
+  private void cubicBezierForwardDifferences(int steps, RSegmentator.Run run){
     float dt = 1F/steps;
 
     float fx, fy, fdx, fdy, fddx, fddy, fdddx, fdddy, fdd_per_2x, fdd_per_2y, fddd_per_2x, fddd_per_2y, fddd_per_6x, fddd_per_6y;
     float temp = dt * dt;
 
+    run.ensureCapacity(steps + 1);
+
     fx = startPoint.x;
     fdx = 3F * (controlPoints[0].x - startPoint.x) * dt;
     fdd_per_2x = 3F * (startPoint.x - 2F * controlPoints[0].x + controlPoints[1].x) * temp;
@@ -1257,7 +1759,7 @@ public class RCommand extends RGeomElem
     fddd_per_6y = fddd_per_2y * (1.0F / 3F);
 
     for (int loop=0; loop < steps; loop++) {
-      addCurvePoint(new RPoint(fx,fy));
+      run.add(fx, fy, loop * dt);
 
       fx = fx + fdx + fdd_per_2x + fddd_per_6x;
       fdx = fdx + fddx + fddd_per_2x;
@@ -1269,13 +1771,13 @@ public class RCommand extends RGeomElem
       fddy = fddy + fdddy;
       fdd_per_2y = fdd_per_2y + fddd_per_2y;
     }
-    addCurvePoint(new RPoint(endPoint));
+    run.add(endPoint, 1F);
   }
 
-  private void quadBezierUniformStep(){
+  private void quadBezierUniformStep(RSegmentator seg, RSegmentator.Run run){
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
-    int steps = segmentSteps;
-    if(segmentSteps==0.0F){
+    int steps = seg.steps;
+    if(seg.steps==0.0F){
       float dx1 = controlPoints[0].x - startPoint.x;
       float dy1 = controlPoints[0].y - startPoint.y;
       float dx2 = endPoint.x - controlPoints[0].x;
@@ -1287,11 +1789,17 @@ public class RCommand extends RGeomElem
       if(steps < 4) steps = 4;
     }
 
+    quadBezierForwardDifferences(steps, run);
+  }
+
+  private void quadBezierForwardDifferences(int steps, RSegmentator.Run run){
     float dt = 1F/steps;
 
     float fx, fy, fdx, fdy, fddx, fddy, fdd_per_2x, fdd_per_2y;
     float temp = dt * dt;
 
+    run.ensureCapacity(steps + 1);
+
     fx = startPoint.x;
     fdx = 2F * (controlPoints[0].x - startPoint.x) * dt;
     fdd_per_2x = (startPoint.x - 2F * controlPoints[0].x + endPoint.x) * temp;
@@ -1303,7 +1811,7 @@ public class RCommand extends RGeomElem
     fddy = fdd_per_2y + fdd_per_2y;
 
     for (int loop=0; loop < steps; loop++) {
-      addCurvePoint(new RPoint(fx,fy));
+      run.add(fx, fy, loop * dt);
 
       fx = fx + fdx + fdd_per_2x;
       fdx = fdx + fddx;
@@ -1311,12 +1819,46 @@ public class RCommand extends RGeomElem
       fy = fy + fdy + fdd_per_2y;
       fdy = fdy + fddy;
     }
-    addCurvePoint(new RPoint(endPoint));
+    run.add(endPoint, 1F);
+  }
+
+  /* 
+   * Wang's formula: a Bezier curve of degree n with control points P0..Pn is
+   * approximated within a distance tol by its polygon of m uniform steps when
+   *   m >= sqrt( n(n-1)/8 * max|P(i+2) - 2P(i+1) + P(i)| / tol )
+   */
+  private void quadBezierTolerance(RSegmentator seg, RSegmentator.Run run){
+    float ddx = startPoint.x - 2F * controlPoints[0].x + endPoint.x;
+    float ddy = startPoint.y - 2F * controlPoints[0].y + endPoint.y;
+    float dd = (float)Math.sqrt(ddx * ddx + ddy * ddy);
+
+    quadBezierForwardDifferences(toleranceSteps(2F / 8F * dd, seg.tolerance), run);
+  }
+
+  private void cubicBezierTolerance(RSegmentator seg, RSegmentator.Run run){
+    float ddx1 = startPoint.x - 2F * controlPoints[0].x + controlPoints[1].x;
+    float ddy1 = startPoint.y - 2F * controlPoints[0].y + controlPoints[1].y;
+    float ddx2 = controlPoints[0].x - 2F * controlPoints[1].x + endPoint.x;
+    float ddy2 = controlPoints[0].y - 2F * controlPoints[1].y + endPoint.y;
+    float dd = Math.max((float)Math.sqrt(ddx1 * ddx1 + ddy1 * ddy1), (float)Math.sqrt(ddx2 * ddx2 + ddy2 * ddy2));
+
+    cubicBezierForwardDifferences(toleranceSteps(6F / 8F * dd, seg.tolerance), run);
+  }
+
+  private static int toleranceSteps(float bound, float tolerance){
+    float steps = (float)Math.ceil(Math.sqrt(bound / tolerance));
+    if(steps < 1F){
+      return 1;
+    }
+    if(steps > segmentToleranceStepsLimit){
+      return segmentToleranceStepsLimit;
+    }
+    return (int)steps;
   }
 
   // Use Horner's method to advance
   //----------------------
-  private void lineUniformLength(){
+  private void lineUniformLength(RSegmentator seg, RSegmentator.Run run){
 
     // If the number of steps is equal to 0 then choose a number of steps adapted to the curve
     float dx1 = endPoint.x - startPoint.x;
@@ -1331,7 +1873,7 @@ public class RCommand extends RGeomElem
     float dt = 1F/steps;
 
     // This holds how much length has to bee advanced until adding a point
-    float untilPoint = RCommand.segmentAccOffset;
+    float untilPoint = run.accOffset;
 
     float fx, fy, fdx, fdy;
 
@@ -1344,8 +1886,8 @@ public class RCommand extends RGeomElem
     for (int loop=0; loop <= steps; loop++) {
       /* Add point to curve if segment length is reached */
       if (untilPoint <= 0) {
-        addCurvePoint(new RPoint(fx, fy));
-        untilPoint += RCommand.segmentLength;
+        run.add(fx, fy, loop * dt);
+        untilPoint += seg.length;
       }
 
       /* Add segment differential to segment length */
@@ -1355,13 +1897,13 @@ public class RCommand extends RGeomElem
       fy = fy + fdy;
     }
 
-    //addCurvePoint(new RPoint(endPoint));
-    RCommand.segmentAccOffset = untilPoint;
+    //run.add(endPoint);
+    run.accOffset = untilPoint;
   }
 
   // Use Horner's method to advance
   //----------------------
-  private void quadBezierUniformLength(){
+  private void quadBezierUniformLength(RSegmentator seg, RSegmentator.Run run){
 
     float dx1 = controlPoints[0].x - startPoint.x;
     float dy1 = controlPoints[0].y - startPoint.y;
@@ -1373,7 +1915,7 @@ public class RCommand extends RGeomElem
     if(steps < 4) steps = 4;
 
     float dt = 1F/steps;
-    float untilPoint = RCommand.segmentAccOffset;
+    float untilPoint = run.accOffset;
 
     float fx, fy, fdx, fdy, fddx, fddy, fdd_per_2x, fdd_per_2y, fix, fiy;
     float temp = dt * dt;
@@ -1391,8 +1933,8 @@ public class RCommand extends RGeomElem
     for (int loop=0; loop <= steps; loop++) {
       /* Add point to curve if segment length is reached */
       if (untilPoint <= 0) {
-        addCurvePoint(new RPoint(fx, fy));
-        untilPoint += RCommand.segmentLength;
+        run.add(fx, fy, loop * dt);
+        untilPoint += seg.length;
       }
 
       /* Add segment differential to segment length */
@@ -1407,13 +1949,13 @@ public class RCommand extends RGeomElem
       fdy = fdy + fddy;
     }
 
-    //addCurvePoint(new RPoint(endPoint));
-    RCommand.segmentAccOffset = untilPoint;
+    //run.add(endPoint);
+    run.accOffset = untilPoint;
   }
 
   // Use Horner's method to advance
   //----------------------
-  private void cubicBezierUniformLength(){
+  private void cubicBezierUniformLength(RSegmentator seg, RSegmentator.Run run){
 
     float dx1 = controlPoints[0].x - startPoint.x;
     float dy1 = controlPoints[0].y - startPoint.y;
@@ -1430,7 +1972,7 @@ public class RCommand extends RGeomElem
     if(steps < 4) steps = 4;
 
     float dt = 1F/steps;
-    float untilPoint = RCommand.segmentAccOffset;
+    float untilPoint = run.accOffset;
 
     float fx, fy, fdx, fdy, fddx, fddy, fdddx, fdddy, fdd_per_2x, fdd_per_2y, fddd_per_2x, fddd_per_2y, fddd_per_6x, fddd_per_6y, fix, fiy;
     float temp = dt * dt;
@@ -1454,8 +1996,8 @@ public class RCommand extends RGeomElem
     for (int loop=0; loop < steps; loop++) {
       /* Add point to curve if segment length is reached */
       if (untilPoint <= 0) {
-        addCurvePoint(new RPoint(fx, fy));
-        untilPoint += RCommand.segmentLength;
+        run.add(fx, fy, loop * dt);
+        untilPoint += seg.length;
       }
 
       /* Add segment differential to segment length */
@@ -1474,112 +2016,88 @@ public class RCommand extends RGeomElem
       fdd_per_2y = fdd_per_2y + fddd_per_2y;
     }
 
-    //addCurvePoint(new RPoint(endPoint));
-    RCommand.segmentAccOffset = untilPoint;
+    //run.add(endPoint);
+    run.accOffset = untilPoint;
   }
 
-  private float quadBezierLength(){
-
-    float dx1 = controlPoints[0].x - startPoint.x;
-    float dy1 = controlPoints[0].y - startPoint.y;
-    float dx2 = endPoint.x - controlPoints[0].x;
-    float dy2 = endPoint.y - controlPoints[0].y;
-    float len = (float)Math.sqrt(dx1 * dx1 + dy1 * dy1) + (float)Math.sqrt(dx2 * dx2 + dy2 * dy2);
-    float steps = (int)(len * 2);
-
-    if(steps < 4) steps = 4;
-
-    float dt = 1F/steps;
-
-
-    float fx, fy, fdx, fdy, fddx, fddy, fdd_per_2x, fdd_per_2y, fix, fiy;
-    float temp = dt * dt;
-    float totallen = 0F;
-
-    fx = startPoint.x;
-    fdx = 2F * (controlPoints[0].x - startPoint.x) * dt;
-    fdd_per_2x = (startPoint.x - 2F * controlPoints[0].x + endPoint.x) * temp;
-    fddx = fdd_per_2x + fdd_per_2x;
-
-    fy = startPoint.y;
-    fdy = 2F * (controlPoints[0].y - startPoint.y) * dt;
-    fdd_per_2y = (startPoint.y - 2F * controlPoints[0].y + endPoint.y) * temp;
-    fddy = fdd_per_2y + fdd_per_2y;
-
-    for (int loop=0; loop <= steps; loop++) {
-      /* Add segment differential to segment length */
-      fix = fdx + fdd_per_2x;
-      fiy = fdy + fdd_per_2y;
-      totallen += (float)Math.sqrt(fix*fix + fiy*fiy);    // Eventually try other distance measures
+  /* Length of the quadratic bezier from 0 to t, integrating its speed 2*sqrt(A*u*u + 2*B*u + C) in closed form */
+  private double quadBezierLength(float t){
+    double ax = startPoint.x - 2.0 * controlPoints[0].x + endPoint.x;
+    double ay = startPoint.y - 2.0 * controlPoints[0].y + endPoint.y;
+    double bx = controlPoints[0].x - startPoint.x;
+    double by = controlPoints[0].y - startPoint.y;
 
-      fx = fx + fix;
-      fdx = fdx + fddx;
+    double A = ax * ax + ay * ay;
+    double B = ax * bx + ay * by;
+    double C = bx * bx + by * by;
 
-      fy = fy + fiy;
-      fdy = fdy + fddy;
+    if(A <= 1e-12 * C || A == 0.0){
+      /* the curve is a line traversed at constant speed */
+      return 2.0 * Math.sqrt(C) * t;
     }
 
-    return totallen;
+    return 2.0 * (quadBezierLengthPrimitive(t, A, B, C) - quadBezierLengthPrimitive(0.0, A, B, C));
   }
 
+  /* Primitive of sqrt(A*u*u + 2*B*u + C) */
+  private static double quadBezierLengthPrimitive(double u, double A, double B, double C){
+    double sqrtA = Math.sqrt(A);
+    double f = Math.sqrt(Math.max(0.0, A * u * u + 2.0 * B * u + C));
+    double x = A * u + B;
+    double result = x * f / (2.0 * A);
 
-  private float cubicBezierLength(){
-
-    float dx1 = controlPoints[0].x - startPoint.x;
-    float dy1 = controlPoints[0].y - startPoint.y;
-    float dx2 = controlPoints[1].x - controlPoints[0].x;
-    float dy2 = controlPoints[1].y - controlPoints[0].y;
-    float dx3 = endPoint.x - controlPoints[1].x;
-    float dy3 = endPoint.y - controlPoints[1].y;
-
-    float len = (float)Math.sqrt(dx1 * dx1 + dy1 * dy1) +
-      (float)Math.sqrt(dx2 * dx2 + dy2 * dy2) +
-      (float)Math.sqrt(dx3 * dx3 + dy3 * dy3);
-    float steps = (int)(len * 2);
-
-    if(steps < 4) steps = 4;
-
-    float dt = 1F/steps;
-
-    float fx, fy, fdx, fdy, fddx, fddy, fdddx, fdddy, fdd_per_2x, fdd_per_2y, fddd_per_2x, fddd_per_2y, fddd_per_6x, fddd_per_6y, fix, fiy;
-    float temp = dt * dt;
-    float totallen = 0F;
-
-    fx = startPoint.x;
-    fdx = 3F * (controlPoints[0].x - startPoint.x) * dt;
-    fdd_per_2x = 3F * (startPoint.x - 2F * controlPoints[0].x + controlPoints[1].x) * temp;
-    fddd_per_2x = 3F * (3F * (controlPoints[0].x - controlPoints[1].x) + endPoint.x - startPoint.x) * temp * dt;
-    fdddx = fddd_per_2x + fddd_per_2x;
-    fddx = fdd_per_2x + fdd_per_2x;
-    fddd_per_6x = fddd_per_2x * (1.0F / 3F);
+    /* the logarithmic term vanishes when the control points are collinear */
+    double k = A * C - B * B;
+    double arg = x + sqrtA * f;
+    if(k > 0.0 && arg > 0.0){
+      result += k / (2.0 * A * sqrtA) * Math.log(arg);
+    }
+    return result;
+  }
 
-    fy = startPoint.y;
-    fdy = 3F * (controlPoints[0].y - startPoint.y) * dt;
-    fdd_per_2y = 3F * (startPoint.y - 2F * controlPoints[0].y + controlPoints[1].y) * temp;
-    fddd_per_2y = 3F * (3F * (controlPoints[0].y - controlPoints[1].y) + endPoint.y - startPoint.y) * temp * dt;
+  /* Speed of the curve (norm of the derivative) at t */
+  private double bezierSpeed(double t){
+    double dx, dy;
+    double mt = 1.0 - t;
 
-    fdddy = fddd_per_2y + fddd_per_2y;
-    fddy = fdd_per_2y + fdd_per_2y;
-    fddd_per_6y = fddd_per_2y * (1.0F / 3F);
+    switch(commandType){
+    case QUADBEZIERTO:
+      dx = 2.0 * (mt * (controlPoints[0].x - startPoint.x) + t * (endPoint.x - controlPoints[0].x));
+      dy = 2.0 * (mt * (controlPoints[0].y - startPoint.y) + t * (endPoint.y - controlPoints[0].y));
+      return Math.sqrt(dx * dx + dy * dy);
 
-    for (int loop=0; loop < steps; loop++) {
-      /* Add segment differential to segment length */
-      fix = fdx + fdd_per_2x + fddd_per_6x;
-      fiy = fdy + fdd_per_2y + fddd_per_6y;
-      totallen += (float)Math.sqrt(fix*fix + fiy*fiy);    // Eventually try other distance measures
+    case CUBICBEZIERTO:
+      dx = 3.0 * (mt * mt * (controlPoints[0].x - startPoint.x) + 2.0 * mt * t * (controlPoints[1].x - controlPoints[0].x) + t * t * (endPoint.x - controlPoints[1].x));
+      dy = 3.0 * (mt * mt * (controlPoints[0].y - startPoint.y) + 2.0 * mt * t * (controlPoints[1].y - controlPoints[0].y) + t * t * (endPoint.y - controlPoints[1].y));
+      return Math.sqrt(dx * dx + dy * dy);
 
-      fx = fx + fix;
-      fdx = fdx + fddx + fddd_per_2x;
-      fddx = fddx + fdddx;
-      fdd_per_2x = fdd_per_2x + fddd_per_2x;
+    default:
+      dx = endPoint.x - startPoint.x;
+      dy = endPoint.y - startPoint.y;
+      return Math.sqrt(dx * dx + dy * dy);
+    }
+  }
 
-      fy = fy + fiy;
-      fdy = fdy + fddy + fddd_per_2y;
-      fddy = fddy + fdddy;
-      fdd_per_2y = fdd_per_2y + fddd_per_2y;
+  /* Length of the curve between ta and tb with a single 5 point Gauss-Legendre quadrature */
+  private double gaussLegendreLength(double ta, double tb){
+    double half = (tb - ta) / 2.0;
+    double center = (ta + tb) / 2.0;
+    double sum = 0.0;
+    for(int i=0; i<gaussAbscissas.length; i++){
+      sum += gaussWeights[i] * bezierSpeed(center + half * gaussAbscissas[i]);
     }
+    return sum * half;
+  }
 
-    return totallen;
+  /* Length of the curve between ta and tb, halving the interval until both halves agree with the whole within the tolerance */
+  private double adaptiveGaussLegendreLength(double ta, double tb, double whole, double tol, int depth){
+    double tm = (ta + tb) / 2.0;
+    double left = gaussLegendreLength(ta, tm);
+    double right = gaussLegendreLength(tm, tb);
+    if(depth <= 0 || Math.abs(left + right - whole) <= tol){
+      return left + right;
+    }
+    return adaptiveGaussLegendreLength(ta, tm, left, tol / 2.0, depth - 1) + adaptiveGaussLegendreLength(tm, tb, right, tol / 2.0, depth - 1);
   }
 
 
@@ -1614,20 +2132,6 @@ public class RCommand extends RGeomElem
     this.controlPoints=newcontrolPoints;
   }
 
-  private void addCurvePoint(RPoint nextcurvepoint)
-  {
-    RPoint[] newcurvePoints;
-    if(curvePoints==null){
-      newcurvePoints = new RPoint[1];
-      newcurvePoints[0] = nextcurvepoint;
-    }else{
-      newcurvePoints = new RPoint[curvePoints.length+1];
-      System.arraycopy(curvePoints,0,newcurvePoints,0,curvePoints.length);
-      newcurvePoints[curvePoints.length]=nextcurvepoint;
-    }
-    this.curvePoints=newcurvePoints;
-  }
-
   public RPoint[] intersectionPoints(RCommand other)
   {
     RPoint[] result = null;
@@ -1719,17 +2223,416 @@ public class RCommand extends RGeomElem
     return result;
   }
 
-  public static RPoint[] lineQuadIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] lineCubicIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] quadQuadIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] quadCubicIntersection(RCommand c1, RCommand c2) { return null; }
-  public static RPoint[] cubicCubicIntersection(RCommand c1, RCommand c2) { return null; }
+  public static RPoint[] lineQuadIntersection(RCommand c1, RCommand c2) { return curveCurveIntersection(c1, c2); }
+  public static RPoint[] lineCubicIntersection(RCommand c1, RCommand c2) { return curveCurveIntersection(c1, c2); }
+  public static RPoint[] quadQuadIntersection(RCommand c1, RCommand c2) { return curveCurveIntersection(c1, c2); }
+  public static RPoint[] quadCubicIntersection(RCommand c1, RCommand c2) { return curveCurveIntersection(c1, c2); }
+  public static RPoint[] cubicCubicIntersection(RCommand c1, RCommand c2) { return curveCurveIntersection(c1, c2); }
+
+  /**
+   * Use this to get the advancements of the intersections between this command and another command.  The advancements on both commands are given, so that the intersections can be used to split them.  Where the commands touch without crossing the point where they are closest is given.  Where they overlap along a stretch only the two ends of the stretch are given.
+   * @eexample intersectionAdvancements
+   * @param other  the command with which to intersect.
+   * @return float[][], an array with the advancements on this command and an array with the advancements on the other command, null if no intersection exists.
+   * */
+  public float[][] intersectionAdvancements(RCommand other){
+    IntersectionRun run = new IntersectionRun();
+    curveCurveIntersection(this.getControlPolygon(), 0.0, 1.0, other.getControlPolygon(), 0.0, 1.0, intersectionRecursionLimit, run);
+    run.resolve(this, other);
+
+    if(run.count == 0){
+      return null;
+    }
+
+    float[][] result = new float[2][run.count];
+    for(int i=0; i<run.count; i++){
+      result[0][i] = run.advs[2*i];
+      result[1][i] = run.advs[2*i+1];
+    }
+    return result;
+  }
+
+  static RPoint[] curveCurveIntersection(RCommand c1, RCommand c2){
+    float[][] advs = c1.intersectionAdvancements(c2);
+    if(advs == null){
+      return null;
+    }
+
+    RPoint[] result = new RPoint[advs[0].length];
+    for(int i=0; i<result.length; i++){
+      result[i] = c1.getPoint(advs[0][i]);
+    }
+    return result;
+  }
+
+  /* Returns the coordinates of the start, control and end points */
+  private double[] getControlPolygon(){
+    int numControlPoints = (commandType == LINETO) ? 0 : countControlPoints();
+    double[] result = new double[2*(numControlPoints + 2)];
+    result[0] = startPoint.x;
+    result[1] = startPoint.y;
+    for(int i=0; i<numControlPoints; i++){
+      result[2*i+2] = controlPoints[i].x;
+      result[2*i+3] = controlPoints[i].y;
+    }
+    result[result.length-2] = endPoint.x;
+    result[result.length-1] = endPoint.y;
+    return result;
+  }
+
+  /* Finds the intersections between the parts [ta0, ta1] and [tb0, tb1] of two curves given by their control polygons */
+  /* The parts are discarded when their bounding boxes do not overlap, and the biggest one is split in two halves until both are flat enough to be intersected as lines */
+  private static void curveCurveIntersection(double[] a, double ta0, double ta1, double[] b, double tb0, double tb1, int depth, IntersectionRun run){
+    double[] boundsA = controlPolygonBounds(a);
+    double[] boundsB = controlPolygonBounds(b);
+    if(boundsDistanceSqr(boundsA, boundsB) > intersectionTolerance * intersectionTolerance){
+      return;
+    }
+
+    boolean flatA = isFlatControlPolygon(a, intersectionTolerance);
+    boolean flatB = isFlatControlPolygon(b, intersectionTolerance);
+
+    if((flatA && flatB) || depth <= 0){
+      chordsContact(a, ta0, ta1, b, tb0, tb1, run);
+      return;
+    }
+
+    if(!flatA && (flatB || boundsExtent(boundsA) >= boundsExtent(boundsB))){
+      double[] left = new double[a.length];
+      double[] right = new double[a.length];
+      splitControlPolygon(a, left, right);
+      double tam = (ta0 + ta1) / 2.0;
+      curveCurveIntersection(left, ta0, tam, b, tb0, tb1, depth - 1, run);
+      curveCurveIntersection(right, tam, ta1, b, tb0, tb1, depth - 1, run);
+    }else{
+      double[] left = new double[b.length];
+      double[] right = new double[b.length];
+      splitControlPolygon(b, left, right);
+      double tbm = (tb0 + tb1) / 2.0;
+      curveCurveIntersection(a, ta0, ta1, left, tb0, tbm, depth - 1, run);
+      curveCurveIntersection(a, ta0, ta1, right, tbm, tb1, depth - 1, run);
+    }
+  }
+
+  /* Records the contact between the chords of two flat parts, if they are within the tolerance */
+  /* Chords along the same line give the stretch where they overlap, crossing chords give their crossing and other chords the pair of points where they are closest */
+  private static void chordsContact(double[] a, double ta0, double ta1, double[] b, double tb0, double tb1, IntersectionRun run){
+    int la = a.length - 2;
+    int lb = b.length - 2;
+    double dax = a[la] - a[0];
+    double day = a[la+1] - a[1];
+    double dbx = b[lb] - b[0];
+    double dby = b[lb+1] - b[1];
+    double aa = dax * dax + day * day;
+    double bb = dbx * dbx + dby * dby;
+    double tol = intersectionTolerance;
+
+    if(aa > intersectionEpsilon && bb > intersectionEpsilon){
+      double cb0 = (b[0] - a[0]) * day - (b[1] - a[1]) * dax;
+      double cb1 = (b[lb] - a[0]) * day - (b[lb+1] - a[1]) * dax;
+      double ca0 = (a[0] - b[0]) * dby - (a[1] - b[1]) * dbx;
+      double ca1 = (a[la] - b[0]) * dby - (a[la+1] - b[1]) * dbx;
+      if(cb0 * cb0 <= tol * tol * aa && cb1 * cb1 <= tol * tol * aa && ca0 * ca0 <= tol * tol * bb && ca1 * ca1 <= tol * tol * bb){
+        /* the chords are along the same line, project the ends of b on a */
+        double s0 = ((b[0] - a[0]) * dax + (b[1] - a[1]) * day) / aa;
+        double s1 = ((b[lb] - a[0]) * dax + (b[lb+1] - a[1]) * day) / aa;
+        double lo = clamp01(Math.min(s0, s1));
+        double hi = clamp01(Math.max(s0, s1));
+        if(lo <= hi){
+          double ulo = clamp01(((a[0] + lo * dax - b[0]) * dbx + (a[1] + lo * day - b[1]) * dby) / bb);
+          double uhi = clamp01(((a[0] + hi * dax - b[0]) * dbx + (a[1] + hi * day - b[1]) * dby) / bb);
+          run.contact(ta0, ta1, tb0, tb1, ta0 + lo * (ta1 - ta0), tb0 + ulo * (tb1 - tb0), ta0 + hi * (ta1 - ta0), tb0 + uhi * (tb1 - tb0), false);
+          return;
+        }
+      }
+    }
+
+    double denom = dby * dax - dbx * day;
+    if(denom != 0.0){
+      double s = (dbx * (a[1] - b[1]) - dby * (a[0] - b[0])) / denom;
+      double u = (dax * (a[1] - b[1]) - day * (a[0] - b[0])) / denom;
+      if(s >= -intersectionEpsilon && s <= 1.0 + intersectionEpsilon && u >= -intersectionEpsilon && u <= 1.0 + intersectionEpsilon){
+        double ta = ta0 + clamp01(s) * (ta1 - ta0);
+        double tb = tb0 + clamp01(u) * (tb1 - tb0);
+        run.contact(ta0, ta1, tb0, tb1, ta, tb, ta, tb, true);
+        return;
+      }
+    }
+
+    double[] su = new double[2];
+    if(chordsClosest(a, b, su) <= tol * tol){
+      double ta = ta0 + su[0] * (ta1 - ta0);
+      double tb = tb0 + su[1] * (tb1 - tb0);
+      run.contact(ta0, ta1, tb0, tb1, ta, tb, ta, tb, false);
+    }
+  }
+
+  /* Returns the bounding box {minx, miny, maxx, maxy} of a control polygon, which contains its curve */
+  private static double[] controlPolygonBounds(double[] c){
+    double[] result = {c[0], c[1], c[0], c[1]};
+    for(int i=2; i<c.length; i+=2){
+      result[0] = Math.min(result[0], c[i]);
+      result[1] = Math.min(result[1], c[i+1]);
+      result[2] = Math.max(result[2], c[i]);
+      result[3] = Math.max(result[3], c[i+1]);
+    }
+    return result;
+  }
+
+  /* Returns the squared distance between two bounding boxes, 0 if they overlap */
+  private static double boundsDistanceSqr(double[] a, double[] b){
+    double dx = Math.max(0.0, Math.max(a[0] - b[2], b[0] - a[2]));
+    double dy = Math.max(0.0, Math.max(a[1] - b[3], b[1] - a[3]));
+    return dx * dx + dy * dy;
+  }
+
+  private static double boundsExtent(double[] a){
+    return (a[2] - a[0]) + (a[3] - a[1]);
+  }
+
+  /* Tests if all the control points are within the tolerance from the chord */
+  private static boolean isFlatControlPolygon(double[] c, double tolerance){
+    int l = c.length - 2;
+    double dx = c[l] - c[0];
+    double dy = c[l+1] - c[1];
+    double chord = dx * dx + dy * dy;
+    for(int i=2; i<l; i+=2){
+      double px = c[i] - c[0];
+      double py = c[i+1] - c[1];
+      double d;
+      if(chord == 0.0){
+        d = px * px + py * py;
+      }else{
+        double cross = px * dy - py * dx;
+        d = cross * cross / chord;
+      }
+      if(d > tolerance * tolerance){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Splits a control polygon in two halves at t=0.5 using de Casteljau's algorithm */
+  private static void splitControlPolygon(double[] c, double[] left, double[] right){
+    int n = c.length;
+    double[] tmp = new double[n];
+    System.arraycopy(c, 0, tmp, 0, n);
+    left[0] = tmp[0];
+    left[1] = tmp[1];
+    right[n-2] = tmp[n-2];
+    right[n-1] = tmp[n-1];
+    for(int level=1; level<n/2; level++){
+      for(int i=0; i<n-2*level; i+=2){
+        tmp[i] = (tmp[i] + tmp[i+2]) / 2.0;
+        tmp[i+1] = (tmp[i+1] + tmp[i+3]) / 2.0;
+      }
+      left[2*level] = tmp[0];
+      left[2*level+1] = tmp[1];
+      right[n-2-2*level] = tmp[n-2-2*level];
+      right[n-1-2*level] = tmp[n-1-2*level];
+    }
+  }
+
+  /**
+   * Holds the contacts found between the flat parts of two commands, and then the advancements of the intersections made from them.  The contacts of adjacent parts are joined, so that a crossing found twice at the ends of two parts, a touch found on a few parts and a stretch along which the commands overlap each give one intersection, or two for the ends of the stretch.
+   * @invisible
+   */
+  static class IntersectionRun
+  {
+    float[] advs = new float[8];
+    int count;
+
+    /* Ranges of the parts, ends of the contact on both commands and 1 for a crossing, for each contact */
+    static final int CONTACT_SIZE = 9;
+    double[] contacts = new double[8*CONTACT_SIZE];
+    int numContacts;
+
+    void add(float t1, float t2){
+      for(int i=0; i<count; i++){
+        if(Math.abs(advs[2*i] - t1) < intersectionAdvEpsilon && Math.abs(advs[2*i+1] - t2) < intersectionAdvEpsilon){
+          return;
+        }
+      }
+
+      if(2*count == advs.length){
+        float[] newadvs = new float[advs.length*2];
+        System.arraycopy(advs,0,newadvs,0,advs.length);
+        advs = newadvs;
+      }
+      advs[2*count] = t1;
+      advs[2*count+1] = t2;
+      count++;
+    }
+
+    void contact(double ta0, double ta1, double tb0, double tb1, double taLo, double tbLo, double taHi, double tbHi, boolean crossing){
+      if(CONTACT_SIZE*(numContacts + 1) > contacts.length){
+        double[] newcontacts = new double[contacts.length*2];
+        System.arraycopy(contacts,0,newcontacts,0,contacts.length);
+        contacts = newcontacts;
+      }
+      double[] k = contacts;
+      int o = CONTACT_SIZE*numContacts;
+      k[o] = ta0;
+      k[o+1] = ta1;
+      k[o+2] = tb0;
+      k[o+3] = tb1;
+      k[o+4] = taLo;
+      k[o+5] = tbLo;
+      k[o+6] = taHi;
+      k[o+7] = tbHi;
+      k[o+8] = crossing ? 1.0 : 0.0;
+      numContacts++;
+    }
+
+    /* Joins the contacts of parts that touch on both commands, two crossings are only joined if they are the same */
+    private boolean joined(int i, int j){
+      double[] k = contacts;
+      int oi = CONTACT_SIZE*i;
+      int oj = CONTACT_SIZE*j;
+      double eps = intersectionEpsilon;
+      if(k[oi] > k[oj+1] + eps || k[oj] > k[oi+1] + eps || k[oi+2] > k[oj+3] + eps || k[oj+2] > k[oi+3] + eps){
+        return false;
+      }
+      if(k[oi+8] != 0.0 && k[oj+8] != 0.0){
+        return Math.abs(k[oi+4] - k[oj+4]) < intersectionAdvEpsilon && Math.abs(k[oi+5] - k[oj+5]) < intersectionAdvEpsilon;
+      }
+      return true;
+    }
+
+    private static int find(int[] parent, int i){
+      while(parent[i] != i){
+        parent[i] = parent[parent[i]];
+        i = parent[i];
+      }
+      return i;
+    }
+
+    private static boolean atEnd(double ta, double tb){
+      return ta <= intersectionAdvEpsilon || ta >= 1.0 - intersectionAdvEpsilon || tb <= intersectionAdvEpsilon || tb >= 1.0 - intersectionAdvEpsilon;
+    }
+
+    /* Turns the groups of joined contacts into intersections */
+    /* Two commands can only overlap up to the end of one of them, so a group that reaches an end of the commands on both sides is a stretch along which they overlap, and gives its two ends */
+    /* Any other group is a crossing or a touch, it gives its crossing or else the point where the commands are closest */
+    void resolve(RCommand c1, RCommand c2){
+      int n = numContacts;
+      if(n == 0){
+        return;
+      }
+      double[] k = contacts;
+
+      /* Sort the contacts along the first command, the index in the low bits */
+      long[] keys = new long[n];
+      double maxSpan = 0.0;
+      for(int i=0; i<n; i++){
+        keys[i] = ((long)(k[CONTACT_SIZE*i+4] * (1 << 30)) << 32) | i;
+        maxSpan = Math.max(maxSpan, k[CONTACT_SIZE*i+1] - k[CONTACT_SIZE*i]);
+      }
+      java.util.Arrays.sort(keys);
+      int[] order = new int[n];
+      int[] parent = new int[n];
+      for(int i=0; i<n; i++){
+        order[i] = (int)(keys[i] & 0xffffffffL);
+        parent[i] = i;
+      }
+
+      /* Only the contacts that start less than the longest part before can touch */
+      for(int i=0; i<n; i++){
+        int ci = order[i];
+        for(int j=i-1; j>=0; j--){
+          int cj = order[j];
+          if(k[CONTACT_SIZE*cj+4] < k[CONTACT_SIZE*ci] - maxSpan - intersectionEpsilon){
+            break;
+          }
+          if(joined(ci, cj)){
+            parent[find(parent, ci)] = find(parent, cj);
+          }
+        }
+      }
+
+      /* First and last contact, first crossing and ranges of each group, kept at its root */
+      int[] first = new int[n];
+      int[] last = new int[n];
+      int[] crossing = new int[n];
+      boolean[] severalCrossings = new boolean[n];
+      double[] ranges = new double[4*n];
+      for(int i=0; i<n; i++){
+        first[i] = -1;
+      }
+      for(int i=0; i<n; i++){
+        int c = order[i];
+        int r = find(parent, c);
+        int o = CONTACT_SIZE*c;
+        if(first[r] == -1){
+          first[r] = c;
+          last[r] = c;
+          crossing[r] = -1;
+          ranges[4*r] = k[o];
+          ranges[4*r+1] = k[o+1];
+          ranges[4*r+2] = k[o+2];
+          ranges[4*r+3] = k[o+3];
+        }else{
+          ranges[4*r] = Math.min(ranges[4*r], k[o]);
+          ranges[4*r+1] = Math.max(ranges[4*r+1], k[o+1]);
+          ranges[4*r+2] = Math.min(ranges[4*r+2], k[o+2]);
+          ranges[4*r+3] = Math.max(ranges[4*r+3], k[o+3]);
+        }
+        if(k[o+6] > k[CONTACT_SIZE*last[r]+6]){
+          last[r] = c;
+        }
+        if(k[o+8] != 0.0){
+          if(crossing[r] == -1){
+            crossing[r] = c;
+          }else if(Math.abs(k[o+4] - k[CONTACT_SIZE*crossing[r]+4]) >= intersectionAdvEpsilon || Math.abs(k[o+5] - k[CONTACT_SIZE*crossing[r]+5]) >= intersectionAdvEpsilon){
+            severalCrossings[r] = true;
+          }
+        }
+      }
+
+      double[] e = new double[4];
+      double[] su = new double[2];
+      for(int i=0; i<n; i++){
+        int r = find(parent, order[i]);
+        if(first[r] != order[i]){
+          continue;
+        }
+
+        int of = CONTACT_SIZE*first[r];
+        int ol = CONTACT_SIZE*last[r];
+        double taLo = k[of+4];
+        double tbLo = k[of+5];
+        double taHi = k[ol+6];
+        double tbHi = k[ol+7];
+
+        if(atEnd(taLo, tbLo) && atEnd(taHi, tbHi)){
+          c1.evaluate(taLo, e);
+          double x = e[0];
+          double y = e[1];
+          c1.evaluate(taHi, e);
+          if((e[0] - x) * (e[0] - x) + (e[1] - y) * (e[1] - y) > intersectionTolerance * intersectionTolerance){
+            add((float)taLo, (float)tbLo);
+            add((float)taHi, (float)tbHi);
+            continue;
+          }
+        }
+
+        if(crossing[r] != -1 && !severalCrossings[r]){
+          add((float)k[CONTACT_SIZE*crossing[r]+4], (float)k[CONTACT_SIZE*crossing[r]+5]);
+        }else{
+          closestInRanges(c1, ranges[4*r], ranges[4*r+1], c2, ranges[4*r+2], ranges[4*r+3], su);
+          add((float)su[0], (float)su[1]);
+        }
+      }
+    }
+  }
 
   public RClosest closestPoints(RCommand other)
   {
     RClosest result = new RClosest();
     result.distance = 0;
     RPoint temp;
+    float tempAdv;
 
     switch (commandType) {
     case LINETO:
@@ -1766,6 +2669,9 @@ public class RCommand extends RGeomElem
           temp = result.closest[0];
           result.closest[0] = result.closest[1];
           result.closest[1] = temp;
+          tempAdv = result.advancements[0];
+          result.advancements[0] = result.advancements[1];
+          result.advancements[1] = tempAdv;
         }
         break;
 
@@ -1794,6 +2700,9 @@ public class RCommand extends RGeomElem
           temp = result.closest[0];
           result.closest[0] = result.closest[1];
           result.closest[1] = temp;
+          tempAdv = result.advancements[0];
+          result.advancements[0] = result.advancements[1];
+          result.advancements[1] = tempAdv;
         }
         break;
 
@@ -1804,6 +2713,9 @@ public class RCommand extends RGeomElem
           temp = result.closest[0];
           result.closest[0] = result.closest[1];
           result.closest[1] = temp;
+          tempAdv = result.advancements[0];
+          result.advancements[0] = result.advancements[1];
+          result.advancements[1] = tempAdv;
         }
         break;
 
@@ -1820,7 +2732,17 @@ public class RCommand extends RGeomElem
     return result;
   }
 
+  /**
+   * Use this to get the advancement of the point of a command that is closest to a given point.  For curves the minima of the distance are searched between the roots of its derivative.
+   * @param c  the command on which to search.
+   * @param p  the point from which to measure the distance.
+   * @return float, the advancement of the closest point on the command.
+   * */
   public static float closestAdvFrom(RCommand c, RPoint p) {
+    if(c.commandType != LINETO){
+      return (float)curveClosestAdvFrom(c, p.x, p.y);
+    }
+
     RPoint a = new RPoint(c.startPoint);
     RPoint b = new RPoint(c.endPoint);
 
@@ -1933,9 +2855,271 @@ public class RCommand extends RGeomElem
     return result;
   }
 
-  public static RClosest lineQuadClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest lineCubicClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest quadQuadClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest quadCubicClosest(RCommand c1, RCommand c2) { return null; }
-  public static RClosest cubicCubicClosest(RCommand c1, RCommand c2) { return null; }
+  public static RClosest lineQuadClosest(RCommand c1, RCommand c2) { return curveCurveClosest(c1, c2); }
+  public static RClosest lineCubicClosest(RCommand c1, RCommand c2) { return curveCurveClosest(c1, c2); }
+  public static RClosest quadQuadClosest(RCommand c1, RCommand c2) { return curveCurveClosest(c1, c2); }
+  public static RClosest quadCubicClosest(RCommand c1, RCommand c2) { return curveCurveClosest(c1, c2); }
+  public static RClosest cubicCubicClosest(RCommand c1, RCommand c2) { return curveCurveClosest(c1, c2); }
+
+  /* Evaluates the position and the derivative of the curve at t into out = {x, y, dx, dy} */
+  private void evaluate(double t, double[] out){
+    double mt = 1.0 - t;
+
+    switch(commandType){
+    case QUADBEZIERTO:
+      out[0] = mt * mt * startPoint.x + 2.0 * mt * t * controlPoints[0].x + t * t * endPoint.x;
+      out[1] = mt * mt * startPoint.y + 2.0 * mt * t * controlPoints[0].y + t * t * endPoint.y;
+      out[2] = 2.0 * (mt * (controlPoints[0].x - startPoint.x) + t * (endPoint.x - controlPoints[0].x));
+      out[3] = 2.0 * (mt * (controlPoints[0].y - startPoint.y) + t * (endPoint.y - controlPoints[0].y));
+      break;
+
+    case CUBICBEZIERTO:
+      out[0] = mt * mt * mt * startPoint.x + 3.0 * mt * mt * t * controlPoints[0].x + 3.0 * mt * t * t * controlPoints[1].x + t * t * t * endPoint.x;
+      out[1] = mt * mt * mt * startPoint.y + 3.0 * mt * mt * t * controlPoints[0].y + 3.0 * mt * t * t * controlPoints[1].y + t * t * t * endPoint.y;
+      out[2] = 3.0 * (mt * mt * (controlPoints[0].x - startPoint.x) + 2.0 * mt * t * (controlPoints[1].x - controlPoints[0].x) + t * t * (endPoint.x - controlPoints[1].x));
+      out[3] = 3.0 * (mt * mt * (controlPoints[0].y - startPoint.y) + 2.0 * mt * t * (controlPoints[1].y - controlPoints[0].y) + t * t * (endPoint.y - controlPoints[1].y));
+      break;
+
+    default:
+      out[0] = mt * startPoint.x + t * endPoint.x;
+      out[1] = mt * startPoint.y + t * endPoint.y;
+      out[2] = endPoint.x - startPoint.x;
+      out[3] = endPoint.y - startPoint.y;
+      break;
+    }
+  }
+
+  /* Finds the advancement of the point of the curve closest to (px, py) */
+  private static double curveClosestAdvFrom(RCommand c, double px, double py){
+    return curveClosestAdvFrom(c, px, py, 0.0, 1.0);
+  }
+
+  /* Finds the advancement of the point of the part [t0, t1] of the curve closest to (px, py) */
+  /* The minima of the distance are where (B(t) - p).B'(t) changes from negative to positive, they are bracketed on uniform steps and refined by bisection */
+  private static double curveClosestAdvFrom(RCommand c, double px, double py, double t0, double t1){
+    double[] e = new double[4];
+
+    /* the ends of the part are candidates too */
+    c.evaluate(t1, e);
+    double bestT = t1;
+    double bestDist = (e[0] - px) * (e[0] - px) + (e[1] - py) * (e[1] - py);
+
+    c.evaluate(t0, e);
+    double dist = (e[0] - px) * (e[0] - px) + (e[1] - py) * (e[1] - py);
+    if(dist < bestDist){
+      bestDist = dist;
+      bestT = t0;
+    }
+
+    double prevT = t0;
+    double prevF = (e[0] - px) * e[2] + (e[1] - py) * e[3];
+
+    for(int i=1; i<=closestSteps; i++){
+      double t = t0 + (t1 - t0) * i / closestSteps;
+      c.evaluate(t, e);
+      double f = (e[0] - px) * e[2] + (e[1] - py) * e[3];
+
+      if(prevF < 0.0 && f >= 0.0){
+        double lo = prevT;
+        double hi = t;
+        for(int k=0; k<closestIterations; k++){
+          double mid = (lo + hi) / 2.0;
+          c.evaluate(mid, e);
+          if((e[0] - px) * e[2] + (e[1] - py) * e[3] < 0.0){
+            lo = mid;
+          }else{
+            hi = mid;
+          }
+        }
+
+        double tm = (lo + hi) / 2.0;
+        c.evaluate(tm, e);
+        dist = (e[0] - px) * (e[0] - px) + (e[1] - py) * (e[1] - py);
+        if(dist < bestDist){
+          bestDist = dist;
+          bestT = tm;
+        }
+      }
+
+      prevT = t;
+      prevF = f;
+    }
+
+    return bestT;
+  }
+
+  /* Finds the closest points between the part [s0, s1] of c1 and the part [u0, u1] of c2 and writes their advancements in su */
+  /* The distance from c1 to c2 is minimized by golden section search along c1, the parts being small enough to hold only one minimum */
+  private static void closestInRanges(RCommand c1, double s0, double s1, RCommand c2, double u0, double u1, double[] su){
+    double ratio = (Math.sqrt(5.0) - 1.0) / 2.0;
+    double lo = s0;
+    double hi = s1;
+    double m1 = hi - ratio * (hi - lo);
+    double m2 = lo + ratio * (hi - lo);
+    double f1 = distanceInRange(c1, m1, c2, u0, u1, su);
+    double f2 = distanceInRange(c1, m2, c2, u0, u1, su);
+    for(int k=0; k<closestIterations; k++){
+      if(f1 <= f2){
+        hi = m2;
+        m2 = m1;
+        f2 = f1;
+        m1 = hi - ratio * (hi - lo);
+        f1 = distanceInRange(c1, m1, c2, u0, u1, su);
+      }else{
+        lo = m1;
+        m1 = m2;
+        f1 = f2;
+        m2 = lo + ratio * (hi - lo);
+        f2 = distanceInRange(c1, m2, c2, u0, u1, su);
+      }
+    }
+    distanceInRange(c1, (lo + hi) / 2.0, c2, u0, u1, su);
+  }
+
+  /* Returns the squared distance from the point at s on c1 to the part [u0, u1] of c2, and writes s and the advancement of the closest point of c2 in su */
+  private static double distanceInRange(RCommand c1, double s, RCommand c2, double u0, double u1, double[] su){
+    double[] e = new double[4];
+    c1.evaluate(s, e);
+    double px = e[0];
+    double py = e[1];
+    double u = curveClosestAdvFrom(c2, px, py, u0, u1);
+    c2.evaluate(u, e);
+    su[0] = s;
+    su[1] = u;
+    return (e[0] - px) * (e[0] - px) + (e[1] - py) * (e[1] - py);
+  }
+
+  /* Finds the closest points between two commands */
+  /* Pairs of parts of both curves are discarded when their bounding boxes are further than the best distance found, the rest are split until they are flat and their chords can be compared */
+  /* The result is then refined by projecting alternatively the closest point of each curve on the other */
+  static RClosest curveCurveClosest(RCommand c1, RCommand c2){
+    ClosestRun run = new ClosestRun();
+    curveCurveClosest(c1.getControlPolygon(), 0.0, 1.0, c2.getControlPolygon(), 0.0, 1.0, intersectionRecursionLimit, run);
+
+    double[] e = new double[4];
+    for(int k=0; k<2; k++){
+      c1.evaluate(run.t1, e);
+      run.t2 = (c2.commandType == LINETO) ? closestAdvFrom(c2, new RPoint((float)e[0], (float)e[1])) : curveClosestAdvFrom(c2, e[0], e[1]);
+      c2.evaluate(run.t2, e);
+      run.t1 = (c1.commandType == LINETO) ? closestAdvFrom(c1, new RPoint((float)e[0], (float)e[1])) : curveClosestAdvFrom(c1, e[0], e[1]);
+    }
+
+    RClosest result = new RClosest();
+    result.closest = new RPoint[2];
+    result.advancements = new float[2];
+    result.advancements[0] = (float)run.t1;
+    result.advancements[1] = (float)run.t2;
+    result.closest[0] = c1.getPoint(result.advancements[0]);
+    result.closest[1] = c2.getPoint(result.advancements[1]);
+    result.distance = result.closest[0].dist(result.closest[1]);
+    return result;
+  }
+
+  private static void curveCurveClosest(double[] a, double ta0, double ta1, double[] b, double tb0, double tb1, int depth, ClosestRun run){
+    double[] boundsA = controlPolygonBounds(a);
+    double[] boundsB = controlPolygonBounds(b);
+    if(boundsDistanceSqr(boundsA, boundsB) >= run.distance){
+      return;
+    }
+
+    boolean flatA = isFlatControlPolygon(a, closestTolerance);
+    boolean flatB = isFlatControlPolygon(b, closestTolerance);
+
+    if((flatA && flatB) || depth <= 0){
+      double[] su = new double[2];
+      double dist = chordsClosest(a, b, su);
+      if(dist < run.distance){
+        run.distance = dist;
+        run.t1 = ta0 + su[0] * (ta1 - ta0);
+        run.t2 = tb0 + su[1] * (tb1 - tb0);
+      }
+      return;
+    }
+
+    boolean splitA = !flatA && (flatB || boundsExtent(boundsA) >= boundsExtent(boundsB));
+    double[] c = splitA ? a : b;
+    double[] left = new double[c.length];
+    double[] right = new double[c.length];
+    splitControlPolygon(c, left, right);
+
+    /* visit first the nearest half so that the other one is more likely to be discarded */
+    double[] other = splitA ? boundsB : boundsA;
+    boolean leftFirst = boundsDistanceSqr(controlPolygonBounds(left), other) <= boundsDistanceSqr(controlPolygonBounds(right), other);
+    double[] first = leftFirst ? left : right;
+    double[] second = leftFirst ? right : left;
+
+    if(splitA){
+      double tam = (ta0 + ta1) / 2.0;
+      curveCurveClosest(first, leftFirst ? ta0 : tam, leftFirst ? tam : ta1, b, tb0, tb1, depth - 1, run);
+      curveCurveClosest(second, leftFirst ? tam : ta0, leftFirst ? ta1 : tam, b, tb0, tb1, depth - 1, run);
+    }else{
+      double tbm = (tb0 + tb1) / 2.0;
+      curveCurveClosest(a, ta0, ta1, first, leftFirst ? tb0 : tbm, leftFirst ? tbm : tb1, depth - 1, run);
+      curveCurveClosest(a, ta0, ta1, second, leftFirst ? tbm : tb0, leftFirst ? tb1 : tbm, depth - 1, run);
+    }
+  }
+
+  /* Returns the squared distance between the chords of two control polygons, and the advancements of the closest points on each chord in su */
+  private static double chordsClosest(double[] a, double[] b, double[] su){
+    int la = a.length - 2;
+    int lb = b.length - 2;
+    double d1x = a[la] - a[0];
+    double d1y = a[la+1] - a[1];
+    double d2x = b[lb] - b[0];
+    double d2y = b[lb+1] - b[1];
+    double rx = a[0] - b[0];
+    double ry = a[1] - b[1];
+
+    double aa = d1x * d1x + d1y * d1y;
+    double ee = d2x * d2x + d2y * d2y;
+    double ff = d2x * rx + d2y * ry;
+    double s, u;
+
+    if(aa <= intersectionEpsilon && ee <= intersectionEpsilon){
+      s = 0.0;
+      u = 0.0;
+    }else if(aa <= intersectionEpsilon){
+      s = 0.0;
+      u = clamp01(ff / ee);
+    }else{
+      double cc = d1x * rx + d1y * ry;
+      if(ee <= intersectionEpsilon){
+        u = 0.0;
+        s = clamp01(-cc / aa);
+      }else{
+        double bb = d1x * d2x + d1y * d2y;
+        double denom = aa * ee - bb * bb;
+        s = (denom != 0.0) ? clamp01((bb * ff - cc * ee) / denom) : 0.0;
+        u = (bb * s + ff) / ee;
+        if(u < 0.0){
+          u = 0.0;
+          s = clamp01(-cc / aa);
+        }else if(u > 1.0){
+          u = 1.0;
+          s = clamp01((bb - cc) / aa);
+        }
+      }
+    }
+
+    su[0] = s;
+    su[1] = u;
+    double dx = rx + d1x * s - d2x * u;
+    double dy = ry + d1y * s - d2y * u;
+    return dx * dx + dy * dy;
+  }
+
+  private static double clamp01(double v){
+    return (v < 0.0) ? 0.0 : ((v > 1.0) ? 1.0 : v);
+  }
+
+  /**
+   * Holds the best pair of advancements found while searching the closest points between two commands.
+   * @invisible
+   */
+  static class ClosestRun
+  {
+    double distance = Double.MAX_VALUE;
+    double t1;
+    double t2;
+  }
 }
\ No newline at end of file
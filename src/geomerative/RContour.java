@@ -48,6 +48,9 @@ public class RContour extends RGeomElem
   boolean isContributing = true;
   boolean isHole = false;
   boolean closed = true;
+
+  /* Coordinates of the points when they were last checked, to notice the points moved in place */
+  private float[] pointCoords;
   /**
    * Use this method to count the number of points in the contour. 
    * @eexample countPoints
@@ -139,6 +142,7 @@ public class RContour extends RGeomElem
       System.arraycopy(morePoints,0,newPoints,this.points.length,morePoints.length);
       this.points = newPoints;
     }
+    clearCaches();
   }
   
   /**
@@ -159,6 +163,7 @@ public class RContour extends RGeomElem
       points[i] = (RPoint)morePoints.get(j);
       j++;
     }
+    clearCaches();
   }
   
   /**
@@ -290,5 +295,41 @@ public class RContour extends RGeomElem
       newpoints[this.points.length]=nextpoint;
     }
     this.points=newpoints; 
+    clearCaches();
+  }
+
+  int getStamp(){
+    checkPoints();
+    return stamp;
+  }
+
+  /* Renews the stamp if the points were moved since the last check, through getHandles() or the fields of the points, as nothing else tells the contour about it */
+  void checkPoints(){
+    int numPoints = countPoints();
+    float[] c = pointCoords;
+    if(c != null && c.length == 2*numPoints){
+      boolean moved = false;
+      for(int i=0;i<numPoints;i++){
+        if(c[2*i] != points[i].x || c[2*i + 1] != points[i].y){
+          moved = true;
+          break;
+        }
+      }
+      if(!moved){
+        return;
+      }
+    }
+
+    if(c != null){
+      clearCaches();
+    }
+    if(c == null || c.length != 2*numPoints){
+      c = new float[2*numPoints];
+    }
+    for(int i=0;i<numPoints;i++){
+      c[2*i] = points[i].x;
+      c[2*i + 1] = points[i].y;
+    }
+    pointCoords = c;
   }
 }
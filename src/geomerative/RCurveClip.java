@@ -0,0 +1,343 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative ;
+
+/**
+ * Boolean operations on shapes that keep the curves of the operands.  The
+ * paths are polygonized and clipped by RClip as usual, but the position of
+ * every point of the polygons on its path is remembered: the index of its
+ * command plus its advancement on the command.  The points of the result
+ * that come from the operands are looked up by their coordinates, the new
+ * points where the operands cross are placed on the segment they lie on, and
+ * each run of edges of the result that follows one path is replaced by the
+ * pieces of the commands of that path, cut with RCommand.split().  The ends
+ * of the pieces are set to the points of the result, so the paths are
+ * closed exactly where the polygons are.  The edges that can not be traced
+ * back, such as the segments closing open paths, stay lines.
+ */
+class RCurveClip implements RPointSink
+{
+  /* Distance to a segment, relative to its length, under which a point is considered on it */
+  static final float onSegmentEpsilon = 1e-3F;
+
+  /* Pieces of commands shorter than this advancement are dropped */
+  static final float paramEpsilon = 1e-5F;
+
+  /* The points of the polygonized paths of both operands, one path after the other */
+  float[] xs = new float[256];
+  float[] ys = new float[256];
+  /* The position of each point on its path, the index of the command plus the advancement on it */
+  float[] gs = new float[256];
+  int[] pathOf = new int[256];
+  int count;
+
+  RPath[] paths = new RPath[16];
+  int numPaths;
+
+  /* Hash table of the points by their coordinates, chained through nextSame */
+  int[] table;
+  int[] nextSame;
+  int mask;
+
+  static RShape clip(RClip.OperationType op, RShape subj, RShape clip, RSegmentator seg){
+    RCurveClip c = new RCurveClip();
+    RPolygon subjPoly = c.polygonize(subj, seg);
+    RPolygon clipPoly = c.polygonize(clip, seg);
+    RPolygon res = RClip.clip(op, subjPoly, clipPoly, RPolygon.class);
+
+    RShape result = new RShape();
+    if(res == null || res.contours == null){
+      return result;
+    }
+    c.buildTable();
+    for(int i=0;i<res.contours.length;i++){
+      RPath p = c.rebuild(res.contours[i].points);
+      if(p != null){
+        result.addPath(p);
+      }
+    }
+    return result;
+  }
+
+  public void addPoint(float x, float y, int pathIndex, int commandIndex, float t){
+    if(count == xs.length){
+      xs = grow(xs);
+      ys = grow(ys);
+      gs = grow(gs);
+      int[] newpathOf = new int[pathOf.length*2];
+      System.arraycopy(pathOf, 0, newpathOf, 0, count);
+      pathOf = newpathOf;
+    }
+    xs[count] = x;
+    ys[count] = y;
+    gs[count] = commandIndex + t;
+    pathOf[count] = numPaths - 1;
+    count++;
+  }
+
+  private static float[] grow(float[] a){
+    float[] b = new float[a.length*2];
+    System.arraycopy(a, 0, b, 0, a.length);
+    return b;
+  }
+
+  /* The polygon of the shape, the same as toPolygon(seg) gives, remembering where each point comes from */
+  private RPolygon polygonize(RShape s, RSegmentator seg){
+    RPolygon poly = new RPolygon();
+    polygonize(s, seg, poly);
+    return poly;
+  }
+
+  private void polygonize(RShape s, RSegmentator seg, RPolygon poly){
+    for(int i=0;i<s.countChildren();i++){
+      polygonize(s.children[i], seg, poly);
+    }
+
+    for(int i=0;i<s.countPaths();i++){
+      if(numPaths == paths.length){
+        RPath[] newpaths = new RPath[paths.length*2];
+        System.arraycopy(paths, 0, newpaths, 0, numPaths);
+        paths = newpaths;
+      }
+      paths[numPaths++] = s.paths[i];
+
+      int start = count;
+      s.paths[i].flatten(seg, this);
+      if(count == start){
+        continue;
+      }
+      RPoint[] pnts = new RPoint[count - start];
+      for(int j=start;j<count;j++){
+        pnts[j - start] = new RPoint(xs[j], ys[j]);
+      }
+      RContour c = new RContour(pnts);
+      c.closed = s.paths[i].closed;
+      c.setStyle(s.paths[i]);
+      poly.addContour(c);
+    }
+  }
+
+  private static int hash(float x, float y){
+    int h = Float.floatToIntBits(x + 0.0F) * 31 + Float.floatToIntBits(y + 0.0F);
+    return h ^ (h >>> 16);
+  }
+
+  private void buildTable(){
+    int size = 16;
+    while(size < 2*count){
+      size *= 2;
+    }
+    mask = size - 1;
+    table = new int[size];
+    java.util.Arrays.fill(table, -1);
+    nextSame = new int[count];
+    for(int i=count-1;i>=0;i--){
+      int h = hash(xs[i], ys[i]) & mask;
+      nextSame[i] = table[h];
+      table[h] = i;
+    }
+  }
+
+  /* The first point with the coordinates of p, or -1; the next ones follow with next() */
+  private int find(RPoint p){
+    return next(table[hash(p.x, p.y) & mask], p);
+  }
+
+  private int next(int i, RPoint p){
+    while(i >= 0 && (xs[i] != p.x || ys[i] != p.y)){
+      i = nextSame[i];
+    }
+    return i;
+  }
+
+  /* Advancement of p on the segment from point i to point k if p lies on it, NaN otherwise */
+  private float onSegment(RPoint p, int i, int k){
+    if(k < 0 || k >= count || pathOf[k] != pathOf[i]){
+      return Float.NaN;
+    }
+    float dx = xs[k] - xs[i];
+    float dy = ys[k] - ys[i];
+    float len2 = dx*dx + dy*dy;
+    if(len2 == 0F){
+      return Float.NaN;
+    }
+    float px = p.x - xs[i];
+    float py = p.y - ys[i];
+    float s = (px*dx + py*dy) / len2;
+    float cross = px*dy - py*dx;
+    if(s < -onSegmentEpsilon || s > 1F + onSegmentEpsilon || cross*cross > onSegmentEpsilon*onSegmentEpsilon*len2*len2){
+      return Float.NaN;
+    }
+    return s;
+  }
+
+  /* Finds the path the edge from u to v lies on and the positions of u and v on it, writes them to edge and returns the path or -1 */
+  private int locate(RPoint u, RPoint v, float[] edge){
+    /* Both ends are points of the same path, one after the other */
+    for(int i=find(u);i>=0;i=next(nextSame[i], u)){
+      for(int j=find(v);j>=0;j=next(nextSame[j], v)){
+        if(pathOf[i] == pathOf[j] && (j == i + 1 || j == i - 1)){
+          edge[0] = gs[i];
+          edge[1] = gs[j];
+          return pathOf[i];
+        }
+      }
+    }
+
+    /* One end is a point of a path and the other one lies on a segment next to it */
+    for(int i=find(u);i>=0;i=next(nextSame[i], u)){
+      for(int k=i-1;k<=i+1;k+=2){
+        float s = onSegment(v, i, k);
+        if(!Float.isNaN(s)){
+          edge[0] = gs[i];
+          edge[1] = gs[i] + s*(gs[k] - gs[i]);
+          return pathOf[i];
+        }
+      }
+    }
+    for(int j=find(v);j>=0;j=next(nextSame[j], v)){
+      for(int k=j-1;k<=j+1;k+=2){
+        float s = onSegment(u, j, k);
+        if(!Float.isNaN(s)){
+          edge[0] = gs[j] + s*(gs[k] - gs[j]);
+          edge[1] = gs[j];
+          return pathOf[j];
+        }
+      }
+    }
+    return -1;
+  }
+
+  /* The path following the points of a contour of the result, with the pieces of the original commands where possible */
+  private RPath rebuild(RPoint[] points){
+    int n = (points == null) ? 0 : points.length;
+    if(n < 2){
+      return null;
+    }
+
+    int[] epath = new int[n];
+    float[] eg0 = new float[n];
+    float[] eg1 = new float[n];
+    float[] edge = new float[2];
+    for(int i=0;i<n;i++){
+      epath[i] = locate(points[i], points[(i+1) % n], edge);
+      eg0[i] = edge[0];
+      eg1[i] = edge[1];
+    }
+
+    /* Start at an edge that does not continue the one before, so that no run wraps around */
+    int start = 0;
+    for(int i=0;i<n;i++){
+      if(!continues(epath, eg0, eg1, (i + n - 1) % n, i)){
+        start = i;
+        break;
+      }
+    }
+
+    RPath result = new RPath(new RPoint(points[start]));
+    int i = 0;
+    while(i < n){
+      int first = (start + i) % n;
+      int last = first;
+      i++;
+      while(i < n && continues(epath, eg0, eg1, last, (start + i) % n)){
+        last = (start + i) % n;
+        i++;
+      }
+      RPoint end = new RPoint(points[(last + 1) % n]);
+      if(epath[first] < 0 || !addPieces(result, paths[epath[first]], eg0[first], eg1[last], end)){
+        result.addLineTo(end);
+      }
+    }
+    result.closed = true;
+    return result;
+  }
+
+  /* Tells if edge j follows edge i on the same path in the same direction */
+  private static boolean continues(int[] epath, float[] eg0, float[] eg1, int i, int j){
+    return epath[i] >= 0 && epath[i] == epath[j] && eg1[i] == eg0[j] &&
+      ((eg1[i] - eg0[i] > 0) == (eg1[j] - eg0[j] > 0));
+  }
+
+  /* Adds the pieces of the commands of the path between the positions g0 and g1, returns false if there are none */
+  private static boolean addPieces(RPath result, RPath path, float g0, float g1, RPoint end){
+    int numCommands = path.countCommands();
+    int added = 0;
+    if(g0 <= g1){
+      int first = Math.max((int)Math.floor(g0), 0);
+      for(int k=first;k<numCommands && k<g1;k++){
+        float ta = Math.max(g0 - k, 0F);
+        float tb = Math.min(g1 - k, 1F);
+        if(tb - ta > paramEpsilon){
+          addPiece(result, piece(path.commands[k], ta, tb));
+          added++;
+        }
+      }
+    }else{
+      int first = Math.min((int)Math.ceil(g0) - 1, numCommands - 1);
+      for(int k=first;k>=0 && k+1>g1;k--){
+        float ta = Math.max(g1 - k, 0F);
+        float tb = Math.min(g0 - k, 1F);
+        if(tb - ta > paramEpsilon){
+          addPiece(result, reverse(piece(path.commands[k], ta, tb)));
+          added++;
+        }
+      }
+    }
+    if(added == 0){
+      return false;
+    }
+    result.commands[result.countCommands() - 1].endPoint = end;
+    result.lastPoint = end;
+    return true;
+  }
+
+  /* Adds the command starting it at the last point of the path */
+  private static void addPiece(RPath result, RCommand c){
+    c.startPoint = result.lastPoint;
+    result.addCommand(c);
+  }
+
+  /* The part of the command between the advancements ta and tb, as a new command */
+  private static RCommand piece(RCommand c, float ta, float tb){
+    RCommand result = new RCommand(c);
+    if(tb < 1F){
+      result = result.split(tb)[0];
+      ta = ta / tb;
+    }
+    if(ta > 0F){
+      result = result.split(ta)[1];
+    }
+    return result;
+  }
+
+  private static RCommand reverse(RCommand c){
+    switch(c.getCommandType()){
+    case RCommand.QUADBEZIERTO:
+      return RCommand.createBezier3(c.endPoint, c.controlPoints[0], c.startPoint);
+
+    case RCommand.CUBICBEZIERTO:
+      return RCommand.createBezier4(c.endPoint, c.controlPoints[1], c.controlPoints[0], c.startPoint);
+
+    default:
+      return RCommand.createLine(c.endPoint, c.startPoint);
+    }
+  }
+}
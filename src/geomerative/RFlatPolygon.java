@@ -0,0 +1,200 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * RFlatPolygon holds the contours of a polygon in flat arrays instead of RContour and RPoint objects: the coordinates of all the points one after the other, the index of the first point of each contour and whether each contour is a hole.  The binary operations (difference, xor, union and intersection) take and give flat polygons, so that results that are drawn or clipped again never build the objects of an RPolygon.
+ * @usage Geometry
+ * @related RPolygon
+ * @related toPolygon ( )
+ * @extended
+ */
+public class RFlatPolygon
+{
+  /**
+   * The x and y coordinates of the points of all the contours, one contour after the other.
+   * @related contourStarts
+   */
+  public float[] coords;
+
+  /**
+   * The index of the first point of each contour, followed by the number of points.  Contour c goes from point contourStarts[c] to point contourStarts[c+1]-1, its first coordinate is coords[2*contourStarts[c]].
+   * @related coords
+   */
+  public int[] contourStarts;
+
+  /**
+   * Whether each contour is a hole.
+   */
+  public boolean[] holes;
+
+  /**
+   * Create an empty flat polygon.
+   */
+  public RFlatPolygon(){
+    this(new float[0], new int[1], new boolean[0]);
+  }
+
+  /**
+   * Create a flat polygon from its arrays, which are used as they are, not copied.
+   * @param coords  the x and y coordinates of the points of all the contours
+   * @param contourStarts  the index of the first point of each contour, followed by the number of points
+   * @param holes  whether each contour is a hole
+   */
+  public RFlatPolygon(float[] coords, int[] contourStarts, boolean[] holes){
+    this.coords = coords;
+    this.contourStarts = contourStarts;
+    this.holes = holes;
+  }
+
+  /**
+   * Create a flat polygon with the contours of a polygon.
+   * @param p  the polygon to flatten
+   */
+  public RFlatPolygon(RPolygon p){
+    int numContours = p.countContours();
+    contourStarts = new int[numContours + 1];
+    holes = new boolean[numContours];
+    for(int c=0;c<numContours;c++){
+      contourStarts[c+1] = contourStarts[c] + p.contours[c].countPoints();
+      holes[c] = p.contours[c].isHole;
+    }
+
+    coords = new float[2*contourStarts[numContours]];
+    for(int c=0;c<numContours;c++){
+      RPoint[] points = p.contours[c].points;
+      int k = 2*contourStarts[c];
+      for(int i=contourStarts[c];i<contourStarts[c+1];i++){
+        coords[k++] = points[i - contourStarts[c]].x;
+        coords[k++] = points[i - contourStarts[c]].y;
+      }
+    }
+  }
+
+  /**
+   * Use this method to count the contours of the polygon.
+   * @return int, the number of contours
+   */
+  public int countContours(){
+    return contourStarts.length - 1;
+  }
+
+  /**
+   * Use this method to count the points of all the contours of the polygon.
+   * @return int, the number of points
+   */
+  public int countPoints(){
+    return contourStarts[contourStarts.length - 1];
+  }
+
+  /**
+   * Use this method to get a polygon with the contours of the flat polygon.
+   * @return RPolygon, the polygon
+   */
+  public RPolygon toPolygon(){
+    RPolygon result = new RPolygon();
+    int numContours = countContours();
+    if(numContours == 0){
+      return result;
+    }
+
+    RContour[] contours = new RContour[numContours];
+    for(int c=0;c<numContours;c++){
+      RPoint[] points = new RPoint[contourStarts[c+1] - contourStarts[c]];
+      int k = 2*contourStarts[c];
+      for(int i=0;i<points.length;i++){
+        points[i] = new RPoint(coords[k], coords[k+1]);
+        k += 2;
+      }
+      contours[c] = new RContour(points);
+      contours[c].isHole = holes[c];
+    }
+    result.contours = contours;
+    result.currentContour = numContours - 1;
+    return result;
+  }
+
+  /**
+   * Use this method to get the intersection of this polygon with the polygon passed in as a parameter.
+   * @param p RFlatPolygon, the polygon with which to perform the intersection
+   * @return RFlatPolygon, the intersection of the two polygons
+   * @related union ( )
+   * @related xor ( )
+   * @related diff ( )
+   */
+  public RFlatPolygon intersection(RFlatPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_INT, p, this);
+  }
+
+  /**
+   * Use this method to get the union of this polygon with the polygon passed in as a parameter.
+   * @param p RFlatPolygon, the polygon with which to perform the union
+   * @return RFlatPolygon, the union of the two polygons
+   * @related intersection ( )
+   * @related xor ( )
+   * @related diff ( )
+   */
+  public RFlatPolygon union(RFlatPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_UNION, p, this);
+  }
+
+  /**
+   * Use this method to get the xor of this polygon with the polygon passed in as a parameter.
+   * @param p RFlatPolygon, the polygon with which to perform the xor
+   * @return RFlatPolygon, the xor of the two polygons
+   * @related union ( )
+   * @related intersection ( )
+   * @related diff ( )
+   */
+  public RFlatPolygon xor(RFlatPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_XOR, p, this);
+  }
+
+  /**
+   * Use this method to get the difference between this polygon and the polygon passed in as a parameter.
+   * @param p RFlatPolygon, the polygon to subtract from this one
+   * @return RFlatPolygon, the difference of the two polygons
+   * @related union ( )
+   * @related intersection ( )
+   * @related xor ( )
+   */
+  public RFlatPolygon diff(RFlatPolygon p){
+    return RClip.clip(RClip.OperationType.GPC_DIFF, this, p);
+  }
+
+  boolean isEmpty(){
+    return countContours() == 0;
+  }
+
+  /* Writes the bounding box of each contour to box, from contour offset on */
+  void contourBounds(float[] box, int offset){
+    for(int c=0;c<countContours();c++){
+      int b = 4*(offset + c);
+      box[b] = box[b+1] = Float.POSITIVE_INFINITY;
+      box[b+2] = box[b+3] = Float.NEGATIVE_INFINITY;
+      for(int i=2*contourStarts[c];i<2*contourStarts[c+1];i+=2){
+        box[b]   = Math.min(box[b],   coords[i]);
+        box[b+1] = Math.min(box[b+1], coords[i+1]);
+        box[b+2] = Math.max(box[b+2], coords[i]);
+        box[b+3] = Math.max(box[b+3], coords[i+1]);
+      }
+    }
+  }
+}
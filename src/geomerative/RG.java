@@ -45,6 +45,24 @@ public class RG implements PConstants{
    */
   public static boolean useFastClip = true;
 
+  /**
+   * When set together with useFastClip the clipper builds its scanbeam and local minima tables by sorting arrays instead of growing a tree and a linked list, which is much faster on shapes with many vertices.
+   * @invisible
+   */
+  public static boolean useArrayClip = true;
+
+  /**
+   * When set, the intersection(), union(), xor() and diff() methods of RShape keep the curves of the shapes: the result is made of the pieces of the original commands instead of the lines of their polygons.
+   * @invisible
+   */
+  public static boolean keepCurves = false;
+
+  /**
+   * The tesselator used by the toMesh() and toIndexedMesh() methods of the polygons and to draw the shapes.
+   * @invisible
+   */
+  static RTesselator tesselator = RTesselator.CLIPPER;
+
   /**
    * The adaptor adapts the shape to a particular shape by adapting each of the groups points.  This can cause deformations of the individual elements in the group.
    */
@@ -60,6 +78,16 @@ public class RG implements PConstants{
    */
   public final static int BYELEMENTINDEX = 2;
 
+  /**
+   * The fill rule of unionAll keeps the points that are inside at least one of the shapes.
+   */
+  public final static int NONZERO = 0;
+
+  /**
+   * The fill rule of unionAll keeps the points that are inside an odd number of the shapes.
+   */
+  public final static int EVENODD = 1;
+
   /**
    * @invisible
    */
@@ -89,6 +117,11 @@ public class RG implements PConstants{
    * UNIFORMSTEP segmentator is the fastest segmentator and it segments the curve based on a constant value of the step of the curve parameter, or on the number of segments wanted.  This can be useful when segmpointsentating very often a Shape or when we know the amount of segments necessary for our specific application.
    */
   public static int UNIFORMSTEP = RCommand.UNIFORMSTEP;
+
+  /**
+   * TOLERANCE segmentator computes beforehand, from the control points, the number of uniform steps needed for each curve to stay within a given distance of its segments.  This is fast and gives a predictable number of vertices for a given precision.
+   */
+  public static int TOLERANCE = RCommand.TOLERANCE;
   
   static int dpi = 72;
 
@@ -577,6 +610,75 @@ public class RG implements PConstants{
     return a.xor(b);
   }
 
+  /**
+   * Union of many shapes at once.  This is much faster than joining the shapes one by one with union(), since they are merged pairwise, neighbours first, in a balanced tree.
+   * @eexample unionAll
+   * @param shapes  the shapes to join
+   * @param fillRule  RG.NONZERO to keep the points that are inside at least one of the shapes, RG.EVENODD to keep only the points that are inside an odd number of them
+   * @return RShape, the result of the operation
+   * @related union ( )
+   * @related unionParallel ( )
+   * @related intersection ( )
+   */
+  public static RShape union(RShape[] shapes, int fillRule){
+    return cascade(shapes, RPolygon.unionOperation(fillRule), 1);
+  }
+
+  public static RShape union(RShape[] shapes){
+    return union(shapes, NONZERO);
+  }
+
+  /**
+   * Intersection of many shapes at once.  The shapes are intersected pairwise in a balanced tree, and the operation stops as soon as a partial result is empty.
+   * @eexample intersectionAll
+   * @param shapes  the shapes to intersect
+   * @return RShape, the result of the operation
+   * @related union ( )
+   * @related intersection ( )
+   * @related intersectionParallel ( )
+   */
+  public static RShape intersection(RShape[] shapes){
+    return cascade(shapes, RClip.OperationType.GPC_INT, 1);
+  }
+
+  /**
+   * Same as union(shapes, fillRule), with the shapes polygonized and merged on as many threads as there are processors.  The result is the same as the one of union(shapes, fillRule).  The shapes must not be changed, nor any shape be in the array twice, until the union is done.
+   * @eexample unionParallel
+   * @param shapes  the shapes to join
+   * @param fillRule  RG.NONZERO to keep the points that are inside at least one of the shapes, RG.EVENODD to keep only the points that are inside an odd number of them
+   * @return RShape, the result of the operation
+   * @related union ( )
+   * @related intersectionParallel ( )
+   */
+  public static RShape unionParallel(RShape[] shapes, int fillRule){
+    return cascade(shapes, RPolygon.unionOperation(fillRule), Runtime.getRuntime().availableProcessors());
+  }
+
+  public static RShape unionParallel(RShape[] shapes){
+    return unionParallel(shapes, NONZERO);
+  }
+
+  /**
+   * Same as intersection(shapes), with the shapes polygonized and intersected on as many threads as there are processors.  The result is the same as the one of intersection(shapes).  The shapes must not be changed, nor any shape be in the array twice, until the intersection is done.
+   * @eexample intersectionParallel
+   * @param shapes  the shapes to intersect
+   * @return RShape, the result of the operation
+   * @related intersection ( )
+   * @related unionParallel ( )
+   */
+  public static RShape intersectionParallel(RShape[] shapes){
+    return cascade(shapes, RClip.OperationType.GPC_INT, Runtime.getRuntime().availableProcessors());
+  }
+
+  /* Polygonizes the shapes with the current segmentator and applies the operation to all of them */
+  private static RShape cascade(RShape[] shapes, RClip.OperationType op, int threads){
+    RShape result = RClip.cascade(op, shapes, RSegmentator.getDefault(), threads).toShape();
+    if(shapes.length > 0){
+      result.setStyle(shapes[0]);
+    }
+    return result;
+  }
+
   /**
    * Ignore the styles of the shapes when drawing and use the Processing style methods.
    * @eexample ignoreStyles
@@ -590,6 +692,43 @@ public class RG implements PConstants{
     ignoreStyles = true;
   }
 
+  /**
+   * Use this to set whether the boolean operations between shapes keep the curves of the shapes.  By default the shapes are polygonized and the result is made only of lines.  When set, each piece of the result that follows a command of one of the shapes is replaced by the part of that command, so the result has far fewer commands and stays smooth when scaled.
+   * @eexample keepCurves
+   * @param value  value to which the keepCurves state should be set
+   * @related ignoreStyles ( )
+   */
+  public static void keepCurves(boolean value){
+    keepCurves = value;
+  }
+
+  public static void keepCurves(){
+    keepCurves = true;
+  }
+
+  /**
+   * Use this to set the tesselator that cuts the polygons into triangles to build their meshes and to draw the shapes.  By default it is RTesselator.CLIPPER, which takes the triangle strips of the clipper.  RTesselator.MONOTONE sweeps the polygon once and is several times faster on polygons whose contours do not cross.  Any other implementation of RTesselator can also be given.
+   * @eexample setTesselator
+   * @param t  the tesselator, RTesselator.CLIPPER, RTesselator.MONOTONE or another implementation of RTesselator
+   * @related getTesselator ( )
+   */
+  public static void setTesselator(RTesselator t){
+    if(t == null){
+      throw new RuntimeException("The tesselator can not be null.");
+    }
+    tesselator = t;
+  }
+
+  /**
+   * Use this to get the tesselator set by setTesselator().
+   * @eexample setTesselator
+   * @return RTesselator, the current tesselator
+   * @related setTesselator ( )
+   */
+  public static RTesselator getTesselator(){
+    return tesselator;
+  }
+
 
   /**
    * Use this to set the adaptor type.
@@ -628,12 +767,13 @@ public class RG implements PConstants{
   /**
    * Use this to set the polygonizer type.
    *
-   * @param segmenterMethod  can be RG.ADAPTATIVE, RG.UNIFORMLENGTH or RG.UNIFORMSTEP.
+   * @param segmenterMethod  can be RG.ADAPTATIVE, RG.UNIFORMLENGTH, RG.UNIFORMSTEP or RG.TOLERANCE.
    *
    * @eexample setPolygonizer
    * @related ADAPTATIVE
    * @related UNIFORMLENGTH
    * @related UNIFORMSTEP
+   * @related TOLERANCE
    * */
   public static void setPolygonizer(int segmenterMethod){
     RCommand.setSegmentator(segmenterMethod);
@@ -671,4 +811,34 @@ public class RG implements PConstants{
     RCommand.setSegmentStep(step);
   }
 
+  /**
+   * Use this to set the maximum distance between the curves and the segments for the TOLERANCE segmentator.
+   * @eexample setPolygonizerTolerance
+   * @param tolerance  the maximum distance between the curve and the resulting segments, must be greater than 0.
+   * @related TOLERANCE
+   * @related polygonize ( )
+   */
+  public static void setPolygonizerTolerance(float tolerance){
+    RCommand.setSegmentTolerance(tolerance);
+  }
+
+  /**
+   * Use this to set the maximum error allowed when measuring the length of the curves, used by getCurveLength(), getPoint(), getTangent() and split().  The lengths already measured are kept until the shapes are modified.
+   * @eexample setLengthTolerance
+   * @param tolerance  the maximum error of the length of each curve, must be greater than 0.
+   */
+  public static void setLengthTolerance(float tolerance){
+    RCommand.setLengthTolerance(tolerance);
+  }
+
+  /**
+   * Use this to get the segmentator defined by the calls to setPolygonizer(), setPolygonizerAngle(), setPolygonizerLength(), setPolygonizerStep() and setPolygonizerTolerance().  The returned object is immutable and can be passed to getPoints(), getPointsInPaths() or toPolygon() from several threads at once.
+   * @eexample getPolygonizer
+   * @return RSegmentator, a snapshot of the current polygonizer settings.
+   * @related setPolygonizer ( )
+   */
+  public static RSegmentator getPolygonizer(){
+    return RSegmentator.getDefault();
+  }
+
 }
@@ -249,6 +249,12 @@ public abstract class RGeomElem
   
   protected float[] lenCurves;
   protected float lenCurve = -1F;
+  protected float[] accLenCurves;
+  protected float[] bounds;
+
+  /* Modification stamp of the element, renewed every time its caches are cleared */
+  int stamp;
+  private static int lastStamp;
 
   public String name = "";  
 
@@ -416,6 +422,133 @@ public abstract class RGeomElem
     return lenCurve;
   }
 
+  /* Clears the cached lengths and bounds of this element only and renews its stamp, used when elements are added or removed */
+  void clearCaches(){
+    lenCurves = null;
+    accLenCurves = null;
+    lenCurve = -1F;
+    bounds = null;
+    stamp = nextStamp();
+  }
+
+  /* The stamps are taken from a counter shared by all the elements, so a stamp renewed after a modification is greater than any stamp taken before it */
+  static synchronized int nextStamp(){
+    return ++lastStamp;
+  }
+
+  /* Returns the latest stamp of the element and of all its subelements, elements with subelements override this */
+  /* A drawing cache made from the element is still valid as long as this stamp stays the same */
+  int getStamp(){
+    return stamp;
+  }
+
+  /**
+   * Clears the cached lengths and bounds of the element and of all its subelements.  Must be called every time the geometry of the element changes.
+   * @invisible
+   */
+  protected void invalidate(){
+    clearCaches();
+  }
+
+  /* Returns the lengths of the curve at the start of each element and at its end */
+  float[] getAccumulatedLengths(){
+    if(accLenCurves == null){
+      float[] lengthsCurves = getCurveLengths();
+      accLenCurves = new float[lengthsCurves.length + 1];
+      for(int i=0;i<lengthsCurves.length;i++){
+        accLenCurves[i+1] = accLenCurves[i] + lengthsCurves[i];
+      }
+    }
+    return accLenCurves;
+  }
+
+  /* Returns the index of the first element that ends after the given length */
+  int elementAtLength(float len){
+    float[] acc = getAccumulatedLengths();
+    int lo = 0;
+    int hi = acc.length - 2;
+    while(lo < hi){
+      int mid = (lo + hi) >> 1;
+      if(acc[mid+1] < len){
+        lo = mid + 1;
+      }else{
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /* Writes the advancements of ts limited between 0 and 1 to sorted in increasing order, and the index each one has in ts to order */
+  /* The bits of floats between 0 and 1 sort as the floats do and fit in 30 bits, so they are sorted with 3 passes of a radix sort of 10 bits */
+  static void sortAdvancements(float[] ts, float[] sorted, int[] order){
+    int n = ts.length;
+    int[] keys = new int[n];
+    boolean isSorted = true;
+    for(int i=0;i<n;i++){
+      float t = ts[i];
+      t = (t > 1F) ? 1F : t;
+      t = (t > 0F) ? t : 0F;
+      keys[i] = Float.floatToIntBits(t);
+      order[i] = i;
+      isSorted = isSorted && (i == 0 || keys[i-1] <= keys[i]);
+    }
+
+    if(!isSorted){
+      int[] otherKeys = new int[n];
+      int[] otherOrder = new int[n];
+      int[] counts = new int[1025];
+      for(int shift=0;shift<30;shift+=10){
+        java.util.Arrays.fill(counts, 0);
+        for(int i=0;i<n;i++){
+          counts[((keys[i] >>> shift) & 1023) + 1]++;
+        }
+        for(int d=0;d<1024;d++){
+          counts[d+1] += counts[d];
+        }
+        for(int i=0;i<n;i++){
+          int pos = counts[(keys[i] >>> shift) & 1023]++;
+          otherKeys[pos] = keys[i];
+          otherOrder[pos] = order[i];
+        }
+        int[] swap = keys;
+        keys = otherKeys;
+        otherKeys = swap;
+        swap = order;
+        order = otherOrder;
+        otherOrder = swap;
+      }
+
+      /* after an odd number of passes the indices are in the array allocated here */
+      System.arraycopy(order, 0, otherOrder, 0, n);
+    }
+    for(int i=0;i<n;i++){
+      sorted[i] = Float.intBitsToFloat(keys[i]);
+    }
+  }
+
+  /* Returns the index of the element at the advancement t, and the advancement inside that element */
+  /* The advancement given to each element is proportional to its length */
+  float[] indAndAdvAt(float t){
+    float[] lengthsCurves = getCurveLengths();
+    float lengthCurve = getCurveLength();
+
+    t = (t > 1F) ? 1F : t;
+    t = (t < 0F) ? 0F : t;
+    float len = t * lengthCurve;
+
+    int indOfElement = elementAtLength(len);
+    float advOfElement = (lengthsCurves[indOfElement] == 0F) ? 0F : (len - getAccumulatedLengths()[indOfElement]) / lengthsCurves[indOfElement];
+    advOfElement = (advOfElement > 1F) ? 1F : advOfElement;
+    advOfElement = (advOfElement < 0F) ? 0F : advOfElement;
+
+    float[] indAndAdv = new float[2];
+
+    indAndAdv[0] = indOfElement;
+    indAndAdv[1] = advOfElement;
+
+    return indAndAdv;
+  }
+
   public RPolygon toPolygon(){
     return toShape().toPolygon();
   }
@@ -434,6 +567,8 @@ public abstract class RGeomElem
     for(int i=0; i<ps.length; i++){
       ps[i].transform(m);
     }
+
+    invalidate();
   }
 
   /**
@@ -465,44 +600,49 @@ public abstract class RGeomElem
   }
   
   /**
-   * Use this method to get the bounding box of the element. 
+   * Use this method to get the bounding box of the element.  The bounding box of shapes, paths and groups is tight around their curves and is kept until they are modified or transformed.
    * @eexample getBounds
    * @return RRectangle, the bounding box of the element in the form of a four-point contour
    * @related getCenter ( )
    */
   public RRectangle getBounds(){
-    float xmax = Float.NEGATIVE_INFINITY ;
-    float ymax = Float.NEGATIVE_INFINITY ;
-    float xmin = Float.POSITIVE_INFINITY ;
-    float ymin = Float.POSITIVE_INFINITY ;
+    float[] b = getBoundsArray();
+    RRectangle c = new RRectangle(new RPoint(b[0], b[1]), new RPoint(b[2], b[3]));
+    return c;
+  }
+
+  /* Returns the bounding box as {xmin, ymin, xmax, ymax}, elements that keep it cached override this */
+  float[] getBoundsArray(){
+    float[] result = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
 
     RPoint[] points = getHandles();
 
     if(points!=null){
       for(int i=0;i<points.length;i++){
-        float tempx = points[i].x;
-        float tempy = points[i].y;
-        if( tempx < xmin )
-          {
-            xmin = tempx;
-          }
-        else if( tempx > xmax )
-          {
-            xmax = tempx;
-          }
-        if( tempy < ymin )
-          {
-          ymin = tempy;
-          }
-       else if( tempy > ymax )
-          {
-            ymax = tempy;
-          }
+        addToBounds(result, points[i].x, points[i].y);
       }
     }
-    
-    RRectangle c = new RRectangle(new RPoint(xmin, ymin), new RPoint(xmax, ymax));
-    return c;
+
+    return result;
+  }
+
+  /* Tells if the cached bounds of the element and of all its subelements are still valid, so that the bounds of a parent are recalculated when one of its children is transformed */
+  boolean hasValidBounds(){
+    return bounds != null;
+  }
+
+  static void addToBounds(float[] b, float x, float y){
+    if(x < b[0]) b[0] = x;
+    if(y < b[1]) b[1] = y;
+    if(x > b[2]) b[2] = x;
+    if(y > b[3]) b[3] = y;
+  }
+
+  static void addToBounds(float[] b, float[] other){
+    if(other[0] < b[0]) b[0] = other[0];
+    if(other[1] < b[1]) b[1] = other[1];
+    if(other[2] > b[2]) b[2] = other[2];
+    if(other[3] > b[3]) b[3] = other[3];
   }
 
   /**
@@ -165,6 +165,34 @@ public class RGroup extends RGeomElem
     }
   }
   
+  /**
+   * Use this method to build a Processing shape that draws the group, so that a large group can be drawn many times with a single call to shape().  Each element is built as RShape.toPShape() does, with the styles of the group and of its elements applied over the current style of the graphics.
+   * @eexample RGroup_toPShape
+   * @param g PGraphics, the graphics object that creates the shape and whose current style is inherited
+   * @return PShape, a group with a shape for each element
+   * @related draw ( )
+   */
+  public PShape toPShape(PGraphics g){
+    return toPShape(g, RStyle.current(g), RSegmentator.getDefault());
+  }
+
+  /* The group as a group of Processing shapes, with its style applied over the current one */
+  PShape toPShape(PGraphics g, RStyle current, RSegmentator seg){
+    if(!RG.ignoreStyles){
+      current = style.applyTo(current);
+    }
+
+    PShape result = g.createShape(PConstants.GROUP);
+    for(int i=0; i<countElements(); i++){
+      if(elements[i] instanceof RGroup){
+        result.addChild(((RGroup)elements[i]).toPShape(g, current, seg));
+      }else{
+        result.addChild(elements[i].toShape().toPShape(g, current, seg));
+      }
+    }
+    return result;
+  }
+
   /**
    * Use this method to add a new element.
    * @eexample RGroup_addElement
@@ -355,7 +383,6 @@ public class RGroup extends RGeomElem
       return null;
     }
 
-    RCommand.segmentAccOffset = RCommand.segmentOffset;    
     RPoint[] result=null;
     RPoint[] newresult=null;
     for(int i=0;i<numElements;i++){
@@ -376,6 +403,56 @@ public class RGroup extends RGeomElem
     return result;
   }
 
+  /**
+   * Use this to pass the points of the group to a sink one by one, instead of returning them in an array.  The points of shapes and paths are segmented, the points of polygons and meshes are passed as they are with a command index of -1.
+   * @eexample flatten
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RPointSink sink){
+    flatten(RSegmentator.getDefault(), sink);
+  }
+
+  /**
+   * Use this to pass the points of the group to a sink one by one using a given segmentator.
+   * @eexample flatten
+   * @param seg  the segmentator to use.
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RSegmentator seg, RPointSink sink){
+    segment(seg, new RSegmentator.Run(sink));
+  }
+
+  /* Adds the points of the elements of the group to the run */
+  void segment(RSegmentator seg, RSegmentator.Run run){
+    for(int i=0;i<countElements();i++){
+      switch(elements[i].getType()){
+      case RGeomElem.GROUP:
+        ((RGroup)elements[i]).segment(seg, run);
+        break;
+
+      case RGeomElem.SHAPE:
+        ((RShape)elements[i]).segment(seg, run);
+        break;
+
+      case RGeomElem.SUBSHAPE:
+        ((RPath)elements[i]).segment(seg, run);
+        run.pathIndex++;
+        break;
+
+      default:
+        RPoint[] points = elements[i].getPoints();
+        if(points != null){
+          run.commandIndex = -1;
+          for(int j=0;j<points.length;j++){
+            run.add(points[j], 0F);
+          }
+        }
+        run.pathIndex++;
+        break;
+      }
+    }
+  }
+
   public RPoint getTangent(float t){
     float[] indAndAdv = indAndAdvAt(t);
     int indOfElement = (int)(indAndAdv[0]);
@@ -533,35 +610,51 @@ public class RGroup extends RGeomElem
     return type;
   }
 
-  private float[] indAndAdvAt(float t){
-    int indOfElement = 0;
-    float[] lengthsCurves = getCurveLengths();
-    float lengthCurve = getCurveLength();
 
-    /* Calculate the amount of advancement t mapped to each command */
-    /* We use a simple algorithm where we give to each command the same amount of advancement */
-    /* A more useful way would be to give to each command an advancement proportional to the length of the command */
-    
-    float accumulatedAdvancement = lengthsCurves[indOfElement] / lengthCurve;
-    float prevAccumulatedAdvancement = 0F;
-    
-    /* Find in what command the advancement point is  */
-    while(t > accumulatedAdvancement){
-      indOfElement++;
-      prevAccumulatedAdvancement = accumulatedAdvancement;
-      accumulatedAdvancement += (lengthsCurves[indOfElement] / lengthCurve);
-    }
-    
-    float advOfElement = (t-prevAccumulatedAdvancement) / (lengthsCurves[indOfElement] / lengthCurve);
+  /**
+   * Use this method to crop the elements of the group to a rectangle.  Shapes keep their curves, the rest of the elements are cropped as polygons.
+   * @eexample RGroup_clipToRect
+   * @param rect  the rectangle to crop the group to, e.g. the one returned by getBounds()
+   * @return RGroup, the group of the cropped elements
+   * @related RShape ( )
+   * @related RPolygon ( )
+   */
+  public RGroup clipToRect(RRectangle rect){
+    RGroup result = new RGroup();
+    for(int i=0;i<countElements();i++){
+      RGeomElem element = elements[i];
+      switch(element.getType()){
+      case RGeomElem.GROUP:
+        result.addElement(((RGroup)element).clipToRect(rect));
+        break;
 
-    float[] indAndAdv = new float[2];
+      case RGeomElem.SHAPE:
+        result.addElement(((RShape)element).clipToRect(rect));
+        break;
 
-    indAndAdv[0] = indOfElement;
-    indAndAdv[1] = advOfElement;
-    
-    return indAndAdv;
+      default:
+        result.addElement(element.toPolygon().clipToRect(rect));
+        break;
+      }
+    }
+    result.setStyle(this);
+    return result;
   }
 
+  /**
+   * Use this method to crop the elements of the group to a rectangle.
+   * @eexample RGroup_clipToRect
+   * @param x  the x coordinate of the top left corner of the rectangle
+   * @param y  the y coordinate of the top left corner of the rectangle
+   * @param w  the width of the rectangle
+   * @param h  the height of the rectangle
+   * @return RGroup, the group of the cropped elements
+   */
+  public RGroup clipToRect(float x, float y, float w, float h){
+    return clipToRect(new RRectangle(x, y, w, h));
+  }
+
+
   public RGroup[] split(float t){
     RGroup[] result = new RGroup[2];
 
@@ -720,6 +813,36 @@ public class RGroup extends RGeomElem
   }
   
   
+  boolean hasValidBounds(){
+    if(bounds == null){
+      return false;
+    }
+    for(int i=0;i<countElements();i++){
+      if(!elements[i].hasValidBounds()){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  float[] getBoundsArray(){
+    if(!hasValidBounds()){
+      float[] b = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+      for(int i=0;i<countElements();i++){
+        addToBounds(b, elements[i].getBoundsArray());
+      }
+      bounds = b;
+    }
+    return bounds;
+  }
+
+  protected void invalidate(){
+    super.invalidate();
+    for(int i=0;i<countElements();i++){
+      elements[i].invalidate();
+    }
+  }
+
   protected void calculateCurveLengths(){
     lenCurves = new float[countElements()];
     lenCurve = 0F;
@@ -821,6 +944,8 @@ public class RGroup extends RGeomElem
     default:
       throw new RuntimeException("Unknown adaptor type : "+RG.adaptorType+". The method RG.setAdaptor() only accepts RG.BYPOINT or RG.BYELEMENT as parameter values.");
     }
+
+    invalidate();
   }
   
   public void adapt(RGroup grp) throws RuntimeException{
@@ -843,6 +968,7 @@ public class RGroup extends RGeomElem
   public void polygonize(){
     RGroup grp = toPolygonGroup().toShapeGroup();
     this.elements = grp.elements;
+    clearCaches();
   }
 
   private void append(RGeomElem elem){
@@ -856,6 +982,7 @@ public class RGroup extends RGeomElem
       newelements[this.elements.length]=elem;
     }
     this.elements=newelements;
+    clearCaches();
   }
   
   private void extract(int i) throws RuntimeException{
@@ -884,5 +1011,6 @@ public class RGroup extends RGeomElem
       }
     }
     this.elements=newelements;
+    clearCaches();
   }
 }
@@ -0,0 +1,314 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+import processing.core.*;
+
+/**
+ * RIndexedMesh holds a mesh as a list of triangles in flat arrays instead of RStrip and RPoint objects: the coordinates of the vertices one after the other, and the indices of the three vertices of each triangle.  Each vertex is stored once, even when it is shared by several strips of the tesselation, so a large mesh takes much less memory than an RMesh and is drawn in a single TRIANGLES shape.
+ * @usage Geometry
+ * @related RMesh
+ * @related toMesh ( )
+ * @extended
+ */
+public class RIndexedMesh
+{
+  /**
+   * The x and y coordinates of the vertices, one vertex after the other.
+   * @related indices
+   */
+  public float[] xy;
+
+  /**
+   * The indices of the vertices of the triangles, three for each triangle.  The vertex with index i has the coordinates xy[2*i] and xy[2*i+1].
+   * @related xy
+   */
+  public int[] indices;
+
+  /**
+   * Create an empty mesh.
+   */
+  public RIndexedMesh(){
+    this(new float[0], new int[0]);
+  }
+
+  /**
+   * Create a mesh from its arrays, which are used as they are, not copied.
+   * @param xy  the x and y coordinates of the vertices
+   * @param indices  the indices of the vertices of the triangles, three for each triangle
+   */
+  public RIndexedMesh(float[] xy, int[] indices){
+    this.xy = xy;
+    this.indices = indices;
+  }
+
+  /**
+   * Create a mesh with the triangles of the strips of a mesh.  The vertices with the same coordinates are stored once.
+   * @param m  the mesh of strips to convert
+   */
+  public RIndexedMesh(RMesh m){
+    int numVertices = 0;
+    for(int i=0;m != null && i<m.countStrips();i++){
+      numVertices += m.strips[i].countVertices();
+    }
+
+    Builder b = new Builder(numVertices);
+    int[] strip = new int[16];
+    for(int i=0;m != null && i<m.countStrips();i++){
+      RPoint[] vertices = m.strips[i].vertices;
+      int n = m.strips[i].countVertices();
+      if(n > strip.length){
+        strip = new int[n];
+      }
+      for(int j=0;j<n;j++){
+        strip[j] = b.vertex(vertices[j].x, vertices[j].y);
+      }
+      b.addStrip(strip, n);
+    }
+    xy = b.trimmedXY();
+    indices = b.trimmedIndices();
+  }
+
+  /**
+   * Use this method to count the vertices of the mesh.
+   * @return int, the number of vertices
+   */
+  public int countVertices(){
+    return xy.length / 2;
+  }
+
+  /**
+   * Use this method to count the triangles of the mesh.
+   * @return int, the number of triangles
+   */
+  public int countTriangles(){
+    return indices.length / 3;
+  }
+
+  /**
+   * Use this method to get a mesh of strips with the triangles of the indexed mesh.  Consecutive triangles that continue a strip, as the ones made from an RMesh do, are joined into one strip again.
+   * @return RMesh, the mesh of strips
+   */
+  public RMesh toMesh(){
+    RMesh result = new RMesh();
+    int numTriangles = countTriangles();
+    int t = 0;
+    while(t < numTriangles){
+      RPoint[] vertices = new RPoint[3 + continuedTriangles(t)];
+      for(int k=0;k<3;k++){
+        vertices[k] = vertexAt(indices[3*t + k]);
+      }
+      for(int k=3;k<vertices.length;k++){
+        vertices[k] = vertexAt(indices[3*(t + k - 2) + 2]);
+      }
+      t += vertices.length - 2;
+
+      RStrip strip = new RStrip();
+      strip.vertices = vertices;
+      result.addStrip(strip);
+    }
+    return result;
+  }
+
+  /* Number of triangles after triangle t that continue its strip */
+  private int continuedTriangles(int t){
+    int count = 0;
+    for(int u=t+1;u<countTriangles();u++){
+      if(indices[3*u] != indices[3*u - 2] || indices[3*u + 1] != indices[3*u - 1]){
+        break;
+      }
+      count++;
+    }
+    return count;
+  }
+
+  private RPoint vertexAt(int i){
+    return new RPoint(xy[2*i], xy[2*i + 1]);
+  }
+
+  /**
+   * Use this method to draw the mesh.  All the triangles are drawn in a single shape.
+   * @param g PGraphics, the graphics object on which to draw the mesh
+   */
+  public void draw(PGraphics g){
+    draw(g, null);
+  }
+
+  /**
+   * Use this method to draw the mesh.  All the triangles are drawn in a single shape.
+   * @param g PApplet, the applet on which to draw the mesh
+   */
+  public void draw(PApplet g){
+    draw(g.g, null);
+  }
+
+  /* Draws the triangles, with the texture if there is one, using the coordinates of the vertices as texture coordinates as RMesh does */
+  void draw(PGraphics g, PImage texture){
+    if(indices.length == 0){
+      return;
+    }
+
+    g.beginShape(PConstants.TRIANGLES);
+    if(texture != null){
+      g.texture(texture);
+      for(int i=0;i<indices.length;i++){
+        int k = 2*indices[i];
+        g.vertex(xy[k], xy[k+1], xy[k], xy[k+1]);
+      }
+    }else{
+      for(int i=0;i<indices.length;i++){
+        int k = 2*indices[i];
+        g.vertex(xy[k], xy[k+1]);
+      }
+    }
+    g.endShape();
+  }
+
+  /**
+   * Use this method to get a Processing shape with the triangles of the mesh, filled with the current fill of the graphics and without stroke.  The shape keeps its own vertices, so it can be drawn many times with shape().
+   * @param g PGraphics, the graphics object that creates the shape
+   * @return PShape, a shape of kind TRIANGLES
+   * @related draw ( )
+   */
+  public PShape toPShape(PGraphics g){
+    return toPShape(g, RStyle.current(g));
+  }
+
+  /* The triangles as a shape with the fill and the texture of the style and no stroke */
+  PShape toPShape(PGraphics g, RStyle style){
+    PShape result = g.createShape();
+    result.beginShape(PConstants.TRIANGLES);
+    style.setFillStyle(result);
+    if(style.texture != null){
+      result.texture(style.texture);
+      for(int i=0;i<indices.length;i++){
+        int k = 2*indices[i];
+        result.vertex(xy[k], xy[k+1], xy[k], xy[k+1]);
+      }
+    }else{
+      for(int i=0;i<indices.length;i++){
+        int k = 2*indices[i];
+        result.vertex(xy[k], xy[k+1]);
+      }
+    }
+    result.endShape();
+    return result;
+  }
+
+  /**
+   * Use this method to transform the mesh.
+   * @param m RMatrix, the matrix of the affine transformation to apply to the mesh
+   */
+  public void transform(RMatrix m){
+    for(int i=0;i<xy.length;i+=2){
+      float x = xy[i];
+      float y = xy[i+1];
+      xy[i] = m.m00*x + m.m01*y + m.m02;
+      xy[i+1] = m.m10*x + m.m11*y + m.m12;
+    }
+  }
+
+  /**
+   * Builds an indexed mesh strip by strip, storing once the vertices with the same coordinates.  The vertices are looked up in a hash table chained through nextSame.
+   * @invisible
+   */
+  static class Builder
+  {
+    float[] xy;
+    int numVertices;
+    int[] indices;
+    int numIndices;
+
+    int[] table;
+    int[] nextSame;
+    int mask;
+
+    /* The table is sized for the number of vertices of the strips, before they are welded */
+    Builder(int maxVertices){
+      int size = 16;
+      while(size < 2*maxVertices){
+        size *= 2;
+      }
+      mask = size - 1;
+      table = new int[size];
+      java.util.Arrays.fill(table, -1);
+      nextSame = new int[Math.max(maxVertices, 1)];
+      xy = new float[2*Math.max(maxVertices, 1)];
+      indices = new int[3*Math.max(maxVertices, 1)];
+    }
+
+    /* Index of the vertex with these coordinates, added if there is none yet */
+    int vertex(float x, float y){
+      int h = Float.floatToIntBits(x + 0.0F) * 31 + Float.floatToIntBits(y + 0.0F);
+      h = (h ^ (h >>> 16)) & mask;
+      for(int i=table[h];i>=0;i=nextSame[i]){
+        if(xy[2*i] == x && xy[2*i + 1] == y){
+          return i;
+        }
+      }
+
+      if(numVertices == nextSame.length){
+        int[] newnextSame = new int[2*numVertices];
+        System.arraycopy(nextSame, 0, newnextSame, 0, numVertices);
+        nextSame = newnextSame;
+        float[] newxy = new float[4*numVertices];
+        System.arraycopy(xy, 0, newxy, 0, 2*numVertices);
+        xy = newxy;
+      }
+      xy[2*numVertices] = x;
+      xy[2*numVertices + 1] = y;
+      nextSame[numVertices] = table[h];
+      table[h] = numVertices;
+      return numVertices++;
+    }
+
+    /* Adds the triangles of the strip made of the first n vertices of strip */
+    void addStrip(int[] strip, int n){
+      if(n < 3){
+        return;
+      }
+      if(numIndices + 3*(n - 2) > indices.length){
+        int[] newindices = new int[Math.max(2*indices.length, numIndices + 3*(n - 2))];
+        System.arraycopy(indices, 0, newindices, 0, numIndices);
+        indices = newindices;
+      }
+      for(int i=0;i<n-2;i++){
+        indices[numIndices++] = strip[i];
+        indices[numIndices++] = strip[i+1];
+        indices[numIndices++] = strip[i+2];
+      }
+    }
+
+    float[] trimmedXY(){
+      float[] result = new float[2*numVertices];
+      System.arraycopy(xy, 0, result, 0, result.length);
+      return result;
+    }
+
+    int[] trimmedIndices(){
+      int[] result = new int[numIndices];
+      System.arraycopy(indices, 0, result, 0, numIndices);
+      return result;
+    }
+
+    RIndexedMesh result(){
+      return new RIndexedMesh(trimmedXY(), trimmedIndices());
+    }
+  }
+}
@@ -0,0 +1,553 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * Tesselates a polygon in a single sweep along y.  The vertices are sorted
+ * by y, then by x, and the edges crossed by the sweep line are kept in an
+ * array ordered along x.  The winding number on the right of each edge
+ * tells whether it bounds the inside under the fill rule.  The inside is
+ * cut into pieces monotone along y, as in the algorithm of Lee and
+ * Preparata: a vertex where the inside splits is joined by a diagonal to
+ * the last vertex of its piece, and a vertex where two pieces merge is
+ * joined to the next vertex that reaches them.  Each piece is triangulated
+ * while the sweep goes down, keeping the vertices that can not be cut off
+ * yet on a stack.
+ *
+ * The sweep needs contours that do not cross.  Two edges are checked for a
+ * crossing whenever they become neighbours in the array, which finds the
+ * first crossing if there is one, as Shamos and Hoey do.  The sweep then
+ * gives up, the polygon is resolved by ROffset into contours that do not
+ * cross and swept again.  Contours that only touch at a vertex and edges
+ * that are repeated from vertex to vertex need no resolving.
+ */
+class RMonotoneTesselator implements RTesselator
+{
+  public RIndexedMesh tesselate(RPolygon p, int fillRule){
+    if(fillRule != RG.NONZERO && fillRule != RG.EVENODD){
+      throw new RuntimeException("The fill rule must be RG.NONZERO or RG.EVENODD.");
+    }
+
+    RIndexedMesh result = new Sweep(p, fillRule).run();
+    if(result == null){
+      RPolygon resolved = ROffset.resolve(p, fillRule);
+      result = new Sweep(resolved, RG.EVENODD).run();
+      if(result == null){
+        /* The resolved contours were rounded to floats and cross again */
+        result = RClip.polygonToIndexedMesh(resolved);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The part of the inside between two boundary edges crossed by the sweep line.  After a merge vertex the region is made of two pieces, on both sides of the diagonal that is still to come.
+   * @invisible
+   */
+  static class Region
+  {
+    Piece piece;
+    Piece pending;
+
+    Region(Piece piece){
+      this.piece = piece;
+    }
+  }
+
+  /**
+   * A monotone piece being triangulated: the vertices that could not be cut off yet, the first one on one chain and the others on the chain given by onLeft.
+   * @invisible
+   */
+  static class Piece
+  {
+    int[] stack = new int[8];
+    int size;
+    boolean onLeft = true;
+
+    Piece(int v){
+      stack[size++] = v;
+    }
+
+    void push(int v){
+      if(size == stack.length){
+        int[] newstack = new int[2*size];
+        System.arraycopy(stack, 0, newstack, 0, size);
+        stack = newstack;
+      }
+      stack[size++] = v;
+    }
+  }
+
+  /**
+   * The state of one sweep of a polygon.
+   * @invisible
+   */
+  static class Sweep
+  {
+    int fillRule;
+
+    /* The vertices in the order of the sweep, the points with the same coordinates are one */
+    float[] fx;
+    float[] fy;
+    double[] x;
+    double[] y;
+    int numVertices;
+
+    /* The edges from their top vertex to their bottom one, dir is 1 when the contour goes down along it, -1 when it goes up */
+    int[] top;
+    int[] bottom;
+    int[] dir;
+    int numEdges;
+
+    /* The edges starting at vertex v are starts[startFirst[v]] to starts[startFirst[v+1]-1], endCount[v] is the number of edges ending there */
+    int[] startFirst;
+    int[] starts;
+    int[] endCount;
+
+    /* The edges crossed by the sweep line from left to right, the winding number and the region on the right of each edge */
+    int[] active;
+    int numActive;
+    int[] windRight;
+    Region[] regionOf;
+
+    int[] triangles;
+    int numTriangles;
+
+    Sweep(RPolygon p, int fillRule){
+      this.fillRule = fillRule;
+      int numPoints = 0;
+      for(int i=0;i<p.countContours();i++){
+        numPoints += p.contours[i].countPoints();
+      }
+
+      float[] px = new float[numPoints];
+      float[] py = new float[numPoints];
+      int[] contourStart = new int[p.countContours() + 1];
+      numPoints = 0;
+      for(int i=0;i<p.countContours();i++){
+        contourStart[i] = numPoints;
+        for(int k=0;k<p.contours[i].countPoints();k++){
+          px[numPoints] = p.contours[i].points[k].x;
+          py[numPoints] = p.contours[i].points[k].y;
+          numPoints++;
+        }
+      }
+      contourStart[p.countContours()] = numPoints;
+
+      int[] vertexOf = sortVertices(px, py, numPoints);
+
+      top = new int[numPoints];
+      bottom = new int[numPoints];
+      dir = new int[numPoints];
+      for(int i=0;i<p.countContours();i++){
+        int first = contourStart[i];
+        int n = contourStart[i+1] - first;
+        if(n < 3){
+          continue;
+        }
+        for(int k=0;k<n;k++){
+          int a = vertexOf[first + k];
+          int b = vertexOf[first + (k + 1) % n];
+          if(a != b){
+            top[numEdges] = Math.min(a, b);
+            bottom[numEdges] = Math.max(a, b);
+            dir[numEdges] = (a < b) ? 1 : -1;
+            numEdges++;
+          }
+        }
+      }
+
+      startFirst = new int[numVertices + 1];
+      endCount = new int[numVertices];
+      for(int e=0;e<numEdges;e++){
+        startFirst[top[e] + 1]++;
+        endCount[bottom[e]]++;
+      }
+      for(int v=0;v<numVertices;v++){
+        startFirst[v+1] += startFirst[v];
+      }
+      starts = new int[numEdges];
+      int[] fill = new int[numVertices];
+      for(int e=0;e<numEdges;e++){
+        starts[startFirst[top[e]] + fill[top[e]]++] = e;
+      }
+
+      active = new int[16];
+      windRight = new int[numEdges];
+      regionOf = new Region[numEdges];
+      triangles = new int[Math.max(3*numEdges, 3)];
+    }
+
+    /* Gives the points their vertex in the order of the sweep, sorting them by y and then by x */
+    private int[] sortVertices(float[] px, float[] py, int numPoints){
+      long[] keys = new long[numPoints];
+      for(int i=0;i<numPoints;i++){
+        keys[i] = ((long)sortable(py[i]) << 32) | i;
+      }
+      java.util.Arrays.sort(keys);
+      for(int i=0;i<numPoints;){
+        int k = i + 1;
+        while(k < numPoints && py[(int)keys[k]] == py[(int)keys[i]]){
+          k++;
+        }
+        if(k - i > 1){
+          for(int j=i;j<k;j++){
+            int point = (int)keys[j];
+            keys[j] = ((long)sortable(px[point]) << 32) | point;
+          }
+          java.util.Arrays.sort(keys, i, k);
+        }
+        i = k;
+      }
+
+      int[] vertexOf = new int[numPoints];
+      fx = new float[numPoints];
+      fy = new float[numPoints];
+      for(int i=0;i<numPoints;i++){
+        int point = (int)keys[i];
+        if(numVertices == 0 || px[point] != fx[numVertices-1] || py[point] != fy[numVertices-1]){
+          fx[numVertices] = px[point];
+          fy[numVertices] = py[point];
+          numVertices++;
+        }
+        vertexOf[point] = numVertices - 1;
+      }
+      x = new double[numVertices];
+      y = new double[numVertices];
+      for(int v=0;v<numVertices;v++){
+        x[v] = fx[v];
+        y[v] = fy[v];
+      }
+      return vertexOf;
+    }
+
+    /* The bits of the float as an int with the same order */
+    private static int sortable(float f){
+      int bits = Float.floatToIntBits(f + 0.0F);
+      return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    /* The mesh, or null if two edges cross or overlap */
+    RIndexedMesh run(){
+      int[] added = new int[16];
+      for(int v=0;v<numVertices;v++){
+        /* The first edge that the vertex is not on the right of */
+        int lo = 0, hi = numActive;
+        while(lo < hi){
+          int mid = (lo + hi) >>> 1;
+          if(side(active[mid], v) < 0){
+            lo = mid + 1;
+          }else{
+            hi = mid;
+          }
+        }
+        int i = lo;
+
+        /* The edges ending at the vertex follow each other from there */
+        int k = 0;
+        while(i + k < numActive && bottom[active[i + k]] == v){
+          k++;
+        }
+        if(k != endCount[v] || (i + k < numActive && side(active[i + k], v) <= 0)){
+          return null;
+        }
+
+        /* The edges starting at the vertex from left to right, merging the repeated ones */
+        int m = 0;
+        for(int s=startFirst[v];s<startFirst[v+1];s++){
+          int e = starts[s];
+          if(m == added.length){
+            int[] newadded = new int[2*m];
+            System.arraycopy(added, 0, newadded, 0, m);
+            added = newadded;
+          }
+          int j = m;
+          boolean merged = false;
+          while(j > 0){
+            double c = side(e, bottom[added[j-1]]);
+            if(c == 0){
+              if(bottom[added[j-1]] != bottom[e]){
+                return null;
+              }
+              dir[added[j-1]] += dir[e];
+              endCount[bottom[e]]--;
+              merged = true;
+              break;
+            }
+            if(c > 0){
+              break;
+            }
+            j--;
+          }
+          if(!merged){
+            System.arraycopy(added, j, added, j + 1, m - j);
+            added[j] = e;
+            m++;
+          }
+        }
+        int n = 0;
+        for(int j=0;j<m;j++){
+          if(dir[added[j]] != 0){
+            added[n++] = added[j];
+          }else{
+            endCount[bottom[added[j]]]--;
+          }
+        }
+        m = n;
+
+        int windLeft = (i > 0) ? windRight[active[i-1]] : 0;
+        int w = windLeft;
+        int lastBoundary = -1;
+        for(int j=0;j<m;j++){
+          int e = added[j];
+          w += dir[e];
+          windRight[e] = w;
+          if(inside(w) != inside(w - dir[e])){
+            lastBoundary = j;
+          }
+        }
+        if(w != ((k > 0) ? windRight[active[i + k - 1]] : windLeft)){
+          return null;
+        }
+
+        if(!update(v, i, k, added, m, lastBoundary)){
+          return null;
+        }
+
+        /* Neighbours that were not are checked for a crossing */
+        if(m == 0){
+          if(i > 0 && i < numActive && cross(active[i-1], active[i])){
+            return null;
+          }
+        }else{
+          if(i > 0 && cross(active[i-1], active[i])){
+            return null;
+          }
+          if(i + m < numActive && cross(active[i + m - 1], active[i + m])){
+            return null;
+          }
+        }
+      }
+
+      float[] xy = new float[2*numVertices];
+      for(int v=0;v<numVertices;v++){
+        xy[2*v] = fx[v];
+        xy[2*v+1] = fy[v];
+      }
+      int[] indices = new int[3*numTriangles];
+      System.arraycopy(triangles, 0, indices, 0, indices.length);
+      return new RIndexedMesh(xy, indices);
+    }
+
+    /* Replaces the k edges ending at vertex v by the m edges starting there, at index i, and carries the regions over */
+    private boolean update(int v, int i, int k, int[] added, int m, int lastBoundary){
+      Region left = (i > 0) ? regionOf[active[i-1]] : null;
+      Region right = (k > 0) ? regionOf[active[i + k - 1]] : left;
+
+      /* The regions between the ending edges end at the vertex */
+      Region closed = null;
+      for(int j=i;j<i+k-1;j++){
+        Region r = regionOf[active[j]];
+        if(r != null && r != left && r != right && r != closed){
+          end(r.piece, v);
+          if(r.pending != null){
+            end(r.pending, v);
+          }
+          closed = r;
+        }
+      }
+
+      Region rightmost;
+      Region repointed = null;
+      if(left != right){
+        if(left != null){
+          if(left.pending != null){
+            end(left.pending, v);
+            left.pending = null;
+          }
+          add(left.piece, v, false);
+        }
+        if(right != null){
+          if(right.pending != null){
+            end(right.piece, v);
+            right.piece = right.pending;
+            right.pending = null;
+          }
+          add(right.piece, v, true);
+        }
+        if(lastBoundary >= 0){
+          rightmost = right;
+        }else if(left != null && right != null){
+          /* A merge vertex, the diagonal will go to the next vertex reaching the region */
+          left.pending = right.piece;
+          rightmost = left;
+          repointed = right;
+        }else{
+          return false;
+        }
+      }else if(left != null && lastBoundary >= 0){
+        /* A split vertex, joined to the last vertex of the region */
+        Piece other;
+        if(left.pending != null){
+          other = left.pending;
+          left.pending = null;
+          add(left.piece, v, false);
+          add(other, v, true);
+        }else{
+          Piece piece = left.piece;
+          other = new Piece(piece.stack[piece.size - 1]);
+          if(piece.onLeft){
+            add(piece, v, true);
+            add(other, v, false);
+            left.piece = other;
+            other = piece;
+          }else{
+            add(piece, v, false);
+            add(other, v, true);
+          }
+        }
+        rightmost = new Region(other);
+        repointed = left;
+      }else{
+        rightmost = left;
+      }
+
+      /* The edges starting at the vertex take the place of the ending ones */
+      int count = numActive - k + m;
+      if(count > active.length){
+        int[] newactive = new int[Math.max(2*active.length, count)];
+        System.arraycopy(active, 0, newactive, 0, numActive);
+        active = newactive;
+      }
+      System.arraycopy(active, i + k, active, i + m, numActive - i - k);
+      System.arraycopy(added, 0, active, i, m);
+      numActive = count;
+
+      Region current = left;
+      for(int j=0;j<m;j++){
+        int e = added[j];
+        if(j == lastBoundary){
+          current = rightmost;
+        }else if(inside(windRight[e]) != inside(windRight[e] - dir[e])){
+          current = inside(windRight[e]) ? new Region(new Piece(v)) : null;
+        }
+        regionOf[e] = current;
+      }
+
+      if(repointed != null){
+        for(int j=i+m;j<numActive && regionOf[active[j]] == repointed;j++){
+          regionOf[active[j]] = rightmost;
+        }
+      }
+      return true;
+    }
+
+    /* Adds vertex v to the left or the right chain of the piece and cuts off the triangles it allows */
+    private void add(Piece p, int v, boolean onLeft){
+      if(p.size == 1){
+        p.push(v);
+        p.onLeft = onLeft;
+      }else if(onLeft != p.onLeft){
+        /* The vertex sees the whole stack, which is on the other chain */
+        for(int k=1;k<p.size;k++){
+          triangle(p.stack[k-1], p.stack[k], v);
+        }
+        int last = p.stack[p.size - 1];
+        p.size = 0;
+        p.push(last);
+        p.push(v);
+        p.onLeft = onLeft;
+      }else{
+        int last = p.stack[--p.size];
+        while(p.size > 0){
+          int s = p.stack[p.size - 1];
+          double c = turn(s, v, last);
+          if(onLeft ? c <= 0 : c >= 0){
+            break;
+          }
+          triangle(s, last, v);
+          last = s;
+          p.size--;
+        }
+        p.push(last);
+        p.push(v);
+      }
+    }
+
+    /* Vertex v is the bottom of the piece, it sees the whole stack */
+    private void end(Piece p, int v){
+      for(int k=1;k<p.size;k++){
+        triangle(p.stack[k-1], p.stack[k], v);
+      }
+      p.size = 0;
+    }
+
+    private void triangle(int a, int b, int c){
+      if(turn(a, b, c) == 0){
+        return;
+      }
+      if(3*numTriangles + 3 > triangles.length){
+        int[] newtriangles = new int[2*triangles.length];
+        System.arraycopy(triangles, 0, newtriangles, 0, 3*numTriangles);
+        triangles = newtriangles;
+      }
+      triangles[3*numTriangles] = a;
+      triangles[3*numTriangles + 1] = b;
+      triangles[3*numTriangles + 2] = c;
+      numTriangles++;
+    }
+
+    /* Positive when vertex c is on the left of the line from a to b going down */
+    private double turn(int a, int b, int c){
+      return (x[b] - x[a])*(y[c] - y[a]) - (y[b] - y[a])*(x[c] - x[a]);
+    }
+
+    /* Positive when vertex v is on the left of edge e */
+    private double side(int e, int v){
+      return turn(top[e], bottom[e], v);
+    }
+
+    /* Whether edges e and f cross, touch or overlap anywhere but at a shared end */
+    private boolean cross(int e, int f){
+      double d1 = side(e, top[f]);
+      double d2 = side(e, bottom[f]);
+      if(top[e] == top[f] || bottom[e] == bottom[f]){
+        return d1 == 0 && d2 == 0;
+      }
+      double d3 = side(f, top[e]);
+      double d4 = side(f, bottom[e]);
+      if(((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))){
+        return true;
+      }
+      return (d1 == 0 && within(e, top[f])) || (d2 == 0 && within(e, bottom[f])) ||
+        (d3 == 0 && within(f, top[e])) || (d4 == 0 && within(f, bottom[e]));
+    }
+
+    /* Whether vertex v, on the line of edge e, is between its ends */
+    private boolean within(int e, int v){
+      return Math.min(x[top[e]], x[bottom[e]]) <= x[v] && x[v] <= Math.max(x[top[e]], x[bottom[e]]) &&
+        y[top[e]] <= y[v] && y[v] <= y[bottom[e]];
+    }
+
+    private boolean inside(int winding){
+      return (fillRule == RG.NONZERO) ? winding != 0 : (winding & 1) != 0;
+    }
+  }
+}
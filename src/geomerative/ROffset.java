@@ -0,0 +1,755 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative ;
+
+/**
+ * Grows or shrinks polygons by a distance.  The polygon is first cleaned by
+ * RClip, which gives its outlines and holes.  Each contour is oriented with
+ * the inside on its left and every edge is moved to its right by the
+ * distance, the gaps between the moved edges are filled with a round, miter
+ * or bevel join and the overlaps are left as they are, going through the
+ * vertex.  These raw contours cross themselves and each other wherever the
+ * offset folds, and the result is the region where their winding number is
+ * positive: the edges are split where they cross, the winding number on
+ * both sides of each piece is counted with a ray, and the pieces with the
+ * inside on one side only are linked into the contours of the result.  The
+ * pieces of edges that go along each other are counted together and kept
+ * once.
+ *
+ * RClip can not do that last step because it works with the even-odd rule
+ * only.  The same steps resolve the contours of any polygon under the
+ * non-zero or the even-odd rule, which the tesselators use for polygons
+ * whose contours cross.  The edges are looked up through bands along x and y about as wide
+ * as the edges, so the cost grows with the number of edges that share a
+ * band rather than with the square of the number of edges.
+ */
+class ROffset
+{
+  /* Largest distance between a round join and the arc it follows */
+  static final float arcTolerance = 0.25F;
+
+  /* The same distance relative to the offset, for small offsets */
+  static final float relativeArcTolerance = 0.01F;
+
+  /* Distance, relative to the size of the contours, under which a point is considered on an edge */
+  static final double relativeEpsilon = 1e-9;
+
+  /* Distance, relative to the size of the contours, under which the ends of the pieces are welded */
+  static final double relativeWeld = 1e-7;
+
+  /* The winding numbers kept for the offsets */
+  static final int POSITIVE = -1;
+
+  /* RG.NONZERO, RG.EVENODD or POSITIVE, the winding numbers that are inside */
+  int fillRule = POSITIVE;
+
+  /* The raw edges, each one from (x0, y0) to (x1, y1) */
+  double[] x0 = new double[256];
+  double[] y0 = new double[256];
+  double[] x1 = new double[256];
+  double[] y1 = new double[256];
+  int numEdges;
+
+  /* The points where each edge is split, a list per edge chained through splitNext */
+  int[] splitHead;
+  double[] splitT = new double[64];
+  double[] splitX = new double[64];
+  double[] splitY = new double[64];
+  int[] splitNext = new int[64];
+  int numSplits;
+
+  /* The ends of the pieces, the points closer than weld to each other are one, hashed by grid cell */
+  double[] vx;
+  double[] vy;
+  int[] vertexNext;
+  int[] vertexTable;
+  int numVertices;
+  double weld;
+
+  /* Distance under which a point is considered on an edge */
+  double epsilon;
+
+  /* Set by the winding number rays: the directions of the edges that go through the piece, and whether one of them comes first */
+  int onPiece;
+  boolean repeated;
+
+  /* The kept pieces of the edges from vertex to vertex, oriented with the inside on their left */
+  int[] pieceStart = new int[256];
+  int[] pieceEnd = new int[256];
+  int numPieces;
+
+  static RPolygon offset(RPolygon p, float delta, int joinType, float miterLimit){
+    if(joinType != RG.ROUND && joinType != RG.MITER && joinType != RG.BEVEL){
+      throw new IllegalArgumentException("The join type must be RG.ROUND, RG.MITER or RG.BEVEL.");
+    }
+
+    RPolygon src = (p.countContours() == 0) ? null : RClip.update(p);
+    RPolygon result;
+    if(src == null || src.countContours() == 0){
+      result = new RPolygon();
+    }else if(delta == 0F){
+      result = src;
+    }else{
+      double tolerance = Math.min(arcTolerance, relativeArcTolerance * Math.abs(delta));
+      ROffset o = new ROffset();
+      for(int i=0;i<src.countContours();i++){
+        double[] xy = clean(src.contours[i].points);
+        int n = xy.length / 2;
+        if(n < 3){
+          continue;
+        }
+        /* Outlines go with the inside on their left, holes the other way */
+        if((area(xy, n) < 0) != src.contours[i].isHole){
+          reverse(xy, n);
+        }
+        o.addContour(offsetContour(xy, n, delta, joinType, miterLimit, tolerance));
+      }
+      result = o.region();
+    }
+    result.setStyle(p);
+    return result;
+  }
+
+  /* The region of the polygon under the fill rule, as contours that do not cross each other */
+  static RPolygon resolve(RPolygon p, int fillRule){
+    ROffset o = new ROffset();
+    o.fillRule = fillRule;
+    for(int i=0;i<p.countContours();i++){
+      double[] xy = clean(p.contours[i].points);
+      int n = xy.length / 2;
+      if(n < 3){
+        continue;
+      }
+      Points c = new Points(n);
+      for(int k=0;k<n;k++){
+        c.add(xy[2*k], xy[2*k+1]);
+      }
+      o.addContour(c);
+    }
+    RPolygon result = o.region();
+    result.setStyle(p);
+    return result;
+  }
+
+  // ---------------------------
+  // --- Raw offset contours ---
+  // ---------------------------
+
+  /* The points of the contour as x, y pairs without the repeated ones */
+  private static double[] clean(RPoint[] points){
+    int n = (points == null) ? 0 : points.length;
+    double[] xy = new double[2*n];
+    int m = 0;
+    for(int i=0;i<n;i++){
+      if(m > 0 && points[i].x == xy[2*m-2] && points[i].y == xy[2*m-1]){
+        continue;
+      }
+      xy[2*m] = points[i].x;
+      xy[2*m+1] = points[i].y;
+      m++;
+    }
+    while(m > 1 && xy[0] == xy[2*m-2] && xy[1] == xy[2*m-1]){
+      m--;
+    }
+    double[] result = new double[2*m];
+    System.arraycopy(xy, 0, result, 0, 2*m);
+    return result;
+  }
+
+  /* Twice the signed area, positive when the contour turns counterclockwise with y going up */
+  private static double area(double[] xy, int n){
+    double a = 0;
+    for(int i=0;i<n;i++){
+      int k = (i + 1) % n;
+      a += xy[2*i]*xy[2*k+1] - xy[2*k]*xy[2*i+1];
+    }
+    return a;
+  }
+
+  private static void reverse(double[] xy, int n){
+    for(int i=0,k=n-1;i<k;i++,k--){
+      double tx = xy[2*i];
+      double ty = xy[2*i+1];
+      xy[2*i] = xy[2*k];
+      xy[2*i+1] = xy[2*k+1];
+      xy[2*k] = tx;
+      xy[2*k+1] = ty;
+    }
+  }
+
+  /* The contour with every edge moved by delta to its right and the joins between them */
+  private static Points offsetContour(double[] xy, int n, double delta, int joinType, float miterLimit, double tolerance){
+    /* The unit normal on the right of each edge */
+    double[] nx = new double[n];
+    double[] ny = new double[n];
+    for(int i=0;i<n;i++){
+      int k = (i + 1) % n;
+      double dx = xy[2*k] - xy[2*i];
+      double dy = xy[2*k+1] - xy[2*i+1];
+      double len = Math.sqrt(dx*dx + dy*dy);
+      nx[i] = dy / len;
+      ny[i] = -dx / len;
+    }
+
+    /* Angle between the points of a round join */
+    double step = (tolerance >= Math.abs(delta)) ? Math.PI/2 : 2*Math.acos(1 - tolerance/Math.abs(delta));
+
+    Points out = new Points(2*n);
+    for(int k=0;k<n;k++){
+      /* The join at vertex k between edge i, coming in, and edge k, going out */
+      int i = (k + n - 1) % n;
+      double x = xy[2*k];
+      double y = xy[2*k+1];
+      double sin = nx[i]*ny[k] - ny[i]*nx[k];
+      double cos = nx[i]*nx[k] + ny[i]*ny[k];
+
+      if(cos > 0 && Math.abs(sin*delta) < tolerance){
+        /* Almost straight on, the moved edges meet within the tolerance, take the point where they cross */
+        out.add(x + delta*(nx[i] + nx[k])/(1 + cos), y + delta*(ny[i] + ny[k])/(1 + cos));
+      }else if(sin*delta < 0){
+        /* The moved edges overlap, go through the vertex and let the winding number sort it out */
+        out.add(x + delta*nx[i], y + delta*ny[i]);
+        out.add(x, y);
+        out.add(x + delta*nx[k], y + delta*ny[k]);
+      }else if(joinType == RG.ROUND){
+        double angle = Math.atan2(sin, cos);
+        int steps = Math.max(1, (int)Math.ceil(Math.abs(angle) / step));
+        for(int s=0;s<=steps;s++){
+          double a = angle * s / steps;
+          double ca = Math.cos(a);
+          double sa = Math.sin(a);
+          out.add(x + delta*(nx[i]*ca - ny[i]*sa), y + delta*(nx[i]*sa + ny[i]*ca));
+        }
+      }else if(joinType == RG.MITER && Math.sqrt(2 / (1 + cos)) <= miterLimit){
+        out.add(x + delta*(nx[i] + nx[k])/(1 + cos), y + delta*(ny[i] + ny[k])/(1 + cos));
+      }else{
+        out.add(x + delta*nx[i], y + delta*ny[i]);
+        out.add(x + delta*nx[k], y + delta*ny[k]);
+      }
+    }
+    return out;
+  }
+
+  private void addContour(Points c){
+    int n = c.count;
+    for(int i=0;i<n;i++){
+      int k = (i + 1) % n;
+      if(c.xy[2*i] != c.xy[2*k] || c.xy[2*i+1] != c.xy[2*k+1]){
+        addEdge(c.xy[2*i], c.xy[2*i+1], c.xy[2*k], c.xy[2*k+1]);
+      }
+    }
+  }
+
+  private void addEdge(double ax, double ay, double bx, double by){
+    if(numEdges == x0.length){
+      x0 = grow(x0, numEdges);
+      y0 = grow(y0, numEdges);
+      x1 = grow(x1, numEdges);
+      y1 = grow(y1, numEdges);
+    }
+    x0[numEdges] = ax;
+    y0[numEdges] = ay;
+    x1[numEdges] = bx;
+    y1[numEdges] = by;
+    numEdges++;
+  }
+
+  private static double[] grow(double[] a, int count){
+    double[] b = new double[Math.max(2*a.length, 16)];
+    System.arraycopy(a, 0, b, 0, count);
+    return b;
+  }
+
+  // ----------------------
+  // --- Winding number ---
+  // ----------------------
+
+  /* The region where the winding number of the edges is inside under the fill rule */
+  private RPolygon region(){
+    RPolygon result = new RPolygon();
+    if(numEdges == 0){
+      return result;
+    }
+
+    double xmin = Double.POSITIVE_INFINITY, ymin = Double.POSITIVE_INFINITY;
+    double xmax = Double.NEGATIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+    for(int i=0;i<numEdges;i++){
+      xmin = Math.min(xmin, Math.min(x0[i], x1[i]));
+      xmax = Math.max(xmax, Math.max(x0[i], x1[i]));
+      ymin = Math.min(ymin, Math.min(y0[i], y1[i]));
+      ymax = Math.max(ymax, Math.max(y0[i], y1[i]));
+    }
+    epsilon = relativeEpsilon * Math.max(Math.max(xmax - xmin, ymax - ymin), 1e-30);
+
+    Bands ybands = new Bands(this, false, ymin, ymax);
+    split(ybands);
+
+    int capacity = 2*(numEdges + numSplits);
+    int size = 16;
+    while(size < 2*capacity){
+      size *= 2;
+    }
+    vx = new double[capacity];
+    vy = new double[capacity];
+    vertexNext = new int[capacity];
+    vertexTable = new int[size];
+    java.util.Arrays.fill(vertexTable, -1);
+    weld = relativeWeld * Math.max(Math.max(xmax - xmin, ymax - ymin), 1e-30);
+
+    Bands xbands = new Bands(this, true, xmin, xmax);
+    keepPieces(xbands, ybands);
+    link(result);
+    return result;
+  }
+
+  /* Finds the points where the edges cross or touch each other */
+  private void split(Bands bands){
+    splitHead = new int[numEdges];
+    java.util.Arrays.fill(splitHead, -1);
+    int[] tested = new int[numEdges];
+    java.util.Arrays.fill(tested, -1);
+    for(int i=0;i<numEdges;i++){
+      int first = bands.band(Math.min(y0[i], y1[i]));
+      int last = bands.band(Math.max(y0[i], y1[i]));
+      for(int b=first;b<=last;b++){
+        for(int k=bands.start[b];k<bands.start[b+1];k++){
+          int j = bands.edges[k];
+          if(j > i && tested[j] != i){
+            tested[j] = i;
+            intersect(i, j);
+          }
+        }
+      }
+    }
+  }
+
+  private void intersect(int i, int j){
+    if(Math.max(x0[i], x1[i]) < Math.min(x0[j], x1[j]) || Math.max(x0[j], x1[j]) < Math.min(x0[i], x1[i]) ||
+       Math.max(y0[i], y1[i]) < Math.min(y0[j], y1[j]) || Math.max(y0[j], y1[j]) < Math.min(y0[i], y1[i])){
+      return;
+    }
+    double idx = x1[i] - x0[i], idy = y1[i] - y0[i];
+    double jdx = x1[j] - x0[j], jdy = y1[j] - y0[j];
+    double ilen = Math.sqrt(idx*idx + idy*idy);
+    double jlen = Math.sqrt(jdx*jdx + jdy*jdy);
+
+    /* Which side of one edge the ends of the other one are on, times the length of the first one */
+    double d1 = idx*(y0[j] - y0[i]) - idy*(x0[j] - x0[i]);
+    double d2 = idx*(y1[j] - y0[i]) - idy*(x1[j] - x0[i]);
+    double d3 = jdx*(y0[i] - y0[j]) - jdy*(x0[i] - x0[j]);
+    double d4 = jdx*(y1[i] - y0[j]) - jdy*(x1[i] - x0[j]);
+    double ei = epsilon * ilen;
+    double ej = epsilon * jlen;
+
+    if(((d1 > ei && d2 < -ei) || (d1 < -ei && d2 > ei)) && ((d3 > ej && d4 < -ej) || (d3 < -ej && d4 > ej))){
+      /* The edges cross, both are split at the same point */
+      double t = d3 / (d3 - d4);
+      double u = d1 / (d1 - d2);
+      double x = x0[i] + t*idx;
+      double y = y0[i] + t*idy;
+      addSplit(i, t, x, y);
+      addSplit(j, u, x, y);
+      return;
+    }
+
+    /* An end of one edge lies on the other one */
+    if(Math.abs(d1) <= ei){
+      touch(i, x0[j], y0[j], ilen);
+    }
+    if(Math.abs(d2) <= ei){
+      touch(i, x1[j], y1[j], ilen);
+    }
+    if(Math.abs(d3) <= ej){
+      touch(j, x0[i], y0[i], jlen);
+    }
+    if(Math.abs(d4) <= ej){
+      touch(j, x1[i], y1[i], jlen);
+    }
+  }
+
+  /* Splits edge i at the point if it lies strictly between its ends */
+  private void touch(int i, double x, double y, double len){
+    double dx = x1[i] - x0[i];
+    double dy = y1[i] - y0[i];
+    double t = ((x - x0[i])*dx + (y - y0[i])*dy) / (len*len);
+    double margin = epsilon / len;
+    if(t > margin && t < 1 - margin){
+      addSplit(i, t, x, y);
+    }
+  }
+
+  private void addSplit(int i, double t, double x, double y){
+    if(numSplits == splitT.length){
+      splitT = grow(splitT, numSplits);
+      splitX = grow(splitX, numSplits);
+      splitY = grow(splitY, numSplits);
+      int[] next = new int[splitT.length];
+      System.arraycopy(splitNext, 0, next, 0, numSplits);
+      splitNext = next;
+    }
+    splitT[numSplits] = t;
+    splitX[numSplits] = x;
+    splitY[numSplits] = y;
+    splitNext[numSplits] = splitHead[i];
+    splitHead[i] = numSplits;
+    numSplits++;
+  }
+
+  /* Cuts the edges at their splits and keeps the pieces with the inside on one side only */
+  private void keepPieces(Bands xbands, Bands ybands){
+    double[] ts = new double[8];
+    double[] xs = new double[8];
+    double[] ys = new double[8];
+    for(int i=0;i<numEdges;i++){
+      /* The ends and the splits of the edge, sorted along it */
+      int n = 0;
+      for(int s=splitHead[i];s>=0;s=splitNext[s]){
+        if(n + 2 > ts.length){
+          ts = grow(ts, n);
+          xs = grow(xs, n);
+          ys = grow(ys, n);
+        }
+        int k = n++;
+        while(k > 0 && ts[k-1] > splitT[s]){
+          ts[k] = ts[k-1];
+          xs[k] = xs[k-1];
+          ys[k] = ys[k-1];
+          k--;
+        }
+        ts[k] = splitT[s];
+        xs[k] = splitX[s];
+        ys[k] = splitY[s];
+      }
+
+      double ax = x0[i], ay = y0[i];
+      for(int k=0;k<=n;k++){
+        double bx = (k < n) ? xs[k] : x1[i];
+        double by = (k < n) ? ys[k] : y1[i];
+        if(ax != bx || ay != by){
+          keepPiece(i, ax, ay, bx, by, xbands, ybands);
+        }
+        ax = bx;
+        ay = by;
+      }
+    }
+  }
+
+  private void keepPiece(int i, double ax, double ay, double bx, double by, Bands xbands, Bands ybands){
+    double dx = bx - ax;
+    double dy = by - ay;
+    double mx = (ax + bx) / 2;
+    double my = (ay + by) / 2;
+
+    /* The winding number on the side the ray leaves from does not count this edge nor the ones going through the piece with it */
+    int left, right;
+    if(Math.abs(dy) >= Math.abs(dx)){
+      int w = windingAlongX(ybands, i, mx, my);
+      int other = w + onPiece + ((dy > 0) ? 1 : -1);
+      left = (dy > 0) ? other : w;
+      right = (dy > 0) ? w : other;
+    }else{
+      int w = windingAlongY(xbands, i, mx, my);
+      int other = w + onPiece + ((dx < 0) ? 1 : -1);
+      left = (dx < 0) ? other : w;
+      right = (dx < 0) ? w : other;
+    }
+
+    /* The pieces repeated by other edges are kept once */
+    if(repeated){
+      return;
+    }
+
+    if(inside(left) && !inside(right)){
+      addPiece(ax, ay, bx, by);
+    }else if(inside(right) && !inside(left)){
+      addPiece(bx, by, ax, ay);
+    }
+  }
+
+  private boolean inside(int winding){
+    switch(fillRule){
+    case RG.NONZERO:
+      return winding != 0;
+    case RG.EVENODD:
+      return (winding & 1) != 0;
+    default:
+      return winding > 0;
+    }
+  }
+
+  /* Winding number of the point counted along a ray going to positive x, without edge skip and the edges going through the point */
+  private int windingAlongX(Bands bands, int skip, double x, double y){
+    int b = bands.band(y);
+    int w = 0;
+    onPiece = 0;
+    repeated = false;
+    for(int k=bands.start[b];k<bands.start[b+1];k++){
+      int j = bands.edges[k];
+      if(j != skip && ((y0[j] <= y) != (y1[j] <= y))){
+        double cx = x0[j] + (y - y0[j]) * (x1[j] - x0[j]) / (y1[j] - y0[j]);
+        int d = (y1[j] > y0[j]) ? 1 : -1;
+        if(Math.abs(cx - x) <= epsilon){
+          onPiece += d;
+          repeated |= (j < skip);
+        }else if(cx > x){
+          w += d;
+        }
+      }
+    }
+    return w;
+  }
+
+  /* Winding number of the point counted along a ray going to positive y, without edge skip and the edges going through the point */
+  private int windingAlongY(Bands bands, int skip, double x, double y){
+    int b = bands.band(x);
+    int w = 0;
+    onPiece = 0;
+    repeated = false;
+    for(int k=bands.start[b];k<bands.start[b+1];k++){
+      int j = bands.edges[k];
+      if(j != skip && ((x0[j] <= x) != (x1[j] <= x))){
+        double cy = y0[j] + (x - x0[j]) * (y1[j] - y0[j]) / (x1[j] - x0[j]);
+        int d = (x1[j] < x0[j]) ? 1 : -1;
+        if(Math.abs(cy - y) <= epsilon){
+          onPiece += d;
+          repeated |= (j < skip);
+        }else if(cy > y){
+          w += d;
+        }
+      }
+    }
+    return w;
+  }
+
+  private void addPiece(double ax, double ay, double bx, double by){
+    int start = vertex(ax, ay);
+    int end = vertex(bx, by);
+    if(start == end){
+      return;
+    }
+    if(numPieces == pieceStart.length){
+      int[] newstart = new int[2*numPieces];
+      int[] newend = new int[2*numPieces];
+      System.arraycopy(pieceStart, 0, newstart, 0, numPieces);
+      System.arraycopy(pieceEnd, 0, newend, 0, numPieces);
+      pieceStart = newstart;
+      pieceEnd = newend;
+    }
+    pieceStart[numPieces] = start;
+    pieceEnd[numPieces] = end;
+    numPieces++;
+  }
+
+  /* The vertex closer than weld to the point, a new one if there is none, so that the points of a crossing found twice are one */
+  private int vertex(double x, double y){
+    long cx = (long)Math.floor(x / weld);
+    long cy = (long)Math.floor(y / weld);
+    for(long i=cx-1;i<=cx+1;i++){
+      for(long k=cy-1;k<=cy+1;k++){
+        for(int v=vertexTable[cell(i, k)];v>=0;v=vertexNext[v]){
+          if(Math.abs(vx[v] - x) <= weld && Math.abs(vy[v] - y) <= weld){
+            return v;
+          }
+        }
+      }
+    }
+    int h = cell(cx, cy);
+    vx[numVertices] = x;
+    vy[numVertices] = y;
+    vertexNext[numVertices] = vertexTable[h];
+    vertexTable[h] = numVertices;
+    return numVertices++;
+  }
+
+  private int cell(long cx, long cy){
+    long bits = cx * 31 + cy;
+    int h = (int)(bits ^ (bits >>> 32));
+    return (h ^ (h >>> 16)) & (vertexTable.length - 1);
+  }
+
+  /* Links the kept pieces end to start into the contours of the result */
+  private void link(RPolygon result){
+    /* The pieces leaving vertex v are out[outStart[v]] to out[outStart[v+1]-1] */
+    int[] outStart = new int[numVertices + 1];
+    for(int i=0;i<numPieces;i++){
+      outStart[pieceStart[i] + 1]++;
+    }
+    for(int v=0;v<numVertices;v++){
+      outStart[v+1] += outStart[v];
+    }
+    int[] out = new int[numPieces];
+    int[] fill = new int[numVertices];
+    for(int i=0;i<numPieces;i++){
+      out[outStart[pieceStart[i]] + fill[pieceStart[i]]++] = i;
+    }
+
+    boolean[] used = new boolean[numPieces];
+    Points contour = new Points(16);
+    for(int first=0;first<numPieces;first++){
+      if(used[first]){
+        continue;
+      }
+      contour.count = 0;
+      int i = first;
+      while(i >= 0){
+        used[i] = true;
+        contour.add(vx[pieceStart[i]], vy[pieceStart[i]]);
+        if(pieceEnd[i] == pieceStart[first]){
+          break;
+        }
+        i = nextPiece(i, outStart, out, used);
+      }
+      addContour(result, contour);
+    }
+  }
+
+  /* The unused piece leaving the end of piece i that turns the most to the left, so that contours touching at a point stay apart */
+  private int nextPiece(int i, int[] outStart, int[] out, boolean[] used){
+    int v = pieceEnd[i];
+    double dx = vx[v] - vx[pieceStart[i]];
+    double dy = vy[v] - vy[pieceStart[i]];
+    int best = -1;
+    double bestTurn = 0;
+    for(int k=outStart[v];k<outStart[v+1];k++){
+      int j = out[k];
+      if(used[j]){
+        continue;
+      }
+      double ex = vx[pieceEnd[j]] - vx[v];
+      double ey = vy[pieceEnd[j]] - vy[v];
+      double turn = Math.atan2(dx*ey - dy*ex, dx*ex + dy*ey);
+      if(best < 0 || turn > bestTurn){
+        best = j;
+        bestTurn = turn;
+      }
+    }
+    return best;
+  }
+
+  private static void addContour(RPolygon result, Points contour){
+    RPoint[] points = new RPoint[contour.count];
+    int n = 0;
+    for(int i=0;i<contour.count;i++){
+      float x = (float)contour.xy[2*i];
+      float y = (float)contour.xy[2*i+1];
+      if(n > 0 && points[n-1].x == x && points[n-1].y == y){
+        continue;
+      }
+      points[n++] = new RPoint(x, y);
+    }
+    if(n > 1 && points[0].x == points[n-1].x && points[0].y == points[n-1].y){
+      n--;
+    }
+    if(n < 3){
+      return;
+    }
+
+    double a = area(contour.xy, contour.count);
+    if(a == 0){
+      return;
+    }
+    RPoint[] exact = new RPoint[n];
+    System.arraycopy(points, 0, exact, 0, n);
+    RContour c = new RContour(exact);
+    c.isHole = (a < 0);
+    result.addContour(c);
+  }
+
+  /**
+   * A growing list of points as x, y pairs.
+   * @invisible
+   */
+  static class Points
+  {
+    double[] xy;
+    int count;
+
+    Points(int capacity){
+      xy = new double[2*Math.max(capacity, 1)];
+    }
+
+    void add(double x, double y){
+      if(2*count == xy.length){
+        xy = grow(xy, 2*count);
+      }
+      xy[2*count] = x;
+      xy[2*count+1] = y;
+      count++;
+    }
+  }
+
+  /**
+   * The edges that reach each band of equal width along x or y.
+   * @invisible
+   */
+  static class Bands
+  {
+    double min;
+    double width;
+    int numBands;
+    /* The edges of band b are edges[start[b]] to edges[start[b+1]-1] */
+    int[] start;
+    int[] edges;
+
+    Bands(ROffset o, boolean alongX, double min, double max){
+      /* Bands as wide as the edges on average, so that each edge reaches about two of them */
+      double extent = 0;
+      for(int i=0;i<o.numEdges;i++){
+        extent += alongX ? Math.abs(o.x1[i] - o.x0[i]) : Math.abs(o.y1[i] - o.y0[i]);
+      }
+      this.min = min;
+      numBands = (extent > 0) ? (int)Math.min((max - min) * o.numEdges / extent, 1 << 16) : 1;
+      numBands = Math.max(1, Math.min(numBands, o.numEdges));
+      width = (max - min) / numBands;
+
+      start = new int[numBands + 1];
+      for(int pass=0;pass<2;pass++){
+        int[] fill = (pass == 0) ? null : new int[numBands];
+        for(int i=0;i<o.numEdges;i++){
+          double a = alongX ? o.x0[i] : o.y0[i];
+          double b = alongX ? o.x1[i] : o.y1[i];
+          int first = band(Math.min(a, b));
+          int last = band(Math.max(a, b));
+          for(int k=first;k<=last;k++){
+            if(pass == 0){
+              start[k+1]++;
+            }else{
+              edges[start[k] + fill[k]++] = i;
+            }
+          }
+        }
+        if(pass == 0){
+          for(int k=0;k<numBands;k++){
+            start[k+1] += start[k];
+          }
+          edges = new int[start[numBands]];
+        }
+      }
+    }
+
+    int band(double v){
+      if(width <= 0){
+        return 0;
+      }
+      int b = (int)((v - min) / width);
+      return Math.max(0, Math.min(numBands - 1, b));
+    }
+  }
+}
@@ -53,6 +53,13 @@ public class RPath extends RGeomElem
   public RPoint lastPoint;
 
   boolean closed = false;
+
+  /* The points drawn by draw() for the last few segmentators used, so that zooming back and forth between scales reuses them, with the stamp they were made with */
+  private static final int CACHE_SIZE = 4;
+  private RPoint[][] cachedPoints;
+  private RSegmentator[] cachedSegmentators;
+  private int cachedStamp;
+  private int nextCached;
   
   /**
    * Create a new empty path.
@@ -170,47 +177,71 @@ public class RPath extends RGeomElem
    * @return RPoint[], the vertices returned in an array.
    * */
   public RPoint[] getPoints(){
+    return getPoints(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to return the points on the curve using a given segmentator instead of the one set with RG.setPolygonizer().  It returns the points in the way of an array of RPoint.
+   * @eexample getPoints
+   * @param seg  the segmentator to use.
+   * @return RPoint[], the vertices returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
     int numCommands = countCommands();
     if(numCommands == 0){
       return null;
     }
     
+    RSegmentator.Run run = new RSegmentator.Run();
+    segment(seg, run);
+    return run.toPoints();
+  }
+
+  /**
+   * Use this to pass the points on the curve to a sink one by one, instead of returning them in an array.  The points are the same as the ones returned by getPoints().
+   * @eexample flatten
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RPointSink sink){
+    flatten(RSegmentator.getDefault(), sink);
+  }
+
+  /**
+   * Use this to pass the points on the curve to a sink one by one using a given segmentator.
+   * @eexample flatten
+   * @param seg  the segmentator to use.
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RSegmentator seg, RPointSink sink){
+    segment(seg, new RSegmentator.Run(sink));
+  }
+
+  /* Adds the points of the segmented path to the run */
+  void segment(RSegmentator seg, RSegmentator.Run run){
+    int numCommands = countCommands();
+    if(numCommands == 0){
+      return;
+    }
+    
     // Add the curve points of each command
     
     // First set the accumulated offset to the value of the inital offset
-    RCommand.segmentAccOffset = RCommand.segmentOffset;
-    RPoint[] result=null;
-    RPoint[] newresult=null;
+    run.accOffset = seg.offset;
     for(int i=0;i<numCommands;i++){
-      RPoint[] newPoints = commands[i].getPoints(false);
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          // Check for overlapping
-          // Overlapping happens when the last point of the last command 
-          // is the same as the first point of the current command
-          RPoint lastp = result[result.length-1];
-          RPoint firstp = newPoints[0];
-          int overlap = 0;
-          if((lastp.x == firstp.x) && (lastp.y == firstp.y)) {
-            overlap = 1;
-          }
-          newresult = new RPoint[result.length + newPoints.length - overlap];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,overlap,newresult,result.length,newPoints.length - overlap);
-          result = newresult;
-        }
+      // Check for overlapping
+      // Overlapping happens when the last point of the last command 
+      // is the same as the first point of the current command
+      // The first command never overlaps, even if the previous path ended where it starts
+      run.commandIndex = i;
+      if(i > 0){
+        run.join();
       }
+      commands[i].segment(seg, run);
     }
     
     // Always add last point
-    newresult = new RPoint[result.length + 1];
-    System.arraycopy(result,0,newresult,0,result.length);
-    newresult[newresult.length - 1] = new RPoint(commands[numCommands-1].endPoint);
-    
-    return newresult;
+    run.joining = false;
+    run.add(commands[numCommands-1].endPoint, 1F);
   }
 
   /**
@@ -219,7 +250,17 @@ public class RPath extends RGeomElem
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[][] getPointsInPaths(){
-    RPoint[][] result = {this.getPoints()};
+    return getPointsInPaths(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to return the points of each path of the path using a given segmentator.  It returns the points in the way of an array of array of RPoint.
+   * @eexample RGroup_getPoints
+   * @param seg  the segmentator to use.
+   * @return RPoint[], the points returned in an array.
+   * */
+  public RPoint[][] getPointsInPaths(RSegmentator seg){
+    RPoint[][] result = {this.getPoints(seg)};
     return result;
   }
 
@@ -243,6 +284,143 @@ public class RPath extends RGeomElem
     return result;
   }
   
+  boolean hasValidBounds(){
+    if(bounds == null){
+      return false;
+    }
+    for(int i=0;i<countCommands();i++){
+      if(!commands[i].hasValidBounds()){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  float[] getBoundsArray(){
+    if(!hasValidBounds()){
+      float[] b = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+      for(int i=0;i<countCommands();i++){
+        addToBounds(b, commands[i].getBoundsArray());
+      }
+      bounds = b;
+    }
+    return bounds;
+  }
+
+  protected void invalidate(){
+    super.invalidate();
+    for(int i=0;i<countCommands();i++){
+      commands[i].invalidate();
+    }
+  }
+
+  int getStamp(){
+    int result = stamp;
+    for(int i=0;i<countCommands();i++){
+      result = Math.max(result, commands[i].getStamp());
+    }
+    return result;
+  }
+
+  /* The points of the path segmented with seg, reused by draw() until the path is modified, the oldest of the cached segmentators being replaced by a new one */
+  RPoint[] getCachedPoints(RSegmentator seg){
+    int currentStamp = getStamp();
+    if(cachedSegmentators == null || cachedStamp != currentStamp){
+      cachedPoints = new RPoint[CACHE_SIZE][];
+      cachedSegmentators = new RSegmentator[CACHE_SIZE];
+      cachedStamp = currentStamp;
+      nextCached = 0;
+    }
+    for(int i=0;i<CACHE_SIZE;i++){
+      if(seg.equals(cachedSegmentators[i])){
+        return cachedPoints[i];
+      }
+    }
+    cachedPoints[nextCached] = getPoints(seg);
+    cachedSegmentators[nextCached] = seg;
+    RPoint[] result = cachedPoints[nextCached];
+    nextCached = (nextCached + 1) % CACHE_SIZE;
+    return result;
+  }
+
+  /**
+   * Use this to return many points on the curve at once.  It is much faster than calling getPoint() for each advancement, since the commands are walked once in the order of the advancements and no object is created for each point.
+   * @eexample getPoints
+   * @param ts  the parameters of advancement on the curve, with values between 0 and 1.  They don't need to be sorted.
+   * @return float[], the x and y coordinates of the point for each advancement, one after the other.
+   * */
+  public float[] getPoints(float[] ts){
+    if(countCommands() == 0){
+      return null;
+    }
+
+    return evaluate(ts, false);
+  }
+
+  /**
+   * Use this to return many tangents on the curve at once.  It is much faster than calling getTangent() for each advancement, since the commands are walked once in the order of the advancements and no object is created for each tangent.
+   * @eexample getTangents
+   * @param ts  the parameters of advancement on the curve, with values between 0 and 1.  They don't need to be sorted.
+   * @return float[], the x and y coordinates of the tangent vector for each advancement, one after the other.
+   * */
+  public float[] getTangents(float[] ts){
+    if(countCommands() == 0){
+      return null;
+    }
+
+    return evaluate(ts, true);
+  }
+
+  private float[] evaluate(float[] ts, boolean tangent){
+    float[] sorted = new float[ts.length];
+    int[] order = new int[ts.length];
+    sortAdvancements(ts, sorted, order);
+
+    float[] result = new float[2*ts.length];
+    evaluate(sorted, order, 0, ts.length, tangent, result);
+    return result;
+  }
+
+  /* Writes the points or the tangents at the sorted advancements ts[from] to ts[to-1] into out, at twice the indices given by order */
+  /* The commands are walked once, and ts is overwritten with the lengths along the command of each advancement */
+  void evaluate(float[] ts, int[] order, int from, int to, boolean tangent, float[] out){
+    int numCommands = countCommands();
+    if(numCommands == 0){
+      for(int k=from;k<to;k++){
+        out[2*order[k]] = 0F;
+        out[2*order[k]+1] = 0F;
+      }
+      return;
+    }
+
+    float[] acc = getAccumulatedLengths();
+    float total = getCurveLength();
+    int current = 0;
+    int start = from;
+    for(int k=from;k<to;k++){
+      float len = ts[k] * total;
+      int i = current;
+      while(i < numCommands - 1 && acc[i+1] < len){
+        i++;
+      }
+      if(i != current){
+        commands[current].evaluateAtLengths(ts, order, start, k, tangent, out);
+        current = i;
+        start = k;
+      }
+      ts[k] = len - acc[i];
+    }
+    commands[current].evaluateAtLengths(ts, order, start, to, tangent, out);
+  }
+
+  /* The advancement inside the command is mapped through its arc length, so that the path is traversed at constant speed */
+  float[] indAndAdvAt(float t){
+    float[] indAndAdv = super.indAndAdvAt(t);
+    int indOfElement = (int)(indAndAdv[0]);
+    indAndAdv[1] = commands[indOfElement].getParameterAtLength(indAndAdv[1] * lenCurves[indOfElement]);
+    return indAndAdv;
+  }
+
   protected void calculateCurveLengths(){
     lenCurves = new float[countCommands()];
     lenCurve = 0F;
@@ -535,8 +713,7 @@ public class RPath extends RGeomElem
     insert( splittedCommands[0], indOfElement );
 
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    clearCaches();
 
     return;
   }
@@ -570,8 +747,7 @@ public class RPath extends RGeomElem
     }
 
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    clearCaches();
     
     return;
   }
@@ -645,6 +821,7 @@ public class RPath extends RGeomElem
       }
       this.commands = result.commands;
     }
+    clearCaches();
   }
   
   /**
@@ -655,11 +832,8 @@ public class RPath extends RGeomElem
   public void draw(PGraphics g){
     countCommands();
     
-    // By default always draw with an adaptative segmentator
-    int lastSegmentator = RCommand.segmentType;
-    RCommand.setSegmentator(RCommand.ADAPTATIVE);
-    
-    RPoint[] points = getPoints();
+    // Draw with an adaptative segmentator as precise as the current scale of g needs
+    RPoint[] points = getCachedPoints(RSegmentator.createForGraphics(g));
     
     if(points == null){
       return;
@@ -670,20 +844,13 @@ public class RPath extends RGeomElem
       g.vertex(points[i].x,points[i].y);
     }
     g.endShape(closed ? PConstants.CLOSE : PConstants.OPEN);
-    
-    // Restore the user set segmentator
-    RCommand.setSegmentator(lastSegmentator);
   }
   
   public void draw(PApplet g){
     countCommands();
     
-    // By default always draw with an adaptative segmentator
-    int lastSegmentator = RCommand.segmentType;
-    RCommand.setSegmentator(RCommand.ADAPTATIVE);
-    
-    RPoint[] points = getPoints();
-    RCommand.setSegmentator(lastSegmentator);
+    // Draw with an adaptative segmentator as precise as the current scale of g needs
+    RPoint[] points = getCachedPoints(RSegmentator.createForGraphics(g.g));
     if(points == null){
       return;
     }
@@ -692,9 +859,6 @@ public class RPath extends RGeomElem
       g.vertex(points[i].x,points[i].y);
     }
     g.endShape(closed ? PConstants.CLOSE : PConstants.OPEN);
-    
-    // Restore the user set segmentator
-    RCommand.setSegmentator(lastSegmentator);
   }
   
   /**
@@ -897,40 +1061,6 @@ public class RPath extends RGeomElem
     }
   */
   
-  private float[] indAndAdvAt(float t){
-    int indOfElement = 0;
-    float[] lengthsCurves = getCurveLengths();
-    float lengthCurve = getCurveLength();
-
-    /* Calculate the amount of advancement t mapped to each command */
-    /* We use a simple algorithm where we give to each command the same amount of advancement */
-    /* A more useful way would be to give to each command an advancement proportional to the length of the command */
-    /* Old method with uniform advancement per command
-       float advPerCommand;
-       advPerCommand = 1F / numPaths;
-       indOfElement = (int)(Math.floor(t / advPerCommand)) % numPaths;
-       advOfElement = (t*numPaths - indOfElement);
-    */
-    
-    float accumulatedAdvancement = lengthsCurves[indOfElement] / lengthCurve;
-    float prevAccumulatedAdvancement = 0F;
-    
-    /* Find in what command the advancement point is  */
-    while(t > accumulatedAdvancement){
-      indOfElement++;
-      prevAccumulatedAdvancement = accumulatedAdvancement;
-      accumulatedAdvancement += (lengthsCurves[indOfElement] / lengthCurve);
-    }
-    
-    float advOfElement = (t-prevAccumulatedAdvancement) / (lengthsCurves[indOfElement] / lengthCurve);
-
-    float[] indAndAdv = new float[2];
-
-    indAndAdv[0] = indOfElement;
-    indAndAdv[1] = advOfElement;
-    
-    return indAndAdv;
-  }
 
   private void append(RCommand nextcommand)
   {
@@ -944,6 +1074,7 @@ public class RPath extends RGeomElem
       newcommands[this.commands.length]=nextcommand;
     }
     this.commands=newcommands; 
+    clearCaches();
   }
 
   private void insert(RCommand newcommand, int i) throws RuntimeException{
@@ -966,6 +1097,7 @@ public class RPath extends RGeomElem
       System.arraycopy( this.commands , i , newcommands , i + 1 , this.commands.length - i);
     }
     this.commands = newcommands;    
+    clearCaches();
   }
 
   private void extract(int i) throws RuntimeException{
@@ -994,5 +1126,6 @@ public class RPath extends RGeomElem
       }
     }
     this.commands=newcommands;
+    clearCaches();
   }
 }
@@ -0,0 +1,39 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative ;
+
+/**
+ * RPointSink receives the points of a segmented (polygonized) shape one at a time.  Pass an implementation to the flatten() methods of RCommand, RPath, RShape or RGroup to consume the points directly (for example to fill a float array or to call vertex() on a PGraphics) without creating RPoint arrays.
+ * @eexample RPointSink
+ * @usage Geometry
+ * @related RSegmentator
+ */
+public interface RPointSink
+{
+  /**
+   * Called once for each point of the segmentation, in the same order as the points returned by getPoints().
+   * @param x  the X coordinate of the point.
+   * @param y  the Y coordinate of the point.
+   * @param pathIndex  the index of the path the point belongs to, in the same order as getPointsInPaths().
+   * @param commandIndex  the index of the command of the path the point belongs to.
+   * @param t  the advancement of the point on the command, from 0 to 1.
+   */
+  public void addPoint(float x, float y, int pathIndex, int commandIndex, float t);
+}
@@ -20,6 +20,8 @@
 package geomerative;
 import processing.core.*;
 
+import java.util.Collection;
+
 
 /**
  * RPolygon is a reduced interface for creating, holding and drawing complex polygons. Polygons are groups of one or more contours (RContour).  This interface allows us to perform binary operations (difference, xor, union and intersection) on polygons.
@@ -53,6 +55,11 @@ public class RPolygon extends RGeomElem
   public RContour[] contours;
   int currentContour = 0;
 
+  /* The mesh drawn by draw(), with the stamp and the tesselator it was made with */
+  private RIndexedMesh cachedMesh;
+  private int cachedStamp;
+  private RTesselator cachedTesselator;
+
   // ----------------------
   // --- Public Methods ---
   // ----------------------
@@ -381,7 +388,12 @@ public class RPolygon extends RGeomElem
       return new RMesh();
     }
 
-    RMesh mesh = RClip.polygonToMesh( this );
+    RMesh mesh;
+    if ( RG.getTesselator() == RTesselator.CLIPPER ){
+      mesh = RClip.polygonToMesh( this );
+    }else{
+      mesh = toIndexedMesh().toMesh();
+    }
     if ( mesh == null ) {
       return null;
     }
@@ -390,6 +402,32 @@ public class RPolygon extends RGeomElem
     return mesh;
   }
 
+  /**
+   * Use this method to create a new indexed mesh from a given polygon.  The indexed mesh holds the same triangles as the mesh given by toMesh(), in flat arrays and with each vertex stored once.
+   * @eexample toIndexedMesh
+   * @return RIndexedMesh, the triangles resulting of a tesselation of the polygon
+   * @related toMesh ( )
+   * @related draw ( )
+   */
+  public RIndexedMesh toIndexedMesh(){
+    return toIndexedMesh( RG.EVENODD );
+  }
+
+  /**
+   * Use this method to get a tesselation of the polygon into triangles under a fill rule, made by the tesselator set with RG.setTesselator().
+   * @eexample toIndexedMesh
+   * @param fillRule  RG.NONZERO to fill the points that are inside at least one of the contours, counting their direction, RG.EVENODD to fill the points that are inside an odd number of them
+   * @return RIndexedMesh, the triangles resulting of a tesselation of the polygon
+   * @related toMesh ( )
+   */
+  public RIndexedMesh toIndexedMesh( int fillRule ){
+    if ( contours == null ){
+      return new RIndexedMesh();
+    }
+
+    return RG.getTesselator().tesselate( this, fillRule );
+  }
+
   public void print(){
     System.out.println("polygon: ");
     for( int i = 0 ; i < countContours() ; i++ )
@@ -404,6 +442,7 @@ public class RPolygon extends RGeomElem
   /**
    * Removes contours with less than 3 points.  These are contours that are open.
    * Since close polygons have points[0] == points[-1] and two more points to form a triangle at least.
+   * Contours of 3 points are kept when they enclose some area, since they are triangles whose first point is not repeated.
    * This is useful to avoid the clipping algorithm from breaking.
    * @invisible
    */
@@ -411,7 +450,7 @@ public class RPolygon extends RGeomElem
     RPolygon clean = new RPolygon();
     for(int i=0;i<countContours();i++)
       {
-        if(contours[i].countPoints() > 3){
+        if(contours[i].countPoints() > 3 || (contours[i].countPoints() == 3 && isTriangle(contours[i].points))){
           clean.addContour(contours[i]);
         }
       }
@@ -419,6 +458,11 @@ public class RPolygon extends RGeomElem
     return clean;
   }
 
+  /* Whether the three points enclose some area, a contour of 3 points with none is a segment closed on itself */
+  private static boolean isTriangle(RPoint[] q){
+    return ((q[1].x - q[0].x)*(q[2].y - q[0].y) - (q[2].x - q[0].x)*(q[1].y - q[0].y)) != 0F;
+  }
+
   /**
    * @invisible
    */
@@ -586,8 +630,7 @@ public class RPolygon extends RGeomElem
           }catch(Exception e){
           }
 
-          RMesh tempMesh = this.toMesh();
-          tempMesh.draw(g);
+          getCachedMesh().draw(g, style.texture);
 
           // Restore the old stroke color
           if(stroking) g.stroke(g.strokeColor);
@@ -642,9 +685,7 @@ public class RPolygon extends RGeomElem
           }catch(Exception e){
           }
 
-          RMesh tempMesh = this.toMesh();
-          if(tempMesh != null)
-            tempMesh.draw(g);
+          getCachedMesh().draw(g.g, style.texture);
 
           // Restore the old stroke color
           if(stroking) g.stroke(g.g.strokeColor);
@@ -703,6 +744,69 @@ public class RPolygon extends RGeomElem
     return res;
   }
 
+  /**
+   * Use this method to get the union of many polygons at once.  This is much faster than calling union() once for each polygon, since the polygons are merged pairwise, neighbours first, in a balanced tree.
+   * @eexample unionAll
+   * @param polygons RPolygon[], the polygons to join
+   * @param fillRule  RG.NONZERO to keep the points that are inside at least one of the polygons, RG.EVENODD to keep only the points that are inside an odd number of them
+   * @return RPolygon, the union of the polygons
+   * @related union ( )
+   * @related intersectionAll ( )
+   */
+  public static RPolygon unionAll( RPolygon[] polygons, int fillRule ){
+    RPolygon res = RClip.cascade( unionOperation(fillRule), polygons );
+    if(polygons.length > 0 && polygons[0] != null){
+      res.setStyle(polygons[0].getStyle());
+    }
+    return res;
+  }
+
+  /* The operation that joins the polygons with the given fill rule */
+  static RClip.OperationType unionOperation( int fillRule ){
+    switch(fillRule){
+    case RG.NONZERO:
+      return RClip.OperationType.GPC_UNION;
+
+    case RG.EVENODD:
+      return RClip.OperationType.GPC_XOR;
+
+    default:
+      throw new RuntimeException("The fill rule must be RG.NONZERO or RG.EVENODD.");
+    }
+  }
+
+  public static RPolygon unionAll( RPolygon[] polygons ){
+    return unionAll( polygons, RG.NONZERO );
+  }
+
+  public static RPolygon unionAll( Collection polygons, int fillRule ){
+    return unionAll( (RPolygon[])polygons.toArray(new RPolygon[polygons.size()]), fillRule );
+  }
+
+  public static RPolygon unionAll( Collection polygons ){
+    return unionAll( polygons, RG.NONZERO );
+  }
+
+  /**
+   * Use this method to get the intersection of many polygons at once.  The polygons are intersected pairwise in a balanced tree, and the operation stops as soon as a partial result is empty.
+   * @eexample intersectionAll
+   * @param polygons RPolygon[], the polygons to intersect
+   * @return RPolygon, the intersection of the polygons
+   * @related intersection ( )
+   * @related unionAll ( )
+   */
+  public static RPolygon intersectionAll( RPolygon[] polygons ){
+    RPolygon res = RClip.cascade( RClip.OperationType.GPC_INT, polygons );
+    if(polygons.length > 0 && polygons[0] != null){
+      res.setStyle(polygons[0].getStyle());
+    }
+    return res;
+  }
+
+  public static RPolygon intersectionAll( Collection polygons ){
+    return intersectionAll( (RPolygon[])polygons.toArray(new RPolygon[polygons.size()]) );
+  }
+
   /**
    * Use this method to get the xor of this polygon with the polygon passed in as a parameter.
    * @eexample xor
@@ -733,6 +837,58 @@ public class RPolygon extends RGeomElem
     return res;
   }
 
+  /**
+   * Use this method to grow or shrink the polygon by a distance, e.g. to draw a halo around it or to compensate the width of a cutting tool.  Every edge is moved by the distance and the corners that open are filled with a round, miter or bevel join.  The parts of the moved contours that fold over each other are resolved in one pass, keeping the points that are inside with a positive winding number.
+   * @eexample offset
+   * @param delta  the distance to move the contours by, positive to grow the polygon and negative to shrink it
+   * @param joinType  the kind of corners to fill the gaps between the moved edges with, RG.ROUND, RG.MITER or RG.BEVEL
+   * @param miterLimit  the longest miter join, relative to the distance, longer ones are beveled instead
+   * @return RPolygon, the grown or shrunk polygon
+   * @related union ( )
+   * @related diff ( )
+   */
+  public RPolygon offset( float delta, int joinType, float miterLimit ){
+    return ROffset.offset( this, delta, joinType, miterLimit );
+  }
+
+  /**
+   * Use this method to grow or shrink the polygon by a distance, with round corners.
+   * @eexample offset
+   * @param delta  the distance to move the contours by, positive to grow the polygon and negative to shrink it
+   * @return RPolygon, the grown or shrunk polygon
+   * @related union ( )
+   * @related diff ( )
+   */
+  public RPolygon offset( float delta ){
+    return offset( delta, RG.ROUND, 4F );
+  }
+
+  /**
+   * Use this method to crop the polygon to a rectangle.  The contours are clipped against the sides of the rectangle one after the other, which is much faster than the intersection with a rectangle polygon.  Unlike intersection() the contours are not merged with each other.
+   * @eexample clipToRect
+   * @param rect  the rectangle to crop the polygon to, e.g. the one returned by getBounds()
+   * @return RPolygon, the part of the polygon inside the rectangle
+   * @related intersection ( )
+   * @related getBounds ( )
+   */
+  public RPolygon clipToRect( RRectangle rect ){
+    return RRectClip.clip( this, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY() );
+  }
+
+  /**
+   * Use this method to crop the polygon to a rectangle.
+   * @eexample clipToRect
+   * @param x  the x coordinate of the top left corner of the rectangle
+   * @param y  the y coordinate of the top left corner of the rectangle
+   * @param w  the width of the rectangle
+   * @param h  the height of the rectangle
+   * @return RPolygon, the part of the polygon inside the rectangle
+   * @related intersection ( )
+   */
+  public RPolygon clipToRect( float x, float y, float w, float h ){
+    return RRectClip.clip( this, x, y, x + w, y + h );
+  }
+
   /**
    * Use this method to get a rebuilt version of a given polygon by removing extra points and solving intersecting contours or holes.
    * @eexample RPolygon_update
@@ -801,11 +957,31 @@ public class RPolygon extends RGeomElem
   // ----------------------
 
 
+  int getStamp(){
+    int result = stamp;
+    for(int i=0;i<countContours();i++){
+      result = Math.max(result, contours[i].getStamp());
+    }
+    return result;
+  }
+
+  /* The mesh of the polygon, reused by draw() until the polygon or one of its contours is modified or the tesselator changes */
+  RIndexedMesh getCachedMesh(){
+    int currentStamp = getStamp();
+    if(cachedMesh == null || cachedStamp != currentStamp || cachedTesselator != RG.getTesselator()){
+      cachedMesh = toIndexedMesh();
+      cachedStamp = currentStamp;
+      cachedTesselator = RG.getTesselator();
+    }
+    return cachedMesh;
+  }
+
   /**
    * Remove all of the points.  Creates an empty polygon.
    */
   protected void clear(){
     this.contours = null;
+    clearCaches();
   }
 
   /**
@@ -1008,5 +1184,6 @@ public class RPolygon extends RGeomElem
       currentContour++;
     }
     this.contours=newcontours;
+    clearCaches();
   }
 }
@@ -0,0 +1,480 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative ;
+
+/**
+ * Crops shapes and polygons to an axis aligned rectangle with the
+ * Sutherland-Hodgman algorithm: every contour or path is clipped against the
+ * four sides of the rectangle one after the other, and the parts outside a
+ * side are replaced by a segment along that side.  The paths of shapes are
+ * not polygonized, their commands are split exactly at the points where
+ * they cross a side, so the curves are kept.
+ *
+ * As with Sutherland-Hodgman in general, a concave outline that leaves and
+ * enters the rectangle several times over the same side gives a single
+ * outline joined by segments along the side, which fills the same area.
+ *
+ * Open paths are outlines as well when they are filled, as in intersection(),
+ * since SVG outlines often leave out the closing command.  Open paths without
+ * fill are lines: they are split where they cross the sides and each piece
+ * inside the rectangle is kept as an open path of its own, with nothing added
+ * along the sides.
+ */
+class RRectClip
+{
+  /* The sides of the rectangle, in the order in which they are clipped */
+  static final int LEFT = 0;
+  static final int RIGHT = 1;
+  static final int TOP = 2;
+  static final int BOTTOM = 3;
+
+  /* Crossings closer than this to the ends of a command are ignored */
+  static final float paramEpsilon = 1e-6F;
+
+  static RPolygon clip(RPolygon p, float xmin, float ymin, float xmax, float ymax){
+    float[] rect = {xmin, ymin, xmax, ymax};
+    RPolygon result = new RPolygon();
+    for(int i=0;i<p.countContours();i++){
+      RContour c = clip(p.contours[i], rect);
+      if(c != null){
+        result.addContour(c);
+      }
+    }
+    result.setStyle(p);
+    return result;
+  }
+
+  static RShape clip(RShape s, float xmin, float ymin, float xmax, float ymax){
+    float[] rect = {xmin, ymin, xmax, ymax};
+    return clip(s, rect, true);
+  }
+
+  /* The shapes and paths without a fill of their own have the one of their parent, and shapes are filled unless told otherwise */
+  private static RShape clip(RShape s, float[] rect, boolean fill){
+    fill = s.style.fillDef ? s.style.fill : fill;
+    RShape result = new RShape();
+    for(int i=0;i<s.countPaths();i++){
+      boolean pathFill = s.paths[i].style.fillDef ? s.paths[i].style.fill : fill;
+      if(!s.paths[i].closed && !pathFill){
+        clipOpen(s.paths[i], rect, result);
+        continue;
+      }
+      RPath p = clip(s.paths[i], rect);
+      if(p != null){
+        result.addPath(p);
+      }
+    }
+    for(int i=0;i<s.countChildren();i++){
+      RShape child = clip(s.children[i], rect, fill);
+      if(child.countPaths() > 0 || child.countChildren() > 0){
+        result.addChild(child);
+      }
+    }
+    result.setStyle(s);
+    return result;
+  }
+
+  /* 1 if the bounds are inside the rectangle, -1 if they are apart and 0 otherwise */
+  private static int classify(float[] b, float[] rect){
+    if(b[2] < rect[0] || b[0] > rect[2] || b[3] < rect[1] || b[1] > rect[3]){
+      return -1;
+    }
+    if(b[0] >= rect[0] && b[2] <= rect[2] && b[1] >= rect[1] && b[3] <= rect[3]){
+      return 1;
+    }
+    return 0;
+  }
+
+  private static boolean inside(float x, float y, int side, float[] rect){
+    switch(side){
+    case LEFT:
+      return x >= rect[0];
+    case RIGHT:
+      return x <= rect[2];
+    case TOP:
+      return y >= rect[1];
+    default:
+      return y <= rect[3];
+    }
+  }
+
+  /* The x of the side for LEFT and RIGHT, the y for TOP and BOTTOM */
+  private static float sideValue(int side, float[] rect){
+    switch(side){
+    case LEFT:
+      return rect[0];
+    case RIGHT:
+      return rect[2];
+    case TOP:
+      return rect[1];
+    default:
+      return rect[3];
+    }
+  }
+
+  // ----------------
+  // --- Contours ---
+  // ----------------
+
+  private static RContour clip(RContour c, float[] rect){
+    int n = c.countPoints();
+    if(n == 0){
+      return null;
+    }
+
+    float[] b = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+    float[] xy = new float[2*n];
+    for(int i=0;i<n;i++){
+      xy[2*i] = c.points[i].x;
+      xy[2*i+1] = c.points[i].y;
+      RGeomElem.addToBounds(b, xy[2*i], xy[2*i+1]);
+    }
+
+    switch(classify(b, rect)){
+    case -1:
+      return null;
+    case 1:
+      return new RContour(c);
+    }
+
+    for(int side=0;side<4 && n>0;side++){
+      float[] out = new float[4*n];
+      n = clipSide(xy, n, side, rect, out);
+      xy = out;
+    }
+    if(n < 3){
+      return null;
+    }
+
+    RPoint[] points = new RPoint[n];
+    for(int i=0;i<n;i++){
+      points[i] = new RPoint(xy[2*i], xy[2*i+1]);
+    }
+    RContour result = new RContour(points);
+    result.isHole = c.isHole;
+    result.closed = c.closed;
+    result.setStyle(c);
+    return result;
+  }
+
+  /* Clips the n points of xy against one side, writes the points to out and returns how many there are */
+  private static int clipSide(float[] xy, int n, int side, float[] rect, float[] out){
+    int axis = (side < TOP) ? 0 : 1;
+    float value = sideValue(side, rect);
+    int m = 0;
+    float px = xy[2*(n-1)];
+    float py = xy[2*(n-1)+1];
+    boolean pin = inside(px, py, side, rect);
+    for(int i=0;i<n;i++){
+      float x = xy[2*i];
+      float y = xy[2*i+1];
+      boolean in = inside(x, y, side, rect);
+      if(in != pin){
+        /* The segment crosses the side, add the crossing with its coordinate on the side set exactly */
+        if(axis == 0){
+          out[2*m] = value;
+          out[2*m+1] = py + (y - py) * (value - px) / (x - px);
+        }else{
+          out[2*m] = px + (x - px) * (value - py) / (y - py);
+          out[2*m+1] = value;
+        }
+        m++;
+      }
+      if(in){
+        out[2*m] = x;
+        out[2*m+1] = y;
+        m++;
+      }
+      px = x;
+      py = y;
+      pin = in;
+    }
+    return m;
+  }
+
+  // -------------
+  // --- Paths ---
+  // -------------
+
+  private static RPath clip(RPath p, float[] rect){
+    int n = p.countCommands();
+    if(n == 0){
+      return null;
+    }
+
+    switch(classify(p.getBoundsArray(), rect)){
+    case -1:
+      return null;
+    case 1:
+      return new RPath(p);
+    }
+
+    /* Work on copies of the commands, closed with a line if needed, since splitting shares their points */
+    Commands cmds = new Commands(n + 1);
+    for(int i=0;i<n;i++){
+      cmds.add(new RCommand(p.commands[i]));
+    }
+    cmds.close();
+
+    for(int side=0;side<4 && cmds.count>0;side++){
+      cmds = clipSide(cmds, side, rect);
+    }
+    if(cmds.count == 0){
+      return null;
+    }
+
+    RPath result = new RPath(cmds.items[0].startPoint);
+    for(int i=0;i<cmds.count;i++){
+      result.addCommand(cmds.items[i]);
+    }
+    result.closed = true;
+    result.setStyle(p);
+    return result;
+  }
+
+  /* Splits the commands of an open path where they cross the sides and adds the runs of pieces inside the rectangle to the shape as open paths */
+  private static void clipOpen(RPath p, float[] rect, RShape result){
+    int n = p.countCommands();
+    if(n == 0){
+      return;
+    }
+
+    switch(classify(p.getBoundsArray(), rect)){
+    case -1:
+      return;
+    case 1:
+      result.addPath(new RPath(p));
+      return;
+    }
+
+    RPath current = null;
+    float[] mid = new float[2];
+    for(int i=0;i<n;i++){
+      RCommand rest = new RCommand(p.commands[i]);
+      float[] ts = crossings(rest, rect);
+      float done = 0F;
+      for(int k=0;k<=ts.length;k++){
+        RCommand piece = rest;
+        if(k < ts.length){
+          RCommand[] parts = rest.split((ts[k] - done) / (1F - done));
+          piece = parts[0];
+          rest = parts[1];
+          done = ts[k];
+        }
+
+        piece.evaluate(0.5F, false, mid, 0);
+        if(!inside(mid[0], mid[1], rect)){
+          current = null;
+          continue;
+        }
+
+        /* The ends of a piece inside are inside or on a side, set them exactly there */
+        clamp(piece.startPoint, rect);
+        clamp(piece.endPoint, rect);
+        if(current == null){
+          current = new RPath(piece.startPoint);
+          current.setStyle(p);
+          result.addPath(current);
+        }
+        current.addCommand(piece);
+      }
+    }
+  }
+
+  private static boolean inside(float x, float y, float[] rect){
+    return x >= rect[0] && x <= rect[2] && y >= rect[1] && y <= rect[3];
+  }
+
+  private static void clamp(RPoint p, float[] rect){
+    p.x = Math.max(rect[0], Math.min(rect[2], p.x));
+    p.y = Math.max(rect[1], Math.min(rect[3], p.y));
+  }
+
+  /* The sorted parameters in (0, 1) where the command crosses any of the sides */
+  private static float[] crossings(RCommand c, float[] rect){
+    float[] all = new float[0];
+    for(int side=0;side<4;side++){
+      float[] ts = crossings(c, (side < TOP) ? 0 : 1, sideValue(side, rect));
+      float[] newall = new float[all.length + ts.length];
+      System.arraycopy(all, 0, newall, 0, all.length);
+      System.arraycopy(ts, 0, newall, all.length, ts.length);
+      all = newall;
+    }
+    java.util.Arrays.sort(all);
+
+    int m = 0;
+    for(int i=0;i<all.length;i++){
+      if(m == 0 || all[i] - all[m-1] > paramEpsilon){
+        all[m++] = all[i];
+      }
+    }
+    float[] result = new float[m];
+    System.arraycopy(all, 0, result, 0, m);
+    return result;
+  }
+
+  /* Splits each command where it crosses the side and keeps the pieces inside, joined by lines along the side */
+  private static Commands clipSide(Commands cmds, int side, float[] rect){
+    int axis = (side < TOP) ? 0 : 1;
+    float value = sideValue(side, rect);
+    Commands result = new Commands(cmds.count + 4);
+    float[] mid = new float[2];
+    for(int i=0;i<cmds.count;i++){
+      RCommand rest = cmds.items[i];
+      float[] ts = crossings(rest, axis, value);
+      float done = 0F;
+      for(int k=0;k<=ts.length;k++){
+        RCommand piece = rest;
+        if(k < ts.length){
+          RCommand[] parts = rest.split((ts[k] - done) / (1F - done));
+          piece = parts[0];
+          rest = parts[1];
+          done = ts[k];
+
+          /* The end of the piece is the start of the rest, set it exactly on the side */
+          if(axis == 0){
+            piece.endPoint.x = value;
+          }else{
+            piece.endPoint.y = value;
+          }
+        }
+
+        piece.evaluate(0.5F, false, mid, 0);
+        if(inside(mid[0], mid[1], side, rect)){
+          result.join(piece.startPoint);
+          result.add(piece);
+        }
+      }
+    }
+    result.close();
+    return result;
+  }
+
+  /* The sorted parameters in (0, 1) where the coordinate axis of the command is equal to value */
+  private static float[] crossings(RCommand c, int axis, float value){
+    float[] coefs = c.getCoefficients();
+    double a = coefs[4*axis];
+    double b = coefs[4*axis+1];
+    double cc = coefs[4*axis+2];
+    double d = coefs[4*axis+3] - value;
+
+    /* Cut [0, 1] where the derivative 3*a*t^2 + 2*b*t + c is zero, the coordinate is monotone in between */
+    double[] cuts = new double[4];
+    int numCuts = 0;
+    cuts[numCuts++] = 0;
+    double qa = 3*a;
+    double qb = 2*b;
+    if(Math.abs(qa) > 1e-12){
+      double disc = qb*qb - 4*qa*cc;
+      if(disc > 0){
+        double sq = Math.sqrt(disc);
+        double t0 = (-qb - sq)/(2*qa);
+        double t1 = (-qb + sq)/(2*qa);
+        if(t0 > t1){
+          double tmp = t0;
+          t0 = t1;
+          t1 = tmp;
+        }
+        if(t0 > 0 && t0 < 1){
+          cuts[numCuts++] = t0;
+        }
+        if(t1 > 0 && t1 < 1){
+          cuts[numCuts++] = t1;
+        }
+      }
+    }else if(qb != 0){
+      double t0 = -cc/qb;
+      if(t0 > 0 && t0 < 1){
+        cuts[numCuts++] = t0;
+      }
+    }
+    cuts[numCuts++] = 1;
+
+    float[] roots = new float[numCuts - 1];
+    int numRoots = 0;
+    for(int i=0;i<numCuts-1;i++){
+      double lo = cuts[i];
+      double hi = cuts[i+1];
+      double flo = ((a*lo + b)*lo + cc)*lo + d;
+      double fhi = ((a*hi + b)*hi + cc)*hi + d;
+      if((flo < 0 && fhi > 0) || (flo > 0 && fhi < 0)){
+        /* Bisect the monotone interval */
+        for(int j=0;j<60 && hi-lo>1e-12;j++){
+          double t = (lo + hi)/2;
+          double f = ((a*t + b)*t + cc)*t + d;
+          if((f < 0) == (flo < 0)){
+            lo = t;
+          }else{
+            hi = t;
+          }
+        }
+        float t = (float)((lo + hi)/2);
+        if(t > paramEpsilon && t < 1F - paramEpsilon && (numRoots == 0 || t - roots[numRoots-1] > paramEpsilon)){
+          roots[numRoots++] = t;
+        }
+      }
+    }
+
+    float[] result = new float[numRoots];
+    System.arraycopy(roots, 0, result, 0, numRoots);
+    return result;
+  }
+
+  /**
+   * A growing list of commands, each one starting where the one before ends.
+   * @invisible
+   */
+  static class Commands
+  {
+    RCommand[] items;
+    int count;
+
+    Commands(int capacity){
+      items = new RCommand[Math.max(capacity, 1)];
+    }
+
+    void add(RCommand c){
+      if(count == items.length){
+        RCommand[] newitems = new RCommand[items.length*2];
+        System.arraycopy(items, 0, newitems, 0, count);
+        items = newitems;
+      }
+      items[count++] = c;
+    }
+
+    /* Adds a line from the end of the last command to p, if they are apart */
+    void join(RPoint p){
+      if(count == 0){
+        return;
+      }
+      RPoint last = items[count-1].endPoint;
+      if(last.x != p.x || last.y != p.y){
+        add(RCommand.createLine(last, p));
+      }
+    }
+
+    /* Adds a line from the end of the last command to the start of the first one, if they are apart */
+    void close(){
+      if(count > 0){
+        join(items[0].startPoint);
+      }
+    }
+  }
+}
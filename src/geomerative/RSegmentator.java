@@ -0,0 +1,442 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative ;
+import processing.core.*;
+
+/**
+ * RSegmentator holds the settings used to segment (polygonize) curves.  An RSegmentator is immutable, so the same instance can be shared by several threads polygonizing different shapes at the same time.  The settings made through RG.setPolygonizer*() can be retrieved as an RSegmentator using getDefault().
+ * @eexample RSegmentator
+ * @usage Geometry
+ * @related RG
+ */
+public class RSegmentator
+{
+  /**
+   * @invisible
+   */
+  public static final int ADAPTATIVE = RCommand.ADAPTATIVE;
+  /**
+   * @invisible
+   */
+  public static final int UNIFORMLENGTH = RCommand.UNIFORMLENGTH;
+  /**
+   * @invisible
+   */
+  public static final int UNIFORMSTEP = RCommand.UNIFORMSTEP;
+  /**
+   * @invisible
+   */
+  public static final int TOLERANCE = RCommand.TOLERANCE;
+
+  /* The scales used by createForGraphics() go from 2^-MAX_BUCKET to 2^MAX_BUCKET */
+  static final int MAX_BUCKET = 16;
+
+  final int type;
+
+  /* Parameters for ADAPTATIVE */
+  final float distTolSqr;
+  final float distTolMnhttn;
+  final float angleTol;
+  final float cuspLimit;
+  /* Curves whose control points fit in a square of this size are not subdivided */
+  final float minSize;
+
+  /* Parameters for UNIFORMLENGTH */
+  final float length;
+  final float offset;
+
+  /* Parameters for UNIFORMSTEP */
+  final int steps;
+  final boolean lines;
+
+  /* Parameters for TOLERANCE */
+  final float tolerance;
+
+  RSegmentator(int type, float distTolSqr, float distTolMnhttn, float angleTol, float cuspLimit, float length, float offset, int steps, boolean lines, float tolerance, float minSize){
+    this.type = type;
+    this.distTolSqr = distTolSqr;
+    this.distTolMnhttn = distTolMnhttn;
+    this.angleTol = angleTol;
+    this.cuspLimit = cuspLimit;
+    this.length = length;
+    this.offset = offset;
+    this.steps = steps;
+    this.lines = lines;
+    this.tolerance = tolerance;
+    this.minSize = minSize;
+  }
+
+  /**
+   * Use this to get the segmentator defined by the last calls to RG.setPolygonizer(), RG.setPolygonizerAngle(), RG.setPolygonizerLength(), RG.setPolygonizerStep() and RG.setPolygonizerTolerance().
+   * @eexample getDefault
+   * @return RSegmentator, a snapshot of the current global segmentator settings.
+   */
+  public static RSegmentator getDefault(){
+    return new RSegmentator(RCommand.segmentType,
+                            RCommand.segmentDistTolSqr,
+                            RCommand.segmentDistTolMnhttn,
+                            RCommand.segmentAngleTol,
+                            RCommand.segmentCuspLimit,
+                            RCommand.segmentLength,
+                            RCommand.segmentOffset,
+                            RCommand.segmentSteps,
+                            RCommand.segmentLines,
+                            RCommand.segmentTolerance,
+                            0F);
+  }
+
+  /**
+   * Use this to create an ADAPTATIVE segmentator.
+   * @eexample createAdaptative
+   * @param angle  an angle from 0 to PI/2 it defines the maximum angle between segments.
+   * @return RSegmentator, the new segmentator.
+   */
+  public static RSegmentator createAdaptative(float angle){
+    return getDefault().withType(ADAPTATIVE).withAngle(angle);
+  }
+
+  /**
+   * Use this to create an UNIFORMLENGTH segmentator.
+   * @eexample createUniformLength
+   * @param length  the length of each resulting segment.
+   * @param offset  the offset of the first point on the path.
+   * @return RSegmentator, the new segmentator.
+   */
+  public static RSegmentator createUniformLength(float length, float offset){
+    return getDefault().withType(UNIFORMLENGTH).withLength(length).withOffset(offset);
+  }
+
+  /**
+   * Use this to create an UNIFORMLENGTH segmentator.
+   * @eexample createUniformLength
+   * @param length  the length of each resulting segment.
+   * @return RSegmentator, the new segmentator.
+   */
+  public static RSegmentator createUniformLength(float length){
+    return createUniformLength(length, 0F);
+  }
+
+  /**
+   * Use this to create an UNIFORMSTEP segmentator.
+   * @eexample createUniformStep
+   * @param step  if a float from +0.0 to 1.0 is passed it's considered as the step, else it's considered as the number of steps.  When a value of 0.0 is used the steps will be calculated automatically depending on an estimation of the length of the curve.  The special value -1 is the same as 0.0 but also turning of the segmentation of lines (faster segmentation).
+   * @return RSegmentator, the new segmentator.
+   */
+  public static RSegmentator createUniformStep(float step){
+    return getDefault().withType(UNIFORMSTEP).withStep(step);
+  }
+
+  /**
+   * Use this to create a TOLERANCE segmentator.  This segmentator computes the exact number of uniform steps each curve needs so that no point of the curve is further than the tolerance from the resulting segments.
+   * @eexample createTolerance
+   * @param tolerance  the maximum distance between the curve and the resulting segments.
+   * @return RSegmentator, the new segmentator.
+   */
+  public static RSegmentator createTolerance(float tolerance){
+    return getDefault().withType(TOLERANCE).withTolerance(tolerance);
+  }
+
+  /**
+   * Use this to create the ADAPTATIVE segmentator used to draw on a graphics object.  The scale of the current transformation of the graphics is rounded up to a power of two, and the distance tolerances are divided by it, so the curves have the same precision in pixels whatever the zoom, and all the scales of one power of two share the same segmentator and the same cached points.  Curves smaller than a pixel are not subdivided at all.
+   * @eexample createForGraphics
+   * @param g  the graphics object on which the curves will be drawn.
+   * @return RSegmentator, the new segmentator.
+   */
+  public static RSegmentator createForGraphics(PGraphics g){
+    return createForScale(getScale(g));
+  }
+
+  /* The ADAPTATIVE segmentator for the power of two bucket of the scale */
+  static RSegmentator createForScale(float scale){
+    float bucket = getBucket(scale);
+    RSegmentator seg = getDefault();
+    return new RSegmentator(ADAPTATIVE, seg.distTolSqr / (bucket*bucket), seg.distTolMnhttn / bucket, seg.angleTol, seg.cuspLimit, seg.length, seg.offset, seg.steps, seg.lines, seg.tolerance, 1F / bucket);
+  }
+
+  /* The smallest power of two at least as large as the scale, between 2^-MAX_BUCKET and 2^MAX_BUCKET */
+  static float getBucket(float scale){
+    int level = -MAX_BUCKET;
+    if(scale > 0){
+      level = (int)Math.ceil(Math.log(scale) / Math.log(2) - 1e-6);
+      level = Math.max(-MAX_BUCKET, Math.min(MAX_BUCKET, level));
+    }
+    return (float)Math.pow(2, level);
+  }
+
+  /* The scale of the current transformation of g, the square root of the factor by which it multiplies areas, or 1 if the renderer does not keep a matrix */
+  static float getScale(PGraphics g){
+    if(!g.is2D() && !g.is3D()){
+      return 1F;
+    }
+
+    PMatrix m = g.getMatrix();
+    float det = 1F;
+    if(m instanceof PMatrix2D){
+      PMatrix2D m2 = (PMatrix2D)m;
+      det = m2.m00*m2.m11 - m2.m01*m2.m10;
+    }else if(m instanceof PMatrix3D){
+      PMatrix3D m3 = (PMatrix3D)m;
+      det = m3.m00*m3.m11 - m3.m01*m3.m10;
+    }
+    return (float)Math.sqrt(Math.abs(det));
+  }
+
+  /**
+   * Returns a copy of this segmentator using a different segmentator type.
+   * @param segmentatorType  can be RSegmentator.ADAPTATIVE, RSegmentator.UNIFORMLENGTH, RSegmentator.UNIFORMSTEP or RSegmentator.TOLERANCE.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withType(int segmentatorType){
+    return new RSegmentator(segmentatorType, distTolSqr, distTolMnhttn, angleTol, cuspLimit, length, offset, steps, lines, tolerance, minSize);
+  }
+
+  /**
+   * Returns a copy of this segmentator using a different angle tolerance for the ADAPTATIVE segmentator.
+   * @param angle  an angle from 0 to PI/2 it defines the maximum angle between segments.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withAngle(float angle){
+    return new RSegmentator(type, distTolSqr, distTolMnhttn, angle, cuspLimit, length, offset, steps, lines, tolerance, minSize);
+  }
+
+  /**
+   * Returns a copy of this segmentator using a different segment length for the UNIFORMLENGTH segmentator.  Unlike RG.setPolygonizerLength() lengths smaller than 1 are accepted.
+   * @param segmentLength  the length of each resulting segment.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withLength(float segmentLength){
+    if(segmentLength <= 0){
+      segmentLength = 4;
+    }
+    return new RSegmentator(type, distTolSqr, distTolMnhttn, angleTol, cuspLimit, segmentLength, offset, steps, lines, tolerance, minSize);
+  }
+
+  /**
+   * Returns a copy of this segmentator using a different offset for the UNIFORMLENGTH segmentator.
+   * @param segmentOffset  the offset of the first point on the path.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withOffset(float segmentOffset){
+    if(segmentOffset < 0){
+      segmentOffset = 0;
+    }
+    return new RSegmentator(type, distTolSqr, distTolMnhttn, angleTol, cuspLimit, length, segmentOffset, steps, lines, tolerance, minSize);
+  }
+
+  /**
+   * Returns a copy of this segmentator using a different step for the UNIFORMSTEP segmentator.
+   * @param step  see createUniformStep().
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withStep(float step){
+    boolean segmentLines = true;
+    if(step == -1F){
+      segmentLines = false;
+      step = 0F;
+    }
+
+    step = Math.abs(step);
+    int segmentSteps;
+    if(step>0.0F && step<1.0F){
+      segmentSteps = (int)(1F/step);
+    }else{
+      segmentSteps = (int)step;
+    }
+    return new RSegmentator(type, distTolSqr, distTolMnhttn, angleTol, cuspLimit, length, offset, segmentSteps, segmentLines, tolerance, minSize);
+  }
+
+  /**
+   * Returns a copy of this segmentator using a different tolerance for the TOLERANCE segmentator.
+   * @param segmentTolerance  the maximum distance between the curve and the resulting segments, must be greater than 0.
+   * @return RSegmentator, the new segmentator.
+   */
+  public RSegmentator withTolerance(float segmentTolerance){
+    if(segmentTolerance <= 0){
+      segmentTolerance = 0.25F;
+    }
+    return new RSegmentator(type, distTolSqr, distTolMnhttn, angleTol, cuspLimit, length, offset, steps, lines, segmentTolerance, minSize);
+  }
+
+  /**
+   * Use this to get the segmentator type.
+   * @return int, RSegmentator.ADAPTATIVE, RSegmentator.UNIFORMLENGTH, RSegmentator.UNIFORMSTEP or RSegmentator.TOLERANCE.
+   */
+  public int getType(){
+    return type;
+  }
+
+  /**
+   * @return float, the angle tolerance of the ADAPTATIVE segmentator.
+   */
+  public float getAngle(){
+    return angleTol;
+  }
+
+  /**
+   * @return float, the segment length of the UNIFORMLENGTH segmentator.
+   */
+  public float getLength(){
+    return length;
+  }
+
+  /**
+   * @return float, the offset of the first point of the UNIFORMLENGTH segmentator.
+   */
+  public float getOffset(){
+    return offset;
+  }
+
+  /**
+   * @return int, the number of steps of the UNIFORMSTEP segmentator, 0 if chosen automatically.
+   */
+  public int getSteps(){
+    return steps;
+  }
+
+  /**
+   * @return float, the maximum distance between the curve and the segments of the TOLERANCE segmentator.
+   */
+  public float getTolerance(){
+    return tolerance;
+  }
+
+  /**
+   * Tells if the segmentator has the same settings as another one, so that both segment any curve into the same points.
+   * @param o  the object to compare with
+   * @return boolean, true if o is a segmentator with the same settings
+   */
+  public boolean equals(Object o){
+    if(o == this){
+      return true;
+    }
+    if(!(o instanceof RSegmentator)){
+      return false;
+    }
+    RSegmentator s = (RSegmentator)o;
+    return type == s.type
+      && distTolSqr == s.distTolSqr
+      && distTolMnhttn == s.distTolMnhttn
+      && angleTol == s.angleTol
+      && cuspLimit == s.cuspLimit
+      && length == s.length
+      && offset == s.offset
+      && steps == s.steps
+      && lines == s.lines
+      && tolerance == s.tolerance
+      && minSize == s.minSize;
+  }
+
+  public int hashCode(){
+    int h = type;
+    h = 31*h + Float.floatToIntBits(distTolSqr);
+    h = 31*h + Float.floatToIntBits(distTolMnhttn);
+    h = 31*h + Float.floatToIntBits(angleTol);
+    h = 31*h + Float.floatToIntBits(cuspLimit);
+    h = 31*h + Float.floatToIntBits(length);
+    h = 31*h + Float.floatToIntBits(offset);
+    h = 31*h + steps;
+    h = 31*h + (lines ? 1 : 0);
+    h = 31*h + Float.floatToIntBits(tolerance);
+    h = 31*h + Float.floatToIntBits(minSize);
+    return h;
+  }
+
+  /**
+   * Holds the state of one segmentation run (the points generated so far and the length accumulated towards the next point).  A new one is created by each call to getPoints(RSegmentator) so that no state is shared between calls.  The points are kept in a float array that doubles its capacity when full, and are only turned into RPoint objects by toPoints().  If the run has a sink the points are passed on to it instead of being kept.
+   * @invisible
+   */
+  static class Run
+  {
+    float[] coords;
+    int count;
+    float accOffset;
+    boolean joining;
+
+    RPointSink sink;
+    int pathIndex;
+    int commandIndex;
+    float lastX;
+    float lastY;
+
+    Run(){
+      this.coords = new float[64];
+    }
+
+    Run(RPointSink sink){
+      this.sink = sink;
+    }
+
+    void add(float x, float y, float t){
+      if(joining){
+        joining = false;
+        // Skip the point if it overlaps the last point of the previous command
+        if(count > 0 && lastX == x && lastY == y){
+          return;
+        }
+      }
+      lastX = x;
+      lastY = y;
+
+      if(sink != null){
+        sink.addPoint(x, y, pathIndex, commandIndex, t);
+        count++;
+        return;
+      }
+
+      if(2*count == coords.length){
+        float[] newcoords = new float[coords.length*2];
+        System.arraycopy(coords,0,newcoords,0,coords.length);
+        coords = newcoords;
+      }
+      coords[2*count] = x;
+      coords[2*count+1] = y;
+      count++;
+    }
+
+    /* Makes room for a known number of points so that the buffer grows at most once */
+    void ensureCapacity(int morePoints){
+      if(sink == null && 2*(count + morePoints) > coords.length){
+        float[] newcoords = new float[Math.max(2*(count + morePoints), coords.length*2)];
+        System.arraycopy(coords,0,newcoords,0,2*count);
+        coords = newcoords;
+      }
+    }
+
+    void add(RPoint p, float t){
+      add(p.x, p.y, t);
+    }
+
+    /* The next point added will be dropped if it is equal to the last one */
+    void join(){
+      joining = true;
+    }
+
+    RPoint[] toPoints(){
+      if(count == 0){
+        return null;
+      }
+      RPoint[] result = new RPoint[count];
+      for(int i=0;i<count;i++){
+        result[i] = new RPoint(coords[2*i], coords[2*i+1]);
+      }
+      return result;
+    }
+  }
+}
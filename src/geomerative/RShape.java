@@ -46,6 +46,12 @@ public class RShape extends RGeomElem
   public RShape[] children = null;
   protected int currentChild;
 
+  /* The mesh drawn by the internal tesselator, with the segmentator, the stamp and the tesselator it was made with */
+  private RIndexedMesh cachedMesh;
+  private RSegmentator cachedSegmentator;
+  private int cachedStamp;
+  private RTesselator cachedTesselator;
+
   // ----------------------
   // --- Public Methods ---
   // ----------------------
@@ -364,6 +370,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addLineTo(endx, endy);
+    clearCaches();
   }
 
   public void addLineTo(RPoint p){
@@ -388,6 +395,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addQuadTo(cp1x,cp1y,endx,endy);
+    clearCaches();
   }
 
   public void addQuadTo(RPoint p1, RPoint p2){
@@ -414,6 +422,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addBezierTo(cp1x,cp1y,cp2x,cp2y,endx,endy);
+    clearCaches();
   }
 
   public void addBezierTo(RPoint p1, RPoint p2, RPoint p3){
@@ -425,6 +434,7 @@ public class RShape extends RGeomElem
       this.append(new RPath());
     }
     this.paths[currentPath].addClose();
+    clearCaches();
   }
   
   /**
@@ -436,6 +446,16 @@ public class RShape extends RGeomElem
   public RMesh toMesh(){
     return toPolygon().toMesh();
   }
+
+  /**
+   * Use this method to create a new indexed mesh from a given shape.  The indexed mesh holds the same triangles as the mesh given by toMesh(), in flat arrays and with each vertex stored once.
+   * @eexample toIndexedMesh
+   * @return RIndexedMesh, the triangles resulting of the polygonization followed by tesselation of the shape.
+   * @related toMesh ( )
+   */
+  public RIndexedMesh toIndexedMesh(){
+    return toPolygon().toIndexedMesh();
+  }
   
   /**
    * Use this method to create a new polygon from a given shape. 
@@ -444,6 +464,18 @@ public class RShape extends RGeomElem
    * @related draw ( )
    */
   public RPolygon toPolygon ( )
+  {
+    return toPolygon( RSegmentator.getDefault() );
+  }
+  
+  /**
+   * Use this method to create a new polygon from a given shape using a given segmentator. 
+   * @eexample toPolygon
+   * @param seg  the segmentator to use.
+   * @return RPolygon, the polygon resulting of the segmentation of the commands in each path.
+   * @related draw ( )
+   */
+  public RPolygon toPolygon ( RSegmentator seg )
   {
     int numPnts = this.countPaths();
     
@@ -453,8 +485,8 @@ public class RShape extends RGeomElem
       {
         for ( int i = 0; i < this.children.length; i++ )
           {
-            RPolygon childPoly = this.children[i].toPolygon();
-            for ( int ii = 0; ii < childPoly.contours.length; ii++ )
+            RPolygon childPoly = this.children[i].toPolygon( seg );
+            for ( int ii = 0; ii < childPoly.countContours(); ii++ )
               {
                 poly.addContour( childPoly.contours[ii] );
               }
@@ -463,7 +495,7 @@ public class RShape extends RGeomElem
     
     for ( int i = 0; i < numPnts; i++ )
       {
-        RPoint[] pnts = this.paths[i].getPoints();
+        RPoint[] pnts = this.paths[i].getPoints( seg );
         RContour c = new RContour(pnts);
         c.closed = this.paths[i].closed;
         c.setStyle( this.paths[i] );
@@ -484,6 +516,7 @@ public class RShape extends RGeomElem
     for(int i=0;i<countChildren();i++){
       this.children[i].polygonize();
     }
+    clearCaches();
   }
 
   
@@ -494,6 +527,70 @@ public class RShape extends RGeomElem
     return this;
   }
 
+  /**
+   * Use this method to build a Processing shape that draws the shape and its children, so that a large shape can be drawn many times with a single call to shape().  The fills are tesselated into triangles and the paths segmented into lines once, when building, with the segmentator set by RG.setPolygonizer().  The styles of the shape and of its children are applied over the current style of the graphics, as draw() does.
+   * @eexample RShape_toPShape
+   * @param g PGraphics, the graphics object that creates the shape and whose current style is inherited
+   * @return PShape, a group with the triangles of the fill, the lines of each path and a group for each child
+   * @related draw ( )
+   */
+  public PShape toPShape(PGraphics g){
+    return toPShape(g, RStyle.current(g), RSegmentator.getDefault());
+  }
+
+  /* The shape as a group of Processing shapes, with its style applied over the current one */
+  PShape toPShape(PGraphics g, RStyle current, RSegmentator seg){
+    if(!RG.ignoreStyles){
+      current = style.applyTo(current);
+    }
+
+    PShape result = g.createShape(PConstants.GROUP);
+    if(current.fill && countPaths() > 0){
+      RPolygon p = new RPolygon();
+      for(int i=0;i<countPaths();i++){
+        RPoint[] points = paths[i].getCachedPoints(seg);
+        if(points != null){
+          p.addContour(new RContour(points));
+        }
+      }
+      RIndexedMesh mesh = p.toIndexedMesh();
+      if(mesh.countTriangles() > 0){
+        result.addChild(mesh.toPShape(g, current));
+      }
+    }
+
+    if(current.stroke){
+      for(int i=0;i<countPaths();i++){
+        RPoint[] points = paths[i].getCachedPoints(seg);
+        if(points == null || points.length < 2){
+          continue;
+        }
+        PShape line = g.createShape();
+        line.beginShape();
+        current.setStrokeStyle(line);
+        for(int k=0;k<points.length;k++){
+          line.vertex(points[k].x, points[k].y);
+        }
+        line.endShape(paths[i].closed ? PConstants.CLOSE : PConstants.OPEN);
+        result.addChild(line);
+      }
+    }
+
+    for(int i=0;i<countChildren();i++){
+      result.addChild(children[i].toPShape(g, current, seg));
+    }
+    return result;
+  }
+
+  /* The operation between the paths and the whole of p, keeping the curves if RG.keepCurves is set */
+  private static RShape clipPaths( RClip.OperationType op, RShape paths, RShape p ){
+    if(RG.keepCurves){
+      return RCurveClip.clip( op, paths, p, RSegmentator.getDefault() );
+    }
+    RPolygon res = RClip.clip( op, paths.toPolygon(), p.toPolygon(), RPolygon.class );
+    return (res == null) ? new RShape() : res.toShape();
+  }
+
   /**
    * Use this method to get the intersection of this polygon with the polygon passed in as a parameter.
    * @eexample intersection
@@ -505,7 +602,6 @@ public class RShape extends RGeomElem
    */
   public RShape intersection( RShape p ){
       int numPaths = countPaths();
-    RPolygon ppoly = p.toPolygon();
 
     RShape result = new RShape();
     
@@ -514,12 +610,9 @@ public class RShape extends RGeomElem
       temp.addPath(this.paths[i]);
     }
 
-    RPolygon resPolPaths = RClip.intersection( temp.toPolygon(), ppoly );
-    if (resPolPaths != null) { 
-      RShape resPaths = resPolPaths.toShape();
-      for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
-      }
+    RShape resPaths = clipPaths( RClip.OperationType.GPC_INT, temp, p );
+    for(int i=0; i<resPaths.countPaths(); i++){
+      result.addPath(resPaths.paths[i]);
     }
 
     for(int i=0; i<countChildren(); i++){
@@ -555,7 +648,6 @@ public class RShape extends RGeomElem
    */
   public RShape union( RShape p ){
     int numPaths = countPaths();
-    RPolygon ppoly = p.toPolygon();
 
     RShape result = new RShape();
     
@@ -564,12 +656,9 @@ public class RShape extends RGeomElem
       temp.addPath(this.paths[i]);
     }
 
-    RPolygon resPolPaths = RClip.union( temp.toPolygon(), ppoly );
-    if (resPolPaths != null) { 
-      RShape resPaths = resPolPaths.toShape();
-      for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
-      }
+    RShape resPaths = clipPaths( RClip.OperationType.GPC_UNION, temp, p );
+    for(int i=0; i<resPaths.countPaths(); i++){
+      result.addPath(resPaths.paths[i]);
     }
 
     for(int i=0; i<countChildren(); i++){
@@ -605,7 +694,6 @@ public class RShape extends RGeomElem
    */
   public RShape xor( RShape p ){
     int numPaths = countPaths();
-    RPolygon ppoly = p.toPolygon();
 
     RShape result = new RShape();
     
@@ -614,12 +702,9 @@ public class RShape extends RGeomElem
       temp.addPath(this.paths[i]);
     }
 
-    RPolygon resPolPaths = RClip.xor( temp.toPolygon(), ppoly );
-    if (resPolPaths != null) { 
-      RShape resPaths = resPolPaths.toShape();
-      for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
-      }
+    RShape resPaths = clipPaths( RClip.OperationType.GPC_XOR, temp, p );
+    for(int i=0; i<resPaths.countPaths(); i++){
+      result.addPath(resPaths.paths[i]);
     }
 
     for(int i=0; i<countChildren(); i++){
@@ -655,7 +740,6 @@ public class RShape extends RGeomElem
    */	
   public RShape diff( RShape p ){
     int numPaths = countPaths();
-    RPolygon ppoly = p.toPolygon();
 
     RShape result = new RShape();
     
@@ -664,12 +748,9 @@ public class RShape extends RGeomElem
       temp.addPath(this.paths[i]);
     }
 
-    RPolygon resPolPaths = RClip.diff( temp.toPolygon(), ppoly );
-    if (resPolPaths != null) { 
-      RShape resPaths = resPolPaths.toShape();
-      for(int i=0; i<resPaths.countPaths(); i++){
-        result.addPath(resPaths.paths[i]);
-      }
+    RShape resPaths = clipPaths( RClip.OperationType.GPC_DIFF, temp, p );
+    for(int i=0; i<resPaths.countPaths(); i++){
+      result.addPath(resPaths.paths[i]);
     }
 
     for(int i=0; i<countChildren(); i++){
@@ -693,6 +774,60 @@ public class RShape extends RGeomElem
     return result.toShape();
     */
   }
+
+  /**
+   * Use this method to grow or shrink the shape by a distance, e.g. to draw a halo around it or to compensate the width of a cutting tool.  The shape is polygonized with the current segmentator and its polygon is offset as with RPolygon.offset().
+   * @eexample offset
+   * @param delta  the distance to move the outlines by, positive to grow the shape and negative to shrink it
+   * @param joinType  the kind of corners to fill the gaps between the moved edges with, RG.ROUND, RG.MITER or RG.BEVEL
+   * @param miterLimit  the longest miter join, relative to the distance, longer ones are beveled instead
+   * @return RShape, the grown or shrunk shape
+   * @related union ( )
+   * @related diff ( )
+   */
+  public RShape offset( float delta, int joinType, float miterLimit ){
+    RShape result = toPolygon().offset( delta, joinType, miterLimit ).toShape();
+    result.setStyle(this);
+    return result;
+  }
+
+  /**
+   * Use this method to grow or shrink the shape by a distance, with round corners.
+   * @eexample offset
+   * @param delta  the distance to move the outlines by, positive to grow the shape and negative to shrink it
+   * @return RShape, the grown or shrunk shape
+   * @related union ( )
+   * @related diff ( )
+   */
+  public RShape offset( float delta ){
+    return offset( delta, RG.ROUND, 4F );
+  }
+
+  /**
+   * Use this method to crop the shape to a rectangle.  The paths are clipped against the sides of the rectangle one after the other without being polygonized: the commands are split exactly where they cross a side, so the curves are kept.  This is much faster than the intersection with a rectangle shape.  Unlike intersection() the paths are not merged with each other.
+   * @eexample clipToRect
+   * @param rect  the rectangle to crop the shape to, e.g. the one returned by getBounds()
+   * @return RShape, the part of the shape inside the rectangle
+   * @related intersection ( )
+   * @related getBounds ( )
+   */
+  public RShape clipToRect( RRectangle rect ){
+    return RRectClip.clip( this, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY() );
+  }
+
+  /**
+   * Use this method to crop the shape to a rectangle.
+   * @eexample clipToRect
+   * @param x  the x coordinate of the top left corner of the rectangle
+   * @param y  the y coordinate of the top left corner of the rectangle
+   * @param w  the width of the rectangle
+   * @param h  the height of the rectangle
+   * @return RShape, the part of the shape inside the rectangle
+   * @related intersection ( )
+   */
+  public RShape clipToRect( float x, float y, float w, float h ){
+    return RRectClip.clip( this, x, y, x + w, y + h );
+  }
     
   /**
    * Use this to return the start, control and end points of the shape.  It returns the points as an array of RPoint.
@@ -760,42 +895,51 @@ public class RShape extends RGeomElem
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[] getPoints(){
-    int numPaths = countPaths();
+    return getPoints(RSegmentator.getDefault());
+  }
 
-    RCommand.segmentAccOffset = RCommand.segmentOffset;    
-    RPoint[] result=null;
-    RPoint[] newresult=null;
+  /**
+   * Use this to return the points on the curve of the shape using a given segmentator.  It returns the points as an array of RPoint.
+   * @eexample RShape_getPoints
+   * @param seg  the segmentator to use.
+   * @return RPoint[], the points returned in an array.
+   * */
+  public RPoint[] getPoints(RSegmentator seg){
+    RSegmentator.Run run = new RSegmentator.Run();
+    segment(seg, run);
+    return run.toPoints();
+  }
+
+  /**
+   * Use this to pass the points on the curve of the shape to a sink one by one, instead of returning them in an array.  The points are the same as the ones returned by getPoints().
+   * @eexample flatten
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RPointSink sink){
+    flatten(RSegmentator.getDefault(), sink);
+  }
+
+  /**
+   * Use this to pass the points on the curve of the shape to a sink one by one using a given segmentator.
+   * @eexample flatten
+   * @param seg  the segmentator to use.
+   * @param sink  the object that receives the points.
+   * */
+  public void flatten(RSegmentator seg, RPointSink sink){
+    segment(seg, new RSegmentator.Run(sink));
+  }
+
+  /* Adds the points of the segmented paths of the shape and its children to the run */
+  void segment(RSegmentator seg, RSegmentator.Run run){
+    int numPaths = countPaths();
     for(int i=0;i<numPaths;i++){
-      RPoint[] newPoints = paths[i].getPoints();
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
-      }
+      paths[i].segment(seg, run);
+      run.pathIndex++;
     }
 
     for(int i=0;i<countChildren();i++){
-      RPoint[] newPoints = children[i].getPoints();
-      if(newPoints!=null){
-        if(result==null){
-          result = new RPoint[newPoints.length];
-          System.arraycopy(newPoints,0,result,0,newPoints.length);
-        }else{
-          newresult = new RPoint[result.length + newPoints.length];
-          System.arraycopy(result,0,newresult,0,result.length);
-          System.arraycopy(newPoints,0,newresult,result.length,newPoints.length);
-          result = newresult;
-        }
-      }
+      children[i].segment(seg, run);
     }
-    
-    return result;
   }
 
   /**
@@ -925,12 +1069,22 @@ public class RShape extends RGeomElem
    * @return RPoint[], the points returned in an array.
    * */
   public RPoint[][] getPointsInPaths(){
+    return getPointsInPaths(RSegmentator.getDefault());
+  }
+
+  /**
+   * Use this to return the points of each path of the group using a given segmentator.  It returns the points as an array of arrays of RPoint.
+   * @eexample RGroup_getPoints
+   * @param seg  the segmentator to use.
+   * @return RPoint[], the points returned in an array.
+   * */
+  public RPoint[][] getPointsInPaths(RSegmentator seg){
     int numPaths = countPaths();
     
     RPoint[][] result=null;
     RPoint[][] newresult=null;
     for(int i=0;i<numPaths;i++){
-      RPoint[][] newPointPaths = paths[i].getPointsInPaths();
+      RPoint[][] newPointPaths = paths[i].getPointsInPaths(seg);
       if(newPointPaths != null){
         if(result == null){
           result = new RPoint[newPointPaths.length][];
@@ -945,7 +1099,7 @@ public class RShape extends RGeomElem
     }
 
     for(int i=0;i<countChildren();i++){
-      RPoint[][] newPoints = children[i].getPointsInPaths();
+      RPoint[][] newPoints = children[i].getPointsInPaths(seg);
       if(newPoints!=null){
         if(result==null){
           result = new RPoint[newPoints.length][];
@@ -1088,8 +1242,7 @@ public class RShape extends RGeomElem
     }
     
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    clearCaches();
 
     return;
   }
@@ -1114,8 +1267,7 @@ public class RShape extends RGeomElem
     }
 
     // Clear the cache
-    lenCurves = null;
-    lenCurve = -1F;
+    clearCaches();
     
     return;
   }
@@ -1201,24 +1353,12 @@ public class RShape extends RGeomElem
    * @param other  the path with which to check for intersections
    */  
   public RPoint[] getIntersections(RShape other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-
-    RShape otherPol = new RShape(other);
-    otherPol.polygonize();
-    return shp.polygonIntersectionPoints(otherPol);
+    return polygonIntersectionPoints(other);
   }
 
 
   RPoint[] getIntersections(RCommand other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-    
-    return shp.polygonIntersectionPoints(other);
+    return polygonIntersectionPoints(other);
   }
   
   RPoint[] polygonIntersectionPoints(RCommand other){
@@ -1345,24 +1485,12 @@ public class RShape extends RGeomElem
    * @param other  the path with which to check for intersections
    */  
   public RClosest getClosest(RShape other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-
-    RShape otherPol = new RShape(other);
-    otherPol.polygonize();
-    return shp.polygonClosestPoints(otherPol);
+    return polygonClosestPoints(other);
   }
 
 
   RClosest getClosest(RCommand other) {
-    // TODO: when we will be able to intersect between all
-    //       geometric elements the polygonization will not be necessary
-    RShape shp = new RShape(this);
-    shp.polygonize();
-    
-    return shp.polygonClosestPoints(other);
+    return polygonClosestPoints(other);
   }
   
   RClosest polygonClosestPoints(RCommand other){
@@ -1506,6 +1634,8 @@ public class RShape extends RGeomElem
     default:
       throw new RuntimeException("Unknown adaptor type : "+RG.adaptorType+". The method RG.setAdaptor() only accepts RG.BYPOINT or RG.BYELEMENT as parameter values.");
     }
+
+    invalidate();
   }
   
   public void adapt(RShape shp) throws RuntimeException{
@@ -1647,6 +1777,153 @@ public class RShape extends RGeomElem
   // --- Private Methods ---
   // ----------------------
 
+  /**
+   * Use this to return many points on the curve of the shape at once.  It is much faster than calling getPoint() for each advancement, since the paths are walked once in the order of the advancements and no object is created for each point.
+   * @eexample RShape_getPoints
+   * @param ts  the parameters of advancement on the curve, with values between 0 and 1.  They don't need to be sorted.
+   * @return float[], the x and y coordinates of the point for each advancement, one after the other.
+   * */
+  public float[] getPoints(float[] ts){
+    if(countPaths() + countChildren() == 0){
+      return null;
+    }
+
+    return evaluate(ts, false);
+  }
+
+  /**
+   * Use this to return many tangents on the curve of the shape at once.  It is much faster than calling getTangent() for each advancement, since the paths are walked once in the order of the advancements and no object is created for each tangent.
+   * @eexample RShape_getTangents
+   * @param ts  the parameters of advancement on the curve, with values between 0 and 1.  They don't need to be sorted.
+   * @return float[], the x and y coordinates of the tangent vector for each advancement, one after the other.
+   * */
+  public float[] getTangents(float[] ts){
+    if(countPaths() + countChildren() == 0){
+      return null;
+    }
+
+    return evaluate(ts, true);
+  }
+
+  private float[] evaluate(float[] ts, boolean tangent){
+    float[] sorted = new float[ts.length];
+    int[] order = new int[ts.length];
+    sortAdvancements(ts, sorted, order);
+
+    float[] result = new float[2*ts.length];
+    evaluate(sorted, order, 0, ts.length, tangent, result);
+    return result;
+  }
+
+  /* Writes the points or the tangents at the sorted advancements ts[from] to ts[to-1] into out, at twice the indices given by order */
+  /* The paths and then the children are walked once, and ts is overwritten with the advancement inside the element of each advancement */
+  void evaluate(float[] ts, int[] order, int from, int to, boolean tangent, float[] out){
+    int numElements = countPaths() + countChildren();
+    if(numElements == 0){
+      for(int k=from;k<to;k++){
+        out[2*order[k]] = 0F;
+        out[2*order[k]+1] = 0F;
+      }
+      return;
+    }
+
+    float[] lengthsCurves = getCurveLengths();
+    float[] acc = getAccumulatedLengths();
+    float total = getCurveLength();
+    int current = 0;
+    int start = from;
+    for(int k=from;k<to;k++){
+      float len = ts[k] * total;
+      int i = current;
+      while(i < numElements - 1 && acc[i+1] < len){
+        i++;
+      }
+      if(i != current){
+        evaluateElement(current, ts, order, start, k, tangent, out);
+        current = i;
+        start = k;
+      }
+      float advOfElement = (lengthsCurves[i] == 0F) ? 0F : (len - acc[i]) / lengthsCurves[i];
+      ts[k] = (advOfElement > 1F) ? 1F : advOfElement;
+    }
+    evaluateElement(current, ts, order, start, to, tangent, out);
+  }
+
+  private void evaluateElement(int i, float[] ts, int[] order, int from, int to, boolean tangent, float[] out){
+    if(from >= to){
+      return;
+    }
+    if(i < countPaths()){
+      paths[i].evaluate(ts, order, from, to, tangent, out);
+    }else{
+      children[i - countPaths()].evaluate(ts, order, from, to, tangent, out);
+    }
+  }
+
+  boolean hasValidBounds(){
+    if(bounds == null){
+      return false;
+    }
+    for(int i=0;i<countPaths();i++){
+      if(!paths[i].hasValidBounds()){
+        return false;
+      }
+    }
+    for(int i=0;i<countChildren();i++){
+      if(!children[i].hasValidBounds()){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  float[] getBoundsArray(){
+    if(!hasValidBounds()){
+      float[] b = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+      for(int i=0;i<countPaths();i++){
+        addToBounds(b, paths[i].getBoundsArray());
+      }
+      for(int i=0;i<countChildren();i++){
+        addToBounds(b, children[i].getBoundsArray());
+      }
+      bounds = b;
+    }
+    return bounds;
+  }
+
+  protected void invalidate(){
+    super.invalidate();
+    for(int i=0;i<countPaths();i++){
+      paths[i].invalidate();
+    }
+    for(int i=0;i<countChildren();i++){
+      children[i].invalidate();
+    }
+  }
+
+  int getStamp(){
+    int result = stamp;
+    for(int i=0;i<countPaths();i++){
+      result = Math.max(result, paths[i].getStamp());
+    }
+    for(int i=0;i<countChildren();i++){
+      result = Math.max(result, children[i].getStamp());
+    }
+    return result;
+  }
+
+  /* The mesh of the shape segmented with seg, reused until the shape or one of its subelements is modified or it is drawn with another segmentator or tesselator */
+  RIndexedMesh getCachedMesh(RSegmentator seg){
+    int currentStamp = getStamp();
+    if(cachedSegmentator == null || cachedStamp != currentStamp || !cachedSegmentator.equals(seg) || cachedTesselator != RG.getTesselator()){
+      cachedMesh = toPolygon(seg).toIndexedMesh();
+      cachedSegmentator = seg;
+      cachedStamp = currentStamp;
+      cachedTesselator = RG.getTesselator();
+    }
+    return cachedMesh;
+  }
+
   protected void calculateCurveLengths(){
     lenCurves = new float[countPaths() + countChildren()];
     lenCurve = 0F;
@@ -1661,34 +1938,6 @@ public class RShape extends RGeomElem
     }
   }
   
-  private float[] indAndAdvAt(float t){
-    int indOfElement = 0;
-    float[] lengthsCurves = getCurveLengths();
-    float lengthCurve = getCurveLength();
-
-    /* Calculate the amount of advancement t mapped to each command */
-    /* We use a simple algorithm where we give to each command the same amount of advancement */
-    /* A more useful way would be to give to each command an advancement proportional to the length of the command */
-    
-    float accumulatedAdvancement = lengthsCurves[indOfElement] / lengthCurve;
-    float prevAccumulatedAdvancement = 0F;
-    
-    /* Find in what command the advancement point is  */
-    while(t > accumulatedAdvancement){
-      indOfElement++;
-      prevAccumulatedAdvancement = accumulatedAdvancement;
-      accumulatedAdvancement += (lengthsCurves[indOfElement] / lengthCurve);
-    }
-    
-    float advOfElement = (t-prevAccumulatedAdvancement) / (lengthsCurves[indOfElement] / lengthCurve);
-
-    float[] indAndAdv = new float[2];
-
-    indAndAdv[0] = indOfElement;
-    indAndAdv[1] = RG.parent().constrain(advOfElement, 0.0f, 1.0f);
-    
-    return indAndAdv;
-  }
   
 
   private void appendChild(RShape nextshape)
@@ -1705,6 +1954,7 @@ public class RShape extends RGeomElem
       currentChild++;
     }
     this.children = newshapes;
+    clearCaches();
   }
   
   
@@ -1722,6 +1972,7 @@ public class RShape extends RGeomElem
       currentPath++;
     }
     this.paths=newpaths;
+    clearCaches();
   }
 
   private void drawUsingInternalTesselator(PGraphics g){
@@ -1738,9 +1989,8 @@ public class RShape extends RGeomElem
         boolean fillBefore = g.fill;
         int fillColorBefore = g.fillColor;
 
-        // By default always drawy with an ADAPTATIVE segmentator
-        int lastSegmentator = RCommand.segmentType;
-        RCommand.setSegmentator(RCommand.ADAPTATIVE);
+        // Draw with an ADAPTATIVE segmentator as precise as the current scale needs
+        RSegmentator seg = RSegmentator.createForGraphics(g);
         
         // Check whether to draw the fill or not
         if(g.fill){
@@ -1753,8 +2003,7 @@ public class RShape extends RGeomElem
             g.noSmooth();
           }catch(Exception e){}
           
-          RMesh tempMesh = this.toMesh();
-          tempMesh.draw(g);
+          getCachedMesh(seg).draw(g, style.texture);
           
           // Restore the old context
           g.stroke(strokeColorBefore);
@@ -1793,9 +2042,6 @@ public class RShape extends RGeomElem
         if(!strokeBefore){
           g.noStroke();
         }
-        
-        // Restore the user set segmentator
-        RCommand.setSegmentator(lastSegmentator);
       }
     }
   }
@@ -1813,9 +2059,8 @@ public class RShape extends RGeomElem
         boolean fillBefore = p.g.fill;
         int fillColorBefore = p.g.fillColor;
 
-        // By default always drawy with an ADAPTATIVE segmentator
-        int lastSegmentator = RCommand.segmentType;
-        RCommand.setSegmentator(RCommand.ADAPTATIVE);
+        // Draw with an ADAPTATIVE segmentator as precise as the current scale needs
+        RSegmentator seg = RSegmentator.createForGraphics(p.g);
         
         // Check whether to draw the fill or not
         if(p.g.fill){
@@ -1830,10 +2075,7 @@ public class RShape extends RGeomElem
             p.noSmooth();
           }catch(Exception e){}
           
-          RMesh tempMesh = this.toMesh();
-          if ( tempMesh != null ){
-            tempMesh.draw(p);
-          }
+          getCachedMesh(seg).draw(p.g, style.texture);
           
           // Restore the old context
           p.stroke(strokeColorBefore);
@@ -1875,9 +2117,6 @@ public class RShape extends RGeomElem
             p.noStroke();
           }
         }
-        
-        // Restore the user set segmentator
-        RCommand.setSegmentator(lastSegmentator);
       }
     }
   }
@@ -1888,6 +2127,9 @@ public class RShape extends RGeomElem
       if(isIn(g)){
         boolean closed = false;
         boolean useContours = (numPaths>1);
+        // Raster renderers get the curves flattened as finely as the current scale needs, and not at all below a pixel
+        // Vector renderers, such as PDF, keep the curves
+        RSegmentator seg = g.displayable() ? RSegmentator.createForGraphics(g) : null;
         g.beginShape();
         for(int i=0;i<numPaths;i++){
           if (useContours && i>0) {
@@ -1897,23 +2139,30 @@ public class RShape extends RGeomElem
           RPath path = paths[i];
           closed |= path.closed;
 
-          for(int j = 0; j < path.countCommands(); j++ ){
-            RPoint[] pnts = path.commands[j].getHandles();
-            if(j==0){
-              g.vertex(pnts[0].x, pnts[0].y);
+          if(seg != null){
+            RPoint[] points = path.getCachedPoints(seg);
+            for(int j = 0; points != null && j < points.length; j++ ){
+              g.vertex( points[j].x, points[j].y );
             }
-            switch( path.commands[j].getCommandType() )
-              {
-              case RCommand.LINETO:
-                g.vertex( pnts[1].x, pnts[1].y );
-                break;
-              case RCommand.QUADBEZIERTO:
-                g.bezierVertex( pnts[1].x, pnts[1].y, pnts[2].x, pnts[2].y, pnts[2].x, pnts[2].y );
-                break;
-              case RCommand.CUBICBEZIERTO:
-                g.bezierVertex( pnts[1].x, pnts[1].y, pnts[2].x, pnts[2].y, pnts[3].x, pnts[3].y );
-                break;
+          }else{
+            for(int j = 0; j < path.countCommands(); j++ ){
+              RCommand c = path.commands[j];
+              if(j==0){
+                g.vertex(c.startPoint.x, c.startPoint.y);
               }
+              switch( c.getCommandType() )
+                {
+                case RCommand.LINETO:
+                  g.vertex( c.endPoint.x, c.endPoint.y );
+                  break;
+                case RCommand.QUADBEZIERTO:
+                  g.bezierVertex( c.controlPoints[0].x, c.controlPoints[0].y, c.endPoint.x, c.endPoint.y, c.endPoint.x, c.endPoint.y );
+                  break;
+                case RCommand.CUBICBEZIERTO:
+                  g.bezierVertex( c.controlPoints[0].x, c.controlPoints[0].y, c.controlPoints[1].x, c.controlPoints[1].y, c.endPoint.x, c.endPoint.y );
+                  break;
+                }
+            }
           }
 
           if (useContours && i>0) {
@@ -1933,31 +2182,40 @@ public class RShape extends RGeomElem
       if(isIn(g)){
         boolean closed = false;
         boolean useContours = (numPaths>1);
+        // Raster renderers get the curves flattened as finely as the current scale needs, and not at all below a pixel
+        // Vector renderers, such as PDF, keep the curves, also when recording
+        RSegmentator seg = (g.recorder == null && g.g.displayable()) ? RSegmentator.createForGraphics(g.g) : null;
         g.beginShape();
         for(int i=0;i<numPaths;i++){
           if (useContours && i>0) g.beginContour();
 
           RPath path = paths[i];
           closed |= path.closed;
-          float firstx = 0;
-          float firsty = 0;
-          for(int j = 0; j < path.countCommands(); j++ ){
-            RPoint[] pnts = path.commands[j].getHandles();
-            if (j==0) {
-              g.vertex(pnts[0].x, pnts[0].y);
+
+          if(seg != null){
+            RPoint[] points = path.getCachedPoints(seg);
+            for(int j = 0; points != null && j < points.length; j++ ){
+              g.vertex( points[j].x, points[j].y );
             }
-            switch( path.commands[j].getCommandType() )
-              {
-              case RCommand.LINETO:
-                g.vertex( pnts[1].x, pnts[1].y );
-                break;
-              case RCommand.QUADBEZIERTO:
-                g.bezierVertex( pnts[1].x, pnts[1].y, pnts[2].x, pnts[2].y, pnts[2].x, pnts[2].y );
-                break;
-              case RCommand.CUBICBEZIERTO:
-                g.bezierVertex( pnts[1].x, pnts[1].y, pnts[2].x, pnts[2].y, pnts[3].x, pnts[3].y );
-                break;
+          }else{
+            for(int j = 0; j < path.countCommands(); j++ ){
+              RCommand c = path.commands[j];
+              if(j==0){
+                g.vertex(c.startPoint.x, c.startPoint.y);
               }
+              switch( c.getCommandType() )
+                {
+                case RCommand.LINETO:
+                  g.vertex( c.endPoint.x, c.endPoint.y );
+                  break;
+                case RCommand.QUADBEZIERTO:
+                  g.bezierVertex( c.controlPoints[0].x, c.controlPoints[0].y, c.endPoint.x, c.endPoint.y, c.endPoint.x, c.endPoint.y );
+                  break;
+                case RCommand.CUBICBEZIERTO:
+                  g.bezierVertex( c.controlPoints[0].x, c.controlPoints[0].y, c.controlPoints[1].x, c.controlPoints[1].y, c.endPoint.x, c.endPoint.y );
+                  break;
+                }
+            }
           }
           if (useContours && i>0) {
               g.endContour();
@@ -439,6 +439,66 @@ public class RStyle{
     setContext(RG.parent());
   }
 
+  /* The current style of the graphics, as a style that defines everything */
+  static RStyle current(PGraphics g){
+    RStyle result = new RStyle();
+    result.fill = g.fill;
+    result.fillColor = g.fillColor;
+    result.stroke = g.stroke;
+    result.strokeColor = g.strokeColor;
+    result.strokeWeight = g.strokeWeight;
+    result.strokeCap = g.strokeCap;
+    result.strokeJoin = g.strokeJoin;
+    return result;
+  }
+
+  /* The style that setContext() would leave on a graphics with the current style, without changing either */
+  RStyle applyTo(RStyle current){
+    RStyle result = new RStyle(current);
+    if(fillDef){
+      result.fill = fill;
+      result.fillColor = fillAlphaDef ? ((fillAlpha << 24) & 0xff000000) | (fillColor & 0x00ffffff) : fillColor;
+    }else if(fillAlphaDef && current.fill){
+      result.fillColor = ((fillAlpha << 24) & 0xff000000) | (current.fillColor & 0x00ffffff);
+    }
+
+    if(strokeDef){
+      result.stroke = stroke;
+      result.strokeColor = strokeAlphaDef ? ((strokeAlpha << 24) & 0xff000000) | (strokeColor & 0x00ffffff) : strokeColor;
+    }else if(strokeAlphaDef && current.stroke){
+      result.strokeColor = ((strokeAlpha << 24) & 0xff000000) | (current.strokeColor & 0x00ffffff);
+    }
+
+    if(strokeWeightDef){
+      result.strokeWeight = strokeWeight;
+    }
+    if(strokeCapDef){
+      result.strokeCap = strokeCap;
+    }
+    if(strokeJoinDef){
+      result.strokeJoin = strokeJoin;
+    }
+
+    // As in draw(), the texture is the one of the element, it is not inherited
+    result.texture = texture;
+    return result;
+  }
+
+  /* Gives the fill of this style and no stroke to a shape being built, between its beginShape() and endShape() */
+  void setFillStyle(PShape s){
+    s.noStroke();
+    s.fill(fillColor);
+  }
+
+  /* Gives the stroke of this style and no fill to a shape being built, between its beginShape() and endShape() */
+  void setStrokeStyle(PShape s){
+    s.noFill();
+    s.stroke(strokeColor);
+    s.strokeWeight(strokeWeight);
+    s.strokeCap(strokeCap);
+    s.strokeJoin(strokeJoin);
+  }
+
 
   private int getColor(String colorString){
     colorString = PApplet.trim(colorString);
@@ -0,0 +1,49 @@
+/**
+    Copyright 2004-2008 Ricard Marxer  <email@ricardmarxer.com>
+
+    This file is part of Geomerative.
+
+    Geomerative is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Geomerative is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Geomerative.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package geomerative;
+
+/**
+ * RTesselator is the interface of the objects that cut a polygon into triangles.  The tesselator set with RG.setTesselator() is the one used by the toMesh() and toIndexedMesh() methods of the polygons and to draw the shapes.  Two tesselators are provided: CLIPPER, which takes the triangle strips made by the clipper of RClip, and MONOTONE, which cuts the polygon into pieces that are monotone along y and triangulates them in a single sweep.  MONOTONE is several times faster on polygons whose contours do not cross, such as the glyphs of the fonts, and makes about half as many triangles.
+ * @usage Geometry
+ * @related RIndexedMesh
+ * @extended
+ */
+public interface RTesselator
+{
+  /**
+   * The tesselator that takes the triangle strips of the clipper of RClip, the engine of which is chosen by RG.useFastClip and RG.useArrayClip.
+   * @related MONOTONE
+   */
+  RTesselator CLIPPER = new RClipTesselator();
+
+  /**
+   * The tesselator that sweeps the polygon once, cutting it into pieces that are monotone along y and triangulating each piece as the sweep goes.  The polygons whose contours cross each other are first resolved into contours that do not.
+   * @related CLIPPER
+   */
+  RTesselator MONOTONE = new RMonotoneTesselator();
+
+  /**
+   * Use this method to cut a polygon into triangles.
+   * @param p  the polygon to tesselate
+   * @param fillRule  RG.NONZERO to fill the points that are inside at least one of the contours, counting their direction, RG.EVENODD to fill the points that are inside an odd number of them
+   * @return RIndexedMesh, the triangles covering the inside of the polygon
+   */
+  RIndexedMesh tesselate(RPolygon p, int fillRule);
+}
@@ -0,0 +1,248 @@
+package geomerative;
+
+import processing.core.PApplet;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Measures RClip against FastRClip (RG.useFastClip) and ArrayRClip
+ * (RG.useArrayClip) on the shapes in
+ * data/ and on synthetic stars of increasing vertex count.  Each
+ * operation is warmed up and then run for a number of timed
+ * iterations, and the throughput (mean and standard deviation over the
+ * iterations), the allocated bytes per operation and the number and
+ * total time of the garbage collections are reported, in the manner of
+ * JMH.
+ *
+ * The allocation counters need a JVM that implements
+ * com.sun.management.ThreadMXBean, otherwise they print as n/a.
+ *
+ * The dissolve benchmarks join all the polygons of each file into one,
+ * either with one union per polygon or with RPolygon.unionAll().  The
+ * one-by-one union of the maps takes tens of seconds, so it is timed
+ * once and without warmup.
+ *
+ * Run from the geomerative directory so that the data/ files are
+ * found.  Pass a word as argument to only run the benchmarks whose
+ * name contains it, e.g. "union" or "world-map".
+ *
+ */
+public class ClipBenchmark {
+
+  static final int WARMUP_ITERATIONS = 3;
+  static final int ITERATIONS = 5;
+  static final long ITERATION_MILLIS = 200;
+
+  static final String[] FILES = {"data/Lion.svg", "data/world-map.svg", "data/Toucan.svg", "data/mapa.svg"};
+  static final int[] STAR_POINTS = {64, 256, 1024, 4096};
+  static final String[] OPERATIONS = {"intersection", "union", "xor", "diff", "polygonToMesh"};
+  static final String[] ENGINES = {"slow", "fast", "array"};
+
+  public static void main(String[] args) {
+    RG.init(new PApplet());
+    String filter = args.length > 0 ? args[0] : "";
+
+    System.out.println(pad("Benchmark", 48) + pad("Engine", 8) + pad("ops/s", 22) + pad("bytes/op", 14) + pad("gc", 6) + "gc ms");
+
+    for(int i = 0; i < FILES.length; i++) {
+      RPolygon a = RG.loadShape(FILES[i]).toPolygon();
+      RPolygon b = shifted(a);
+      runAll(FILES[i], a, b, filter);
+    }
+
+    for(int i = 0; i < FILES.length; i++) {
+      List<RPolygon> parts = new ArrayList<RPolygon>();
+      collectPolygons(RG.loadShape(FILES[i]), parts);
+      RPolygon[] polys = parts.toArray(new RPolygon[parts.size()]);
+      String name = FILES[i] + " dissolve " + polys.length;
+      if(name.indexOf(filter) >= 0) {
+        System.out.println(pad(name + " one by one", 48) + pad("array", 8) + measure("dissolve", polys, 0, 1));
+        System.out.println(pad(name + " unionAll", 48) + pad("array", 8) + measure("unionAll", polys, WARMUP_ITERATIONS, ITERATIONS));
+      }
+    }
+
+    for(int i = 0; i < STAR_POINTS.length; i++) {
+      RPolygon a = makeStar(STAR_POINTS[i], 0F);
+      RPolygon b = makeStar(STAR_POINTS[i], (float)Math.PI / STAR_POINTS[i]);
+      runAll("star " + STAR_POINTS[i], a, b, filter);
+    }
+  }
+
+  static void runAll(String input, RPolygon a, RPolygon b, String filter) {
+    for(int op = 0; op < OPERATIONS.length; op++) {
+      String name = input + " " + OPERATIONS[op];
+      if(name.indexOf(filter) < 0) {
+        continue;
+      }
+      for(int engine = 0; engine < ENGINES.length; engine++) {
+        RG.useFastClip = (engine >= 1);
+        RG.useArrayClip = (engine == 2);
+        Result r = measure(OPERATIONS[op], new RPolygon[] {a, b}, WARMUP_ITERATIONS, ITERATIONS);
+        System.out.println(pad(name, 48) + pad(ENGINES[engine], 8) + r);
+      }
+    }
+    RG.useFastClip = true;
+    RG.useArrayClip = true;
+  }
+
+  static Result measure(String op, RPolygon[] polys, int warmups, int iterations) {
+    for(int i = 0; i < warmups; i++) {
+      iteration(op, polys);
+    }
+
+    double[] throughput = new double[iterations];
+    long ops = 0;
+    long bytesBefore = allocatedBytes();
+    long gcBefore = gcCount();
+    long gcTimeBefore = gcTime();
+    for(int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      long n = iteration(op, polys);
+      throughput[i] = n * 1e9 / (System.nanoTime() - start);
+      ops += n;
+    }
+    long bytesAfter = allocatedBytes();
+
+    Result r = new Result();
+    for(int i = 0; i < iterations; i++) {
+      r.mean += throughput[i] / iterations;
+    }
+    for(int i = 0; i < iterations; i++) {
+      r.stddev += (throughput[i] - r.mean) * (throughput[i] - r.mean) / iterations;
+    }
+    r.stddev = Math.sqrt(r.stddev);
+    r.bytesPerOp = (bytesBefore < 0 || bytesAfter < 0) ? -1 : (bytesAfter - bytesBefore) / ops;
+    r.gcs = gcCount() - gcBefore;
+    r.gcMillis = gcTime() - gcTimeBefore;
+    return r;
+  }
+
+  /* Runs the operation for ITERATION_MILLIS, at least once, and returns how many times it ran */
+  static long iteration(String op, RPolygon[] polys) {
+    long end = System.nanoTime() + ITERATION_MILLIS * 1000000L;
+    long n = 0;
+    Object sink = null;
+    RPolygon a = polys[0];
+    RPolygon b = polys[polys.length - 1];
+    do {
+      if(op.equals("dissolve")) {
+        RPolygon result = new RPolygon();
+        for(int i = 0; i < polys.length; i++) {
+          result = result.union(polys[i]);
+        }
+        sink = result;
+      } else if(op.equals("unionAll")) {
+        sink = RPolygon.unionAll(polys);
+      } else if(op.equals("intersection")) {
+        sink = RClip.intersection(a, b);
+      } else if(op.equals("union")) {
+        sink = RClip.union(a, b);
+      } else if(op.equals("xor")) {
+        sink = RClip.xor(a, b);
+      } else if(op.equals("diff")) {
+        sink = RClip.diff(a, b);
+      } else {
+        sink = RClip.polygonToMesh(a);
+      }
+      n++;
+    } while(System.nanoTime() < end);
+    if(sink == null) {
+      throw new RuntimeException("No result for " + op);
+    }
+    return n;
+  }
+
+  static class Result {
+    double mean;
+    double stddev;
+    long bytesPerOp;
+    long gcs;
+    long gcMillis;
+
+    public String toString() {
+      String bytes = bytesPerOp < 0 ? "n/a" : String.valueOf(bytesPerOp);
+      return pad(format(mean) + " +- " + format(stddev), 22) + pad(bytes, 14) + pad(String.valueOf(gcs), 6) + gcMillis;
+    }
+  }
+
+  /* Bytes allocated so far by this thread, -1 if the JVM can't tell */
+  static long allocatedBytes() {
+    try {
+      Object bean = ManagementFactory.getThreadMXBean();
+      Method m = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", new Class[] {long.class});
+      return ((Long)m.invoke(bean, new Object[] {Long.valueOf(Thread.currentThread().getId())})).longValue();
+    } catch(Exception e) {
+      return -1;
+    }
+  }
+
+  static long gcCount() {
+    long count = 0;
+    List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+    for(GarbageCollectorMXBean bean : beans) {
+      count += Math.max(0, bean.getCollectionCount());
+    }
+    return count;
+  }
+
+  /* Milliseconds spent in garbage collection so far */
+  static long gcTime() {
+    long time = 0;
+    List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+    for(GarbageCollectorMXBean bean : beans) {
+      time += Math.max(0, bean.getCollectionTime());
+    }
+    return time;
+  }
+
+  /* The polygon of every shape in the tree that has paths */
+  static void collectPolygons(RShape shape, List<RPolygon> out) {
+    if(shape.countPaths() > 0) {
+      RShape paths = new RShape();
+      for(int i = 0; i < shape.countPaths(); i++) {
+        paths.addPath(shape.paths[i]);
+      }
+      out.add(paths.toPolygon());
+    }
+    for(int i = 0; i < shape.countChildren(); i++) {
+      collectPolygons(shape.children[i], out);
+    }
+  }
+
+  /* A copy of the polygon moved by a tenth of its size, so that both overlap a lot */
+  static RPolygon shifted(RPolygon p) {
+    RPolygon result = new RPolygon(p);
+    result.translate(p.getWidth() / 10F, p.getHeight() / 10F);
+    return result;
+  }
+
+  static RPolygon makeStar(int numPoints, float angle) {
+    RPoint[] points = new RPoint[numPoints];
+    for(int i = 0; i < numPoints; i++) {
+      float r = (i % 2 == 0) ? 100F : 60F;
+      float a = angle + 2F * (float)Math.PI * i / numPoints;
+      points[i] = new RPoint(r * (float)Math.cos(a), r * (float)Math.sin(a));
+    }
+    return new RPolygon(points);
+  }
+
+  static String format(double v) {
+    if(v < 1) {
+      return String.valueOf(Math.round(v * 1000) / 1000.0);
+    }
+    return String.valueOf(Math.round(v * 10) / 10.0);
+  }
+
+  static String pad(String s, int width) {
+    StringBuffer sb = new StringBuffer(s);
+    while(sb.length() < width) {
+      sb.append(' ');
+    }
+    return sb.toString();
+  }
+}
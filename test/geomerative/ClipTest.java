@@ -2,7 +2,16 @@ package geomerative;
 
 import junit.framework.*;
 
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+import processing.core.PMatrix;
+import processing.core.PMatrix2D;
+import processing.core.PShape;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Random;
@@ -46,6 +55,7 @@ public class ClipTest extends TestCase {
     int n = 10;
     RPolygon slow_int=null,slow_union=null,slow_xor=null,slow_diff=null;
     RPolygon fast_int=null,fast_union=null,fast_xor=null,fast_diff=null;
+    RPolygon array_int=null,array_union=null,array_xor=null,array_diff=null;
     
     RG.useFastClip = false;
     f.record("slow intersection");
@@ -58,6 +68,7 @@ public class ClipTest extends TestCase {
     for(int i = 0; i < n; i++) { slow_diff  = RClip.diff(a,b); }
     
     RG.useFastClip = true;
+    RG.useArrayClip = false;
     f.record("fast int");
     for(int i = 0; i < n; i++) { fast_int   = RClip.intersection(a,b); }
     f.record("fast union");
@@ -66,6 +77,16 @@ public class ClipTest extends TestCase {
     for(int i = 0; i < n; i++) { fast_xor   = RClip.xor(a,b); }
     f.record("fast diff");
     for(int i = 0; i < n; i++) { fast_diff  = RClip.diff(a,b); }
+    
+    RG.useArrayClip = true;
+    f.record("array int");
+    for(int i = 0; i < n; i++) { array_int   = RClip.intersection(a,b); }
+    f.record("array union");
+    for(int i = 0; i < n; i++) { array_union = RClip.union(a,b); }
+    f.record("array xor");
+    for(int i = 0; i < n; i++) { array_xor   = RClip.xor(a,b); }
+    f.record("array diff");
+    for(int i = 0; i < n; i++) { array_diff  = RClip.diff(a,b); }
     f.stop();
     f.print();
     
@@ -73,6 +94,1221 @@ public class ClipTest extends TestCase {
     checkPoints(slow_union, fast_union);
     checkPoints(slow_xor, fast_xor);
     checkPoints(slow_diff, fast_diff);
+    checkPoints(slow_int, array_int);
+    checkPoints(slow_union, array_union);
+    checkPoints(slow_xor, array_xor);
+    checkPoints(slow_diff, array_diff);
+  }
+  
+  public void testSegmentator() {
+    RG.init(new PApplet());
+    RSegmentator saved = RG.getPolygonizer();
+    
+    assertEquals(RSegmentator.getDefault(), RG.getPolygonizer());
+    assertEquals(RSegmentator.getDefault().hashCode(), RG.getPolygonizer().hashCode());
+    assertEquals(RSegmentator.createAdaptative(0.2F), RSegmentator.getDefault().withType(RSegmentator.ADAPTATIVE).withAngle(0.2F));
+    assertEquals(RSegmentator.createAdaptative(0.2F).hashCode(), RSegmentator.getDefault().withType(RSegmentator.ADAPTATIVE).withAngle(0.2F).hashCode());
+    assertEquals(RSegmentator.createUniformLength(7.5F), RSegmentator.createUniformLength(7.5F, 0F));
+    assertEquals(RSegmentator.createUniformLength(7.5F).hashCode(), RSegmentator.createUniformLength(7.5F, 0F).hashCode());
+    assertEquals(RSegmentator.createUniformStep(0.1F), RSegmentator.createUniformStep(10F));
+    assertEquals(RSegmentator.createUniformStep(0.1F).hashCode(), RSegmentator.createUniformStep(10F).hashCode());
+    assertFalse(RSegmentator.createUniformLength(7.5F).equals(RSegmentator.createUniformLength(8F)));
+    assertFalse(RSegmentator.createUniformStep(0F).equals(RSegmentator.createUniformStep(-1F)));
+    assertFalse(RSegmentator.createTolerance(0.5F).equals(RSegmentator.createTolerance(0.5F).withType(RSegmentator.UNIFORMSTEP)));
+    assertFalse(RSegmentator.getDefault().equals(null));
+    
+    /* Counts and hashes of the points given by the static settings before RSegmentator existed */
+    int[] types = {RG.ADAPTATIVE, RG.UNIFORMLENGTH, RG.UNIFORMSTEP};
+    float[][] settings = {{0.05F, 0.2F, 0.6F}, {3F, 7.5F, 20F}, {0F, 5F, 0.1F}};
+    int[][] counts = {{719, 261, 253}, {534, 217, 86}, {474, 140, 270}};
+    long[][] hashes = {{5216464618290358829L, -3592350140655757388L, -381602453565495792L},
+                       {7936429655031655275L, -420350185288838485L, 4356682684349944218L},
+                       {-6328318677593911238L, -8685153045454502385L, -1800510383912180850L}};
+    RShape shape = createMixedShape();
+    try {
+      for(int t = 0; t < types.length; t++) {
+        for(int k = 0; k < settings[t].length; k++) {
+          RSegmentator seg;
+          RG.setPolygonizer(types[t]);
+          if(types[t] == RG.ADAPTATIVE) {
+            RG.setPolygonizerAngle(settings[t][k]);
+            seg = RSegmentator.createAdaptative(settings[t][k]);
+          } else if(types[t] == RG.UNIFORMLENGTH) {
+            RG.setPolygonizerLength(settings[t][k]);
+            seg = RSegmentator.createUniformLength(settings[t][k]);
+          } else {
+            RG.setPolygonizerStep(settings[t][k]);
+            seg = RSegmentator.createUniformStep(settings[t][k]);
+          }
+          assertEquals(RG.getPolygonizer(), seg);
+          
+          RPoint[][] global = shape.getPointsInPaths();
+          assertEquals(counts[t][k], countPoints(global));
+          assertEquals(hashes[t][k], hashPoints(global));
+          assertEquals(hashes[t][k], hashPoints(shape.getPointsInPaths(seg)));
+        }
+      }
+    } finally {
+      RCommand.segmentType = saved.getType();
+      RCommand.segmentAngleTol = saved.getAngle();
+      RCommand.segmentLength = saved.getLength();
+      RCommand.segmentSteps = saved.getSteps();
+      RCommand.segmentLines = saved.lines;
+    }
+    assertEquals(saved, RG.getPolygonizer());
+    
+    /* Two threads segmenting at once with different segmentators get the same points as alone */
+    final RShape[] shapes = {createMixedShape(), createMixedShape()};
+    final RSegmentator[] segs = {RSegmentator.createAdaptative(0.05F), RSegmentator.createUniformLength(3F, 1F)};
+    final long[] expected = {hashPoints(shapes[0].getPointsInPaths(segs[0])), hashPoints(shapes[1].getPointsInPaths(segs[1]))};
+    final int[] mismatches = new int[2];
+    Thread[] threads = new Thread[2];
+    for(int i = 0; i < threads.length; i++) {
+      final int which = i;
+      threads[i] = new Thread() {
+          public void run() {
+            for(int n = 0; n < 200; n++) {
+              if(hashPoints(shapes[which].getPointsInPaths(segs[which])) != expected[which]) {
+                mismatches[which]++;
+              }
+            }
+          }
+        };
+      threads[i].start();
+    }
+    for(int i = 0; i < threads.length; i++) {
+      try {
+        threads[i].join();
+      } catch(InterruptedException e) {
+        fail();
+      }
+    }
+    assertEquals(0, mismatches[0]);
+    assertEquals(0, mismatches[1]);
+  }
+  
+  public void testRunBuffer() {
+    /* The buffer keeps every point through its growths, adding one or reserving many */
+    RSegmentator.Run run = new RSegmentator.Run();
+    assertNull(run.toPoints());
+    for(int i = 0; i < 1000; i++) {
+      if(i % 100 == 0) {
+        run.ensureCapacity(37);
+      }
+      run.add(i, -i, 0F);
+    }
+    run.join();
+    run.add(999, -999, 0F);
+    RPoint[] points = run.toPoints();
+    assertEquals(1000, points.length);
+    for(int i = 0; i < points.length; i++) {
+      assertEquals(i, points[i].x, 0F);
+      assertEquals(-i, points[i].y, 0F);
+    }
+    
+    /* Counts and hashes of the RPoint[] given by the sources before the float buffer */
+    RCommand[] commands = {new RCommand(0, 0, 1000, 500), new RCommand(0, 0, 300, -200, 600, 400), new RCommand(0, 0, 100, 900, 800, -300, 1000, 500)};
+    RPath path = new RPath(commands[0]);
+    path.addQuadTo(1300, -200, 1600, 400);
+    path.addBezierTo(1700, 1300, 2400, 100, 2600, 500);
+    RSegmentator[] segs = {RSegmentator.createAdaptative(0.01F), RSegmentator.createUniformLength(1F), RSegmentator.createUniformStep(500F)};
+    int[][] counts = {{2, 247, 545, 868}, {1119, 826, 1424, 3402}, {501, 501, 501, 1502}};
+    long[][] hashes = {{36754685952L, -4495503951846295264L, -8536711995751959179L, -6222275288811714573L},
+                       {6934880453247289984L, -3612557039254179801L, 5047332540818518458L, 2629439646306005310L},
+                       {-4218283195904294912L, -6208058596492577819L, -1695412334929285538L, -8825186613794715268L}};
+    for(int t = 0; t < segs.length; t++) {
+      for(int c = 0; c < commands.length; c++) {
+        points = commands[c].getPoints(segs[t]);
+        assertEquals(counts[t][c], points.length);
+        assertEquals(hashes[t][c], hashPoints(new RPoint[][] {points}));
+      }
+      points = path.getPoints(segs[t]);
+      assertEquals(counts[t][3], points.length);
+      assertEquals(hashes[t][3], hashPoints(new RPoint[][] {points}));
+    }
+  }
+  
+  public void testTolerance() {
+    Random random = new Random(4);
+    float[] tolerances = {0.05F, 0.25F, 2F};
+    for(int n = 0; n < 300; n++) {
+      float[] c = new float[8];
+      for(int i = 0; i < c.length; i++) {
+        c[i] = 1000 * random.nextFloat() - 500;
+      }
+      RCommand command = (n % 2 == 0) ? new RCommand(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]) : new RCommand(c[0], c[1], c[2], c[3], c[4], c[5]);
+      float tolerance = tolerances[n % tolerances.length];
+      RPoint[] points = command.getPoints(RSegmentator.createTolerance(tolerance));
+      
+      /* Furthest distance from the points of the curve to the segments */
+      double furthest = 0;
+      for(int k = 0; k <= 500; k++) {
+        RPoint p = command.getPoint(k / 500F);
+        double closest = Double.MAX_VALUE;
+        for(int i = 0; i + 1 < points.length; i++) {
+          closest = Math.min(closest, distanceToSegment(p, points[i], points[i + 1]));
+        }
+        furthest = Math.max(furthest, closest);
+      }
+      assertTrue("distance " + furthest + " over " + tolerance, furthest <= tolerance + 1e-3);
+    }
+  }
+  
+  public void testArcLength() {
+    Random random = new Random(5);
+    for(int n = 0; n < 40; n++) {
+      float[] c = new float[8];
+      for(int i = 0; i < c.length; i++) {
+        c[i] = 1000 * random.nextFloat() - 500;
+      }
+      RCommand command = (n % 2 == 0) ? new RCommand(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]) : new RCommand(c[0], c[1], c[2], c[3], c[4], c[5]);
+      int steps = 20000;
+      double[] lengths = polylineLengths(command, steps);
+      assertEquals(lengths[steps], command.getCurveLength(), 0.02);
+      for(int k = 1; k < 10; k++) {
+        assertEquals(lengths[steps * k / 10], command.getCurveLength(k / 10F), 0.02);
+        
+        /* The parameter found for a length is where the polyline reaches that length */
+        float len = (float)(lengths[steps] * k / 10);
+        float t = command.getParameterAtLength(len);
+        int i = (int)(t * steps);
+        double reached = lengths[i] + (lengths[Math.min(i + 1, steps)] - lengths[i]) * (t * steps - i);
+        assertEquals(len, reached, 0.02);
+      }
+    }
+    
+    /* A path is traversed at constant speed through commands of all types */
+    RPath path = createMixedShape().children[2].paths[0];
+    int steps = 4000;
+    List points = new ArrayList();
+    for(int c = 0; c < path.countCommands(); c++) {
+      for(int i = (c == 0) ? 0 : 1; i <= steps; i++) {
+        points.add(path.commands[c].getPoint((float)i / steps));
+      }
+    }
+    double[] lengths = new double[points.size()];
+    for(int i = 1; i < lengths.length; i++) {
+      lengths[i] = lengths[i - 1] + ((RPoint)points.get(i)).dist((RPoint)points.get(i - 1));
+    }
+    assertEquals(lengths[lengths.length - 1], path.getCurveLength(), 0.05);
+    for(int k = 1; k < 20; k++) {
+      double len = lengths[lengths.length - 1] * k / 20;
+      int i = 0;
+      while(lengths[i + 1] < len) {
+        i++;
+      }
+      RPoint a = (RPoint)points.get(i);
+      RPoint b = (RPoint)points.get(i + 1);
+      float f = (float)((len - lengths[i]) / (lengths[i + 1] - lengths[i]));
+      RPoint expected = new RPoint(a.x + f * (b.x - a.x), a.y + f * (b.y - a.y));
+      assertTrue(expected.dist(path.getPoint(k / 20F)) < 0.05F);
+    }
+    
+    /* The cached lengths follow the changes of the path */
+    float length = path.getCurveLength();
+    RPoint middle = path.getPoint(0.5F);
+    path.scale(2);
+    assertEquals(2 * length, path.getCurveLength(), 1e-3 * length);
+    assertEquals(2 * middle.x, path.getPoint(0.5F).x, 0.1F);
+    assertEquals(2 * middle.y, path.getPoint(0.5F).y, 0.1F);
+    RCommand first = path.commands[1];
+    float firstLength = first.getCurveLength();
+    first.transform(new RMatrix(0.5F, 0, 0, 0, 0.5F, 0));
+    assertEquals(firstLength / 2, first.getCurveLength(), 1e-3 * firstLength);
+    path.addLineTo(path.commands[path.countCommands() - 1].endPoint.x + 1000, path.commands[path.countCommands() - 1].endPoint.y);
+    assertEquals(polylineLengths(path.commands[path.countCommands() - 1], 1)[1], path.getCurveLengths()[path.countCommands() - 1], 1e-3);
+    float total = 0;
+    for(int c = 0; c < path.countCommands(); c++) {
+      total += path.commands[c].getCurveLength();
+    }
+    assertEquals(total, path.getCurveLength(), 1e-3 * total);
+  }
+  
+  public void testCurveLength() {
+    /* Cubics against a fine polyline */
+    Random random = new Random(6);
+    for(int n = 0; n < 50; n++) {
+      float[] c = new float[8];
+      for(int i = 0; i < c.length; i++) {
+        c[i] = 1000 * random.nextFloat() - 500;
+      }
+      RCommand cubic = new RCommand(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]);
+      assertEquals(bezierPolylineLength(cubic, 100000), cubic.getCurveLength(), 0.01);
+    }
+    
+    /* Quads against the closed form */
+    for(int n = 0; n < 50; n++) {
+      float[] c = new float[6];
+      for(int i = 0; i < c.length; i++) {
+        c[i] = 1000 * random.nextFloat() - 500;
+      }
+      double ax = c[0] - 2 * c[2] + c[4], ay = c[1] - 2 * c[3] + c[5];
+      double bx = 2 * (c[2] - c[0]), by = 2 * (c[3] - c[1]);
+      double A = 4 * (ax * ax + ay * ay), B = 4 * (ax * bx + ay * by), C = bx * bx + by * by;
+      double sabc = 2 * Math.sqrt(A + B + C), a2 = Math.sqrt(A), a32 = 2 * A * a2, c2 = 2 * Math.sqrt(C), ba = B / a2;
+      double exact = (a32 * sabc + a2 * B * (sabc - c2) + (4 * C * A - B * B) * Math.log((2 * a2 + ba + sabc) / (ba + c2))) / (4 * a32);
+      assertEquals(exact, new RCommand(c[0], c[1], c[2], c[3], c[4], c[5]).getCurveLength(), 1e-5 * exact);
+    }
+    
+    /* Degenerate curves: collinear handles in order or going back, handles on the ends, single points */
+    assertEquals(30F, new RCommand(0, 0, 10, 0, 20, 0, 30, 0).getCurveLength(), 1e-3F);
+    assertEquals(50F, new RCommand(0, 0, 0, 0, 30, 40, 30, 40).getCurveLength(), 1e-3F);
+    assertEquals(50F, new RCommand(0, 0, 0, 0, 30, 40).getCurveLength(), 1e-3F);
+    assertEquals(50F, new RCommand(0, 0, 15, 20, 30, 40).getCurveLength(), 1e-3F);
+    assertEquals(0F, new RCommand(5, 5, 5, 5, 5, 5, 5, 5).getCurveLength(), 0F);
+    assertEquals(0F, new RCommand(5, 5, 5, 5, 5, 5).getCurveLength(), 0F);
+    RCommand[] degenerate = {new RCommand(0, 0, 40, 0, -10, 0, 30, 0), new RCommand(0, 0, 50, 0, 30, 0), new RCommand(0, 0, 100, 100, 0, 100, 100, 0), new RCommand(0, 0, 30, 40, 30, 40, 0, 0)};
+    for(int i = 0; i < degenerate.length; i++) {
+      assertEquals(bezierPolylineLength(degenerate[i], 100000), degenerate[i].getCurveLength(), 0.01);
+    }
+  }
+  
+  public void testCurveIntersections() {
+    RCommand cubic = new RCommand(0, 0, 100, 200, 300, -100, 400, 100);
+    
+    /* Crossings: the cubic crosses y = 50 where t is 0.5 or 0.5 +- sqrt(3/20) */
+    float[] roots = {0.5F - (float)Math.sqrt(0.15), 0.5F, 0.5F + (float)Math.sqrt(0.15)};
+    RCommand[] crossing = {new RCommand(0, 50, 400, 50), new RCommand(0, 50, 200, 50, 400, 50), new RCommand(0, 100, 100, -100, 300, 200, 400, 0)};
+    for(int c = 0; c < crossing.length; c++) {
+      float[][] advs = cubic.intersectionAdvancements(crossing[c]);
+      assertEquals(3, advs[0].length);
+      for(int i = 0; i < advs[0].length; i++) {
+        assertEquals(roots[i], advs[0][i], 1e-4F);
+        assertTrue(cubic.getPoint(advs[0][i]).dist(crossing[c].getPoint(advs[1][i])) < 1e-2F);
+      }
+    }
+    assertNull(cubic.intersectionAdvancements(new RCommand(0, 500, 400, 500)));
+    
+    /* Touches, on the ends of the parts of the subdivision or between them, as precise along the tangent as the float handles allow */
+    RCommand quad = new RCommand(0, 0, 200, 300, 400, 0);
+    RCommand arc = RShape.createCircle(0, 0, 200).paths[0].commands[0];
+    RPoint top = arc.getPoint(0.3F);
+    RPoint tangent = arc.getTangent(0.3F);
+    RCommand[][] touching = {{quad, new RCommand(0, 150, 400, 150)},
+                             {quad, new RCommand(0, 300, 200, 0, 400, 300)},
+                             {arc, new RCommand(top.x - tangent.x, top.y - tangent.y, top.x + tangent.x, top.y + tangent.y)}};
+    RPoint[] touches = {new RPoint(200, 150), new RPoint(200, 150), top};
+    for(int c = 0; c < touching.length; c++) {
+      float[][] advs = touching[c][0].intersectionAdvancements(touching[c][1]);
+      assertEquals(1, advs[0].length);
+      assertTrue(touching[c][0].getPoint(advs[0][0]).dist(touches[c]) < 5e-2F);
+      assertTrue(touching[c][1].getPoint(advs[1][0]).dist(touches[c]) < 5e-2F);
+    }
+    
+    /* Overlaps give the ends of the stretch along which the curves are the same */
+    RCommand[] halves = cubic.split(0.5F);
+    RCommand[] overlapping = {new RCommand(cubic), new RCommand(400, 100, 300, -100, 100, 200, 0, 0), halves[1]};
+    float[][] ends = {{0, 0, 1, 1}, {0, 1, 1, 0}, {0.5F, 0, 1, 1}};
+    for(int c = 0; c < overlapping.length; c++) {
+      float[][] advs = cubic.intersectionAdvancements(overlapping[c]);
+      assertEquals(2, advs[0].length);
+      assertEquals(ends[c][0], advs[0][0], 1e-3F);
+      assertEquals(ends[c][1], advs[1][0], 1e-3F);
+      assertEquals(ends[c][2], advs[0][1], 1e-3F);
+      assertEquals(ends[c][3], advs[1][1], 1e-3F);
+    }
+    assertEquals(2, cubic.intersectionPoints(new RCommand(cubic)).length);
+    assertEquals(2, quad.intersectionPoints(new RCommand(quad)).length);
+  }
+  
+  public void testClosest() {
+    Random random = new Random(8);
+    
+    /* Closest point of a command to a point, against the closest of many points of the command */
+    for(int n = 0; n < 300; n++) {
+      RCommand command = createRandomCommand(random, n % 3, 0);
+      RPoint p = new RPoint(1400 * random.nextFloat() - 700, 1400 * random.nextFloat() - 700);
+      float found = command.getPoint(RCommand.closestAdvFrom(command, p)).dist(p);
+      float brute = Float.MAX_VALUE;
+      for(int i = 0; i <= 2000; i++) {
+        brute = Math.min(brute, command.getPoint(i / 2000F).dist(p));
+      }
+      assertTrue(found + " over " + brute, found <= brute + 1e-2F);
+    }
+    
+    /* Closest points of two commands apart, at least one of them a curve */
+    int apart = 0;
+    for(int n = 0; n < 90; n++) {
+      RCommand c1 = createRandomCommand(random, n % 3, 0);
+      RCommand c2 = createRandomCommand(random, 1 + (n / 3) % 2, 1200 * random.nextFloat() - 600);
+      RClosest closest = c1.closestPoints(c2);
+      if(closest.intersects != null) {
+        continue;
+      }
+      apart++;
+      assertEquals(closest.distance, closest.closest[0].dist(closest.closest[1]), 1e-3F);
+      assertTrue(c1.getPoint(closest.advancements[0]).dist(closest.closest[0]) < 1e-3F);
+      assertTrue(c2.getPoint(closest.advancements[1]).dist(closest.closest[1]) < 1e-3F);
+      
+      RPoint[] p1 = new RPoint[601];
+      RPoint[] p2 = new RPoint[601];
+      for(int i = 0; i < p1.length; i++) {
+        p1[i] = c1.getPoint(i / 600F);
+        p2[i] = c2.getPoint(i / 600F);
+      }
+      float brute = Float.MAX_VALUE;
+      for(int i = 0; i < p1.length; i++) {
+        for(int j = 0; j < p2.length; j++) {
+          brute = Math.min(brute, p1[i].dist(p2[j]));
+        }
+      }
+      assertTrue(closest.distance + " over " + brute, closest.distance <= brute + 1e-2F);
+    }
+    assertTrue(apart > 30);
+  }
+  
+  public void testBatchEvaluation() {
+    RShape shape = createMixedShape();
+    RPath path = shape.children[2].paths[0];
+    
+    /* Unsorted advancements, with the ends and out of range values */
+    Random random = new Random(9);
+    float[] ts = new float[500];
+    for(int i = 0; i < ts.length; i++) {
+      ts[i] = random.nextFloat();
+    }
+    ts[0] = 0F;
+    ts[1] = 1F;
+    ts[2] = -0.5F;
+    ts[3] = 1.5F;
+    ts[4] = 0.5F;
+    
+    assertBatch(shape, shape.getPoints(ts), shape.getTangents(ts), ts);
+    assertBatch(path, path.getPoints(ts), path.getTangents(ts), ts);
+    assertBatch(shape.children[1].paths[0], shape.children[1].paths[0].getPoints(ts), shape.children[1].paths[0].getTangents(ts), ts);
+    for(int i = 0; i < path.commands.length; i++) {
+      assertBatch(path.commands[i], path.commands[i].getPoints(ts), path.commands[i].getTangents(ts), ts);
+    }
+    
+    /* Advancements already sorted, and repeated ones */
+    float[] sortedTs = (float[])ts.clone();
+    Arrays.sort(sortedTs);
+    assertBatch(shape, shape.getPoints(sortedTs), shape.getTangents(sortedTs), sortedTs);
+    float[] repeated = {0.25F, 0.75F, 0.25F, 0.75F, 0.25F};
+    assertBatch(shape, shape.getPoints(repeated), shape.getTangents(repeated), repeated);
+    
+    /* The advancements are sorted as the floats they are, with the indices they had */
+    float[] sorted = new float[ts.length];
+    int[] order = new int[ts.length];
+    RGeomElem.sortAdvancements(ts, sorted, order);
+    for(int i = 0; i < ts.length; i++) {
+      assertEquals(Math.max(0F, Math.min(1F, ts[order[i]])), sorted[i], 0F);
+      assertTrue(i == 0 || sorted[i - 1] <= sorted[i]);
+    }
+  }
+  
+  public void testUnionAll() {
+    RPolygon[] polys = new RPolygon[9];
+    for(int i = 0; i < polys.length; i++) {
+      polys[i] = RPolygon.createStar(30 * (i % 3), 30 * (i / 3), 40, 20, 7);
+    }
+    
+    RPolygon union = new RPolygon();
+    RPolygon xor = new RPolygon();
+    for(int i = 0; i < polys.length; i++) {
+      union = union.union(polys[i]);
+      xor = xor.xor(polys[i]);
+    }
+    
+    assertEquals(area(union), area(RPolygon.unionAll(polys)), 1e-3 * area(union));
+    assertEquals(area(xor), area(RPolygon.unionAll(polys, RG.EVENODD)), 1e-3 * area(xor));
+    
+    RPolygon[] apart = {polys[0], RPolygon.createCircle(500, 500, 10)};
+    assertNull(RPolygon.intersectionAll(apart).contours);
+    
+    // An operand overlapping itself is resolved by the clipper even when it is apart from the others
+    RPolygon squares = RPolygon.createRectangle(0, 0, 20, 20);
+    squares.addContour(RPolygon.createRectangle(10, 0, 20, 20).contours[0]);
+    RPolygon far = RPolygon.createRectangle(500, 500, 10, 10);
+    RPolygon[] overlapping = {squares, far};
+    assertEquals(area(squares.union(far)), area(RPolygon.unionAll(overlapping)), 1e-3);
+    assertEquals(area(squares.xor(far)), area(RPolygon.unionAll(overlapping, RG.EVENODD)), 1e-3);
+  }
+  
+  public void testUnionParallel() {
+    RShape[] shapes = new RShape[16];
+    for(int i = 0; i < shapes.length; i++) {
+      shapes[i] = RShape.createCircle(25 * (i % 4), 25 * (i / 4), 40);
+    }
+    shapes[15] = RShape.createCircle(400, 400, 10);
+    
+    RPoint[] union = RG.union(shapes).getPoints();
+    RPoint[] parallel = RG.unionParallel(shapes).getPoints();
+    assertEquals(union.length, parallel.length);
+    for(int i = 0; i < union.length; i++) {
+      assertEquals(union[i].x, parallel[i].x, 0F);
+      assertEquals(union[i].y, parallel[i].y, 0F);
+    }
+    assertEquals(0, RG.intersectionParallel(shapes).countPaths());
+    
+    RShape squares = new RShape();
+    squares.addChild(RShape.createRectangle(0, 0, 20, 20));
+    squares.addChild(RShape.createRectangle(10, 0, 20, 20));
+    RShape[] overlapping = {squares, RShape.createRectangle(500, 500, 10, 10)};
+    RPoint[] expected = squares.toPolygon().union(overlapping[1].toPolygon()).toShape().getPoints();
+    parallel = RG.unionParallel(overlapping).getPoints();
+    assertEquals(expected.length, parallel.length);
+    for(int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].x, parallel[i].x, 0F);
+      assertEquals(expected[i].y, parallel[i].y, 0F);
+    }
+  }
+  
+  public void testMinimaxSweep() {
+    RClip.OperationType[] ops = {RClip.OperationType.GPC_INT, RClip.OperationType.GPC_UNION, RClip.OperationType.GPC_XOR, RClip.OperationType.GPC_DIFF};
+    Random random = new Random(16);
+    
+    /* Boxes on a coarse grid, so that many of them overlap, touch or share sides, some of them at negative coordinates */
+    for(int n = 0; n < 50; n++) {
+      int numSubj = 1 + random.nextInt(60);
+      int numClip = 1 + random.nextInt(60);
+      float[] box = new float[4 * (numSubj + numClip)];
+      for(int i = 0; i < numSubj + numClip; i++) {
+        float x = random.nextInt(40) - 20;
+        float y = random.nextInt(40) - 20;
+        box[4 * i] = x;
+        box[4 * i + 1] = y;
+        box[4 * i + 2] = x + random.nextInt(4);
+        box[4 * i + 3] = y + random.nextInt(4);
+      }
+      for(int o = 0; o < ops.length; o++) {
+        assertContributing(box, numSubj, numClip, ops[o]);
+      }
+    }
+    
+    /* Contours side by side that never overlap, the subject ones alternating with the clip ones */
+    float[] comb = new float[4 * 40];
+    for(int i = 0; i < 40; i++) {
+      comb[4 * i] = 2 * i;
+      comb[4 * i + 1] = 0;
+      comb[4 * i + 2] = 2 * i + 1;
+      comb[4 * i + 3] = 10;
+    }
+    for(int o = 0; o < ops.length; o++) {
+      assertContributing(comb, 20, 20, ops[o]);
+    }
+    
+    /* The subject and the clip apart, the sweep is skipped and no clip contour contributes */
+    float[] apart = new float[4 * 30];
+    for(int i = 0; i < 30; i++) {
+      float x = (i < 10) ? -100 - 5 * i : 100 + 5 * i;
+      apart[4 * i] = x;
+      apart[4 * i + 1] = i;
+      apart[4 * i + 2] = x + 20;
+      apart[4 * i + 3] = i + 20;
+    }
+    for(int o = 0; o < ops.length; o++) {
+      boolean[] contributing = assertContributing(apart, 10, 20, ops[o]);
+      for(int i = 0; i < 30; i++) {
+        assertEquals(i < 10 && ops[o] != RClip.OperationType.GPC_INT, contributing[i]);
+      }
+    }
+    
+    /* The flags set on the contours of polygons, the subject squares first in the boxes */
+    RPolygon subj = new RPolygon();
+    RPolygon clip = new RPolygon();
+    float[] squares = new float[4 * 30];
+    for(int i = 0; i < 30; i++) {
+      float x = random.nextInt(40) - 20;
+      float y = random.nextInt(40) - 20;
+      ((i < 15) ? subj : clip).addContour(RPolygon.createRectangle(x, y, 3, 3).contours[0]);
+      squares[4 * i] = x;
+      squares[4 * i + 1] = y;
+      squares[4 * i + 2] = x + 3;
+      squares[4 * i + 3] = y + 3;
+    }
+    boolean[] expected = minimaxAllPairs(squares, 15, 15, RClip.OperationType.GPC_INT);
+    RClip.minimax_test(subj, clip, RClip.OperationType.GPC_INT);
+    for(int i = 0; i < 15; i++) {
+      assertEquals(expected[i], subj.isContributing(i));
+      assertEquals(expected[15 + i], clip.isContributing(i));
+    }
+  }
+  
+  public void testClipToRect() {
+    RShape circle = RShape.createCircle(0, 0, 100);
+    RShape clipped = circle.clipToRect(-20, -80, 100, 60);
+    RPolygon rect = RShape.createRectangle(-20, -80, 100, 60).toPolygon();
+    
+    /* The curves are split at the sides, not polygonized */
+    int curves = 0;
+    for(int i = 0; i < clipped.paths[0].countCommands(); i++) {
+      if(clipped.paths[0].commands[i].getCommandType() != RCommand.LINETO) {
+        curves++;
+      }
+    }
+    assertTrue(curves > 0);
+    
+    RPoint[] handles = clipped.getHandles();
+    for(int i = 0; i < handles.length; i++) {
+      assertTrue(handles[i].x >= -20 - 1e-3 && handles[i].x <= 80 + 1e-3);
+      assertTrue(handles[i].y >= -80 - 1e-3 && handles[i].y <= -20 + 1e-3);
+    }
+    
+    RSegmentator fine = RSegmentator.createTolerance(0.01F);
+    RPolygon expected = RClip.intersection(circle.toPolygon(fine), rect);
+    assertEquals(area(expected), area(clipped.toPolygon(fine)), 1e-3 * area(expected));
+    
+    RPolygon star = RPolygon.createStar(0, 0, 100, 40, 9);
+    expected = RClip.intersection(star, rect);
+    assertEquals(area(expected), area(star.clipToRect(-20, -80, 100, 60)), 1e-3 * area(expected));
+    
+    assertEquals(0, circle.clipToRect(200, 200, 10, 10).countPaths());
+  }
+  
+  public void testClipOpenPathToRect() {
+    /* An open line without fill is cut at the side, without a segment along it or a chord back to its start */
+    RPoint[][] points = {{new RPoint(-50, 0), new RPoint(50, 0), new RPoint(50, 50)}};
+    RShape line = new RShape(points);
+    line.setFill(false);
+    RShape clipped = line.clipToRect(0, -100, 100, 200);
+    assertEquals(1, clipped.countPaths());
+    RPath path = clipped.paths[0];
+    assertFalse(path.closed);
+    assertEquals(2, path.countCommands());
+    assertEquals(0F, path.commands[0].startPoint.x, 0F);
+    assertEquals(0F, path.commands[0].startPoint.y, 0F);
+    assertEquals(50F, path.commands[1].endPoint.x, 0F);
+    assertEquals(50F, path.commands[1].endPoint.y, 0F);
+    
+    /* A line leaving and entering the rectangle gives one open path for each piece inside */
+    RPoint[][] zigzag = {{new RPoint(10, 10), new RPoint(200, 10), new RPoint(200, 50), new RPoint(10, 50)}};
+    RShape zigzagLine = new RShape(zigzag);
+    zigzagLine.setFill(false);
+    clipped = zigzagLine.clipToRect(0, 0, 100, 100);
+    assertEquals(2, clipped.countPaths());
+    for(int i = 0; i < clipped.countPaths(); i++) {
+      assertFalse(clipped.paths[i].closed);
+      assertEquals(1, clipped.paths[i].countCommands());
+      assertEquals(90F, clipped.paths[i].getCurveLength(), 1e-3F);
+    }
+    
+    /* An open arc keeps its curves */
+    RShape arc = new RShape(new RPath(RShape.createCircle(0, 0, 100).paths[0].commands[0]));
+    arc.setFill(false);
+    clipped = arc.clipToRect(-100, -100, 125, 200);
+    assertEquals(1, clipped.countPaths());
+    assertFalse(clipped.paths[0].closed);
+    assertEquals(RCommand.CUBICBEZIERTO, clipped.paths[0].commands[0].getCommandType());
+    assertTrue(clipped.paths[0].getCurveLength() < arc.getCurveLength());
+    assertEquals(25F, clipped.getBounds().getMaxX(), 1e-3F);
+    
+    /* An open path that is filled, here by its parent, is an outline as in intersection() */
+    RShape filled = new RShape();
+    filled.setFill(true);
+    filled.addChild(new RShape(zigzag));
+    clipped = filled.clipToRect(0, 0, 100, 100);
+    assertEquals(1, clipped.children[0].countPaths());
+    assertTrue(clipped.children[0].paths[0].closed);
+    assertEquals(4, clipped.children[0].paths[0].countCommands());
+    assertEquals(3600, area(clipped.toPolygon()), 1e-2 * 3600);
+    assertEquals(3600, area(new RShape(zigzag).clipToRect(0, 0, 100, 100).toPolygon()), 1e-2 * 3600);
+    RShape square = RShape.createRectangle(0, 0, 100, 100);
+    assertEquals(area(new RShape(zigzag).intersection(square).toPolygon()), area(clipped.toPolygon()), 1e-2 * 3600);
+    
+    /* A child without fill of its own has the one of its parent */
+    filled.setFill(false);
+    clipped = filled.clipToRect(0, 0, 100, 100);
+    assertEquals(2, clipped.children[0].countPaths());
+    assertFalse(clipped.children[0].paths[0].closed);
+  }
+  
+  public void testKeepCurves() {
+    RShape a = RShape.createCircle(0, 0, 100);
+    RShape b = RShape.createCircle(60, 10, 80);
+    RShape lines = a.intersection(b);
+    RShape curves;
+    RG.keepCurves(true);
+    try {
+      curves = a.intersection(b);
+    } finally {
+      RG.keepCurves(false);
+    }
+    
+    assertEquals(1, curves.countPaths());
+    RCommand[] commands = curves.paths[0].commands;
+    assertTrue(commands.length < lines.paths[0].countCommands());
+    for(int i = 0; i < commands.length; i++) {
+      assertEquals(RCommand.CUBICBEZIERTO, commands[i].getCommandType());
+    }
+    
+    RSegmentator fine = RSegmentator.createTolerance(0.01F);
+    RPolygon expected = RClip.intersection(a.toPolygon(fine), b.toPolygon(fine));
+    assertEquals(area(expected), area(curves.toPolygon(fine)), 1e-3 * area(expected));
+  }
+  
+  public void testFlatPolygon() {
+    RPolygon a = makeShape(40);
+    RPolygon b = makeShape(41);
+    RFlatPolygon fa = new RFlatPolygon(a);
+    RFlatPolygon fb = new RFlatPolygon(b);
+    assertEquals(a.countContours(), fa.countContours());
+    checkPoints(a, fa.toPolygon());
+    
+    RPolygon[] expected = {a.intersection(b), a.union(b), a.xor(b), b.diff(a)};
+    RFlatPolygon[] flat = {fa.intersection(fb), fa.union(fb), fa.xor(fb), fb.diff(fa)};
+    for(int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].countContours(), flat[i].countContours());
+      checkPoints(expected[i], flat[i].toPolygon());
+      for(int c = 0; c < flat[i].countContours(); c++) {
+        assertEquals(expected[i].contours[c].isHole(), flat[i].holes[c]);
+      }
+    }
+    
+    RFlatPolygon apart = new RFlatPolygon(RPolygon.createCircle(500, 500, 10));
+    assertEquals(0, fa.intersection(apart).countContours());
+  }
+  
+  public void testOffset() {
+    RPolygon square = RPolygon.createRectangle(0, 0, 100, 100);
+    assertEquals(120 * 120, area(square.offset(10, RG.MITER, 4)), 1e-2);
+    assertEquals(120 * 120 - 4 * 50, area(square.offset(10, RG.BEVEL, 4)), 1e-2);
+    assertEquals(80 * 80, area(square.offset(-10)), 1e-2);
+    assertEquals(100 * 100 + 4 * 100 * 10 + Math.PI * 10 * 10, area(square.offset(10)), 10);
+    assertEquals(0, square.offset(-60).countContours());
+    
+    /* The holes of a ring shrink as the ring grows */
+    RPolygon ring = RPolygon.createRing(0, 0, 100, 60);
+    RPolygon grown = ring.offset(5, RG.MITER, 4);
+    double expected = Math.PI * (105 * 105 - 55 * 55);
+    assertEquals(2, grown.countContours());
+    assertEquals(expected, area(grown), 1e-2 * expected);
+    
+    /* The folds of a star grown far beyond its inner radius are resolved */
+    RPolygon star = RPolygon.createStar(0, 0, 100, 40, 9);
+    RPolygon halo = star.offset(30);
+    assertEquals(1, halo.countContours());
+    assertFalse(halo.contours[0].isHole());
+    
+    /* Squares grown until their sides meet along a line are joined into one contour */
+    RPolygon squares = RPolygon.createRectangle(0, 0, 10, 10);
+    squares.addContour(RPolygon.createRectangle(14, 0, 10, 10).contours[0]);
+    RPolygon joined = squares.offset(2, RG.MITER, 4);
+    assertEquals(1, joined.countContours());
+    assertEquals(28 * 14, area(joined), 1e-2);
+    
+    RShape shape = RShape.createCircle(0, 0, 100).offset(-10);
+    assertEquals(1, shape.countPaths());
+  }
+  
+  public void testPathsMeetingEnds() {
+    /* The second path starts where the first one ends, and keeps its first point */
+    RPoint[][] points = {{new RPoint(0, 0), new RPoint(10, 0), new RPoint(10, 10)},
+                         {new RPoint(10, 10), new RPoint(20, 10), new RPoint(20, 20)}};
+    RShape shape = new RShape(points);
+    shape.addChild(RShape.createCircle(20, 20, 10));
+    
+    List<RPoint> expected = new ArrayList<RPoint>();
+    for(int i = 0; i < shape.countPaths(); i++) {
+      expected.addAll(java.util.Arrays.asList(shape.paths[i].getPoints()));
+    }
+    expected.addAll(java.util.Arrays.asList(shape.children[0].getPoints()));
+    RPoint[] result = shape.getPoints();
+    assertEquals(expected.size(), result.length);
+    for(int i = 0; i < result.length; i++) {
+      assertEquals(expected.get(i).x, result[i].x, 0F);
+      assertEquals(expected.get(i).y, result[i].y, 0F);
+    }
+    
+    final int[] counts = new int[3];
+    shape.flatten(new RPointSink() {
+        public void addPoint(float x, float y, int pathIndex, int commandIndex, float t) {
+          counts[pathIndex]++;
+        }
+      });
+    assertEquals(shape.paths[0].getPoints().length, counts[0]);
+    assertEquals(shape.paths[1].getPoints().length, counts[1]);
+    assertEquals(shape.children[0].getPoints().length, counts[2]);
+  }
+  
+  public void testMovedHandles() {
+    /* Moving the handles in place renews the bounds of the shape */
+    RG.init(new PApplet());
+    RShape rect = RShape.createRectangle(0, 0, 10, 10);
+    assertEquals(10F, rect.getWidth(), 0F);
+    assertFalse(rect.contains(new RPoint(50, 5)));
+    RPoint[] handles = rect.getHandles();
+    for(int i = 0; i < handles.length; i++) {
+      if(handles[i].x == 10) {
+        handles[i].x += 100;
+      }
+    }
+    assertEquals(110F, rect.getWidth(), 0F);
+    assertEquals(55F, rect.getCenter().x, 0F);
+    assertTrue(rect.contains(new RPoint(50, 5)));
+    
+    /* and the lengths and the points of a curve */
+    RCommand curve = RShape.createCircle(0, 0, 100).paths[0].commands[0];
+    float length = curve.getCurveLength();
+    RPoint middle = curve.getPoint(0.5F);
+    curve.controlPoints[0].x += 50;
+    curve.controlPoints[1].x += 50;
+    assertTrue(curve.getCurveLength() > length);
+    assertEquals(middle.x + 37.5F, curve.getPoint(0.5F).x, 1e-3F);
+    assertEquals(curve.getCurveLength(), curve.getCurveLength(1F), 1e-2F);
+    assertEquals(1F, curve.getParameterAtLength(curve.getCurveLength()), 0F);
+  }
+  
+  public void testDrawCache() {
+    RPolygon star = RPolygon.createStar(0, 0, 100, 40, 9);
+    RIndexedMesh mesh = star.getCachedMesh();
+    assertSame(mesh, star.getCachedMesh());
+    star.translate(10, 0);
+    assertNotSame(mesh, star.getCachedMesh());
+    mesh = star.getCachedMesh();
+    star.contours[0].addPoint(0, 0);
+    assertNotSame(mesh, star.getCachedMesh());
+    
+    /* A change to a child of a shape renews the mesh of the parent */
+    RShape shape = new RShape();
+    shape.addChild(RShape.createCircle(0, 0, 100));
+    RSegmentator seg = RSegmentator.getDefault();
+    mesh = shape.getCachedMesh(seg);
+    assertSame(mesh, shape.getCachedMesh(RSegmentator.getDefault()));
+    assertNotSame(mesh, shape.getCachedMesh(RSegmentator.createTolerance(0.5F)));
+    mesh = shape.getCachedMesh(seg);
+    shape.children[0].paths[0].insertHandle(0.5F);
+    assertNotSame(mesh, shape.getCachedMesh(seg));
+    
+    RPath path = shape.children[0].paths[0];
+    RPoint[] points = path.getCachedPoints(seg);
+    assertSame(points, path.getCachedPoints(seg));
+    path.commands[0].scale(2);
+    assertNotSame(points, path.getCachedPoints(seg));
+    
+    /* Handles moved in place are drawn where they are */
+    PGraphics g = new PApplet().createGraphics(200, 200, PConstants.JAVA2D);
+    g.beginDraw();
+    shape.draw(g);
+    path.getHandles()[0].x = -50;
+    shape.draw(g);
+    g.endDraw();
+    assertEquals(-50F, path.getCachedPoints(RSegmentator.createForGraphics(g))[0].x, 0F);
+    mesh = shape.getCachedMesh(seg);
+    path.commands[1].endPoint.y += 10;
+    assertNotSame(mesh, shape.getCachedMesh(seg));
+    
+    star = RPolygon.createStar(0, 0, 100, 40, 9);
+    mesh = star.getCachedMesh();
+    star.contours[0].points[0].x = 500;
+    assertNotSame(mesh, star.getCachedMesh());
+    float right = Float.NEGATIVE_INFINITY;
+    float[] xy = star.getCachedMesh().xy;
+    for(int i = 0; i < xy.length; i += 2) {
+      right = Math.max(right, xy[i]);
+    }
+    assertEquals(500F, right, 0F);
+  }
+  
+  public void testIndexedMesh() {
+    RPolygon ring = RPolygon.createRing(0, 0, 100, 60);
+    double expected = area(ring.update());
+    RMesh mesh = ring.toMesh();
+    
+    RIndexedMesh indexed = ring.toIndexedMesh();
+    assertEquals(expected, area(indexed), 1e-3 * expected);
+    assertTrue(indexed.countVertices() < mesh.getPoints().length);
+    RG.useArrayClip = false;
+    try {
+      assertEquals(expected, area(ring.toIndexedMesh()), 1e-3 * expected);
+    } finally {
+      RG.useArrayClip = true;
+    }
+    
+    /* The strips are joined again when converting back */
+    RMesh back = new RIndexedMesh(mesh).toMesh();
+    assertEquals(mesh.countStrips(), back.countStrips());
+    checkPoints(new RPolygon(mesh.getPoints()), new RPolygon(back.getPoints()));
+    
+    assertEquals(0, new RPolygon().toIndexedMesh().countTriangles());
+  }
+  
+  public void testTesselators() {
+    RPolygon ring = RPolygon.createRing(0, 0, 100, 60);
+    double expected = area(ring.update());
+    assertEquals(expected, area(RTesselator.MONOTONE.tesselate(ring, RG.EVENODD)), 1e-3 * expected);
+    
+    /* Two squares going the same way, the overlap is filled once or not at all */
+    RPolygon squares = RPolygon.createRectangle(0, 0, 100, 100);
+    squares.addContour(RPolygon.createRectangle(50, 50, 100, 100).contours[0]);
+    RTesselator[] tesselators = {RTesselator.MONOTONE, RTesselator.CLIPPER};
+    for(int i = 0; i < tesselators.length; i++) {
+      assertEquals(17500, area(tesselators[i].tesselate(squares, RG.NONZERO)), 1e-2);
+      assertEquals(15000, area(tesselators[i].tesselate(squares, RG.EVENODD)), 1e-2);
+    }
+    
+    /* A star of 7 branches crossing each other, the clipper gets it wrong under the even-odd rule */
+    RPolygon star = makeStar(7, 3);
+    double evenodd = area(ROffset.resolve(star, RG.EVENODD));
+    double nonzero = area(ROffset.resolve(star, RG.NONZERO));
+    assertEquals(evenodd, area(RTesselator.MONOTONE.tesselate(star, RG.EVENODD)), 1e-3 * evenodd);
+    assertEquals(nonzero, area(RTesselator.MONOTONE.tesselate(star, RG.NONZERO)), 1e-3 * nonzero);
+    assertTrue(nonzero > evenodd + 1);
+    
+    /* A triangle is filled under both rules, and left as it is */
+    RPoint[] corners = {new RPoint(0, 0), new RPoint(100, 0), new RPoint(0, 100)};
+    RPolygon triangle = new RPolygon(corners);
+    for(int i = 0; i < tesselators.length; i++) {
+      assertEquals(5000, area(tesselators[i].tesselate(triangle, RG.NONZERO)), 1e-2);
+      assertEquals(5000, area(tesselators[i].tesselate(triangle, RG.EVENODD)), 1e-2);
+    }
+    assertEquals(5000, area(triangle.toIndexedMesh()), 1e-2);
+    assertEquals(3, triangle.contours[0].countPoints());
+    
+    RG.setTesselator(RTesselator.MONOTONE);
+    try {
+      assertEquals(expected, area(ring.toIndexedMesh()), 1e-3 * expected);
+      assertEquals(17500, area(squares.toIndexedMesh(RG.NONZERO)), 1e-2);
+    } finally {
+      RG.setTesselator(RTesselator.CLIPPER);
+    }
+  }
+  
+  public void testTesselateMap() {
+    RG.init(new PApplet());
+    RPolygon map = RG.loadShape("data/world-map.svg").toPolygon();
+    
+    /* The map has segments closed on themselves as contours of 3 points, which the clippers skip */
+    int segments = 0;
+    for(int i = 0; i < map.countContours(); i++) {
+      if(map.contours[i].countPoints() == 3) {
+        segments++;
+      }
+    }
+    assertTrue(segments > 0);
+    
+    boolean[] fast = {false, true, true};
+    boolean[] array = {false, false, true};
+    try {
+      for(int i = 0; i < fast.length; i++) {
+        RG.useFastClip = fast[i];
+        RG.useArrayClip = array[i];
+        assertEquals(38632, map.toIndexedMesh().countTriangles());
+        assertEquals(38632, RTesselator.CLIPPER.tesselate(map, RG.EVENODD).countTriangles());
+        assertEquals(29585, RTesselator.CLIPPER.tesselate(map, RG.NONZERO).countTriangles());
+      }
+    } finally {
+      RG.useFastClip = true;
+      RG.useArrayClip = true;
+    }
+    
+    /* A segment closed on itself next to a triangle, only the triangle is filled */
+    RPolygon segment = new RPolygon(new RPoint[] {new RPoint(0, 0), new RPoint(100, 0), new RPoint(0, 0)});
+    segment.addContour(new RPoint[] {new RPoint(0, 10), new RPoint(100, 10), new RPoint(0, 110)});
+    assertEquals(5000, area(RTesselator.CLIPPER.tesselate(segment, RG.EVENODD)), 1e-2);
+    assertEquals(5000, area(RTesselator.CLIPPER.tesselate(segment, RG.NONZERO)), 1e-2);
+  }
+  
+  public void testToPShape() {
+    RShape ring = RShape.createRing(0, 0, 100, 60);
+    ring.setFill(0xffff0000);
+    ring.setStroke(false);
+    double expected = area(ring.toPolygon().update());
+    RShape star = RShape.createStar(0, 0, 40, 20, 5);
+    star.setFill(false);
+    star.setStroke(0xff00ff00);
+    star.setStrokeWeight(3);
+    ring.addChild(star);
+    
+    PGraphics g = new PApplet().createGraphics(200, 200, PConstants.JAVA2D);
+    PShape shape = ring.toPShape(g);
+    
+    /* The triangles of the fill of the ring, then the star, which has no fill and one line */
+    assertEquals(2, shape.getChildCount());
+    PShape fill = shape.getChild(0);
+    assertEquals(PConstants.TRIANGLES, fill.getKind());
+    assertEquals(expected, area(fill), 1e-3 * expected);
+    PShape child = shape.getChild(1);
+    assertEquals(1, child.getChildCount());
+    assertEquals(star.paths[0].getPoints().length, child.getChild(0).getVertexCount());
+    
+    g.beginDraw();
+    g.shape(shape);
+    g.endDraw();
+    
+    /* The texture of a shape is used for its own fill only, as draw() does */
+    RShape textured = RShape.createRectangle(0, 0, 100, 100);
+    textured.setFill(0xffffffff);
+    textured.setStroke(false);
+    textured.style.texture = new PImage(100, 100);
+    textured.addChild(RShape.createRectangle(20, 20, 10, 10));
+    shape = textured.toPShape(g);
+    fill = shape.getChild(0);
+    assertEquals(PConstants.TRIANGLES, fill.getKind());
+    for(int i = 0; i < fill.getVertexCount(); i++) {
+      assertEquals(fill.getVertexX(i), fill.getTextureU(i), 0F);
+      assertEquals(fill.getVertexY(i), fill.getTextureV(i), 0F);
+    }
+    PShape childFill = shape.getChild(shape.getChildCount() - 1).getChild(0);
+    assertEquals(PConstants.TRIANGLES, childFill.getKind());
+    for(int i = 0; i < childFill.getVertexCount(); i++) {
+      assertEquals(0F, childFill.getTextureU(i), 0F);
+    }
+  }
+  
+  public void testLevelOfDetail() {
+    RPath path = RShape.createCircle(0, 0, 200).paths[0];
+    
+    /* The scales of one power of two share a segmentator, and fewer points are needed when zooming out */
+    assertEquals(RSegmentator.createForScale(1.5F), RSegmentator.createForScale(2));
+    assertFalse(RSegmentator.createForScale(2).equals(RSegmentator.createForScale(2.5F)));
+    int near = path.getPoints(RSegmentator.createForScale(8)).length;
+    int normal = path.getPoints(RSegmentator.createForScale(1)).length;
+    int far = path.getPoints(RSegmentator.createForScale(0.125F)).length;
+    assertTrue(near > normal);
+    assertTrue(normal > far);
+    
+    /* Below a pixel the curves are not subdivided */
+    RPoint[] lines = path.getPoints(RSegmentator.createUniformStep(1));
+    RPoint[] tiny = path.getPoints(RSegmentator.createForScale(0.001F));
+    assertEquals(lines.length, tiny.length);
+    for(int i = 0; i < lines.length; i++) {
+      assertEquals(lines[i].x, tiny[i].x, 0F);
+      assertEquals(lines[i].y, tiny[i].y, 0F);
+    }
+    
+    /* Going back to a scale reuses its points */
+    RPoint[] points = path.getCachedPoints(RSegmentator.createForScale(1));
+    path.getCachedPoints(RSegmentator.createForScale(0.125F));
+    assertSame(points, path.getCachedPoints(RSegmentator.createForScale(0.9F)));
+  }
+  
+  public void testDrawCurves() {
+    RShape circle = RShape.createCircle(100, 100, 100);
+    boolean ignoreStyles = RG.ignoreStyles;
+    RG.ignoreStyles = true;
+    
+    /* Raster renderers get the points flattened for their scale */
+    CountingGraphics raster = new CountingGraphics(false);
+    circle.draw(raster);
+    assertEquals(0, raster.numCurves);
+    assertEquals(circle.paths[0].getPoints(RSegmentator.createForScale(1)).length, raster.numVertices);
+    int near = raster.numVertices;
+    raster.numVertices = 0;
+    raster.transform = new PMatrix2D(0.1F, 0, 0, 0, 0.1F, 0);
+    circle.draw(raster);
+    assertTrue(raster.numVertices < near);
+    
+    /* Vector renderers get the curves */
+    CountingGraphics vector = new CountingGraphics(true);
+    circle.draw(vector);
+    assertEquals(circle.paths[0].countCommands(), vector.numCurves);
+    
+    RG.ignoreStyles = ignoreStyles;
+  }
+  
+  /* A renderer that only counts the vertices and curves drawn on it */
+  private static class CountingGraphics extends PGraphics {
+    boolean vector;
+    PMatrix2D transform = new PMatrix2D();
+    int numVertices;
+    int numCurves;
+    
+    CountingGraphics(boolean vector) {
+      this.vector = vector;
+      width = 200;
+      height = 200;
+    }
+    
+    public boolean displayable() { return !vector; }
+    public boolean is2D() { return true; }
+    public PMatrix getMatrix() { return transform; }
+    public float screenX(float x, float y) { return transform.m00 * x + transform.m01 * y + transform.m02; }
+    public float screenY(float x, float y) { return transform.m10 * x + transform.m11 * y + transform.m12; }
+    public void beginShape() {}
+    public void endShape(int mode) {}
+    public void beginContour() {}
+    public void endContour() {}
+    public void vertex(float x, float y) { numVertices++; }
+    public void bezierVertex(float x2, float y2, float x3, float y3, float x4, float y4) { numCurves++; }
+  }
+  
+  /* Shape with paths of all the command types: lines, cubics, quads and a ring with a hole */
+  private RShape createMixedShape() {
+    RShape shape = new RShape();
+    shape.addChild(RShape.createCircle(0, 0, 100));
+    shape.addChild(RShape.createStar(50, 20, 60, 25, 5));
+    RPath path = new RPath(10, 10);
+    path.addBezierTo(60, -40, 120, 80, 150, 10);
+    path.addQuadTo(200, -60, 250, 30);
+    path.addLineTo(260, 90);
+    path.addBezierTo(200, 200, 100, 100, 10, 10);
+    shape.addChild(new RShape(path));
+    shape.addChild(RShape.createRing(300, 0, 80, 40));
+    return shape;
+  }
+  
+  private int countPoints(RPoint[][] points) {
+    int count = 0;
+    for(int i = 0; i < points.length; i++) {
+      count += points[i].length;
+    }
+    return count;
+  }
+  
+  /* Hash of the exact coordinates of the points, in order */
+  private long hashPoints(RPoint[][] points) {
+    long hash = 0;
+    for(int i = 0; i < points.length; i++) {
+      for(int j = 0; j < points[i].length; j++) {
+        hash = 31 * hash + Float.floatToIntBits(points[i][j].x);
+        hash = 31 * hash + Float.floatToIntBits(points[i][j].y);
+      }
+    }
+    return hash;
+  }
+  
+  /* Line, quad or cubic with its handles in a square of side 1000 moved by dx */
+  private RCommand createRandomCommand(Random random, int type, float dx) {
+    float[] c = new float[8];
+    for(int i = 0; i < c.length; i++) {
+      c[i] = 1000 * random.nextFloat() - 500 + ((i % 2 == 0) ? dx : 0);
+    }
+    switch(type) {
+    case 0:
+      return new RCommand(c[0], c[1], c[2], c[3]);
+    case 1:
+      return new RCommand(c[0], c[1], c[2], c[3], c[4], c[5]);
+    default:
+      return new RCommand(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]);
+    }
+  }
+  
+  /* Lengths of the polyline through the points of the command at uniform steps of t */
+  private double[] polylineLengths(RCommand command, int steps) {
+    double[] lengths = new double[steps + 1];
+    RPoint last = command.getPoint(0F);
+    for(int i = 1; i <= steps; i++) {
+      RPoint p = command.getPoint((float)i / steps);
+      lengths[i] = lengths[i - 1] + p.dist(last);
+      last = p;
+    }
+    return lengths;
+  }
+  
+  /* Length of the polyline through the points of the curve at uniform steps of t, evaluated in double */
+  private double bezierPolylineLength(RCommand command, int steps) {
+    double[] x = {command.startPoint.x, command.controlPoints[0].x, 0, command.endPoint.x};
+    double[] y = {command.startPoint.y, command.controlPoints[0].y, 0, command.endPoint.y};
+    boolean cubic = command.countControlPoints() == 2;
+    if(cubic) {
+      x[2] = command.controlPoints[1].x;
+      y[2] = command.controlPoints[1].y;
+    }
+    double length = 0, lastX = x[0], lastY = y[0];
+    for(int i = 1; i <= steps; i++) {
+      double t = (double)i / steps, mt = 1 - t, px, py;
+      if(cubic) {
+        px = mt * mt * mt * x[0] + 3 * mt * mt * t * x[1] + 3 * mt * t * t * x[2] + t * t * t * x[3];
+        py = mt * mt * mt * y[0] + 3 * mt * mt * t * y[1] + 3 * mt * t * t * y[2] + t * t * t * y[3];
+      } else {
+        px = mt * mt * x[0] + 2 * mt * t * x[1] + t * t * x[3];
+        py = mt * mt * y[0] + 2 * mt * t * y[1] + t * t * y[3];
+      }
+      length += Math.hypot(px - lastX, py - lastY);
+      lastX = px;
+      lastY = py;
+    }
+    return length;
+  }
+  
+  private double distanceToSegment(RPoint p, RPoint a, RPoint b) {
+    double dx = b.x - a.x, dy = b.y - a.y;
+    double l = dx * dx + dy * dy;
+    double t = (l == 0) ? 0 : Math.max(0, Math.min(1, ((p.x - a.x) * dx + (p.y - a.y) * dy) / l));
+    return Math.hypot(p.x - a.x - t * dx, p.y - a.y - t * dy);
+  }
+  
+  /* Checks batch points and tangents against getPoint and getTangent */
+  private void assertBatch(RGeomElem element, float[] points, float[] tangents, float[] ts) {
+    assertEquals(2 * ts.length, points.length);
+    assertEquals(2 * ts.length, tangents.length);
+    for(int i = 0; i < ts.length; i++) {
+      RPoint point = element.getPoint(ts[i]);
+      RPoint tangent = element.getTangent(ts[i]);
+      assertEquals("x at " + ts[i], point.x, points[2 * i], 1e-2F);
+      assertEquals("y at " + ts[i], point.y, points[2 * i + 1], 1e-2F);
+      assertEquals("tangent x at " + ts[i], tangent.x, tangents[2 * i], 1e-2F * Math.max(1F, Math.abs(tangent.x)));
+      assertEquals("tangent y at " + ts[i], tangent.y, tangents[2 * i + 1], 1e-2F * Math.max(1F, Math.abs(tangent.y)));
+    }
+  }
+  
+  /* Checks the sweep of minimax_test against minimaxAllPairs and returns its result */
+  private boolean[] assertContributing(float[] box, int numSubj, int numClip, RClip.OperationType op) {
+    boolean[] expected = minimaxAllPairs(box, numSubj, numClip, op);
+    boolean[] contributing = RClip.minimax_test(box, numSubj, numClip, op);
+    assertEquals(expected.length, contributing.length);
+    for(int i = 0; i < expected.length; i++) {
+      assertEquals(op + " contour " + i, expected[i], contributing[i]);
+    }
+    return contributing;
+  }
+  
+  /* The contours that can contribute as minimax_test found them before the sweep, by testing every subject box against every clip box */
+  private boolean[] minimaxAllPairs(float[] box, int numSubj, int numClip, RClip.OperationType op) {
+    boolean[] contributing = new boolean[numSubj + numClip];
+    for(int s = 0; s < numSubj; s++) {
+      for(int c = numSubj; c < numSubj + numClip; c++) {
+        boolean overlap = !((box[4 * s + 2] < box[4 * c]) || (box[4 * s] > box[4 * c + 2])) &&
+          !((box[4 * s + 3] < box[4 * c + 1]) || (box[4 * s + 1] > box[4 * c + 3]));
+        if(overlap) {
+          contributing[s] = true;
+          contributing[c] = true;
+        }
+      }
+    }
+    if(op != RClip.OperationType.GPC_INT) {
+      for(int s = 0; s < numSubj; s++) {
+        contributing[s] = true;
+      }
+    }
+    return contributing;
+  }
+  
+  /* Area of the triangles of a shape of kind TRIANGLES */
+  private double area(PShape s) {
+    double total = 0;
+    for(int i = 0; i + 2 < s.getVertexCount(); i += 3) {
+      double ax = s.getVertexX(i), ay = s.getVertexY(i);
+      total += Math.abs((s.getVertexX(i + 1) - ax) * (s.getVertexY(i + 2) - ay) - (s.getVertexX(i + 2) - ax) * (s.getVertexY(i + 1) - ay)) / 2;
+    }
+    return total;
+  }
+  
+  /* Polygon going through n points of a circle, skipping step - 1 of them each time */
+  private RPolygon makeStar(int n, int step) {
+    RPoint[] points = new RPoint[n];
+    for(int i = 0; i < n; i++) {
+      double a = 2 * Math.PI * i * step / n;
+      points[i] = new RPoint((float)(100 * Math.cos(a)), (float)(100 * Math.sin(a)));
+    }
+    return new RPolygon(points);
+  }
+  
+  /* Area of the triangles of the mesh */
+  private double area(RIndexedMesh m) {
+    double total = 0;
+    for(int t = 0; t < m.countTriangles(); t++) {
+      int a = 2 * m.indices[3 * t], b = 2 * m.indices[3 * t + 1], c = 2 * m.indices[3 * t + 2];
+      total += Math.abs((m.xy[b] - m.xy[a]) * (m.xy[c + 1] - m.xy[a + 1]) - (m.xy[c] - m.xy[a]) * (m.xy[b + 1] - m.xy[a + 1])) / 2;
+    }
+    return total;
+  }
+  
+  /* Area of the polygon, holes counted as negative */
+  private double area(RPolygon p) {
+    double total = 0;
+    for(int c = 0; p.contours != null && c < p.contours.length; c++) {
+      RPoint[] points = p.contours[c].points;
+      double a = 0;
+      for(int i = 0; i < points.length; i++) {
+        RPoint u = points[i];
+        RPoint v = points[(i + 1) % points.length];
+        a += u.x * v.y - v.x * u.y;
+      }
+      total += p.contours[c].isHole() ? -Math.abs(a) / 2 : Math.abs(a) / 2;
+    }
+    return total;
   }
   
   private void checkPoints(RPolygon slow, RPolygon fast) {
@@ -0,0 +1,82 @@
+package geomerative;
+
+import java.util.Random;
+
+import processing.core.PApplet;
+
+/**
+ *
+ * Times getPoints(float[]) against a loop of getPoint() on 50000
+ * random advancements, on the child with the most handles of each of
+ * the shapes in data/.  The batch call walks the paths once in the
+ * order of the advancements, so it should be the fastest.
+ *
+ * Run from the geomerative directory so that the data/ files are
+ * found.
+ *
+ */
+public class EvaluateBenchmark {
+
+  static final int WARMUP = 10;
+  static final int RUNS = 20;
+  static final int SAMPLES = 50000;
+
+  static final String[] FILES = {"data/world-map.svg", "data/Toucan.svg", "data/Lion.svg"};
+
+  /* Keeps the results alive so that the calls are not optimized away */
+  static float sink = 0;
+
+  public static void main(String[] args) {
+    RG.init(new PApplet());
+
+    Random random = new Random(1);
+    float[] ts = new float[SAMPLES];
+    for(int i = 0; i < ts.length; i++) {
+      ts[i] = random.nextFloat();
+    }
+
+    for(int f = 0; f < FILES.length; f++) {
+      RShape shape = RG.loadShape(FILES[f]);
+      RShape largest = shape;
+      int numHandles = -1;
+      for(int i = 0; i < shape.countChildren(); i++) {
+        int n = shape.children[i].getHandles().length;
+        if(n > numHandles) {
+          numHandles = n;
+          largest = shape.children[i];
+        }
+      }
+
+      for(int i = 0; i < WARMUP; i++) {
+        sink += batch(largest, ts) + loop(largest, ts);
+      }
+
+      long batchTime = 0;
+      long loopTime = 0;
+      for(int i = 0; i < RUNS; i++) {
+        long start = System.nanoTime();
+        sink += batch(largest, ts);
+        long middle = System.nanoTime();
+        sink += loop(largest, ts);
+        long end = System.nanoTime();
+        batchTime += middle - start;
+        loopTime += end - middle;
+      }
+
+      System.out.println("evaluate " + FILES[f] + " " + numHandles + " handles, getPoints(float[]): " + (batchTime / 1e6F / RUNS) + " ms/run, getPoint(): " + (loopTime / 1e6F / RUNS) + " ms/run");
+    }
+  }
+
+  static float batch(RShape shape, float[] ts) {
+    float[] points = shape.getPoints(ts);
+    return points[0];
+  }
+
+  static float loop(RShape shape, float[] ts) {
+    float sum = 0;
+    for(int i = 0; i < ts.length; i++) {
+      sum += shape.getPoint(ts[i]).x;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,40 @@
+package geomerative;
+
+import processing.core.PApplet;
+
+/**
+ *
+ * Times the flattening of data/Lion.svg with a UNIFORMLENGTH
+ * segmentator at a segment length of 0.5.  This is a lot of points,
+ * so it shows how the segmentators behave on long outputs.
+ *
+ * Run from the geomerative directory so that data/Lion.svg is found.
+ *
+ */
+public class FlattenBenchmark {
+
+  static final int WARMUP = 5;
+  static final int RUNS = 20;
+
+  public static void main(String[] args) {
+    RG.init(new PApplet());
+    String filename = args.length > 0 ? args[0] : "data/Lion.svg";
+    RShape shape = RG.loadShape(filename);
+
+    RSegmentator seg = RSegmentator.createUniformLength(0.5F);
+
+    int numPoints = 0;
+    for(int i = 0; i < WARMUP; i++) {
+      numPoints = shape.getPoints(seg).length;
+    }
+
+    long start = System.currentTimeMillis();
+    for(int i = 0; i < RUNS; i++) {
+      numPoints = shape.getPoints(seg).length;
+    }
+    long elapsed = System.currentTimeMillis() - start;
+
+    System.out.println("flatten " + filename + " length 0.5: " + numPoints + " points");
+    System.out.println("flatten " + (elapsed / (float)RUNS) + " ms/run");
+  }
+}
@@ -0,0 +1,44 @@
+package geomerative;
+
+import processing.core.PApplet;
+
+/**
+ *
+ * Times the flattening of data/world-map.svg with the segmentators
+ * that draw() picks when the map is drawn zoomed in and zoomed out.
+ * The fewer pixels the map covers the fewer points it should need,
+ * and the faster it should be flattened.
+ *
+ * Run from the geomerative directory so that data/world-map.svg is found.
+ *
+ */
+public class LodBenchmark {
+
+  static final int WARMUP = 5;
+  static final int RUNS = 20;
+
+  static final float[] SCALES = {4F, 1F, 0.25F, 0.0625F, 0.015625F};
+
+  public static void main(String[] args) {
+    RG.init(new PApplet());
+    String filename = args.length > 0 ? args[0] : "data/world-map.svg";
+    RShape shape = RG.loadShape(filename);
+
+    for(int s = 0; s < SCALES.length; s++) {
+      RSegmentator seg = RSegmentator.createForScale(SCALES[s]);
+
+      int numPoints = 0;
+      for(int i = 0; i < WARMUP; i++) {
+        numPoints = shape.getPoints(seg).length;
+      }
+
+      long start = System.nanoTime();
+      for(int i = 0; i < RUNS; i++) {
+        numPoints = shape.getPoints(seg).length;
+      }
+      long elapsed = System.nanoTime() - start;
+
+      System.out.println("scale " + SCALES[s] + ": " + numPoints + " points, " + (elapsed / 1e6F / RUNS) + " ms/run");
+    }
+  }
+}
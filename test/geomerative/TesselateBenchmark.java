@@ -0,0 +1,73 @@
+package geomerative;
+
+import processing.core.PApplet;
+
+/**
+ *
+ * Times RTesselator.MONOTONE against RTesselator.CLIPPER with the two
+ * clippers that can make triangle strips, FastRClip and ArrayRClip
+ * (RG.useArrayClip), under both fill rules.  The inputs are the
+ * polygons of the shapes in data/ and the glyphs of a font, each glyph
+ * tesselated on its own as RFont draws them.
+ *
+ * Run from the geomerative directory so that the data/ files are
+ * found.  Pass the path of a TrueType font as argument to use another
+ * font than the one of the first tutorial.
+ *
+ */
+public class TesselateBenchmark {
+
+  static final int WARMUP = 5;
+  static final int RUNS = 20;
+
+  static final String[] FILES = {"data/Lion.svg", "data/world-map.svg", "data/Toucan.svg", "data/mapa.svg"};
+  static final String GLYPHS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789&@%$";
+  static final String[] ENGINES = {"monotone", "array", "fast"};
+  static final String[] RULES = {"nonzero", "evenodd"};
+
+  public static void main(String[] args) {
+    RG.init(new PApplet());
+    String fontname = args.length > 0 ? args[0] : "examples/Tutorial_01_HelloWorld/data/FreeSans.ttf";
+
+    for(int i = 0; i < FILES.length; i++) {
+      run(FILES[i], new RPolygon[] {RG.loadShape(FILES[i]).toPolygon()});
+    }
+
+    RFont font = new RFont(fontname, 72);
+    RPolygon[] glyphs = new RPolygon[GLYPHS.length()];
+    for(int i = 0; i < glyphs.length; i++) {
+      glyphs[i] = font.toShape(GLYPHS.charAt(i)).toPolygon();
+    }
+    run(fontname + " glyphs", glyphs);
+  }
+
+  static void run(String name, RPolygon[] polys) {
+    for(int rule = RG.NONZERO; rule <= RG.EVENODD; rule++) {
+      for(int engine = 0; engine < ENGINES.length; engine++) {
+        RTesselator t = (engine == 0) ? RTesselator.MONOTONE : RTesselator.CLIPPER;
+        RG.useArrayClip = (engine != 2);
+
+        int numTriangles = 0;
+        for(int i = 0; i < WARMUP; i++) {
+          numTriangles = tesselate(t, polys, rule);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < RUNS; i++) {
+          numTriangles = tesselate(t, polys, rule);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("tesselate " + name + " " + RULES[rule] + " " + ENGINES[engine] + ": " + (elapsed / 1e6F / RUNS) + " ms/run, " + numTriangles + " triangles");
+      }
+    }
+    RG.useArrayClip = true;
+  }
+
+  static int tesselate(RTesselator t, RPolygon[] polys, int rule) {
+    int numTriangles = 0;
+    for(int i = 0; i < polys.length; i++) {
+      numTriangles += t.tesselate(polys[i], rule).countTriangles();
+    }
+    return numTriangles;
+  }
+}